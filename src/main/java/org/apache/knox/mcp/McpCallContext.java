@@ -0,0 +1,169 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.knox.mcp.util.McpLogger;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One downstream tool call in flight, and the channel its backend notifications go to.
+ * Progress updates are rate limited and coalesced: while an update is waiting, a newer
+ * one replaces it, so a client that falls behind sees the latest progress rather than a
+ * backlog. Log messages are capped per second and dropped beyond that. A call made outside
+ * of any channel for notifications keeps only the downstream session and request id it
+ * came with, so its backend request can still be traced back to it.
+ */
+public class McpCallContext {
+
+    private static final McpLogger logger = McpLogger.getLogger(McpCallContext.class);
+
+    private final McpNotificationRelay relay;
+    private final McpNotificationSink sink;
+    private final JsonNode progressToken;
+    private final String session;
+    private final JsonNode requestId;
+
+    private final Object lock = new Object();
+    private ObjectNode pendingProgress;
+    private boolean flushScheduled;
+    private long lastProgressNanos;
+    private long logWindowStartNanos;
+    private int logsInWindow;
+    private volatile boolean closed;
+
+    McpCallContext(McpNotificationRelay relay, McpNotificationSink sink, JsonNode progressToken,
+                   String session, JsonNode requestId) {
+        this.relay = relay;
+        this.sink = sink;
+        this.progressToken = progressToken;
+        this.session = session;
+        this.requestId = requestId;
+        this.lastProgressNanos = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(relay.getProgressIntervalMillis());
+    }
+
+    /**
+     * The token the downstream client asked progress to be reported under, or null.
+     */
+    public JsonNode getProgressToken() {
+        return progressToken;
+    }
+
+    /**
+     * Whether backend notifications for the call reach the downstream client at all.
+     */
+    public boolean isRelaying() {
+        return sink != null;
+    }
+
+    /**
+     * The downstream session the call arrived in, or null.
+     */
+    public String getSession() {
+        return session;
+    }
+
+    /**
+     * The JSON-RPC id the downstream client gave the call, or null.
+     */
+    public JsonNode getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Relays a backend {@code notifications/progress} under the downstream client's token.
+     */
+    public void relayProgress(JsonNode params) {
+        if (closed || sink == null || progressToken == null || params == null || !params.isObject()) {
+            return;
+        }
+        ObjectNode rewritten = ((ObjectNode) params).deepCopy();
+        rewritten.set("progressToken", progressToken);
+
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(relay.getProgressIntervalMillis());
+        synchronized (lock) {
+            if (pendingProgress != null) {
+                relay.coalesced.incrementAndGet();
+            }
+            pendingProgress = rewritten;
+            if (flushScheduled) {
+                return;
+            }
+            long waitNanos = lastProgressNanos + intervalNanos - System.nanoTime();
+            if (waitNanos > 0 || sink.isFallingBehind()) {
+                scheduleFlush(Math.max(waitNanos, intervalNanos / 2));
+                return;
+            }
+            flushProgress();
+        }
+    }
+
+    private void scheduleFlush(long delayNanos) {
+        flushScheduled = true;
+        relay.getFlushTimer().schedule(() -> {
+            synchronized (lock) {
+                flushScheduled = false;
+                if (pendingProgress == null || closed) {
+                    return;
+                }
+                // Keep holding the latest update while the client is still behind
+                if (sink.isFallingBehind()) {
+                    scheduleFlush(TimeUnit.MILLISECONDS.toNanos(Math.max(1, relay.getProgressIntervalMillis())));
+                    return;
+                }
+                flushProgress();
+            }
+        }, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+    }
+
+    // Called with lock held; sinks only queue the event, so this never blocks on the client
+    private void flushProgress() {
+        ObjectNode progress = pendingProgress;
+        pendingProgress = null;
+        lastProgressNanos = System.nanoTime();
+        send("notifications/progress", progress);
+    }
+
+    /**
+     * Relays a backend {@code notifications/message} log entry, subject to the per-second cap.
+     */
+    public void relayLog(JsonNode params) {
+        if (closed || sink == null) {
+            return;
+        }
+        synchronized (lock) {
+            long now = System.nanoTime();
+            if (now - logWindowStartNanos >= TimeUnit.SECONDS.toNanos(1)) {
+                logWindowStartNanos = now;
+                logsInWindow = 0;
+            }
+            if (logsInWindow >= relay.getLogMessagesPerSecond()) {
+                relay.dropped.incrementAndGet();
+                return;
+            }
+            logsInWindow++;
+            send("notifications/message", params);
+        }
+    }
+
+    private void send(String method, JsonNode params) {
+        try {
+            sink.sendJsonRpcNotification(method, params);
+            relay.relayed.incrementAndGet();
+        } catch (IOException e) {
+            logger.debug("Dropping " + method + " for a closed downstream channel: " + e.getMessage());
+            closed = true;
+        }
+    }
+
+    /**
+     * Ends the call. Progress still waiting is discarded so nothing arrives after the result.
+     */
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            pendingProgress = null;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.knox.mcp.util.HashedTimingWheel;
+import org.apache.knox.mcp.util.McpLogger;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Re-lists every backend on its own jittered schedule, so catalog changes are picked up from
+ * servers that never announce them. Refreshes run in parallel on a dedicated pool. One that
+ * overruns its timeout is abandoned and its result discarded, so the server keeps its last
+ * good catalog, and the server is skipped until the abandoned fetch returns.
+ */
+public class McpCatalogRefresher {
+
+    private static final McpLogger logger = McpLogger.getLogger(McpCatalogRefresher.class);
+
+    public static final String REFRESH_INTERVAL = "mcp.catalog.refresh.interval";
+    public static final String REFRESH_JITTER = "mcp.catalog.refresh.jitter";
+    public static final String REFRESH_TIMEOUT = "mcp.catalog.refresh.timeout";
+
+    private static final HashedTimingWheel TIMER =
+        new HashedTimingWheel("mcp-catalog-refresh-timer", 100, TimeUnit.MILLISECONDS, 512);
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final ExecutorService REFRESH_POOL = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "mcp-catalog-refresh-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long intervalMillis;
+    private final int jitterPercent;
+    private final long timeoutMillis;
+    private final Map<String, Schedule> schedules = new ConcurrentHashMap<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private volatile boolean stopped = false;
+
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    public McpCatalogRefresher(long intervalMillis, int jitterPercent, long timeoutMillis) {
+        this.intervalMillis = Math.max(0, intervalMillis);
+        this.jitterPercent = Math.max(0, Math.min(100, jitterPercent));
+        this.timeoutMillis = Math.max(1, timeoutMillis);
+    }
+
+    public static McpCatalogRefresher fromConfig(Function<String, String> config) {
+        return new McpCatalogRefresher(
+            McpSseSessionSettings.parseSeconds(config.apply(REFRESH_INTERVAL), TimeUnit.MINUTES.toMillis(5), REFRESH_INTERVAL),
+            McpSseSessionSettings.parseInt(config.apply(REFRESH_JITTER), 20, REFRESH_JITTER),
+            McpSseSessionSettings.parseSeconds(config.apply(REFRESH_TIMEOUT), TimeUnit.SECONDS.toMillis(30), REFRESH_TIMEOUT));
+    }
+
+    /**
+     * Starts a refresh schedule for each connection. Does nothing if the interval is 0.
+     */
+    public void start(Collection<McpServerConnection> connections) {
+        if (intervalMillis <= 0) {
+            logger.info("Scheduled catalog refresh disabled (" + REFRESH_INTERVAL + "=0)");
+            return;
+        }
+        for (McpServerConnection connection : connections) {
+            Schedule schedule = new Schedule(connection);
+            if (schedules.putIfAbsent(connection.getName(), schedule) == null) {
+                scheduleNext(schedule);
+            }
+        }
+    }
+
+    public void stop() {
+        stopped = true;
+        for (Schedule schedule : schedules.values()) {
+            HashedTimingWheel.Timeout next = schedule.next;
+            if (next != null) {
+                next.cancel();
+            }
+        }
+        schedules.clear();
+    }
+
+    /**
+     * The interval, moved by up to the jitter percentage either way so backends configured
+     * together are not all listed at the same moment.
+     */
+    long nextDelayMillis() {
+        long spread = intervalMillis * jitterPercent / 100;
+        if (spread <= 0) {
+            return intervalMillis;
+        }
+        return intervalMillis - spread + ThreadLocalRandom.current().nextLong(2 * spread + 1);
+    }
+
+    private void scheduleNext(Schedule schedule) {
+        if (stopped) {
+            return;
+        }
+        schedule.next = TIMER.schedule(() -> refresh(schedule), nextDelayMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // Runs on the timer thread, so it only hands the fetch to the pool
+    private void refresh(Schedule schedule) {
+        McpServerConnection connection = schedule.connection;
+        if (stopped) {
+            return;
+        }
+        if (!connection.isConnected() || !schedule.inFlight.compareAndSet(false, true)) {
+            // Disconnected, or a fetch that already timed out has still not returned
+            skipped.incrementAndGet();
+            scheduleNext(schedule);
+            return;
+        }
+
+        AtomicBoolean settled = new AtomicBoolean(false);
+        HashedTimingWheel.Timeout deadline = TIMER.schedule(() -> {
+            if (settled.compareAndSet(false, true)) {
+                timeouts.incrementAndGet();
+                logger.warn("Catalog refresh of server '" + connection.getName() + "' timed out after " +
+                            timeoutMillis + " ms; keeping its last catalog");
+                scheduleNext(schedule);
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+
+        try {
+            REFRESH_POOL.execute(() -> {
+                McpServerConnection.Catalog catalog = null;
+                try {
+                    catalog = connection.fetchCatalog();
+                } catch (Exception e) {
+                    logger.warn("Catalog refresh of server '" + connection.getName() + "' failed: " + e.getMessage());
+                } finally {
+                    schedule.inFlight.set(false);
+                }
+                if (!settled.compareAndSet(false, true)) {
+                    return; // Timed out; the result is stale by now
+                }
+                deadline.cancel();
+                if (catalog == null) {
+                    failures.incrementAndGet();
+                } else {
+                    refreshes.incrementAndGet();
+                    if (connection.publishCatalog(catalog)) {
+                        changes.incrementAndGet();
+                    }
+                }
+                scheduleNext(schedule);
+            });
+        } catch (RejectedExecutionException e) {
+            schedule.inFlight.set(false);
+            if (settled.compareAndSet(false, true)) {
+                deadline.cancel();
+                failures.incrementAndGet();
+                scheduleNext(schedule);
+            }
+        }
+    }
+
+    public ObjectNode getMetrics() {
+        ObjectNode metrics = objectMapper.createObjectNode();
+        metrics.put("intervalMillis", intervalMillis);
+        metrics.put("servers", schedules.size());
+        metrics.put("refreshes", refreshes.get());
+        metrics.put("changes", changes.get());
+        metrics.put("failures", failures.get());
+        metrics.put("timeouts", timeouts.get());
+        metrics.put("skipped", skipped.get());
+        return metrics;
+    }
+
+    private static final class Schedule {
+        private final McpServerConnection connection;
+        private final AtomicBoolean inFlight = new AtomicBoolean(false);
+        private volatile HashedTimingWheel.Timeout next;
+
+        private Schedule(McpServerConnection connection) {
+            this.connection = connection;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.client.McpException;
+import org.apache.knox.mcp.client.McpRequestCancelledException;
+import org.apache.knox.mcp.util.McpLogger;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops sending calls to a backend that keeps failing. The breaker tracks the outcome of the
+ * last calls and opens once enough of them failed or timed out; while open, calls fail at once
+ * with {@link McpCircuitOpenException} instead of waiting on the backend. After a cool-down a
+ * limited number of probe calls go through: if they all succeed the breaker closes, and if
+ * any fails it opens again.
+ *
+ * <p>Only trouble reaching the backend counts as failure. A JSON-RPC error answered by the
+ * backend shows that it is up and counts as success, and calls shed by the concurrency limit
+ * or cancelled by the caller are not counted at all. Neither are timeouts of a deadline the
+ * caller asked to be shorter than the proxy's own timeout for the call.
+ */
+public class McpCircuitBreaker {
+
+    private static final McpLogger logger = McpLogger.getLogger(McpCircuitBreaker.class);
+
+    public static final String FAILURE_RATE = "mcp.backend.breaker.failure.rate";
+    public static final String WINDOW_SIZE = "mcp.backend.breaker.window.size";
+    public static final String MIN_CALLS = "mcp.backend.breaker.min.calls";
+    public static final String OPEN_DURATION = "mcp.backend.breaker.open.duration";
+    public static final String PROBES = "mcp.backend.breaker.probes";
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String serverName;
+    private final int failureRatePercent;
+    private final int minCalls;
+    private final long openNanos;
+    private final int probes;
+    private final LongSupplier nanoClock;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Guarded by this. The window is a ring of the latest outcomes, true for a failure.
+    private final boolean[] window;
+    private int recorded;
+    private int next;
+    private int failuresInWindow;
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    // Bumped on every transition, so outcomes of calls admitted before it are ignored
+    private long generation;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong fastFailed = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+
+    public McpCircuitBreaker(String serverName, int failureRatePercent, int windowSize, int minCalls,
+                             long openMillis, int probes, LongSupplier nanoClock) {
+        this.serverName = serverName;
+        this.failureRatePercent = Math.max(1, Math.min(100, failureRatePercent));
+        this.window = new boolean[Math.max(1, windowSize)];
+        this.minCalls = Math.max(1, Math.min(window.length, minCalls));
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, openMillis));
+        this.probes = Math.max(1, probes);
+        this.nanoClock = nanoClock;
+    }
+
+    public static McpCircuitBreaker fromConfig(String serverName, Function<String, String> config) {
+        return new McpCircuitBreaker(serverName,
+            McpSseSessionSettings.parseInt(config.apply(FAILURE_RATE), 50, FAILURE_RATE),
+            McpSseSessionSettings.parseInt(config.apply(WINDOW_SIZE), 20, WINDOW_SIZE),
+            McpSseSessionSettings.parseInt(config.apply(MIN_CALLS), 10, MIN_CALLS),
+            McpSseSessionSettings.parseSeconds(config.apply(OPEN_DURATION), TimeUnit.SECONDS.toMillis(30), OPEN_DURATION),
+            McpSseSessionSettings.parseInt(config.apply(PROBES), 3, PROBES),
+            System::nanoTime);
+    }
+
+    /**
+     * Runs the call unless the breaker is open, and records its outcome.
+     *
+     * @throws McpCircuitOpenException if the breaker is open, or half open with all probes taken
+     */
+    public <T> T call(Callable<T> call) throws Exception {
+        return call(null, call);
+    }
+
+    /**
+     * Runs the call unless the breaker is open, and records its outcome.
+     *
+     * @param deadline the deadline the call runs under, so a timeout the caller chose is not
+     *                 held against the backend; may be null
+     * @throws McpCircuitOpenException if the breaker is open, or half open with all probes taken
+     */
+    public <T> T call(McpDeadline deadline, Callable<T> call) throws Exception {
+        long admittedIn = admit();
+        T result;
+        try {
+            result = call.call();
+        } catch (McpServerBusyException | McpRequestCancelledException e) {
+            releaseProbe(admittedIn);
+            throw e;
+        } catch (Exception e) {
+            if (isCallerTimeout(e, deadline)) {
+                releaseProbe(admittedIn);
+            } else if (isFailure(e)) {
+                if (isTimeout(e)) {
+                    timeouts.incrementAndGet();
+                }
+                record(admittedIn, true);
+            } else {
+                record(admittedIn, false);
+            }
+            throw e;
+        }
+        record(admittedIn, false);
+        return result;
+    }
+
+    // Shed before reaching the backend, or abandoned by the caller; either way it says nothing
+    // about the backend, so hand a probe slot back so another call can probe
+    private synchronized void releaseProbe(long admittedIn) {
+        if (generation == admittedIn && state == State.HALF_OPEN) {
+            probesStarted--;
+        }
+    }
+
+    private synchronized long admit() throws McpCircuitOpenException {
+        if (state == State.OPEN) {
+            long waited = nanoClock.getAsLong() - openedAtNanos;
+            if (waited < openNanos) {
+                fastFailed.incrementAndGet();
+                throw openException(openNanos - waited);
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesStarted >= probes) {
+                fastFailed.incrementAndGet();
+                throw openException(0);
+            }
+            probesStarted++;
+        }
+        return generation;
+    }
+
+    private McpCircuitOpenException openException(long remainingNanos) {
+        long retryAfterMillis = TimeUnit.NANOSECONDS.toMillis(remainingNanos);
+        return new McpCircuitOpenException("Server " + serverName + " is unavailable after repeated failures; " +
+            "retry in " + TimeUnit.MILLISECONDS.toSeconds(retryAfterMillis + 999) + " s", retryAfterMillis);
+    }
+
+    private synchronized void record(long admittedIn, boolean failed) {
+        if (failed) {
+            failures.incrementAndGet();
+        } else {
+            successes.incrementAndGet();
+        }
+        if (admittedIn != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (failed) {
+                transition(State.OPEN);
+            } else if (++probesSucceeded >= probes) {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        if (state != State.CLOSED) {
+            return;
+        }
+        if (recorded == window.length) {
+            if (window[next]) {
+                failuresInWindow--;
+            }
+        } else {
+            recorded++;
+        }
+        window[next] = failed;
+        if (failed) {
+            failuresInWindow++;
+        }
+        next = (next + 1) % window.length;
+        if (recorded >= minCalls && failuresInWindow * 100 >= failureRatePercent * recorded) {
+            transition(State.OPEN);
+        }
+    }
+
+    private void transition(State newState) {
+        if (newState == State.OPEN) {
+            openedAtNanos = nanoClock.getAsLong();
+            opened.incrementAndGet();
+            if (state == State.HALF_OPEN) {
+                logger.warn("Circuit breaker for server " + serverName + " opened again after a failed probe");
+            } else {
+                logger.warn("Circuit breaker for server " + serverName + " opened after " + failuresInWindow +
+                    " failures in the last " + recorded + " calls");
+            }
+        } else {
+            logger.info("Circuit breaker for server " + serverName + " is now " + newState);
+        }
+        state = newState;
+        generation++;
+        probesStarted = 0;
+        probesSucceeded = 0;
+        recorded = 0;
+        next = 0;
+        failuresInWindow = 0;
+    }
+
+    /**
+     * Whether the error means the backend could not be reached or did not answer in time.
+     */
+    static boolean isFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof McpException) {
+                int code = ((McpException) cause).getCode();
+                // Any other code is a JSON-RPC error the backend answered with
+                return code == -1 || code == McpException.CONNECTION_CLOSED || code == McpException.REQUEST_TIMEOUT;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the error is the expiry of a deadline the caller shortened below the proxy's own
+     * timeout, which says nothing about the backend.
+     */
+    static boolean isCallerTimeout(Throwable e, McpDeadline deadline) {
+        return deadline != null && deadline.isShortenedByCaller() && deadline.isExpired() && isTimeout(e);
+    }
+
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException) {
+                return true;
+            }
+            if (cause instanceof McpException && ((McpException) cause).getCode() == McpException.REQUEST_TIMEOUT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized State getState() {
+        // Report a cool-down that has elapsed as half open, even before the next call arrives
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAtNanos >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized ObjectNode getMetrics() {
+        ObjectNode metrics = objectMapper.createObjectNode();
+        metrics.put("state", getState().name());
+        metrics.put("windowCalls", recorded);
+        metrics.put("windowFailures", failuresInWindow);
+        metrics.put("successes", successes.get());
+        metrics.put("failures", failures.get());
+        metrics.put("timeouts", timeouts.get());
+        metrics.put("fastFailed", fastFailed.get());
+        metrics.put("opened", opened.get());
+        return metrics;
+    }
+}
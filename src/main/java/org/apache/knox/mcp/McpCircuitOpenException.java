@@ -0,0 +1,21 @@
+package org.apache.knox.mcp;
+
+/**
+ * A request was failed fast because the backend's circuit breaker is open.
+ */
+public class McpCircuitOpenException extends McpServerBusyException {
+
+    private final long retryAfterMillis;
+
+    public McpCircuitOpenException(String message, long retryAfterMillis) {
+        super("Server unavailable", message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Time until the breaker lets probe calls through again.
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,345 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.client.McpException;
+import org.apache.knox.mcp.client.McpRequestCancelledException;
+import org.apache.knox.mcp.util.McpLogger;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounds the calls running against one backend. The limit adapts to observed latency: it
+ * grows while calls complete close to the baseline latency and the limit is actually in use,
+ * shrinks in proportion when latency rises above it, and is cut back when calls time out or
+ * the connection drops. Calls over the limit wait in a bounded FIFO queue; when the queue is
+ * full, or a call waits too long, it fails at once with {@link McpServerBusyException}.
+ */
+public class McpConcurrencyLimiter {
+
+    private static final McpLogger logger = McpLogger.getLogger(McpConcurrencyLimiter.class);
+
+    public static final String INITIAL_LIMIT = "mcp.backend.concurrency.initial";
+    public static final String MIN_LIMIT = "mcp.backend.concurrency.min";
+    public static final String MAX_LIMIT = "mcp.backend.concurrency.max";
+    public static final String QUEUE_SIZE = "mcp.backend.queue.size";
+    public static final String QUEUE_TIMEOUT = "mcp.backend.queue.timeout";
+    /** Comma-separated {@code server.tool:weight} rules; {@code server.*} matches every tool of a server */
+    public static final String TOOL_WEIGHTS = "mcp.backend.tool.weights";
+
+    // Latency up to this multiple of the baseline is not treated as queueing in the backend
+    private static final double TOLERANCE = 1.5;
+    // Weight of each sample in the smoothed limit and of each sample in the baseline latency
+    private static final double SMOOTHING = 0.2;
+    private static final int BASELINE_WINDOW = 100;
+    private static final double BACKOFF = 0.9;
+
+    private final String serverName;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long queueTimeoutNanos;
+    private final Map<String, Integer> weights;
+    private final LongSupplier nanoClock;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Guarded by this
+    private double limit;
+    private int inFlight;
+    private double baselineNanos;
+    private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong queueTimeouts = new AtomicLong();
+    private final AtomicLong drops = new AtomicLong();
+
+    public McpConcurrencyLimiter(String serverName, int initialLimit, int minLimit, int maxLimit, int maxQueue,
+                                 long queueTimeoutMillis, Map<String, Integer> weights, LongSupplier nanoClock) {
+        this.serverName = serverName;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+        this.maxQueue = Math.max(0, maxQueue);
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, queueTimeoutMillis));
+        this.weights = new HashMap<>(weights);
+        this.nanoClock = nanoClock;
+    }
+
+    public static McpConcurrencyLimiter fromConfig(String serverName, Function<String, String> config) {
+        return new McpConcurrencyLimiter(serverName,
+            McpSseSessionSettings.parseInt(config.apply(INITIAL_LIMIT), 16, INITIAL_LIMIT),
+            McpSseSessionSettings.parseInt(config.apply(MIN_LIMIT), 1, MIN_LIMIT),
+            McpSseSessionSettings.parseInt(config.apply(MAX_LIMIT), 128, MAX_LIMIT),
+            McpSseSessionSettings.parseInt(config.apply(QUEUE_SIZE), 64, QUEUE_SIZE),
+            McpSseSessionSettings.parseSeconds(config.apply(QUEUE_TIMEOUT), TimeUnit.SECONDS.toMillis(10), QUEUE_TIMEOUT),
+            parseWeights(serverName, config.apply(TOOL_WEIGHTS)), System::nanoTime);
+    }
+
+    /**
+     * Parses the {@code server.tool:weight} rules that apply to the server, keyed by tool;
+     * malformed rules are skipped.
+     */
+    static Map<String, Integer> parseWeights(String serverName, String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Integer> rules = new HashMap<>();
+        String prefix = serverName + ".";
+        for (String rule : value.split(",")) {
+            String trimmed = rule.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int colon = trimmed.lastIndexOf(':');
+            int dot = trimmed.indexOf('.');
+            if (colon < 0 || dot <= 0 || dot > colon) {
+                logger.warn("Ignoring tool weight rule '" + trimmed + "'; expected server.tool:weight");
+                continue;
+            }
+            String target = trimmed.substring(0, colon).trim();
+            if (!target.startsWith(prefix)) {
+                continue;
+            }
+            try {
+                int weight = Integer.parseInt(trimmed.substring(colon + 1).trim());
+                if (weight > 0) {
+                    rules.put(target.substring(prefix.length()), weight);
+                }
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring tool weight rule '" + trimmed + "'; invalid weight");
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * How many slots a call of the tool takes; a null tool (a resource read) takes one.
+     */
+    public int getWeight(String toolName) {
+        if (toolName == null) {
+            return 1;
+        }
+        Integer weight = weights.get(toolName);
+        if (weight == null) {
+            weight = weights.get("*");
+        }
+        return weight == null ? 1 : weight;
+    }
+
+    /**
+     * Runs the call once it fits under the limit and feeds its latency back into the limit.
+     *
+     * @throws McpServerBusyException if the call could not be admitted
+     */
+    public <T> T call(int weight, Callable<T> call) throws Exception {
+        return call(weight, null, call);
+    }
+
+    /**
+     * Like {@link #call(int, Callable)}, but gives up waiting for a slot once the caller's
+     * deadline passes, if that comes before the queue timeout.
+     */
+    public <T> T call(int weight, McpDeadline deadline, Callable<T> call) throws Exception {
+        acquire(weight, deadline);
+        long start = nanoClock.getAsLong();
+        boolean dropped = false;
+        boolean sampled = true;
+        try {
+            return call.call();
+        } catch (McpRequestCancelledException e) {
+            // How long the call ran says more about the caller than about the backend
+            sampled = false;
+            throw e;
+        } catch (Exception e) {
+            if (McpCircuitBreaker.isCallerTimeout(e, deadline)) {
+                // Cut short by the caller's own timeout, so it is neither a drop nor a latency sample
+                sampled = false;
+            } else {
+                dropped = isDrop(e);
+            }
+            throw e;
+        } finally {
+            release(weight, nanoClock.getAsLong() - start, dropped, sampled);
+        }
+    }
+
+    private void acquire(int weight, McpDeadline deadline) throws Exception {
+        Waiter waiter;
+        synchronized (this) {
+            if (queue.isEmpty() && fits(weight)) {
+                inFlight += weight;
+                admitted.incrementAndGet();
+                return;
+            }
+            if (queue.size() >= maxQueue) {
+                rejected.incrementAndGet();
+                throw new McpServerBusyException("Server " + serverName + " is busy: " + inFlight +
+                    " calls in progress and " + queue.size() + " waiting");
+            }
+            waiter = new Waiter(weight);
+            queue.add(waiter);
+            queued.incrementAndGet();
+
+            long waitNanos = queueTimeoutNanos;
+            if (deadline != null) {
+                waitNanos = Math.min(waitNanos, deadline.remaining(TimeUnit.NANOSECONDS));
+            }
+            long giveUpAt = nanoClock.getAsLong() + waitNanos;
+            // A caller that gives up leaves the queue at once rather than at its deadline
+            Runnable wake = () -> {
+                synchronized (this) {
+                    notifyAll();
+                }
+            };
+            if (deadline != null) {
+                deadline.addCancelListener(wake);
+            }
+            try {
+                while (!waiter.admitted) {
+                    if (deadline != null && deadline.isCancelled()) {
+                        queue.remove(waiter);
+                        admitWaiters();
+                        throw new McpRequestCancelledException("Call to server " + serverName +
+                            " was cancelled while waiting for a free slot: " + deadline.getCancelReason());
+                    }
+                    long remaining = giveUpAt - nanoClock.getAsLong();
+                    if (remaining <= 0) {
+                        queue.remove(waiter);
+                        queueTimeouts.incrementAndGet();
+                        // A heavy call at the head may have been holding back lighter ones
+                        admitWaiters();
+                        throw new McpServerBusyException("Server " + serverName + " is busy: waited " +
+                            TimeUnit.NANOSECONDS.toMillis(waitNanos) + " ms for a free slot");
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException e) {
+                if (waiter.admitted) {
+                    // Admitted as we were interrupted; hand the slot back
+                    inFlight -= weight;
+                    admitWaiters();
+                } else {
+                    queue.remove(waiter);
+                }
+                throw e;
+            } finally {
+                if (deadline != null) {
+                    deadline.removeCancelListener(wake);
+                }
+            }
+        }
+    }
+
+    private void release(int weight, long rttNanos, boolean dropped, boolean sampled) {
+        synchronized (this) {
+            if (sampled) {
+                update(rttNanos, dropped);
+            }
+            inFlight -= weight;
+            admitWaiters();
+        }
+    }
+
+    // A call heavier than the whole limit still runs, but only on its own
+    private boolean fits(int weight) {
+        return inFlight == 0 || inFlight + weight <= (int) limit;
+    }
+
+    private void admitWaiters() {
+        boolean admittedAny = false;
+        Waiter head;
+        while ((head = queue.peek()) != null && fits(head.weight)) {
+            queue.poll();
+            inFlight += head.weight;
+            head.admitted = true;
+            admitted.incrementAndGet();
+            admittedAny = true;
+        }
+        if (admittedAny) {
+            notifyAll();
+        }
+    }
+
+    private void update(long rttNanos, boolean dropped) {
+        if (dropped) {
+            drops.incrementAndGet();
+            limit = Math.max(minLimit, limit * BACKOFF);
+            return;
+        }
+        double rtt = Math.max(1, rttNanos);
+        if (baselineNanos == 0) {
+            baselineNanos = rtt;
+        } else {
+            baselineNanos += (rtt - baselineNanos) / BASELINE_WINDOW;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * baselineNanos / rtt));
+        double target = limit * gradient + Math.sqrt(limit);
+        // Only grow if the limit is what held calls back, not while the backend is mostly idle
+        if (target > limit && inFlight * 2 < limit) {
+            return;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+    }
+
+    private static boolean isDrop(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException) {
+                return true;
+            }
+            if (cause instanceof McpException) {
+                int code = ((McpException) cause).getCode();
+                if (code == McpException.CONNECTION_CLOSED || code == McpException.REQUEST_TIMEOUT) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    public synchronized ObjectNode getMetrics() {
+        ObjectNode metrics = objectMapper.createObjectNode();
+        metrics.put("limit", (int) limit);
+        metrics.put("inFlight", inFlight);
+        metrics.put("queued", queue.size());
+        metrics.put("baselineMillis", TimeUnit.NANOSECONDS.toMillis((long) baselineNanos));
+        metrics.put("admitted", admitted.get());
+        metrics.put("waited", queued.get());
+        metrics.put("rejected", rejected.get());
+        metrics.put("queueTimeouts", queueTimeouts.get());
+        metrics.put("drops", drops.get());
+        return metrics;
+    }
+
+    private static final class Waiter {
+        private final int weight;
+        private boolean admitted;
+
+        private Waiter(int weight) {
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.util.McpLogger;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Decides how long a tool call or resource read may take. A caller states how long it is
+ * willing to wait with the {@code X-Mcp-Timeout} header or {@code _meta.timeout}, both in
+ * milliseconds; without one the configured default applies. Either way the result is capped
+ * at the maximum, so a caller cannot hold a backend slot indefinitely. A deadline shorter than
+ * the configured timeout is marked as the caller's choice, so its expiry does not count against
+ * the backend in the circuit breaker, the concurrency limit or replica ejection.
+ */
+public class McpDeadlinePolicy {
+
+    private static final McpLogger logger = McpLogger.getLogger(McpDeadlinePolicy.class);
+
+    public static final String TIMEOUT_HEADER = "X-Mcp-Timeout";
+    public static final String DEFAULT_TIMEOUT = "mcp.deadline.default";
+    public static final String MAX_TIMEOUT = "mcp.deadline.max";
+    public static final String RESOURCE_TIMEOUT = "mcp.deadline.resources";
+    /** Comma-separated {@code server.tool:defaultSeconds[/maxSeconds]} rules; {@code server.*} matches every tool of a server */
+    public static final String TOOL_TIMEOUTS = "mcp.deadline.tools";
+
+    private final long defaultMillis;
+    private final long maxMillis;
+    private final long resourceMillis;
+    private final Map<String, Limits> toolLimits;
+
+    public McpDeadlinePolicy(long defaultMillis, long maxMillis, long resourceMillis, Map<String, Limits> toolLimits) {
+        this.maxMillis = Math.max(1, maxMillis);
+        this.defaultMillis = Math.max(1, Math.min(this.maxMillis, defaultMillis));
+        this.resourceMillis = Math.max(1, Math.min(this.maxMillis, resourceMillis));
+        this.toolLimits = new HashMap<>(toolLimits);
+    }
+
+    public static McpDeadlinePolicy fromConfig(Function<String, String> config) {
+        return new McpDeadlinePolicy(
+            McpSseSessionSettings.parseSeconds(config.apply(DEFAULT_TIMEOUT), TimeUnit.SECONDS.toMillis(30), DEFAULT_TIMEOUT),
+            McpSseSessionSettings.parseSeconds(config.apply(MAX_TIMEOUT), TimeUnit.SECONDS.toMillis(300), MAX_TIMEOUT),
+            McpSseSessionSettings.parseSeconds(config.apply(RESOURCE_TIMEOUT), TimeUnit.SECONDS.toMillis(10), RESOURCE_TIMEOUT),
+            parseRules(config.apply(TOOL_TIMEOUTS)));
+    }
+
+    /**
+     * Parses {@code server.tool:defaultSeconds[/maxSeconds]} rules; malformed rules are skipped.
+     */
+    static Map<String, Limits> parseRules(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Limits> rules = new HashMap<>();
+        for (String rule : value.split(",")) {
+            String trimmed = rule.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int colon = trimmed.lastIndexOf(':');
+            int dot = trimmed.indexOf('.');
+            if (colon < 0 || dot <= 0 || dot > colon) {
+                logger.warn("Ignoring tool deadline rule '" + trimmed + "'; expected server.tool:defaultSeconds[/maxSeconds]");
+                continue;
+            }
+            String[] seconds = trimmed.substring(colon + 1).split("/", 2);
+            try {
+                long defaultSeconds = Long.parseLong(seconds[0].trim());
+                long maxSeconds = seconds.length > 1 ? Long.parseLong(seconds[1].trim()) : 0;
+                if (defaultSeconds > 0) {
+                    rules.put(trimmed.substring(0, colon).trim(), new Limits(TimeUnit.SECONDS.toMillis(defaultSeconds),
+                        TimeUnit.SECONDS.toMillis(Math.max(0, maxSeconds))));
+                }
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring tool deadline rule '" + trimmed + "'; invalid timeout");
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Parses a requested timeout in milliseconds; null if absent or not a positive number.
+     */
+    public static Long parseRequested(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            long millis = Long.parseLong(value.trim());
+            return millis > 0 ? millis : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The timeout requested in the {@code _meta} of the request params, or null.
+     */
+    public static Long requestedIn(JsonNode params) {
+        if (params == null || !params.has("_meta")) {
+            return null;
+        }
+        JsonNode timeout = params.get("_meta").get("timeout");
+        return timeout == null || timeout.isNull() ? null : parseRequested(timeout.asText());
+    }
+
+    /**
+     * The tighter of two requested timeouts, either of which may be null.
+     */
+    public static Long earliest(Long first, Long second) {
+        if (first == null) {
+            return second;
+        }
+        return second == null ? first : Math.min(first, second);
+    }
+
+    /**
+     * The deadline of a downstream request: cancellable, and limited only if the caller asked.
+     */
+    public static McpDeadline forCaller(Long requestedMillis) {
+        return requestedMillis != null ? McpDeadline.after(requestedMillis, TimeUnit.MILLISECONDS) : McpDeadline.none();
+    }
+
+    /**
+     * The deadline for a tool call starting now, cancelled along with the caller's.
+     *
+     * @param caller the downstream request's deadline, or null for a call nobody waits on
+     */
+    public McpDeadline forTool(String serverName, String toolName, McpDeadline caller) {
+        return within(caller, toolTimeoutMillis(serverName, toolName, requested(caller)),
+            toolTimeoutMillis(serverName, toolName, null));
+    }
+
+    long toolTimeoutMillis(String serverName, String toolName, Long requestedMillis) {
+        Limits limits = toolLimits.get(serverName + "." + toolName);
+        if (limits == null) {
+            limits = toolLimits.get(serverName + ".*");
+        }
+        long max = limits != null && limits.maxMillis > 0 ? limits.maxMillis : maxMillis;
+        long timeout = requestedMillis != null ? requestedMillis : limits != null ? limits.defaultMillis : defaultMillis;
+        return Math.min(timeout, max);
+    }
+
+    /**
+     * The deadline for a resource read starting now, cancelled along with the caller's.
+     *
+     * @param caller the downstream request's deadline, or null for a read nobody waits on
+     */
+    public McpDeadline forResource(McpDeadline caller) {
+        return within(caller, resourceTimeoutMillis(requested(caller)), resourceTimeoutMillis(null));
+    }
+
+    long resourceTimeoutMillis(Long requestedMillis) {
+        return Math.min(requestedMillis != null ? requestedMillis : resourceMillis, maxMillis);
+    }
+
+    private static Long requested(McpDeadline caller) {
+        return caller != null && caller.hasTimeLimit() ? caller.remaining(TimeUnit.MILLISECONDS) : null;
+    }
+
+    // A timeout below the configured one can only come from the caller
+    private static McpDeadline within(McpDeadline caller, long timeoutMillis, long configuredMillis) {
+        return caller == null ? McpDeadline.after(timeoutMillis, TimeUnit.MILLISECONDS)
+            : caller.narrow(timeoutMillis, TimeUnit.MILLISECONDS, timeoutMillis < configuredMillis);
+    }
+
+    /**
+     * Default and maximum timeout for a tool; a maximum of 0 falls back to the global one.
+     */
+    public static final class Limits {
+        private final long defaultMillis;
+        private final long maxMillis;
+
+        public Limits(long defaultMillis, long maxMillis) {
+            this.defaultMillis = defaultMillis;
+            this.maxMillis = maxMillis;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.util.HashedTimingWheel;
+import org.apache.knox.mcp.util.McpLogger;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Pings every backend connection on a fixed interval, so a backend that stops answering is
+ * found before a user's call times out on it. A connection that fails several pings in a row
+ * is marked unhealthy, which takes it out of its server's replica rotation, and is marked
+ * healthy again after several answered pings. A ping the backend answers with a JSON-RPC
+ * error still shows that it is up, as with the circuit breaker.
+ */
+public class McpHealthChecker {
+
+    private static final McpLogger logger = McpLogger.getLogger(McpHealthChecker.class);
+
+    public static final String HEALTH_INTERVAL = "mcp.health.interval";
+    public static final String HEALTH_TIMEOUT = "mcp.health.timeout";
+    public static final String HEALTH_UNHEALTHY_THRESHOLD = "mcp.health.unhealthy.threshold";
+    public static final String HEALTH_HEALTHY_THRESHOLD = "mcp.health.healthy.threshold";
+
+    private static final HashedTimingWheel TIMER =
+        new HashedTimingWheel("mcp-health-timer", 100, TimeUnit.MILLISECONDS, 512);
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final ExecutorService PING_POOL = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "mcp-health-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Weight of each ping in the smoothed latency
+    private static final double SMOOTHING = 0.2;
+
+    /**
+     * Health of a connection as far as its pings tell.
+     */
+    public enum Status {
+        UNKNOWN, HEALTHY, UNHEALTHY
+    }
+
+    private final long intervalMillis;
+    private final long timeoutMillis;
+    private final int unhealthyThreshold;
+    private final int healthyThreshold;
+    private final LongSupplier nanoClock;
+    private final Map<McpServerConnection, Probe> probes = new ConcurrentHashMap<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private volatile boolean stopped = false;
+
+    private final AtomicLong pings = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    public McpHealthChecker(long intervalMillis, long timeoutMillis, int unhealthyThreshold, int healthyThreshold,
+                            LongSupplier nanoClock) {
+        this.intervalMillis = Math.max(0, intervalMillis);
+        this.timeoutMillis = Math.max(1, timeoutMillis);
+        this.unhealthyThreshold = Math.max(1, unhealthyThreshold);
+        this.healthyThreshold = Math.max(1, healthyThreshold);
+        this.nanoClock = nanoClock;
+    }
+
+    public static McpHealthChecker fromConfig(Function<String, String> config) {
+        return new McpHealthChecker(
+            McpSseSessionSettings.parseSeconds(config.apply(HEALTH_INTERVAL), TimeUnit.SECONDS.toMillis(30), HEALTH_INTERVAL),
+            McpSseSessionSettings.parseSeconds(config.apply(HEALTH_TIMEOUT), TimeUnit.SECONDS.toMillis(5), HEALTH_TIMEOUT),
+            McpSseSessionSettings.parseInt(config.apply(HEALTH_UNHEALTHY_THRESHOLD), 3, HEALTH_UNHEALTHY_THRESHOLD),
+            McpSseSessionSettings.parseInt(config.apply(HEALTH_HEALTHY_THRESHOLD), 2, HEALTH_HEALTHY_THRESHOLD),
+            System::nanoTime);
+    }
+
+    /**
+     * Starts pinging each connection, replicas included. Does nothing if the interval is 0.
+     */
+    public void start(Collection<McpServerConnection> connections) {
+        if (intervalMillis <= 0) {
+            logger.info("Backend health checks disabled (" + HEALTH_INTERVAL + "=0)");
+            return;
+        }
+        for (McpServerConnection connection : connections) {
+            Probe probe = new Probe(connection);
+            if (probes.putIfAbsent(connection, probe) == null) {
+                // Spread the first pings over the interval so backends are not all pinged at once
+                scheduleNext(probe, ThreadLocalRandom.current().nextLong(intervalMillis + 1));
+            }
+        }
+    }
+
+    public void stop() {
+        stopped = true;
+        for (Probe probe : probes.values()) {
+            HashedTimingWheel.Timeout next = probe.next;
+            if (next != null) {
+                next.cancel();
+            }
+        }
+        probes.clear();
+    }
+
+    private void scheduleNext(Probe probe, long delayMillis) {
+        if (stopped) {
+            return;
+        }
+        probe.next = TIMER.schedule(() -> check(probe), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Runs on the timer thread, so it only hands the ping to the pool
+    private void check(Probe probe) {
+        if (stopped) {
+            return;
+        }
+        if (!probe.connection.isConnected() || !probe.inFlight.compareAndSet(false, true)) {
+            // Not connected yet, or the last ping has still not returned
+            skipped.incrementAndGet();
+            scheduleNext(probe, intervalMillis);
+            return;
+        }
+        try {
+            PING_POOL.execute(() -> {
+                try {
+                    ping(probe);
+                } finally {
+                    probe.inFlight.set(false);
+                    scheduleNext(probe, intervalMillis);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            probe.inFlight.set(false);
+            scheduleNext(probe, intervalMillis);
+        }
+    }
+
+    /**
+     * Pings the connection once and records the outcome.
+     */
+    void ping(Probe probe) {
+        McpServerConnection connection = probe.connection;
+        pings.incrementAndGet();
+        long start = nanoClock.getAsLong();
+        try {
+            connection.ping(McpDeadline.after(timeoutMillis, TimeUnit.MILLISECONDS));
+            probe.recordSuccess(nanoClock.getAsLong() - start);
+        } catch (Exception e) {
+            if (!McpCircuitBreaker.isFailure(e)) {
+                // Answered, if only with an error such as an unknown method
+                probe.recordSuccess(nanoClock.getAsLong() - start);
+                return;
+            }
+            failures.incrementAndGet();
+            probe.recordFailure(e);
+        }
+    }
+
+    /**
+     * The health of the connection, or null if it is not being checked.
+     */
+    public Status getStatus(McpServerConnection connection) {
+        Probe probe = probes.get(connection);
+        return probe == null ? null : probe.status;
+    }
+
+    /**
+     * Status and ping latency of the connection, or null if it is not being checked.
+     */
+    public ObjectNode getHealth(McpServerConnection connection) {
+        Probe probe = probes.get(connection);
+        return probe == null ? null : probe.toJson(objectMapper.createObjectNode());
+    }
+
+    Probe getProbe(McpServerConnection connection) {
+        return probes.get(connection);
+    }
+
+    public ObjectNode getMetrics() {
+        ObjectNode metrics = objectMapper.createObjectNode();
+        metrics.put("intervalMillis", intervalMillis);
+        metrics.put("connections", probes.size());
+        int unhealthy = 0;
+        for (Probe probe : probes.values()) {
+            if (probe.status == Status.UNHEALTHY) {
+                unhealthy++;
+            }
+        }
+        metrics.put("unhealthy", unhealthy);
+        metrics.put("pings", pings.get());
+        metrics.put("failures", failures.get());
+        metrics.put("skipped", skipped.get());
+        return metrics;
+    }
+
+    final class Probe {
+        private final McpServerConnection connection;
+        private final AtomicBoolean inFlight = new AtomicBoolean(false);
+        private volatile HashedTimingWheel.Timeout next;
+        // Written by one ping at a time, read by health requests
+        private volatile Status status = Status.UNKNOWN;
+        private volatile double latencyMillis = -1;
+        private volatile double lastLatencyMillis = -1;
+        private volatile String lastError;
+        private int consecutiveSuccesses;
+        private int consecutiveFailures;
+
+        private Probe(McpServerConnection connection) {
+            this.connection = connection;
+        }
+
+        private synchronized void recordSuccess(long latencyNanos) {
+            double millis = latencyNanos / 1e6;
+            lastLatencyMillis = millis;
+            latencyMillis = latencyMillis < 0 ? millis : latencyMillis + SMOOTHING * (millis - latencyMillis);
+            lastError = null;
+            consecutiveFailures = 0;
+            consecutiveSuccesses++;
+            if (status == Status.UNKNOWN || (status == Status.UNHEALTHY && consecutiveSuccesses >= healthyThreshold)) {
+                if (status == Status.UNHEALTHY) {
+                    logger.info("Backend " + connection.getEndpoint() + " of server " + connection.getName() +
+                                " answers pings again");
+                }
+                status = Status.HEALTHY;
+                connection.setHealthy(true);
+            }
+        }
+
+        private synchronized void recordFailure(Exception e) {
+            lastError = e.getMessage();
+            consecutiveSuccesses = 0;
+            consecutiveFailures++;
+            if (status != Status.UNHEALTHY && consecutiveFailures >= unhealthyThreshold) {
+                logger.warn("Marking backend " + connection.getEndpoint() + " of server " + connection.getName() +
+                            " unhealthy after " + consecutiveFailures + " failed pings: " + lastError);
+                status = Status.UNHEALTHY;
+                connection.setHealthy(false);
+            }
+        }
+
+        private ObjectNode toJson(ObjectNode json) {
+            json.put("status", status.name());
+            json.put("pingMillis", Math.round(lastLatencyMillis * 10) / 10.0);
+            json.put("averagePingMillis", Math.round(latencyMillis * 10) / 10.0);
+            synchronized (this) {
+                json.put("consecutiveFailures", consecutiveFailures);
+            }
+            if (lastError != null) {
+                json.put("lastError", lastError);
+            }
+            return json;
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.util.HashedTimingWheel;
+import org.apache.knox.mcp.util.McpLogger;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Hedges calls that are safe to send twice against replicated servers. Once a call has been
+ * outstanding longer than the 95th percentile of its recent latencies, a second request goes
+ * to another replica; the first answer wins and the other request is cancelled. A budget caps
+ * the extra load: every hedgeable call earns a fraction of a hedge, and a hedge is only sent
+ * when a whole one has been earned, so a slow period cannot turn into a burst of duplicates.
+ * The first request runs on the caller's thread; hedges run on a small shared pool, and a hedge
+ * the pool cannot take is not sent.
+ */
+public class McpHedger {
+
+    private static final McpLogger logger = McpLogger.getLogger(McpHedger.class);
+
+    /** Comma-separated {@code server.tool} names safe to send twice; {@code server.*} covers every tool of a server */
+    public static final String HEDGE_TOOLS = "mcp.hedge.tools";
+    public static final String HEDGE_RESOURCES = "mcp.hedge.resources";
+    public static final String HEDGE_BUDGET = "mcp.hedge.budget";
+
+    private static final HashedTimingWheel HEDGE_TIMER =
+        new HashedTimingWheel("mcp-hedge-timer", 5, TimeUnit.MILLISECONDS, 512);
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final ThreadPoolExecutor HEDGE_POOL = new ThreadPoolExecutor(4, 4, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(1000), runnable -> {
+            Thread thread = new Thread(runnable, "mcp-hedge-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    static {
+        HEDGE_POOL.allowCoreThreadTimeOut(true);
+    }
+
+    // Latencies kept per operation, and how many a percentile needs
+    private static final int WINDOW = 256;
+    private static final int DEFAULT_MIN_SAMPLES = 20;
+    // New samples after which the percentile is computed again
+    private static final int RESORT_INTERVAL = 16;
+    // Unused budget saved up, in hedges
+    private static final double MAX_SAVED_HEDGES = 10;
+
+    /**
+     * One attempt at the call on the given replica, limited by its own deadline.
+     *
+     * @param hedge whether this is the second request, which should not relay notifications
+     */
+    public interface Attempt<T> {
+        T call(McpServerConnection replica, McpDeadline deadline, boolean hedge) throws Exception;
+    }
+
+    private final Set<String> tools;
+    private final boolean resources;
+    private final int budgetPercent;
+    private final int minSamples;
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Guarded by this
+    private double savedHedges;
+
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong overBudget = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public McpHedger(Set<String> tools, boolean resources, int budgetPercent) {
+        this(tools, resources, budgetPercent, DEFAULT_MIN_SAMPLES);
+    }
+
+    McpHedger(Set<String> tools, boolean resources, int budgetPercent, int minSamples) {
+        this.tools = new HashSet<>(tools);
+        this.resources = resources;
+        this.budgetPercent = Math.max(0, Math.min(100, budgetPercent));
+        this.minSamples = Math.max(1, Math.min(WINDOW, minSamples));
+    }
+
+    public static McpHedger fromConfig(Function<String, String> config) {
+        String resources = config.apply(HEDGE_RESOURCES);
+        return new McpHedger(parseTools(config.apply(HEDGE_TOOLS)),
+            resources == null || Boolean.parseBoolean(resources.trim()),
+            McpSseSessionSettings.parseInt(config.apply(HEDGE_BUDGET), 5, HEDGE_BUDGET));
+    }
+
+    static Set<String> parseTools(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> names = new HashSet<>();
+        for (String name : value.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.indexOf('.') <= 0) {
+                if (!trimmed.isEmpty()) {
+                    logger.warn("Ignoring hedged tool '" + trimmed + "'; expected server.tool");
+                }
+                continue;
+            }
+            names.add(trimmed);
+        }
+        return names;
+    }
+
+    /**
+     * Whether calls of the tool may be hedged, because sending them twice does no harm.
+     */
+    public boolean isHedged(String serverName, String toolName) {
+        return budgetPercent > 0 && (tools.contains(serverName + "." + toolName) || tools.contains(serverName + ".*"));
+    }
+
+    /**
+     * Whether resource reads may be hedged.
+     */
+    public boolean isHedgingResources() {
+        return budgetPercent > 0 && resources;
+    }
+
+    /**
+     * Runs the call on a replica, and on a second one if the first is slow and the budget allows.
+     *
+     * @param operation what the latency percentile is tracked under, such as the server and tool
+     * @param deadline  the deadline of the call; each attempt gets one of its own within it, and
+     *                  without a time limit the call is not hedged
+     */
+    public <T> T call(McpReplicaSet replicas, String operation, McpDeadline deadline, Attempt<T> attempt)
+            throws Exception {
+        LatencyWindow window = latencies.computeIfAbsent(operation, key -> new LatencyWindow());
+        long delayNanos = window.percentile95Nanos(minSamples);
+        if (delayNanos < 0 || deadline == null || !deadline.hasTimeLimit() || replicas.getAvailableCount() < 2) {
+            return replicas.call(replica -> timed(window, () -> attempt.call(replica, deadline, false)), deadline);
+        }
+        // Only calls that could be hedged earn budget
+        earn();
+        return new Race<>(replicas, window, deadline, attempt).run(delayNanos);
+    }
+
+    private synchronized void earn() {
+        savedHedges = Math.min(MAX_SAVED_HEDGES, savedHedges + budgetPercent / 100.0);
+    }
+
+    private synchronized boolean spend() {
+        if (savedHedges < 1) {
+            return false;
+        }
+        savedHedges--;
+        return true;
+    }
+
+    // Failed and cancelled attempts are recorded too; leaving out the slow ones that lost a race
+    // would pull the percentile down and hedge ever more often
+    private static <T> T timed(LatencyWindow window, Callable<T> call) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return call.call();
+        } finally {
+            window.record(System.nanoTime() - start);
+        }
+    }
+
+    // Each attempt can be cancelled on its own, and both go with the call's deadline
+    private static McpDeadline attemptDeadline(McpDeadline deadline) {
+        return deadline.narrow(deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * A call and, once it turns out slow, its hedge; the first answer completes it.
+     */
+    private final class Race<T> {
+        private final McpReplicaSet replicas;
+        private final LatencyWindow window;
+        private final McpDeadline deadline;
+        private final Attempt<T> attempt;
+        private final CompletableFuture<T> winner = new CompletableFuture<>();
+        // Attempts that have not failed; the call fails once none is left
+        private final AtomicInteger running = new AtomicInteger(1);
+        private final AtomicBoolean answered = new AtomicBoolean(false);
+        private final AtomicReference<Exception> firstError = new AtomicReference<>();
+        private final AtomicReference<McpServerConnection> primaryReplica = new AtomicReference<>();
+        private final McpDeadline primaryDeadline;
+        private volatile McpDeadline hedgeDeadline;
+
+        private Race(McpReplicaSet replicas, LatencyWindow window, McpDeadline deadline, Attempt<T> attempt) {
+            this.replicas = replicas;
+            this.window = window;
+            this.deadline = deadline;
+            this.attempt = attempt;
+            this.primaryDeadline = attemptDeadline(deadline);
+        }
+
+        T run(long delayNanos) throws Exception {
+            HashedTimingWheel.Timeout timer = HEDGE_TIMER.schedule(this::hedge, delayNanos, TimeUnit.NANOSECONDS);
+            try {
+                // Returns once the first request answers, fails or is cancelled by a winning hedge;
+                // if it failed, a hedge may still be running
+                runAttempt(primaryDeadline, false);
+                return winner.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            } finally {
+                timer.cancel();
+                // Stops whichever attempt is still running; the finished one is not affected
+                primaryDeadline.cancel("Another replica answered first");
+                McpDeadline hedge = hedgeDeadline;
+                if (hedge != null) {
+                    hedge.cancel("Another replica answered first");
+                }
+            }
+        }
+
+        // Runs on the timer thread, so the attempt itself is handed off
+        private void hedge() {
+            if (winner.isDone() || replicas.getAvailableCount() < 2) {
+                return;
+            }
+            if (!spend()) {
+                overBudget.incrementAndGet();
+                return;
+            }
+            running.incrementAndGet();
+            McpDeadline attemptDeadline = attemptDeadline(deadline);
+            hedgeDeadline = attemptDeadline;
+            try {
+                HEDGE_POOL.execute(() -> {
+                    if (winner.isDone()) {
+                        // Waited in the queue until the call was over
+                        return;
+                    }
+                    hedged.incrementAndGet();
+                    runAttempt(attemptDeadline, true);
+                });
+            } catch (RejectedExecutionException e) {
+                rejected.incrementAndGet();
+                if (running.decrementAndGet() == 0) {
+                    winner.completeExceptionally(firstError.get());
+                }
+            }
+        }
+
+        private void runAttempt(McpDeadline attemptDeadline, boolean hedge) {
+            try {
+                T result = replicas.call(replica -> {
+                    if (!hedge) {
+                        primaryReplica.set(replica);
+                    }
+                    return timed(window, () -> attempt.call(replica, attemptDeadline, hedge));
+                }, hedge ? primaryReplica.get() : null, attemptDeadline);
+                // Counted before the caller can see the result
+                if (answered.compareAndSet(false, true)) {
+                    if (hedge) {
+                        hedgeWins.incrementAndGet();
+                    }
+                    winner.complete(result);
+                    if (hedge) {
+                        // Frees the caller's thread, which is still waiting on the first request
+                        primaryDeadline.cancel("Another replica answered first");
+                    }
+                }
+            } catch (Exception e) {
+                firstError.compareAndSet(null, e);
+                if (running.decrementAndGet() == 0) {
+                    winner.completeExceptionally(firstError.get());
+                }
+            } catch (Throwable t) {
+                winner.completeExceptionally(t);
+            }
+        }
+    }
+
+    public ObjectNode getMetrics() {
+        ObjectNode metrics = objectMapper.createObjectNode();
+        metrics.put("budgetPercent", budgetPercent);
+        metrics.put("hedged", hedged.get());
+        metrics.put("hedgeWins", hedgeWins.get());
+        metrics.put("overBudget", overBudget.get());
+        metrics.put("rejected", rejected.get());
+        return metrics;
+    }
+
+    /**
+     * The latest latencies of one operation, with their 95th percentile.
+     */
+    static final class LatencyWindow {
+        private final long[] samples = new long[WINDOW];
+        private int count;
+        private int next;
+        private long percentile95 = -1;
+        private int sinceSort;
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % WINDOW;
+            if (count < WINDOW) {
+                count++;
+            }
+            sinceSort++;
+        }
+
+        /**
+         * The 95th percentile in nanoseconds, or -1 until there are enough samples.
+         */
+        synchronized long percentile95Nanos(int minSamples) {
+            if (count < minSamples) {
+                return -1;
+            }
+            if (percentile95 < 0 || sinceSort >= RESORT_INTERVAL) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                percentile95 = sorted[Math.min(count - 1, (int) Math.ceil(count * 0.95) - 1)];
+                sinceSort = 0;
+            }
+            return percentile95;
+        }
+    }
+}
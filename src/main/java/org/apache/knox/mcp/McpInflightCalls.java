@@ -0,0 +1,91 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.knox.mcp.client.McpDeadline;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downstream requests in progress, keyed by the session they arrived in and their JSON-RPC
+ * id. Each is represented by its caller's deadline, so a {@code notifications/cancelled}
+ * from the client, or the end of its session, cancels the backend call working on it.
+ */
+public class McpInflightCalls {
+
+    private final Map<String, McpDeadline> calls = new ConcurrentHashMap<>();
+    private final AtomicLong cancelled = new AtomicLong();
+
+    /**
+     * Starts tracking a request and returns its caller's deadline. Requests without a session
+     * or an id cannot be named by a cancellation, so they are not tracked.
+     *
+     * @param timeoutMillis how long the caller is willing to wait, or null for no limit of its own
+     */
+    public McpDeadline begin(String scope, JsonNode id, Long timeoutMillis) {
+        McpDeadline caller = McpDeadlinePolicy.forCaller(timeoutMillis);
+        if (scope != null && id != null && !id.isNull()) {
+            calls.put(key(scope, id), caller);
+        }
+        return caller;
+    }
+
+    public void end(String scope, JsonNode id, McpDeadline caller) {
+        if (scope != null && id != null && !id.isNull()) {
+            calls.remove(key(scope, id), caller);
+        }
+    }
+
+    /**
+     * Cancels the request named by the params of a {@code notifications/cancelled}. Returns
+     * false if no such request is in progress, e.g. because it already completed.
+     */
+    public boolean cancelRequested(String scope, JsonNode params) {
+        if (scope == null || params == null || !params.hasNonNull("requestId")) {
+            return false;
+        }
+        McpDeadline caller = calls.remove(key(scope, params.get("requestId")));
+        if (caller == null) {
+            return false;
+        }
+        String reason = params.hasNonNull("reason") ? params.get("reason").asText() : "Cancelled by client";
+        if (caller.cancel(reason)) {
+            cancelled.incrementAndGet();
+        }
+        return true;
+    }
+
+    /**
+     * Cancels every request of a session that went away; returns how many there were.
+     */
+    public int cancelAll(String scope, String reason) {
+        String prefix = scope + '\n';
+        int count = 0;
+        for (Iterator<Map.Entry<String, McpDeadline>> it = calls.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, McpDeadline> entry = it.next();
+            if (entry.getKey().startsWith(prefix)) {
+                it.remove();
+                if (entry.getValue().cancel(reason)) {
+                    cancelled.incrementAndGet();
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    public int size() {
+        return calls.size();
+    }
+
+    public long getCancelled() {
+        return cancelled.get();
+    }
+
+    // The id's JSON form keeps 1 and "1" apart
+    private static String key(String scope, JsonNode id) {
+        return scope + '\n' + id.toString();
+    }
+}
@@ -0,0 +1,100 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.knox.mcp.util.HashedTimingWheel;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Creates the per-call contexts that carry backend notifications to the downstream client,
+ * and holds the rate limits and counters they share.
+ */
+public class McpNotificationRelay {
+
+    public static final String PROGRESS_INTERVAL = "mcp.notifications.progress.interval";
+    public static final String LOG_RATE = "mcp.notifications.log.rate";
+
+    // Flushes of coalesced progress updates
+    private static final HashedTimingWheel FLUSH_TIMER =
+        new HashedTimingWheel("mcp-notification-flush", 10, TimeUnit.MILLISECONDS, 256);
+
+    private final long progressIntervalMillis;
+    private final int logMessagesPerSecond;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    final AtomicLong relayed = new AtomicLong();
+    final AtomicLong coalesced = new AtomicLong();
+    final AtomicLong dropped = new AtomicLong();
+
+    public McpNotificationRelay() {
+        this(250, 20);
+    }
+
+    public McpNotificationRelay(long progressIntervalMillis, int logMessagesPerSecond) {
+        this.progressIntervalMillis = Math.max(0, progressIntervalMillis);
+        this.logMessagesPerSecond = Math.max(0, logMessagesPerSecond);
+    }
+
+    public static McpNotificationRelay fromConfig(Function<String, String> config) {
+        return new McpNotificationRelay(
+            McpSseSessionSettings.parseInt(config.apply(PROGRESS_INTERVAL), 250, PROGRESS_INTERVAL),
+            McpSseSessionSettings.parseInt(config.apply(LOG_RATE), 20, LOG_RATE));
+    }
+
+    /**
+     * Context for one downstream tools/call, or null if the caller has no channel for notifications.
+     *
+     * @param params the downstream request params, whose {@code _meta.progressToken} is echoed back
+     */
+    public McpCallContext newCallContext(McpNotificationSink sink, JsonNode params) {
+        return newCallContext(sink, params, null, null);
+    }
+
+    /**
+     * Context for one downstream tools/call, or null if the caller has neither a channel for
+     * notifications nor an identity its backend request could be traced back to.
+     *
+     * @param session   the downstream session, or null
+     * @param requestId the JSON-RPC id of the downstream request, or null
+     */
+    public McpCallContext newCallContext(McpNotificationSink sink, JsonNode params, String session,
+                                         JsonNode requestId) {
+        if (requestId != null && requestId.isNull()) {
+            requestId = null;
+        }
+        if (sink == null && (session == null || requestId == null)) {
+            return null;
+        }
+        JsonNode progressToken = null;
+        if (params != null && params.has("_meta") && params.get("_meta").has("progressToken")) {
+            progressToken = params.get("_meta").get("progressToken");
+        }
+        return new McpCallContext(this, sink, progressToken, session, requestId);
+    }
+
+    long getProgressIntervalMillis() {
+        return progressIntervalMillis;
+    }
+
+    int getLogMessagesPerSecond() {
+        return logMessagesPerSecond;
+    }
+
+    HashedTimingWheel getFlushTimer() {
+        return FLUSH_TIMER;
+    }
+
+    public ObjectNode getMetrics() {
+        ObjectNode metrics = objectMapper.createObjectNode();
+        metrics.put("progressIntervalMillis", progressIntervalMillis);
+        metrics.put("logMessagesPerSecond", logMessagesPerSecond);
+        metrics.put("relayed", relayed.get());
+        metrics.put("coalesced", coalesced.get());
+        metrics.put("dropped", dropped.get());
+        return metrics;
+    }
+}
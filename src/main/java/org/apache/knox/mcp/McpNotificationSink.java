@@ -0,0 +1,28 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+
+/**
+ * Downstream channel that can carry JSON-RPC notifications while a request is in progress:
+ * a long-lived SSE session, or the SSE response to a single POST.
+ */
+public interface McpNotificationSink {
+
+    void sendJsonRpcNotification(String method, JsonNode params) throws IOException;
+
+    /**
+     * Whether earlier events are still waiting to be written, so new ones should be held back.
+     */
+    default boolean isFallingBehind() {
+        return false;
+    }
+
+    /**
+     * Runs the listener if the channel goes away before the request completes. Sessions,
+     * which outlive their requests, cancel their calls themselves and ignore this.
+     */
+    default void onDisconnect(Runnable listener) {
+    }
+}
@@ -19,12 +19,24 @@ import javax.inject.Singleton;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.io.IOException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import org.apache.knox.mcp.catalog.McpCatalog;
+import org.apache.knox.mcp.catalog.McpCatalogStore;
+import org.apache.knox.mcp.catalog.McpResourceDescriptor;
+import org.apache.knox.mcp.catalog.McpToolDescriptor;
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.client.McpPendingRequests;
+import org.apache.knox.mcp.client.McpRequestCancelledException;
+import org.apache.knox.mcp.client.McpRequestTimeoutException;
+import org.apache.knox.mcp.cluster.McpMessageForwarder;
+import org.apache.knox.mcp.cluster.McpNodeRegistry;
 import org.apache.knox.mcp.util.McpLogger;
 
 @Singleton
@@ -35,17 +47,40 @@ public class McpProxyResource {
 
     private static final McpLogger logger = McpLogger.getLogger(McpProxyResource.class);
 
+    // Kept apart from -32001, which answers a request whose deadline passed
+    static final int SESSION_NOT_FOUND = -32003;
+
+    static final String LIST_PAGE_SIZE = "mcp.list.page.size";
+    static final int DEFAULT_LIST_PAGE_SIZE = 100;
+
     @Context
     private HttpServletRequest request;
 
     private final Map<String, McpServerConnection> serverConnections = new ConcurrentHashMap<>();
-    private final Map<String, Object> aggregatedTools = new ConcurrentHashMap<>();
-    private final Map<String, Object> aggregatedResources = new ConcurrentHashMap<>();
+    private final Map<String, McpReplicaSet> replicaSets = new ConcurrentHashMap<>(); // servers listed more than once
+    private final Map<String, McpToolDescriptor> aggregatedTools = new ConcurrentHashMap<>();
+    private final Map<String, McpResourceDescriptor> aggregatedResources = new ConcurrentHashMap<>();
     private final Map<String, String> toolNameMapping = new ConcurrentHashMap<>(); // sanitized -> original
     private final Map<String, String> serverMapping = new ConcurrentHashMap<>(); // sanitized -> serverName
+    private final Map<String, String> resourceServerMapping = new ConcurrentHashMap<>(); // aggregated uri -> serverName
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final Map<String, String> sessionStorage = new ConcurrentHashMap<>(); // sessionId -> client info
     private boolean initialized = false;
+    private McpNotificationRelay notificationRelay = new McpNotificationRelay();
+    private McpToolResultCache toolResultCache = McpToolResultCache.fromConfig(key -> null);
+    private McpResourceCache resourceCache = McpResourceCache.fromConfig(key -> null);
+    private McpDeadlinePolicy deadlinePolicy = McpDeadlinePolicy.fromConfig(key -> null);
+    private McpHedger hedger = McpHedger.fromConfig(key -> null);
+    private final McpInflightCalls inflightCalls = new McpInflightCalls();
+    private final AtomicReference<McpCatalog> catalog = new AtomicReference<>();
+    private final AtomicLong catalogVersion = new AtomicLong();
+    private int listPageSize = DEFAULT_LIST_PAGE_SIZE;
+    private McpCatalogRefresher catalogRefresher;
+    private McpHealthChecker healthChecker;
+    private McpCatalogStore catalogStore;
+    private volatile boolean shuttingDown = false;
+    private final Map<String, McpCatalogStore.ServerCatalog> serverCatalogs = new ConcurrentHashMap<>(); // serverName -> last known catalog
+    private final java.util.Set<String> staleServers = ConcurrentHashMap.newKeySet(); // restored from the snapshot, not yet reached
 
     @PostConstruct
     public void init() {
@@ -62,14 +97,33 @@ public class McpProxyResource {
     @PreDestroy
     public void cleanup() {
         try {
+            shuttingDown = true;
+            if (catalogRefresher != null) {
+                catalogRefresher.stop();
+            }
+            if (healthChecker != null) {
+                healthChecker.stop();
+            }
             for (McpServerConnection connection : serverConnections.values()) {
                 connection.disconnect();
             }
+            for (McpReplicaSet replicas : replicaSets.values()) {
+                for (McpServerConnection replica : replicas.getConnections()) {
+                    if (replica != replicas.getPrimary()) {
+                        replica.disconnect();
+                    }
+                }
+            }
             serverConnections.clear();
+            replicaSets.clear();
             aggregatedTools.clear();
             aggregatedResources.clear();
             toolNameMapping.clear();
             serverMapping.clear();
+            resourceServerMapping.clear();
+            serverCatalogs.clear();
+            staleServers.clear();
+            invalidateCatalog();
             // Shutdown SSE session manager
             McpSseSessionManager.getInstance().shutdown();
         } catch (Exception e) {
@@ -79,29 +133,80 @@ public class McpProxyResource {
     }
 
     private void initializeConnections() throws Exception {
+        McpSseSessionManager.getInstance().configure(McpSseSessionSettings.fromConfig(this::getConfigParameter));
+        McpSseSessionManager.getInstance().configureCluster(McpNodeRegistry.fromConfig(this::getConfigParameter));
+        notificationRelay = McpNotificationRelay.fromConfig(this::getConfigParameter);
+        toolResultCache = McpToolResultCache.fromConfig(this::getConfigParameter);
+        resourceCache = McpResourceCache.fromConfig(this::getConfigParameter);
+        deadlinePolicy = McpDeadlinePolicy.fromConfig(this::getConfigParameter);
+        hedger = McpHedger.fromConfig(this::getConfigParameter);
+        listPageSize = McpSseSessionSettings.parseInt(getConfigParameter(LIST_PAGE_SIZE), DEFAULT_LIST_PAGE_SIZE, LIST_PAGE_SIZE);
+        
+        shuttingDown = false;
+        
+        // A saved catalog lets us answer list requests while the backends connect in the background
+        catalogStore = McpCatalogStore.fromConfig(this::getConfigParameter);
+        Map<String, McpCatalogStore.ServerCatalog> snapshot = catalogStore == null
+                ? java.util.Collections.emptyMap() : catalogStore.load();
+        
         // Get topology configuration from servlet context
         String serversConfig = getConfigParameter("mcp.servers");
         java.util.Set<String> allowedStdioCommands = parseAllowedStdioCommands();
         
         if (serversConfig != null) {
-            String[] servers = serversConfig.split(",");
-            for (String serverConfig : servers) {
+            // A name listed more than once is one server with several replicas
+            Map<String, java.util.List<String>> servers = new java.util.LinkedHashMap<>();
+            for (String serverConfig : serversConfig.split(",")) {
                 String trimmedConfig = serverConfig.trim();
                 // Split only on the first colon to separate name from URL
                 int firstColonIndex = trimmedConfig.indexOf(':');
                 if (firstColonIndex > 0 && firstColonIndex < trimmedConfig.length() - 1) {
                     String name = trimmedConfig.substring(0, firstColonIndex).trim();
                     String endpoint = trimmedConfig.substring(firstColonIndex + 1).trim();
-                    
-                    McpServerConnection connection = new McpServerConnection(name, endpoint, allowedStdioCommands);
-                    serverConnections.put(name, connection);
-                    
-                    // Connect and aggregate tools/resources
-                    connection.connect();
-                    aggregateToolsAndResources(connection);
+                    servers.computeIfAbsent(name, key -> new java.util.ArrayList<>()).add(endpoint);
+                }
+            }
+            for (Map.Entry<String, java.util.List<String>> server : servers.entrySet()) {
+                String name = server.getKey();
+                java.util.List<McpServerConnection> replicas = new java.util.ArrayList<>();
+                for (String endpoint : server.getValue()) {
+                    McpServerConnection replica = new McpServerConnection(name, endpoint, allowedStdioCommands);
+                    replica.setConcurrencyLimiter(McpConcurrencyLimiter.fromConfig(name, this::getConfigParameter));
+                    replica.setCircuitBreaker(McpCircuitBreaker.fromConfig(name, this::getConfigParameter));
+                    replicas.add(replica);
+                }
+                McpServerConnection connection = replicas.get(0);
+                serverConnections.put(name, connection);
+                if (replicas.size() > 1) {
+                    replicaSets.put(name, McpReplicaSet.fromConfig(name, replicas, this::getConfigParameter));
+                    // The other replicas only serve calls, so they never hold up startup
+                    for (McpServerConnection replica : replicas.subList(1, replicas.size())) {
+                        connectInBackground(replica, false);
+                    }
+                }
+                
+                if (!snapshot.isEmpty()) {
+                    restoreServerCatalog(name, snapshot.get(name));
+                    connectInBackground(connection, true);
+                    continue;
                 }
+                
+                // Connect and aggregate tools/resources
+                connection.connect();
+                aggregateToolsAndResources(connection);
+                connection.setCatalogListener(this::onServerCatalogChanged);
+                connection.setResourceListener(this::onResourceUpdated);
             }
         }
+        
+        catalogRefresher = McpCatalogRefresher.fromConfig(this::getConfigParameter);
+        catalogRefresher.start(serverConnections.values());
+        java.util.List<McpServerConnection> allConnections = new java.util.ArrayList<>(serverConnections.values());
+        for (McpReplicaSet replicas : replicaSets.values()) {
+            allConnections.addAll(replicas.getConnections().subList(1, replicas.getConnections().size()));
+        }
+        healthChecker = McpHealthChecker.fromConfig(this::getConfigParameter);
+        healthChecker.start(allConnections);
     }
     
     private java.util.Set<String> parseAllowedStdioCommands() {
@@ -136,24 +241,177 @@ public class McpProxyResource {
 
     private void aggregateToolsAndResources(McpServerConnection connection) {
         try {
-            Map<String, Object> tools = connection.getTools();
-            Map<String, Object> resources = connection.getResources();
-            
+            applyCatalogChange(connection);
+        } catch (Exception e) {
+            System.err.println("Failed to aggregate tools/resources from server: " + connection.getName());
+        }
+    }
+    
+    /**
+     * Brings one server's entries in the aggregated maps in line with its current catalog,
+     * leaving the other servers' entries alone. Returns the list_changed notifications the
+     * change calls for.
+     */
+    java.util.List<String> applyCatalogChange(McpServerConnection connection) {
+        Map<String, McpToolDescriptor> tools = connection.getTools();
+        Map<String, McpResourceDescriptor> resources = connection.getResources();
+        String serverName = connection.getName();
+        
+        synchronized (aggregatedTools) {
+            java.util.List<String> changes = mergeServerCatalog(serverName, tools, resources);
+            if (staleServers.remove(serverName)) {
+                // The live catalog has replaced the one restored from the snapshot
+                invalidateCatalog();
+            }
+            McpCatalogStore.ServerCatalog saved = serverCatalogs.get(serverName);
+            if (saved == null || !changes.isEmpty()) {
+                serverCatalogs.put(serverName, new McpCatalogStore.ServerCatalog(tools, resources,
+                        saved == null ? 1 : saved.getVersion() + 1, System.currentTimeMillis()));
+                if (catalogStore != null) {
+                    catalogStore.saveAsync(() -> new java.util.HashMap<>(serverCatalogs));
+                }
+            }
+            return changes;
+        }
+    }
+    
+    private java.util.List<String> mergeServerCatalog(String serverName, Map<String, McpToolDescriptor> tools,
+                                                        Map<String, McpResourceDescriptor> resources) {
+        java.util.List<String> changes = new java.util.ArrayList<>();
+        
+        synchronized (aggregatedTools) {
             // Prefix tools and resources with server name to avoid conflicts
-            String serverName = connection.getName();
+            Map<String, McpToolDescriptor> serverTools = new java.util.HashMap<>();
+            Map<String, String> serverToolNames = new java.util.HashMap<>();
             tools.forEach((key, value) -> {
-                String originalToolName = serverName + "_" + key;
-                String sanitizedToolName = sanitizeToolName(originalToolName);
-                
-                aggregatedTools.put(sanitizedToolName, value);
-                toolNameMapping.put(sanitizedToolName, key); // Map back to original tool name
-                serverMapping.put(sanitizedToolName, serverName); // Map to server name
+                String sanitizedToolName = sanitizeToolName(serverName + "_" + key);
+                serverTools.put(sanitizedToolName, value);
+                serverToolNames.put(sanitizedToolName, key);
             });
-            resources.forEach((key, value) -> aggregatedResources.put(serverName + "." + key, value));
+            Map<String, McpResourceDescriptor> serverResources = new java.util.HashMap<>();
+            resources.forEach((key, value) -> serverResources.put(serverName + "." + key, value));
+            
+            boolean toolsChanged = false;
+            for (Map.Entry<String, String> entry : new java.util.HashMap<>(serverMapping).entrySet()) {
+                if (serverName.equals(entry.getValue()) && !serverTools.containsKey(entry.getKey())) {
+                    aggregatedTools.remove(entry.getKey());
+                    toolNameMapping.remove(entry.getKey());
+                    serverMapping.remove(entry.getKey());
+                    toolsChanged = true;
+                }
+            }
+            for (Map.Entry<String, McpToolDescriptor> entry : serverTools.entrySet()) {
+                McpToolDescriptor previous = aggregatedTools.put(entry.getKey(), entry.getValue());
+                toolNameMapping.put(entry.getKey(), serverToolNames.get(entry.getKey())); // Map back to original tool name
+                serverMapping.put(entry.getKey(), serverName); // Map to server name
+                toolsChanged |= !entry.getValue().equals(previous);
+            }
             
-        } catch (Exception e) {
-            System.err.println("Failed to aggregate tools/resources from server: " + connection.getName());
+            boolean resourcesChanged = false;
+            for (Map.Entry<String, String> entry : new java.util.HashMap<>(resourceServerMapping).entrySet()) {
+                if (serverName.equals(entry.getValue()) && !serverResources.containsKey(entry.getKey())) {
+                    aggregatedResources.remove(entry.getKey());
+                    resourceServerMapping.remove(entry.getKey());
+                    resourcesChanged = true;
+                }
+            }
+            for (Map.Entry<String, McpResourceDescriptor> entry : serverResources.entrySet()) {
+                McpResourceDescriptor previous = aggregatedResources.put(entry.getKey(), entry.getValue());
+                resourceServerMapping.put(entry.getKey(), serverName);
+                resourcesChanged |= !entry.getValue().equals(previous);
+            }
+            
+            if (toolsChanged) {
+                changes.add("notifications/tools/list_changed");
+            }
+            if (resourcesChanged) {
+                changes.add("notifications/resources/list_changed");
+            }
+            if (!changes.isEmpty()) {
+                invalidateCatalog();
+            }
+        }
+        return changes;
+    }
+    
+    private void restoreServerCatalog(String serverName, McpCatalogStore.ServerCatalog saved) {
+        if (saved == null) {
+            return;
+        }
+        synchronized (aggregatedTools) {
+            mergeServerCatalog(serverName, saved.getTools(), saved.getResources());
+            serverCatalogs.put(serverName, saved);
+            staleServers.add(serverName);
+            invalidateCatalog();
+        }
+    }
+    
+    /**
+     * Connects off the request path, retrying with backoff, then, for the server's primary
+     * connection, reconciles its restored catalog with the live one.
+     */
+    private void connectInBackground(McpServerConnection connection, boolean primary) {
+        Thread thread = new Thread(() -> {
+            long backoffMillis = 1000;
+            while (!shuttingDown) {
+                try {
+                    connection.connect();
+                    if (primary) {
+                        connection.setCatalogListener(this::onServerCatalogChanged);
+                        connection.setResourceListener(this::onResourceUpdated);
+                        onServerCatalogChanged(connection);
+                    }
+                    return;
+                } catch (Exception e) {
+                    logger.warn("Could not connect to server '" + connection.getName() + "', retrying in " +
+                                backoffMillis + " ms: " + e.getMessage());
+                }
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                backoffMillis = Math.min(backoffMillis * 2, 60000);
+            }
+        }, "mcp-connect-" + connection.getName() + (primary ? "" : "-replica"));
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Applies a re-fetched server catalog and tells connected SSE clients which lists changed.
+     */
+    private void onServerCatalogChanged(McpServerConnection connection) {
+        java.util.List<String> changes = applyCatalogChange(connection);
+        if (changes.isEmpty()) {
+            return;
+        }
+        logger.info("Catalog of server '" + connection.getName() + "' changed: " + changes);
+        for (String notification : changes) {
+            McpSseSessionManager.getInstance().broadcastNotification(notification, null);
+        }
+    }
+    
+    /**
+     * Marks the catalog snapshot stale after the aggregated maps change; the next list request rebuilds it.
+     */
+    private void invalidateCatalog() {
+        catalogVersion.incrementAndGet();
+        catalog.set(null);
+    }
+    
+    private McpCatalog currentCatalog() {
+        McpCatalog current = catalog.get();
+        if (current != null) {
+            return current;
         }
+        long version = catalogVersion.get();
+        McpCatalog built = McpCatalog.build(version, aggregatedTools, aggregatedResources, !staleServers.isEmpty());
+        // Don't publish a snapshot the maps moved past while it was being built
+        if (catalogVersion.get() == version) {
+            catalog.compareAndSet(null, built);
+        }
+        return built;
     }
     
     /**
@@ -183,6 +441,18 @@ public class McpProxyResource {
     }
 
     private Object callToolInternal(String toolName, Map<String, Object> parameters) throws Exception {
+        return callToolInternal(toolName, parameters, null);
+    }
+
+    private Object callToolInternal(String toolName, Map<String, Object> parameters, McpCallContext context) throws Exception {
+        return callToolInternal(toolName, parameters, context, false, McpDeadline.none());
+    }
+
+    /**
+     * @param caller the downstream request's deadline, cancelled if the client gives up
+     */
+    private Object callToolInternal(String toolName, Map<String, Object> parameters, McpCallContext context,
+                                    boolean bypassCache, McpDeadline caller) throws Exception {
         // First, check if this is a sanitized tool name in our direct mapping
         if (toolNameMapping.containsKey(toolName) && serverMapping.containsKey(toolName)) {
             String originalToolName = toolNameMapping.get(toolName);
@@ -192,7 +462,7 @@ public class McpProxyResource {
             if (connection != null) {
                 logger.debug("Calling tool '" + originalToolName + "' on server '" + serverName + 
                              "' (sanitized name: '" + toolName + "')");
-                return connection.callTool(originalToolName, parameters);
+                return callBackendTool(connection, originalToolName, parameters, context, bypassCache, caller);
             }
         }
         
@@ -204,7 +474,7 @@ public class McpProxyResource {
             
             McpServerConnection connection = serverConnections.get(serverName);
             if (connection != null) {
-                return connection.callTool(actualToolName, parameters);
+                return callBackendTool(connection, actualToolName, parameters, context, bypassCache, caller);
             }
         }
         
@@ -217,7 +487,7 @@ public class McpProxyResource {
                 
                 McpServerConnection connection = serverConnections.get(serverName);
                 if (connection != null) {
-                    return connection.callTool(actualToolName, parameters);
+                    return callBackendTool(connection, actualToolName, parameters, context, bypassCache, caller);
                 }
             }
         }
@@ -225,7 +495,8 @@ public class McpProxyResource {
         // If still not found, try each server connection directly
         for (McpServerConnection connection : serverConnections.values()) {
             try {
-                return connection.callTool(toolName, parameters);
+                McpDeadline deadline = deadlinePolicy.forTool(connection.getName(), toolName, caller);
+                return callOnReplica(connection, toolName, parameters, null, deadline);
             } catch (IllegalArgumentException e) {
                 // Tool not found on this server, try the next one
                 continue;
@@ -235,7 +506,76 @@ public class McpProxyResource {
         throw new IllegalArgumentException("Tool not found: " + toolName);
     }
 
-    private Object getResource(String resourceName) throws Exception {
+    /**
+     * Calls the tool on its backend, answering from the result cache when the tool is cacheable.
+     * The call gets the caller's deadline, which also limits how long it waits for an identical
+     * call it joins; a background refresh gets the default one.
+     */
+    private Object callBackendTool(McpServerConnection connection, String toolName, Map<String, Object> parameters,
+                                   McpCallContext context, boolean bypassCache, McpDeadline caller) throws Exception {
+        String serverName = connection.getName();
+        McpDeadline deadline = deadlinePolicy.forTool(serverName, toolName, caller);
+        return toolResultCache.call(serverName, toolName, parameters, bypassCache, deadline,
+                () -> callOnReplica(connection, toolName, parameters, context, deadline),
+                () -> callOnReplica(connection, toolName, parameters, null, deadlinePolicy.forTool(serverName, toolName, null)));
+    }
+
+    /**
+     * Calls the tool on one of the server's replicas, or on the connection itself if it has
+     * none. A tool that may be sent twice is hedged; only the first request relays notifications.
+     */
+    private Object callOnReplica(McpServerConnection connection, String toolName, Map<String, Object> parameters,
+                                 McpCallContext context, McpDeadline deadline) throws Exception {
+        McpReplicaSet replicas = replicaSets.get(connection.getName());
+        if (replicas == null) {
+            return connection.callTool(toolName, parameters, context, deadline);
+        }
+        if (hedger.isHedged(connection.getName(), toolName)) {
+            return hedger.call(replicas, connection.getName() + "." + toolName, deadline,
+                    (replica, attemptDeadline, hedge) ->
+                            replica.callTool(toolName, parameters, hedge ? null : context, attemptDeadline));
+        }
+        return replicas.call(replica -> replica.callTool(toolName, parameters, context, deadline), deadline);
+    }
+
+    /**
+     * Reads the resource from one of the server's replicas, hedging the read if allowed.
+     */
+    private Object readOnReplica(McpServerConnection connection, String uri, McpDeadline deadline) throws Exception {
+        McpReplicaSet replicas = replicaSets.get(connection.getName());
+        if (replicas == null) {
+            return connection.getResource(uri, deadline);
+        }
+        if (hedger.isHedgingResources()) {
+            return hedger.call(replicas, connection.getName() + " resources/read", deadline,
+                    (replica, attemptDeadline, hedge) -> replica.getResource(uri, attemptDeadline));
+        }
+        return replicas.call(replica -> replica.getResource(uri, deadline), deadline);
+    }
+
+    private static boolean isCacheBypass(HttpServletRequest request) {
+        return request != null && McpToolResultCache.isBypassRequested(request.getHeader(McpToolResultCache.BYPASS_HEADER));
+    }
+
+    private static Long requestedTimeout(HttpServletRequest request) {
+        return request == null ? null : McpDeadlinePolicy.parseRequested(request.getHeader(McpDeadlinePolicy.TIMEOUT_HEADER));
+    }
+
+    /**
+     * Starts tracking a downstream request, so the client can cancel it with
+     * {@code notifications/cancelled} or by going away. Returns the caller's deadline.
+     */
+    private McpDeadline beginCall(String sessionId, JsonNode id, JsonNode params, HttpServletRequest request,
+                                  McpNotificationSink sink) {
+        McpDeadline caller = inflightCalls.begin(sessionId, id,
+                McpDeadlinePolicy.earliest(requestedTimeout(request), McpDeadlinePolicy.requestedIn(params)));
+        if (sink != null) {
+            sink.onDisconnect(() -> caller.cancel("Client disconnected"));
+        }
+        return caller;
+    }
+
+    private Object getResource(String resourceName, boolean bypassCache, McpDeadline caller) throws Exception {
         // Route resource requests to appropriate server
         if (resourceName.contains(".")) {
             String[] parts = resourceName.split("\\.", 2);
@@ -244,12 +584,33 @@ public class McpProxyResource {
             
             McpServerConnection connection = serverConnections.get(serverName);
             if (connection != null) {
-                return connection.getResource(actualResourceName);
+                return readBackendResource(connection, actualResourceName, bypassCache, caller);
             }
         }
         throw new IllegalArgumentException("Resource not found: " + resourceName);
     }
 
+    /**
+     * Reads the resource from its backend, answering from the resource cache when possible. The
+     * caller's deadline also limits how long it waits for an identical read it joins; a
+     * background refresh gets the default one.
+     */
+    private Object readBackendResource(McpServerConnection connection, String uri, boolean bypassCache,
+                                       McpDeadline caller) throws Exception {
+        McpDeadline deadline = deadlinePolicy.forResource(caller);
+        return resourceCache.read(connection.getName(), uri, bypassCache, deadline, () -> {
+            Object result = readOnReplica(connection, uri, deadline);
+            if (resourceCache.isEnabled()) {
+                connection.subscribeResourceInBackground(uri);
+            }
+            return result;
+        }, () -> readOnReplica(connection, uri, deadlinePolicy.forResource(null)));
+    }
+
+    private void onResourceUpdated(McpServerConnection connection, String uri) {
+        resourceCache.invalidate(connection.getName(), uri);
+    }
+
     // =================================================================
     // MCP Streamable HTTP - Unified Endpoint (Specification Compliant)
     // =================================================================
@@ -380,7 +741,7 @@ public class McpProxyResource {
         try {
             // Enable async processing for SSE
             AsyncContext asyncContext = request.startAsync();
-            asyncContext.setTimeout(0); // No timeout for SSE connections
+            asyncContext.setTimeout(0); // Idle and lifetime limits are enforced by the session manager
             
             // Create SSE session
             McpSseSession session = McpSseSessionManager.getInstance().createSession(asyncContext, this, request);
@@ -409,30 +770,84 @@ public class McpProxyResource {
     }
     
     private Response handleStreamingJsonRpcRequest(HttpServletRequest request, String requestBody, String sessionId) {
-        // For streaming responses, we need to check if there's a session or create one
-        if (sessionId == null) {
-            sessionId = request.getHeader("X-Session-ID");
+        // An SSE session named by the client gets the response on its open stream
+        String sseSessionId = request.getHeader("X-Session-ID");
+        if (sseSessionId == null) {
+            sseSessionId = request.getParameter("session");
         }
-        if (sessionId == null) {
-            sessionId = request.getParameter("session");
+        if (sseSessionId == null && McpSseSessionManager.isSseSessionId(sessionId)) {
+            sseSessionId = sessionId;
         }
         
-        if (sessionId != null) {
+        if (sseSessionId != null) {
             // Route to existing SSE session
-            logger.debug("Routing streaming request to SSE session: " + sessionId);
-            McpSseSessionManager.getInstance().handleMessageForSession(sessionId, requestBody);
+            logger.debug("Routing streaming request to SSE session: " + sseSessionId);
+            Response routed = routeSessionMessage(request, sseSessionId, requestBody);
+            if (routed != null) {
+                return routed;
+            }
             return Response.accepted()
                     .header("mcp-version", "2024-11-05")
-                    .header("Mcp-Session-Id", sessionId)
+                    .header("Mcp-Session-Id", sseSessionId)
                     .build();
-        } else {
-            // No session ID - this is an error for streaming requests
-            return createJsonRpcErrorResponse(null, -32600, "Invalid Request", 
-                    "Streaming requests require an active SSE session. Use GET with Accept: text/event-stream first.");
+        }
+        
+        // Otherwise answer on this exchange with a stream that ends after the result
+        return handleRequestScopedStream(request, requestBody, sessionId);
+    }
+    
+    private Response handleRequestScopedStream(HttpServletRequest request, String requestBody, String sessionId) {
+        JsonNode requestJson;
+        try {
+            requestJson = requestBody == null ? null : objectMapper.readTree(requestBody);
+        } catch (IOException e) {
+            requestJson = null;
+        }
+        
+        // Malformed input, notifications and initialize (which sets session headers) are
+        // answered with plain JSON; clients that accept SSE must also accept that
+        if (requestJson == null || !requestJson.has("id") || !requestJson.has("method")
+                || "initialize".equals(requestJson.get("method").asText())) {
+            Response.ResponseBuilder responseBuilder = Response.ok().header("mcp-version", "2024-11-05");
+            if (sessionId != null) {
+                responseBuilder.header("Mcp-Session-Id", sessionId);
+            }
+            return handleStandardJsonRpcRequest(requestBody, request, responseBuilder, sessionId);
+        }
+        
+        try {
+            AsyncContext asyncContext = request.startAsync();
+            asyncContext.setTimeout(0); // Ends when the request completes
+            McpSseSessionManager manager = McpSseSessionManager.getInstance();
+            McpRequestStream stream = new McpRequestStream("request-" + requestJson.get("id").asText(),
+                    asyncContext, manager.getSettings(), "2024-11-05");
+            
+            manager.getDispatchExecutor().execute(() -> {
+                Response response = handleStandardJsonRpcRequest(requestBody, request, Response.ok(), sessionId, stream);
+                Object entity = response.getEntity();
+                if (entity instanceof String) {
+                    stream.complete((String) entity);
+                } else {
+                    stream.abort();
+                }
+            });
+            
+            // Return null to signal JAX-RS that we're handling the response asynchronously
+            return null;
+            
+        } catch (Exception e) {
+            logger.error("Failed to open request stream: " + e.getMessage(), e);
+            return createJsonRpcErrorResponse(getRequestId(requestJson), -32603, "Internal error",
+                    "Failed to open response stream: " + e.getMessage());
         }
     }
     
     private Response handleStandardJsonRpcRequest(String requestBody, HttpServletRequest request, Response.ResponseBuilder responseBuilder, String sessionId) {
+        return handleStandardJsonRpcRequest(requestBody, request, responseBuilder, sessionId, null);
+    }
+    
+    private Response handleStandardJsonRpcRequest(String requestBody, HttpServletRequest request, Response.ResponseBuilder responseBuilder,
+                                                  String sessionId, McpNotificationSink sink) {
         logger.debug("=== DEBUG: Standard JSON-RPC Request ===");
         logger.debug("Request body: " + requestBody);
         logger.debug("Content-Type: " + request.getContentType());
@@ -483,20 +898,56 @@ public class McpProxyResource {
                     break;
                 case "tools/list":
                     logger.debug("Handling tools/list...");
-                    result = listAllToolsForMcp();
+                    try {
+                        result = listAllToolsForMcp(params);
+                    } catch (IllegalArgumentException e) {
+                        return createJsonRpcErrorResponse(id, -32602, "Invalid params", e.getMessage());
+                    }
                     break;
                 case "tools/call":
                     logger.debug("Handling tools/call...");
-                    result = handleToolCallForMcp(params);
+                    McpDeadline callDeadline = beginCall(sessionId, id, params, request, sink);
+                    try {
+                        result = handleToolCall(sessionId, id, params, sink, isCacheBypass(request), callDeadline);
+                    } catch (McpServerBusyException e) {
+                        return createJsonRpcErrorResponse(id, e.getCode(), e.getReason(), e.getMessage());
+                    } catch (McpRequestTimeoutException e) {
+                        return createJsonRpcErrorResponse(id, e.getCode(), "Request timed out", e.getMessage());
+                    } catch (McpRequestCancelledException e) {
+                        return createJsonRpcErrorResponse(id, e.getCode(), "Request cancelled", e.getMessage());
+                    } finally {
+                        inflightCalls.end(sessionId, id, callDeadline);
+                    }
                     break;
                 case "resources/list":
                     logger.debug("Handling resources/list...");
-                    result = listAllResourcesForMcp();
+                    try {
+                        result = listAllResourcesForMcp(params);
+                    } catch (IllegalArgumentException e) {
+                        return createJsonRpcErrorResponse(id, -32602, "Invalid params", e.getMessage());
+                    }
                     break;
                 case "resources/read":
                     logger.debug("Handling resources/read...");
-                    result = handleResourceReadForMcp(params);
+                    McpDeadline readDeadline = beginCall(sessionId, id, params, request, sink);
+                    try {
+                        result = handleResourceRead(params, isCacheBypass(request), readDeadline);
+                    } catch (McpServerBusyException e) {
+                        return createJsonRpcErrorResponse(id, e.getCode(), e.getReason(), e.getMessage());
+                    } catch (McpRequestTimeoutException e) {
+                        return createJsonRpcErrorResponse(id, e.getCode(), "Request timed out", e.getMessage());
+                    } catch (McpRequestCancelledException e) {
+                        return createJsonRpcErrorResponse(id, e.getCode(), "Request cancelled", e.getMessage());
+                    } finally {
+                        inflightCalls.end(sessionId, id, readDeadline);
+                    }
                     break;
+                case "notifications/cancelled":
+                    logger.debug("Handling notifications/cancelled...");
+                    inflightCalls.cancelRequested(sessionId, params);
+                    return responseBuilder
+                            .status(Response.Status.ACCEPTED)
+                            .build();
                 default:
                     logger.debug("ERROR: Unknown method: " + method);
                     ObjectNode errorResponse = objectMapper.createObjectNode();
@@ -619,7 +1070,8 @@ public class McpProxyResource {
                 }
             }
             
-            Object result = callToolInternal(toolName, parameters);
+            Object result = callToolInternal(toolName, parameters, null, isCacheBypass(request),
+                    McpDeadlinePolicy.forCaller(requestedTimeout(request)));
             String json = objectMapper.writeValueAsString(result);
             return Response.ok(json, MediaType.APPLICATION_JSON).build();
             
@@ -627,6 +1079,14 @@ public class McpProxyResource {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity("Tool not found: " + toolName)
                     .build();
+        } catch (McpServerBusyException e) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .entity(e.getMessage())
+                    .build();
+        } catch (McpRequestTimeoutException e) {
+            return Response.status(Response.Status.GATEWAY_TIMEOUT)
+                    .entity(e.getMessage())
+                    .build();
         } catch (JsonProcessingException e) {
             return Response.status(Response.Status.BAD_REQUEST)
                     .entity("Invalid JSON parameters: " + e.getMessage())
@@ -647,7 +1107,7 @@ public class McpProxyResource {
     public Response getResourceEndpoint(@PathParam("resourceName") String resourceName) {
         try {
             init(); // Ensure initialized
-            Object result = getResource(resourceName);
+            Object result = getResource(resourceName, isCacheBypass(request), McpDeadlinePolicy.forCaller(requestedTimeout(request)));
             String json = objectMapper.writeValueAsString(result);
             return Response.ok(json, MediaType.APPLICATION_JSON).build();
             
@@ -655,6 +1115,14 @@ public class McpProxyResource {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity("Resource not found: " + resourceName)
                     .build();
+        } catch (McpServerBusyException e) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .entity(e.getMessage())
+                    .build();
+        } catch (McpRequestTimeoutException e) {
+            return Response.status(Response.Status.GATEWAY_TIMEOUT)
+                    .entity(e.getMessage())
+                    .build();
         } catch (JsonProcessingException e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("Failed to serialize resource: " + e.getMessage())
@@ -671,14 +1139,40 @@ public class McpProxyResource {
     public Response health() {
         try {
             init(); // Ensure initialized
+            ObjectNode health = objectMapper.createObjectNode();
+            health.put("status", initialized ? "UP" : "DOWN");
+            health.put("service", "MCP Proxy");
+            health.put("servers", serverConnections.size());
+            health.put("tools", aggregatedTools.size());
+            health.put("resources", aggregatedResources.size());
+            ObjectNode backends = health.putObject("backends");
+            for (McpServerConnection connection : serverConnections.values()) {
+                ObjectNode backend = backends.putObject(connection.getName());
+                backend.put("connected", connection.isConnected());
+                putPingHealth(backend, connection);
+                McpReplicaSet replicas = replicaSets.get(connection.getName());
+                if (replicas != null) {
+                    backend.put("replicas", replicas.getConnections().size());
+                    backend.put("replicasAvailable", replicas.getAvailableCount());
+                    ArrayNode replicaHealth = backend.putArray("replicaHealth");
+                    for (McpServerConnection replica : replicas.getConnections()) {
+                        ObjectNode entry = replicaHealth.addObject();
+                        entry.put("endpoint", replica.getEndpoint());
+                        entry.put("connected", replica.isConnected());
+                        McpCircuitBreaker replicaBreaker = replica.getCircuitBreaker();
+                        if (replicaBreaker != null) {
+                            entry.put("circuit", replicaBreaker.getState().name());
+                        }
+                        putPingHealth(entry, replica);
+                    }
+                }
+                McpCircuitBreaker breaker = connection.getCircuitBreaker();
+                if (breaker != null) {
+                    backend.put("circuit", breaker.getState().name());
+                }
+            }
             return Response.ok()
-                    .entity("{\n" +
-                            "  \"status\": \"" + (initialized ? "UP" : "DOWN") + "\",\n" +
-                            "  \"service\": \"MCP Proxy\",\n" +
-                            "  \"servers\": " + serverConnections.size() + ",\n" +
-                            "  \"tools\": " + aggregatedTools.size() + ",\n" +
-                            "  \"resources\": " + aggregatedResources.size() + "\n" +
-                            "}")
+                    .entity(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(health))
                     .build();
             
         } catch (Exception e) {
@@ -688,6 +1182,71 @@ public class McpProxyResource {
         }
     }
 
+    // Adds what the health checker has seen of the connection, if it is checking it
+    private void putPingHealth(ObjectNode node, McpServerConnection connection) {
+        ObjectNode ping = healthChecker == null ? null : healthChecker.getHealth(connection);
+        if (ping != null) {
+            node.setAll(ping);
+        }
+    }
+
+    @GET
+    @Path("/metrics")
+    public Response metrics() {
+        try {
+            init(); // Ensure initialized
+            ObjectNode metrics = objectMapper.createObjectNode();
+            metrics.set("sse", McpSseSessionManager.getInstance().getMetrics());
+            metrics.set("notifications", notificationRelay.getMetrics());
+            metrics.set("toolCache", toolResultCache.getMetrics());
+            metrics.set("resourceCache", resourceCache.getMetrics());
+            ObjectNode downstream = metrics.putObject("downstream");
+            downstream.put("inFlight", inflightCalls.size());
+            downstream.put("cancelled", inflightCalls.getCancelled());
+            if (!replicaSets.isEmpty()) {
+                metrics.set("hedging", hedger.getMetrics());
+            }
+            ObjectNode backends = metrics.putObject("backends");
+            for (McpServerConnection connection : serverConnections.values()) {
+                ObjectNode backend = backends.putObject(connection.getName());
+                McpConcurrencyLimiter limiter = connection.getConcurrencyLimiter();
+                if (limiter != null) {
+                    backend.setAll(limiter.getMetrics());
+                }
+                McpCircuitBreaker breaker = connection.getCircuitBreaker();
+                if (breaker != null) {
+                    backend.set("circuitBreaker", breaker.getMetrics());
+                }
+                McpPendingRequests pending = connection.getPendingRequests();
+                if (pending != null) {
+                    backend.set("pending", pending.getMetrics());
+                }
+                backend.put("routes", connection.getMultiplexer().size());
+                McpReplicaSet replicas = replicaSets.get(connection.getName());
+                if (replicas != null) {
+                    backend.set("replicas", replicas.getMetrics());
+                }
+            }
+            if (healthChecker != null) {
+                metrics.set("healthChecks", healthChecker.getMetrics());
+            }
+            if (catalogRefresher != null) {
+                metrics.set("catalogRefresh", catalogRefresher.getMetrics());
+            }
+            if (catalogStore != null) {
+                ObjectNode snapshotMetrics = catalogStore.getMetrics();
+                snapshotMetrics.set("staleServers", objectMapper.valueToTree(staleServers));
+                metrics.set("catalogSnapshot", snapshotMetrics);
+            }
+            return Response.ok(objectMapper.writeValueAsString(metrics), MediaType.APPLICATION_JSON).build();
+            
+        } catch (Exception e) {
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("Metrics collection failed: " + e.getMessage())
+                    .build();
+        }
+    }
+
     @POST
     @Path("/message")
     @Deprecated
@@ -707,7 +1266,10 @@ public class McpProxyResource {
             // If we have a session ID, route to SSE session manager
             if (sessionId != null) {
                 logger.debug("Routing message to SSE session: " + sessionId);
-                McpSseSessionManager.getInstance().handleMessageForSession(sessionId, requestJsonString);
+                Response routed = routeSessionMessage(request, sessionId, requestJsonString);
+                if (routed != null) {
+                    return routed;
+                }
                 // Return accepted response - the actual response will come via SSE
                 return Response.accepted()
                         .header("mcp-version", "2024-11-05")
@@ -736,6 +1298,7 @@ public class McpProxyResource {
             String method = requestJson.get("method").asText();
             JsonNode params = requestJson.has("params") ? requestJson.get("params") : null;
             JsonNode id = getRequestId(requestJson);
+            String mcpSessionId = request.getHeader("Mcp-Session-Id");
             
             // Handle different MCP methods
             Object result = null;
@@ -749,17 +1312,50 @@ public class McpProxyResource {
                     result = null;
                     break;
                 case "tools/list":
-                    result = listAllTools();
+                    try {
+                        result = listAllTools(params);
+                    } catch (IllegalArgumentException e) {
+                        return createJsonRpcErrorResponse(id, -32602, "Invalid params", e.getMessage());
+                    }
                     break;
                 case "tools/call":
-                    result = handleToolCall(params);
+                    McpDeadline callDeadline = beginCall(mcpSessionId, id, params, request, null);
+                    try {
+                        result = handleToolCall(mcpSessionId, id, params, null, isCacheBypass(request), callDeadline);
+                    } catch (McpServerBusyException e) {
+                        return createJsonRpcErrorResponse(id, e.getCode(), e.getReason(), e.getMessage());
+                    } catch (McpRequestTimeoutException e) {
+                        return createJsonRpcErrorResponse(id, e.getCode(), "Request timed out", e.getMessage());
+                    } catch (McpRequestCancelledException e) {
+                        return createJsonRpcErrorResponse(id, e.getCode(), "Request cancelled", e.getMessage());
+                    } finally {
+                        inflightCalls.end(mcpSessionId, id, callDeadline);
+                    }
                     break;
                 case "resources/list":
-                    result = listAllResources();
+                    try {
+                        result = listAllResources(params);
+                    } catch (IllegalArgumentException e) {
+                        return createJsonRpcErrorResponse(id, -32602, "Invalid params", e.getMessage());
+                    }
                     break;
                 case "resources/read":
-                    result = handleResourceRead(params);
+                    McpDeadline readDeadline = beginCall(mcpSessionId, id, params, request, null);
+                    try {
+                        result = handleResourceRead(params, isCacheBypass(request), readDeadline);
+                    } catch (McpServerBusyException e) {
+                        return createJsonRpcErrorResponse(id, e.getCode(), e.getReason(), e.getMessage());
+                    } catch (McpRequestTimeoutException e) {
+                        return createJsonRpcErrorResponse(id, e.getCode(), "Request timed out", e.getMessage());
+                    } catch (McpRequestCancelledException e) {
+                        return createJsonRpcErrorResponse(id, e.getCode(), "Request cancelled", e.getMessage());
+                    } finally {
+                        inflightCalls.end(mcpSessionId, id, readDeadline);
+                    }
                     break;
+                case "notifications/cancelled":
+                    inflightCalls.cancelRequested(mcpSessionId, params);
+                    return Response.accepted().build();
                 default:
                     return createJsonRpcErrorResponse(id, -32601, "Method not found", "Unknown method: " + method);
             }
@@ -808,6 +1404,41 @@ public class McpProxyResource {
         return Response.ok(json, MediaType.APPLICATION_JSON).build();
     }
     
+    /**
+     * Hands a message to its SSE session on this node or the node that owns it.
+     * Returns an error response if it could not be delivered, or null once it was accepted.
+     */
+    private Response routeSessionMessage(HttpServletRequest request, String sessionId, String messageJson) {
+        Map<String, String> passHeaders = new java.util.HashMap<>();
+        for (String name : new String[] {"Authorization", "Cookie"}) {
+            String value = request.getHeader(name);
+            if (value != null) {
+                passHeaders.put(name, value);
+            }
+        }
+        String forwardedBy = request.getHeader(McpMessageForwarder.FORWARDED_BY_HEADER);
+        
+        McpSseSessionManager.Routing routing = McpSseSessionManager.getInstance()
+                .routeMessage(sessionId, messageJson, passHeaders, forwardedBy);
+        switch (routing) {
+            case LOCAL:
+            case FORWARDED:
+                return null;
+            case NOT_FOUND:
+                return Response.status(Response.Status.NOT_FOUND)
+                        .entity(createJsonRpcErrorResponse(null, SESSION_NOT_FOUND, "Session not found",
+                                "No SSE session " + sessionId + "; reconnect to start a new session").getEntity())
+                        .type(MediaType.APPLICATION_JSON)
+                        .build();
+            default:
+                return Response.status(Response.Status.BAD_GATEWAY)
+                        .entity(createJsonRpcErrorResponse(null, -32000, "Session unavailable",
+                                "The gateway node holding session " + sessionId + " could not be reached").getEntity())
+                        .type(MediaType.APPLICATION_JSON)
+                        .build();
+        }
+    }
+    
     private Response createJsonRpcErrorResponse(JsonNode id, int code, String message, String data) {
         try {
             ObjectNode response = objectMapper.createObjectNode();
@@ -834,7 +1465,18 @@ public class McpProxyResource {
         }
     }
     
-    private Object handleToolCall(JsonNode params) throws Exception {
+    private Object handleToolCall(JsonNode params, McpNotificationSink sink) throws Exception {
+        return handleToolCall(null, null, params, sink, false,
+                McpDeadlinePolicy.forCaller(McpDeadlinePolicy.requestedIn(params)));
+    }
+    
+    /**
+     * @param sessionId the downstream session, or null; with the id it names the call upstream
+     * @param id        the JSON-RPC id of the downstream request, or null
+     * @param caller    the downstream request's deadline, cancelled if the client gives up
+     */
+    private Object handleToolCall(String sessionId, JsonNode id, JsonNode params, McpNotificationSink sink,
+                                  boolean bypassCache, McpDeadline caller) throws Exception {
         if (params == null || !params.has("name")) {
             throw new IllegalArgumentException("Missing 'name' parameter for tools/call");
         }
@@ -848,86 +1490,44 @@ public class McpProxyResource {
             arguments = convertedArgs;
         }
         
-        return callToolInternal(toolName, arguments);
+        McpCallContext context = notificationRelay.newCallContext(sink, params, sessionId, id);
+        try {
+            return callToolInternal(toolName, arguments, context, bypassCache, caller);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
     }
     
     private Object handleResourceRead(JsonNode params) throws Exception {
+        return handleResourceRead(params, false, McpDeadlinePolicy.forCaller(McpDeadlinePolicy.requestedIn(params)));
+    }
+    
+    private Object handleResourceRead(JsonNode params, boolean bypassCache, McpDeadline caller) throws Exception {
         if (params == null || !params.has("uri")) {
             throw new IllegalArgumentException("Missing 'uri' parameter for resources/read");
         }
         
         String uri = params.get("uri").asText();
-        return getResource(uri);
+        return getResource(uri, bypassCache, caller);
     }
     
-    private Object listAllTools() throws Exception {
-        // Return tools in MCP format
-        ObjectNode result = objectMapper.createObjectNode();
-        ArrayNode toolsArray = objectMapper.createArrayNode();
-        
-        // Get tools from all aggregated servers
-        for (Map.Entry<String, Object> entry : aggregatedTools.entrySet()) {
-            String toolName = entry.getKey();
-            Object toolData = entry.getValue();
-            
-            ObjectNode toolNode = objectMapper.createObjectNode();
-            toolNode.put("name", toolName);
-            
-            if (toolData instanceof Map) {
-                @SuppressWarnings("unchecked")
-                Map<String, Object> toolMap = (Map<String, Object>) toolData;
-                
-                if (toolMap.containsKey("description")) {
-                    toolNode.put("description", String.valueOf(toolMap.get("description")));
-                }
-                
-                if (toolMap.containsKey("inputSchema")) {
-                    toolNode.set("inputSchema", objectMapper.valueToTree(toolMap.get("inputSchema")));
-                }
-            }
-            
-            toolsArray.add(toolNode);
-        }
-        
-        result.set("tools", toolsArray);
-        return result;
+    private Object listAllTools(JsonNode params) throws Exception {
+        // Return tools in MCP format, one page at a time
+        return currentCatalog().listTools(getCursor(params), listPageSize);
     }
     
-    private Object listAllResources() throws Exception {
-        // Return resources in MCP format
-        ObjectNode result = objectMapper.createObjectNode();
-        ArrayNode resourcesArray = objectMapper.createArrayNode();
-        
-        // Get resources from all aggregated servers
-        for (Map.Entry<String, Object> entry : aggregatedResources.entrySet()) {
-            String resourceUri = entry.getKey();
-            Object resourceData = entry.getValue();
-            
-            ObjectNode resourceNode = objectMapper.createObjectNode();
-            resourceNode.put("uri", resourceUri);
-            
-            if (resourceData instanceof Map) {
-                @SuppressWarnings("unchecked")
-                Map<String, Object> resourceMap = (Map<String, Object>) resourceData;
-                
-                if (resourceMap.containsKey("name")) {
-                    resourceNode.put("name", String.valueOf(resourceMap.get("name")));
-                }
-                
-                if (resourceMap.containsKey("description")) {
-                    resourceNode.put("description", String.valueOf(resourceMap.get("description")));
-                }
-                
-                if (resourceMap.containsKey("mimeType")) {
-                    resourceNode.put("mimeType", String.valueOf(resourceMap.get("mimeType")));
-                }
-            }
-            
-            resourcesArray.add(resourceNode);
+    private Object listAllResources(JsonNode params) throws Exception {
+        // Return resources in MCP format, one page at a time
+        return currentCatalog().listResources(getCursor(params), listPageSize);
+    }
+    
+    private static String getCursor(JsonNode params) {
+        if (params == null || !params.hasNonNull("cursor")) {
+            return null;
         }
-        
-        result.set("resources", resourcesArray);
-        return result;
+        return params.get("cursor").asText();
     }
 
     @GET
@@ -944,7 +1544,7 @@ public class McpProxyResource {
             
             // Enable async processing for SSE
             AsyncContext asyncContext = request.startAsync();
-            asyncContext.setTimeout(0); // No timeout for SSE connections
+            asyncContext.setTimeout(0); // Idle and lifetime limits are enforced by the session manager
             
             // Create SSE session
             McpSseSession session = McpSseSessionManager.getInstance().createSession(asyncContext, this, request);
@@ -1049,24 +1649,60 @@ public class McpProxyResource {
 
     // Methods for SSE session to call
     public Object listAllToolsForMcp() throws Exception {
+        return listAllToolsForMcp(null);
+    }
+    
+    /**
+     * @throws IllegalArgumentException if params carries a cursor this proxy did not issue
+     */
+    public Object listAllToolsForMcp(JsonNode params) throws Exception {
         init(); // Ensure initialized
-        return listAllTools();
+        return listAllTools(params);
     }
     
     public Object listAllResourcesForMcp() throws Exception {
+        return listAllResourcesForMcp(null);
+    }
+    
+    /**
+     * @throws IllegalArgumentException if params carries a cursor this proxy did not issue
+     */
+    public Object listAllResourcesForMcp(JsonNode params) throws Exception {
         init(); // Ensure initialized
-        return listAllResources();
+        return listAllResources(params);
     }
     
     public Object handleToolCallForMcp(JsonNode params) throws Exception {
+        return handleToolCallForMcp(params, null);
+    }
+    
+    /**
+     * Calls a tool, relaying the backend's progress and log notifications to the sink.
+     */
+    public Object handleToolCallForMcp(JsonNode params, McpNotificationSink sink) throws Exception {
         init(); // Ensure initialized
-        return handleToolCall(params);
+        return handleToolCall(params, sink);
+    }
+    
+    /**
+     * Calls a tool for request {@code id} of a session that tracks its own requests; cancelling
+     * the caller's deadline cancels the backend call.
+     */
+    public Object handleToolCallForMcp(JsonNode id, JsonNode params, McpSseSession session,
+                                       McpDeadline caller) throws Exception {
+        init(); // Ensure initialized
+        return handleToolCall(session.getSessionId(), id, params, session, false, caller);
     }
     
     public Object handleResourceReadForMcp(JsonNode params) throws Exception {
         init(); // Ensure initialized
         return handleResourceRead(params);
     }
+    
+    public Object handleResourceReadForMcp(JsonNode params, McpDeadline caller) throws Exception {
+        init(); // Ensure initialized
+        return handleResourceRead(params, false, caller);
+    }
 
     private Object handleInitialize(JsonNode params, String sessionId, Response.ResponseBuilder responseBuilder) throws Exception {
         logger.debug("=== DEBUG: handleInitialize ===");
@@ -1110,13 +1746,13 @@ public class McpProxyResource {
             
             // Tools capability
             ObjectNode tools = objectMapper.createObjectNode();
-            tools.put("listChanged", false);
+            tools.put("listChanged", true);
             capabilities.set("tools", tools);
             
             // Resources capability  
             ObjectNode resources = objectMapper.createObjectNode();
             resources.put("subscribe", false);
-            resources.put("listChanged", false);
+            resources.put("listChanged", true);
             capabilities.set("resources", resources);
             
             result.set("capabilities", capabilities);
@@ -0,0 +1,343 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.client.McpRequestCancelledException;
+import org.apache.knox.mcp.util.McpLogger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * The replicas serving one logical server, each its own connection with its own limiter and
+ * breaker. A call goes to the less loaded of two replicas picked at random, by requests
+ * outstanding and then by smoothed latency, which spreads load nearly as well as asking every
+ * replica while keeping each pick cheap. A replica that fails several calls in a row, or whose
+ * latency is far above that of its peers, is ejected for a while and then re-admitted; an
+ * ejection lasts longer each time it repeats. At most a share of the replicas is ejected at
+ * once, so ejection never takes the whole server away. A replica failing its health checks gets
+ * no calls either.
+ *
+ * <p>The first replica is the primary: the server's catalog and resource subscriptions come
+ * from it, since all replicas serve the same tools and resources.
+ */
+public class McpReplicaSet {
+
+    private static final McpLogger logger = McpLogger.getLogger(McpReplicaSet.class);
+
+    public static final String EJECTION_FAILURES = "mcp.backend.ejection.failures";
+    public static final String EJECTION_LATENCY_FACTOR = "mcp.backend.ejection.latency.factor";
+    public static final String EJECTION_TIME = "mcp.backend.ejection.time";
+    public static final String EJECTION_MAX_PERCENT = "mcp.backend.ejection.max.percent";
+
+    // Weight of each call in the smoothed latency
+    private static final double SMOOTHING = 0.2;
+    // Calls a replica needs before its latency is compared with its peers'
+    private static final int MIN_SAMPLES = 10;
+    // Below this gap in milliseconds a slower replica is not an outlier, whatever the ratio
+    private static final double MIN_LATENCY_GAP_MILLIS = 10;
+    private static final int MAX_EJECTION_MULTIPLIER = 10;
+
+    /**
+     * A request sent to whichever replica the set picks.
+     */
+    public interface ReplicaCall<T> {
+        T call(McpServerConnection replica) throws Exception;
+    }
+
+    private final String name;
+    private final List<Replica> replicas;
+    private final int failureThreshold;
+    private final int latencyFactor;
+    private final long ejectionNanos;
+    private final int maxEjectionPercent;
+    private final LongSupplier nanoClock;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public McpReplicaSet(String name, List<McpServerConnection> connections, int failureThreshold, int latencyFactor,
+                         long ejectionMillis, int maxEjectionPercent, LongSupplier nanoClock) {
+        if (connections.isEmpty()) {
+            throw new IllegalArgumentException("Server " + name + " needs at least one replica");
+        }
+        this.name = name;
+        List<Replica> list = new ArrayList<>(connections.size());
+        for (McpServerConnection connection : connections) {
+            list.add(new Replica(connection));
+        }
+        this.replicas = Collections.unmodifiableList(list);
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.latencyFactor = Math.max(2, latencyFactor);
+        this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ejectionMillis));
+        this.maxEjectionPercent = Math.max(0, Math.min(100, maxEjectionPercent));
+        this.nanoClock = nanoClock;
+    }
+
+    public static McpReplicaSet fromConfig(String name, List<McpServerConnection> connections,
+                                           Function<String, String> config) {
+        return new McpReplicaSet(name, connections,
+            McpSseSessionSettings.parseInt(config.apply(EJECTION_FAILURES), 5, EJECTION_FAILURES),
+            McpSseSessionSettings.parseInt(config.apply(EJECTION_LATENCY_FACTOR), 3, EJECTION_LATENCY_FACTOR),
+            McpSseSessionSettings.parseSeconds(config.apply(EJECTION_TIME), TimeUnit.SECONDS.toMillis(30), EJECTION_TIME),
+            McpSseSessionSettings.parseInt(config.apply(EJECTION_MAX_PERCENT), 50, EJECTION_MAX_PERCENT),
+            System::nanoTime);
+    }
+
+    /**
+     * Sends the call to a replica and records how it went.
+     */
+    public <T> T call(ReplicaCall<T> call) throws Exception {
+        return call(call, null, null);
+    }
+
+    /**
+     * Like {@link #call(ReplicaCall)}, for a call that runs under the deadline, so a timeout the
+     * caller chose is not held against the replica.
+     */
+    public <T> T call(ReplicaCall<T> call, McpDeadline deadline) throws Exception {
+        return call(call, null, deadline);
+    }
+
+    /**
+     * Like {@link #call(ReplicaCall, McpDeadline)}, but prefers any other replica over
+     * {@code avoid}, e.g. the one a hedged request is already waiting on.
+     */
+    public <T> T call(ReplicaCall<T> call, McpServerConnection avoid, McpDeadline deadline) throws Exception {
+        Replica replica = choose(avoid);
+        replica.inFlight.incrementAndGet();
+        long start = nanoClock.getAsLong();
+        try {
+            T result = call.call(replica.connection);
+            recordSuccess(replica, nanoClock.getAsLong() - start);
+            return result;
+        } catch (McpServerBusyException | McpRequestCancelledException e) {
+            // Shed before reaching the replica, or abandoned by the caller; says nothing about it
+            throw e;
+        } catch (Exception e) {
+            if (McpCircuitBreaker.isCallerTimeout(e, deadline)) {
+                // Ran out of the time the caller allowed, not the time the replica is given
+                throw e;
+            }
+            if (McpCircuitBreaker.isFailure(e)) {
+                recordFailure(replica);
+            } else {
+                // A JSON-RPC error answered by the replica shows that it is up
+                recordSuccess(replica, nanoClock.getAsLong() - start);
+            }
+            throw e;
+        } finally {
+            replica.inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Power of two choices among the replicas that can take calls. When none can, every
+     * connected replica is a candidate again, since failing over to nothing helps no one.
+     */
+    Replica choose(McpServerConnection avoid) {
+        long now = nanoClock.getAsLong();
+        List<Replica> candidates = new ArrayList<>(replicas.size());
+        synchronized (this) {
+            for (Replica replica : replicas) {
+                if (isAvailable(replica, now) && replica.connection != avoid) {
+                    candidates.add(replica);
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            for (Replica replica : replicas) {
+                if (replica.connection.isConnected()) {
+                    candidates.add(replica);
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            return replicas.get(0);
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        return lessLoaded(candidates.get(first), candidates.get(second));
+    }
+
+    private static Replica lessLoaded(Replica a, Replica b) {
+        int inFlightA = a.inFlight.get();
+        int inFlightB = b.inFlight.get();
+        if (inFlightA != inFlightB) {
+            return inFlightA < inFlightB ? a : b;
+        }
+        return a.latencyMillis <= b.latencyMillis ? a : b;
+    }
+
+    // Called with this held; re-admits a replica whose ejection has run out
+    private boolean isAvailable(Replica replica, long now) {
+        if (replica.ejectedUntilNanos != 0 && now - replica.ejectedUntilNanos >= 0) {
+            replica.ejectedUntilNanos = 0;
+            replica.consecutiveFailures = 0;
+            replica.samples = 0;
+            logger.info("Re-admitting replica " + replica.connection.getEndpoint() + " of server " + name);
+        }
+        if (replica.ejectedUntilNanos != 0 || !replica.connection.isConnected() || !replica.connection.isHealthy()) {
+            return false;
+        }
+        McpCircuitBreaker breaker = replica.connection.getCircuitBreaker();
+        return breaker == null || breaker.getState() != McpCircuitBreaker.State.OPEN;
+    }
+
+    private synchronized void recordSuccess(Replica replica, long latencyNanos) {
+        replica.successes.incrementAndGet();
+        replica.consecutiveFailures = 0;
+        double millis = latencyNanos / 1e6;
+        replica.latencyMillis = replica.samples == 0 ? millis
+            : replica.latencyMillis + SMOOTHING * (millis - replica.latencyMillis);
+        replica.samples++;
+        if (replica.samples < MIN_SAMPLES || replica.ejectedUntilNanos != 0) {
+            return;
+        }
+        double peerLatency = 0;
+        int peers = 0;
+        long now = nanoClock.getAsLong();
+        for (Replica peer : replicas) {
+            if (peer != replica && peer.samples >= MIN_SAMPLES && isAvailable(peer, now)) {
+                peerLatency += peer.latencyMillis;
+                peers++;
+            }
+        }
+        if (peers == 0) {
+            return;
+        }
+        peerLatency /= peers;
+        if (replica.latencyMillis > latencyFactor * peerLatency
+                && replica.latencyMillis - peerLatency >= MIN_LATENCY_GAP_MILLIS) {
+            eject(replica, String.format("latency of %.1f ms against %.1f ms for its peers",
+                replica.latencyMillis, peerLatency));
+        }
+    }
+
+    private synchronized void recordFailure(Replica replica) {
+        replica.failures.incrementAndGet();
+        if (++replica.consecutiveFailures >= failureThreshold && replica.ejectedUntilNanos == 0) {
+            eject(replica, replica.consecutiveFailures + " failures in a row");
+        }
+    }
+
+    // Called with this held
+    private void eject(Replica replica, String reason) {
+        int ejected = 0;
+        for (Replica other : replicas) {
+            if (other.ejectedUntilNanos != 0) {
+                ejected++;
+            }
+        }
+        // Always leave one replica in, whatever the share allows
+        if (ejected + 1 >= replicas.size() || (ejected + 1) * 100 > maxEjectionPercent * replicas.size()) {
+            return;
+        }
+        long multiplier = Math.min(MAX_EJECTION_MULTIPLIER, replica.ejections.incrementAndGet());
+        replica.ejectedUntilNanos = nanoClock.getAsLong() + ejectionNanos * multiplier;
+        if (replica.ejectedUntilNanos == 0) {
+            replica.ejectedUntilNanos = 1;
+        }
+        logger.warn("Ejecting replica " + replica.connection.getEndpoint() + " of server " + name + " for " +
+            TimeUnit.NANOSECONDS.toSeconds(ejectionNanos * multiplier) + " s after " + reason);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The replica the server's catalog comes from.
+     */
+    public McpServerConnection getPrimary() {
+        return replicas.get(0).connection;
+    }
+
+    public List<McpServerConnection> getConnections() {
+        List<McpServerConnection> connections = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            connections.add(replica.connection);
+        }
+        return connections;
+    }
+
+    /**
+     * Replicas that can take calls right now.
+     */
+    public synchronized int getAvailableCount() {
+        long now = nanoClock.getAsLong();
+        int available = 0;
+        for (Replica replica : replicas) {
+            if (isAvailable(replica, now)) {
+                available++;
+            }
+        }
+        return available;
+    }
+
+    public synchronized ArrayNode getMetrics() {
+        ArrayNode metrics = objectMapper.createArrayNode();
+        long now = nanoClock.getAsLong();
+        for (Replica replica : replicas) {
+            boolean available = isAvailable(replica, now);
+            ObjectNode entry = metrics.addObject();
+            entry
+                .put("endpoint", replica.connection.getEndpoint())
+                .put("connected", replica.connection.isConnected())
+                .put("healthy", replica.connection.isHealthy())
+                .put("available", available)
+                .put("ejected", replica.ejectedUntilNanos != 0)
+                .put("inFlight", replica.inFlight.get())
+                .put("latencyMillis", Math.round(replica.latencyMillis * 10) / 10.0)
+                .put("successes", replica.successes.get())
+                .put("failures", replica.failures.get())
+                .put("ejections", replica.ejections.get());
+            // Each replica is guarded by a breaker and limit of its own
+            McpConcurrencyLimiter limiter = replica.connection.getConcurrencyLimiter();
+            if (limiter != null) {
+                entry.set("concurrency", limiter.getMetrics());
+            }
+            McpCircuitBreaker breaker = replica.connection.getCircuitBreaker();
+            if (breaker != null) {
+                entry.set("circuitBreaker", breaker.getMetrics());
+            }
+        }
+        return metrics;
+    }
+
+    static final class Replica {
+        private final McpServerConnection connection;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong successes = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong ejections = new AtomicLong();
+        // Written with the set held, read without it when picking
+        private volatile double latencyMillis;
+        // Guarded by the set
+        private int samples;
+        private int consecutiveFailures;
+        private long ejectedUntilNanos;
+
+        private Replica(McpServerConnection connection) {
+            this.connection = connection;
+        }
+
+        McpServerConnection getConnection() {
+            return connection;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.util.LongObjectMap;
+
+/**
+ * Maps the requests of all downstream sessions onto the JSON-RPC ids of the one backend
+ * connection that serves them. Two sessions may both send request 1; upstream each gets an
+ * id of its own, and a route leads back from that id to the session, the client's id, the
+ * call's notification context and its deadline. Backend notifications find their call by
+ * backend id without allocating. A downstream cancellation needs no lookup here: it cancels
+ * the caller's deadline, and the backend call's deadline is narrowed from it.
+ */
+public class McpRequestMultiplexer {
+
+    private final Object lock = new Object();
+    // Guarded by lock
+    private final LongObjectMap<Route> byBackendId = new LongObjectMap<>();
+
+    /**
+     * Routes a request about to be sent upstream as {@code backendId}.
+     *
+     * @param session  the downstream session, or null for a request outside of one
+     * @param clientId the id the client gave the request, or null
+     * @param context  where the call's notifications go, or null
+     * @param deadline the deadline of the backend call, or null for the client's default
+     */
+    public Route open(long backendId, String session, JsonNode clientId, McpCallContext context,
+                      McpDeadline deadline) {
+        Route route = new Route(backendId, session, clientId, context, deadline);
+        synchronized (lock) {
+            byBackendId.put(backendId, route);
+        }
+        return route;
+    }
+
+    /**
+     * Removes the route once the backend answered or the call was given up.
+     */
+    public void close(Route route) {
+        synchronized (lock) {
+            byBackendId.remove(route.backendId, route);
+        }
+    }
+
+    /**
+     * The route of a backend request, or null once it completed.
+     */
+    public Route get(long backendId) {
+        synchronized (lock) {
+            return byBackendId.get(backendId);
+        }
+    }
+
+    /**
+     * The only route, or null unless exactly one request is in flight. Notifications that
+     * carry no request id can only be attributed to a call this way.
+     */
+    public Route soleRoute() {
+        synchronized (lock) {
+            return byBackendId.size() == 1 ? byBackendId.anyValue() : null;
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return byBackendId.size();
+        }
+    }
+    /**
+     * A backend request and the downstream request it was sent for.
+     */
+    public static final class Route {
+        private final long backendId;
+        private final String session;
+        private final JsonNode clientId;
+        private final McpCallContext context;
+        private final McpDeadline deadline;
+
+        private Route(long backendId, String session, JsonNode clientId, McpCallContext context,
+                      McpDeadline deadline) {
+            this.backendId = backendId;
+            this.session = session;
+            this.clientId = clientId;
+            this.context = context;
+            this.deadline = deadline;
+        }
+
+        public long getBackendId() {
+            return backendId;
+        }
+
+        public String getSession() {
+            return session;
+        }
+
+        public JsonNode getClientId() {
+            return clientId;
+        }
+
+        /**
+         * Where the call's notifications go, or null.
+         */
+        public McpCallContext getContext() {
+            return context;
+        }
+
+        /**
+         * The deadline of the backend call, or null if it has the client's default.
+         */
+        public McpDeadline getDeadline() {
+            return deadline;
+        }
+    }
+}
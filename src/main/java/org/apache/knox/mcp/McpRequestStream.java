@@ -0,0 +1,133 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.knox.mcp.util.McpLogger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * SSE response to a single POSTed request (Streamable HTTP): notifications are streamed
+ * while the request runs, then the result, then the response is completed. Nothing is
+ * registered with the session manager, so no state outlives the HTTP exchange.
+ */
+public class McpRequestStream implements McpNotificationSink {
+
+    private static final McpLogger logger = McpLogger.getLogger(McpRequestStream.class);
+
+    private final String streamId;
+    private final AsyncContext asyncContext;
+    private final McpSseEventWriter eventWriter;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Runnable> disconnectListeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean aborted = new AtomicBoolean(false);
+
+    public McpRequestStream(String streamId, AsyncContext asyncContext, McpSseSessionSettings settings,
+                            String mcpVersion) throws IOException {
+        this.streamId = streamId;
+        this.asyncContext = asyncContext;
+
+        HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("mcp-version", mcpVersion);
+
+        this.eventWriter = new McpSseEventWriter(streamId, response.getOutputStream(),
+            settings.getQueueCapacity(), settings.getOverflowPolicy(), this::abort);
+
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                eventWriter.close();
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                abort();
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                abort();
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+                // Not re-dispatched
+            }
+        });
+        eventWriter.start();
+    }
+
+    @Override
+    public void sendJsonRpcNotification(String method, JsonNode params) throws IOException {
+        ObjectNode notification = objectMapper.createObjectNode();
+        notification.put("jsonrpc", "2.0");
+        notification.put("method", method);
+        if (params != null) {
+            notification.set("params", params);
+        }
+        eventWriter.offer("message", objectMapper.writeValueAsString(notification), McpSseEventWriter.Priority.LOW);
+    }
+
+    /**
+     * Sends the final JSON-RPC response and ends the HTTP exchange once it has been written.
+     */
+    public void complete(String responseJson) {
+        try {
+            eventWriter.offer("message", responseJson, McpSseEventWriter.Priority.HIGH);
+        } catch (IOException e) {
+            logger.debug("Client went away before the response for " + streamId + " was sent: " + e.getMessage());
+            return;
+        }
+        eventWriter.closeWhenDrained(this::completeAsync);
+    }
+
+    /**
+     * Ends the exchange without sending anything further, e.g. after the client disconnected.
+     */
+    public void abort() {
+        eventWriter.close();
+        completeAsync();
+        if (aborted.compareAndSet(false, true)) {
+            for (Runnable listener : disconnectListeners) {
+                listener.run();
+            }
+        }
+    }
+
+    @Override
+    public void onDisconnect(Runnable listener) {
+        disconnectListeners.add(listener);
+        if (aborted.get()) {
+            listener.run();
+        }
+    }
+
+    private void completeAsync() {
+        try {
+            asyncContext.complete();
+        } catch (IllegalStateException e) {
+            // Already completed
+        }
+    }
+
+    @Override
+    public boolean isFallingBehind() {
+        return eventWriter.getQueueDepth() > 0;
+    }
+
+    public McpSseEventWriter getEventWriter() {
+        return eventWriter;
+    }
+}
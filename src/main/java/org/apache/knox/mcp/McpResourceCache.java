@@ -0,0 +1,179 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.util.McpLogger;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Opt-in cache of {@code resources/read} results keyed by server and URI. How long contents
+ * are kept depends on their MIME type, and the cache is bounded by their size. Entries are
+ * dropped as soon as the backend sends {@code notifications/resources/updated}; a read that
+ * was in flight when any invalidation arrived is returned but not stored, so an update can
+ * never be overwritten by older contents. Expiry, background refresh and stale fallback
+ * follow {@link McpResponseCache}.
+ */
+public class McpResourceCache extends McpResponseCache {
+
+    private static final McpLogger logger = McpLogger.getLogger(McpResourceCache.class);
+
+    /** Comma-separated {@code mimeType:ttlSeconds} rules; {@code text/*} and {@code *} are wildcards */
+    public static final String CACHE_RESOURCES = "mcp.cache.resources";
+    public static final String CACHE_RESOURCES_MAX_BYTES = "mcp.cache.resources.max.bytes";
+
+    static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private final Map<String, Long> ttlMillisByMimeType;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public McpResourceCache(Map<String, Long> ttlMillisByMimeType, long maxBytes) {
+        this(ttlMillisByMimeType, maxBytes, DEFAULT_REFRESH_AHEAD_PERCENT, DEFAULT_STALE_IF_ERROR_MILLIS, System::nanoTime);
+    }
+
+    McpResourceCache(Map<String, Long> ttlMillisByMimeType, long maxBytes, int refreshAheadPercent,
+                     long staleIfErrorMillis, LongSupplier nanoClock) {
+        // Sized for contents averaging tens of kilobytes
+        super(maxBytes, (int) Math.min(1 << 20, Math.max(256, maxBytes / 16384)), refreshAheadPercent,
+              staleIfErrorMillis, nanoClock);
+        this.ttlMillisByMimeType = new HashMap<>(ttlMillisByMimeType);
+    }
+
+    public static McpResourceCache fromConfig(Function<String, String> config) {
+        return new McpResourceCache(parseRules(config.apply(CACHE_RESOURCES)),
+            parseBytes(config, CACHE_RESOURCES_MAX_BYTES, DEFAULT_MAX_BYTES),
+            refreshAheadPercent(config), staleIfErrorMillis(config), System::nanoTime);
+    }
+
+    /**
+     * Parses {@code mimeType:ttlSeconds} rules into TTLs in milliseconds; malformed rules are skipped.
+     */
+    static Map<String, Long> parseRules(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Long> rules = new HashMap<>();
+        for (String rule : value.split(",")) {
+            String trimmed = rule.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int colon = trimmed.lastIndexOf(':');
+            if (colon <= 0) {
+                logger.warn("Ignoring resource cache rule '" + trimmed + "'; expected mimeType:ttlSeconds");
+                continue;
+            }
+            try {
+                long seconds = Long.parseLong(trimmed.substring(colon + 1).trim());
+                if (seconds > 0) {
+                    rules.put(trimmed.substring(0, colon).trim().toLowerCase(), TimeUnit.SECONDS.toMillis(seconds));
+                }
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring resource cache rule '" + trimmed + "'; invalid TTL");
+            }
+        }
+        return rules;
+    }
+
+    public boolean isEnabled() {
+        return !ttlMillisByMimeType.isEmpty();
+    }
+
+    /**
+     * TTL for contents of the MIME type: an exact rule, then {@code type/*}, then {@code *}; 0 if none.
+     */
+    public long getTtlMillis(String mimeType) {
+        if (mimeType != null) {
+            String normalized = mimeType.toLowerCase();
+            int parameters = normalized.indexOf(';');
+            if (parameters >= 0) {
+                normalized = normalized.substring(0, parameters).trim();
+            }
+            Long ttl = ttlMillisByMimeType.get(normalized);
+            int slash = normalized.indexOf('/');
+            if (ttl == null && slash > 0) {
+                ttl = ttlMillisByMimeType.get(normalized.substring(0, slash) + "/*");
+            }
+            if (ttl != null) {
+                return ttl;
+            }
+        }
+        Long fallback = ttlMillisByMimeType.get("*");
+        return fallback == null ? 0 : fallback;
+    }
+
+    /**
+     * Answers from the cache if possible, otherwise reads from the backend and caches the
+     * contents. With bypass set, the cached entry is not consulted but is refreshed. Identical
+     * reads in flight at the same time share one backend call, even when caching is off.
+     */
+    public Object read(String serverName, String uri, boolean bypass, Callable<Object> backendRead) throws Exception {
+        return read(serverName, uri, bypass, null, backendRead, backendRead);
+    }
+
+    /**
+     * Like {@link #read(String, String, boolean, Callable)}, but a caller that joins an identical
+     * read waits for it only until its own deadline passes or it is cancelled.
+     *
+     * @param deadline    the caller's deadline, which limits how long it waits for an identical read
+     * @param backendRead the read on behalf of this caller
+     * @param refreshRead the same read under no caller's deadline, for background refreshes
+     */
+    public Object read(String serverName, String uri, boolean bypass, McpDeadline deadline,
+                       Callable<Object> backendRead, Callable<Object> refreshRead) throws Exception {
+        if (!isEnabled()) {
+            // Reads are idempotent, so concurrent identical reads are still shared
+            return coalesce(key(serverName, uri), bypass, deadline, backendRead);
+        }
+        return lookup(key(serverName, uri), bypass, deadline, backendRead, refreshRead, this::ttlFor);
+    }
+
+    /**
+     * Shortest TTL among the MIME types of the contents; 0 if any of them may not be cached.
+     */
+    private long ttlFor(JsonNode result) {
+        JsonNode contents = result == null ? null : result.get("contents");
+        if (contents == null || !contents.isArray() || contents.size() == 0) {
+            return 0;
+        }
+        long ttl = Long.MAX_VALUE;
+        for (JsonNode content : contents) {
+            JsonNode mimeType = content.get("mimeType");
+            ttl = Math.min(ttl, getTtlMillis(mimeType == null || mimeType.isNull() ? null : mimeType.asText()));
+        }
+        return ttl;
+    }
+
+    /**
+     * Drops the cached contents of one resource, or of every resource of the server if uri is null.
+     */
+    public void invalidate(String serverName, String uri) {
+        if (uri != null) {
+            if (invalidate(key(serverName, uri))) {
+                invalidations.incrementAndGet();
+            }
+        } else {
+            invalidations.addAndGet(invalidatePrefix(serverName + "\u0000"));
+        }
+    }
+
+    private static String key(String serverName, String uri) {
+        return serverName + "\u0000" + uri;
+    }
+
+    @Override
+    public ObjectNode getMetrics() {
+        ObjectNode metrics = super.getMetrics();
+        metrics.put("rules", ttlMillisByMimeType.size());
+        metrics.put("invalidations", invalidations.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,253 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.util.McpLogger;
+import org.apache.knox.mcp.util.SingleFlight;
+import org.apache.knox.mcp.util.WindowTinyLfuCache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Shared behaviour of the tool result and resource caches. An entry read during the last
+ * part of its lifetime is still served, and refreshed once in the background, so callers
+ * do not wait on the backend when it expires. After expiry the entry is kept for a grace
+ * period; if the backend fails during that time, the old answer is served instead of the
+ * error, marked with {@code "_meta": {"stale": true}}. Identical requests that miss at the
+ * same time share a single backend call.
+ */
+abstract class McpResponseCache {
+
+    private static final McpLogger logger = McpLogger.getLogger(McpResponseCache.class);
+
+    /** Percentage of the TTL at the end of an entry's life during which reads trigger a refresh */
+    public static final String REFRESH_AHEAD = "mcp.cache.refresh.ahead";
+    /** Seconds after expiry during which an entry is served if the backend fails */
+    public static final String STALE_IF_ERROR = "mcp.cache.stale.if.error";
+
+    static final int DEFAULT_REFRESH_AHEAD_PERCENT = 20;
+    static final long DEFAULT_STALE_IF_ERROR_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final ThreadPoolExecutor REFRESH_POOL = new ThreadPoolExecutor(4, 4, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(1000), runnable -> {
+            Thread thread = new Thread(runnable, "mcp-cache-refresh-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    static {
+        REFRESH_POOL.allowCoreThreadTimeOut(true);
+    }
+
+    protected final ObjectMapper objectMapper = new ObjectMapper();
+    private final WindowTinyLfuCache<String, Entry> cache;
+    private final SingleFlight<String, Object> flights = new SingleFlight<>();
+    private final LongSupplier nanoClock;
+    private final int refreshAheadPercent;
+    private final long staleIfErrorNanos;
+    private final AtomicLong invalidationSequence = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bypasses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong discardedReads = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong refreshFailures = new AtomicLong();
+    private final AtomicLong staleServed = new AtomicLong();
+
+    McpResponseCache(long maxBytes, int expectedEntries, int refreshAheadPercent, long staleIfErrorMillis,
+                     LongSupplier nanoClock) {
+        this.cache = new WindowTinyLfuCache<>(maxBytes, expectedEntries, nanoClock);
+        this.nanoClock = nanoClock;
+        this.refreshAheadPercent = Math.max(0, Math.min(100, refreshAheadPercent));
+        this.staleIfErrorNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, staleIfErrorMillis));
+    }
+
+    static long parseBytes(Function<String, String> config, String key, long defaultValue) {
+        String value = config.apply(key);
+        if (value != null && !value.trim().isEmpty()) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid value '" + value + "' for " + key + ", using default " + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
+    static int refreshAheadPercent(Function<String, String> config) {
+        return McpSseSessionSettings.parseInt(config.apply(REFRESH_AHEAD), DEFAULT_REFRESH_AHEAD_PERCENT, REFRESH_AHEAD);
+    }
+
+    static long staleIfErrorMillis(Function<String, String> config) {
+        return McpSseSessionSettings.parseSeconds(config.apply(STALE_IF_ERROR), DEFAULT_STALE_IF_ERROR_MILLIS, STALE_IF_ERROR);
+    }
+
+    /**
+     * Serves the key from the cache or the backend.
+     *
+     * @param bypass   skip the cached entry (and stale fallback) but store the new answer
+     * @param deadline how long this caller waits for an identical call it joins; null waits for it
+     * @param load     the backend call on behalf of this caller
+     * @param refresh  the same backend call, safe to run in the background after this caller has gone
+     * @param ttl      how long an answer may be cached in milliseconds; 0 if it may not
+     */
+    protected Object lookup(String key, boolean bypass, McpDeadline deadline, Callable<Object> load,
+                            Callable<Object> refresh, ToLongFunction<JsonNode> ttl) throws Exception {
+        Entry entry = null;
+        if (bypass) {
+            bypasses.incrementAndGet();
+        } else {
+            entry = cache.get(key);
+        }
+        long now = nanoClock.getAsLong();
+        if (entry != null && now - entry.freshUntilNanos < 0) {
+            hits.incrementAndGet();
+            if (now - entry.refreshAtNanos >= 0 && entry.refreshing.compareAndSet(false, true)) {
+                scheduleRefresh(key, refresh, ttl);
+            }
+            return entry.value;
+        }
+        misses.incrementAndGet();
+
+        try {
+            // A bypassing caller asked for a new answer, so it does not join one already in flight
+            return bypass ? loadAndStore(key, load, ttl) : flights.execute(key, deadline, () -> loadAndStore(key, load, ttl));
+        } catch (Exception e) {
+            // The cache only still holds an expired entry during its grace period
+            if (entry != null) {
+                staleServed.incrementAndGet();
+                logger.debug("Serving stale cache entry after backend failure: " + e.getMessage());
+                return markStale(entry.value);
+            }
+            throw e;
+        }
+    }
+
+    private Object loadAndStore(String key, Callable<Object> load, ToLongFunction<JsonNode> ttl) throws Exception {
+        long sequence = invalidationSequence.get();
+        Object result = load.call();
+        JsonNode node = objectMapper.valueToTree(result);
+        return store(key, node, ttl.applyAsLong(node), sequence) ? node : result;
+    }
+
+    /**
+     * Runs an uncacheable but idempotent backend call, sharing it with identical calls in flight.
+     */
+    protected Object coalesce(String key, boolean bypass, McpDeadline deadline, Callable<Object> load) throws Exception {
+        return bypass ? load.call() : flights.execute(key, deadline, load);
+    }
+
+    private void scheduleRefresh(String key, Callable<Object> refresh, ToLongFunction<JsonNode> ttl) {
+        long sequence = invalidationSequence.get();
+        try {
+            REFRESH_POOL.execute(() -> {
+                try {
+                    JsonNode node = objectMapper.valueToTree(refresh.call());
+                    store(key, node, ttl.applyAsLong(node), sequence);
+                    refreshes.incrementAndGet();
+                } catch (Exception e) {
+                    // Left marked as refreshing; the entry is reloaded, or served stale, once it expires
+                    refreshFailures.incrementAndGet();
+                    logger.debug("Background cache refresh failed: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshFailures.incrementAndGet();
+        }
+    }
+
+    private synchronized boolean store(String key, JsonNode node, long ttlMillis, long sequence) throws Exception {
+        if (node == null || ttlMillis <= 0) {
+            return false;
+        }
+        // Anything invalidated while the backend was answering may be older than the update
+        if (invalidationSequence.get() != sequence) {
+            discardedReads.incrementAndGet();
+            return true;
+        }
+        long ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        long now = nanoClock.getAsLong();
+        Entry entry = new Entry(node, now + ttlNanos, now + ttlNanos - ttlNanos * refreshAheadPercent / 100);
+        int size = objectMapper.writeValueAsBytes(node).length + key.length();
+        if (cache.put(key, entry, size, ttlNanos + staleIfErrorNanos)) {
+            stores.incrementAndGet();
+        }
+        return true;
+    }
+
+    private JsonNode markStale(JsonNode value) {
+        if (!value.isObject()) {
+            return value;
+        }
+        // Cached nodes are shared, so the marker goes on a copy
+        ObjectNode copy = ((ObjectNode) value).deepCopy();
+        JsonNode meta = copy.get("_meta");
+        ObjectNode metaNode = meta != null && meta.isObject() ? (ObjectNode) meta : copy.putObject("_meta");
+        metaNode.put("stale", true);
+        return copy;
+    }
+
+    protected synchronized boolean invalidate(String key) {
+        invalidationSequence.incrementAndGet();
+        return cache.invalidate(key);
+    }
+
+    protected synchronized int invalidatePrefix(String prefix) {
+        invalidationSequence.incrementAndGet();
+        return cache.invalidateIf(key -> key.startsWith(prefix));
+    }
+
+    protected ObjectNode getMetrics() {
+        ObjectNode metrics = objectMapper.createObjectNode();
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        metrics.put("entries", cache.size());
+        metrics.put("bytes", cache.weight());
+        metrics.put("maxBytes", cache.getMaximumWeight());
+        metrics.put("hits", hitCount);
+        metrics.put("misses", missCount);
+        metrics.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        metrics.put("bypasses", bypasses.get());
+        metrics.put("stores", stores.get());
+        metrics.put("refreshes", refreshes.get());
+        metrics.put("refreshFailures", refreshFailures.get());
+        metrics.put("staleServed", staleServed.get());
+        metrics.put("discardedReads", discardedReads.get());
+        metrics.put("inFlight", flights.inFlight());
+        metrics.put("backendCalls", flights.getCalls());
+        metrics.put("coalesced", flights.getShared());
+        metrics.put("coalescedRerun", flights.getRerun());
+        metrics.put("evictions", cache.getEvictions());
+        metrics.put("expirations", cache.getExpirations());
+        metrics.put("rejections", cache.getRejections());
+        return metrics;
+    }
+
+    private static final class Entry {
+        private final JsonNode value;
+        private final long freshUntilNanos;
+        private final long refreshAtNanos;
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+        private Entry(JsonNode value, long freshUntilNanos, long refreshAtNanos) {
+            this.value = value;
+            this.freshUntilNanos = freshUntilNanos;
+            this.refreshAtNanos = refreshAtNanos;
+        }
+    }
+}
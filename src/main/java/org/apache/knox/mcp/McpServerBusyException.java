@@ -0,0 +1,31 @@
+package org.apache.knox.mcp;
+
+import org.apache.knox.mcp.client.McpException;
+
+/**
+ * A request was turned away without reaching the backend because too many requests for it
+ * are already running and waiting. Callers may retry later.
+ */
+public class McpServerBusyException extends McpException {
+
+    /** Same code the SSE sessions answer with when they are saturated */
+    public static final int SERVER_BUSY = -32000;
+
+    private final String reason;
+
+    public McpServerBusyException(String message) {
+        this("Server busy", message);
+    }
+
+    protected McpServerBusyException(String reason, String message) {
+        super(SERVER_BUSY, message);
+        this.reason = reason;
+    }
+
+    /**
+     * Short description for the {@code message} field of the JSON-RPC error.
+     */
+    public String getReason() {
+        return reason;
+    }
+}
@@ -4,13 +4,32 @@ import org.apache.knox.mcp.client.McpJsonRpcClient;
 import org.apache.knox.mcp.client.McpHttpClient;
 import org.apache.knox.mcp.client.McpSseClient;
 import org.apache.knox.mcp.client.McpCustomHttpSseClient;
+import org.apache.knox.mcp.client.McpPendingRequests;
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.client.McpRequestCancelledException;
+import org.apache.knox.mcp.client.McpRequestTimeoutException;
 import org.apache.knox.mcp.client.McpTool;
 import org.apache.knox.mcp.client.McpResource;
+import org.apache.knox.mcp.catalog.McpCatalogInterner;
+import org.apache.knox.mcp.catalog.McpResourceDescriptor;
+import org.apache.knox.mcp.catalog.McpToolDescriptor;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.HashMap;
 import java.util.List;
 
@@ -22,17 +41,53 @@ public class McpServerConnection {
     private McpSseClient sseClient;
     private McpCustomHttpSseClient customHttpSseClient;
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private boolean connected = false;
+    private volatile boolean connected = false;
+    // Set by the health checker from the outcome of its pings
+    private volatile boolean healthy = true;
     private TransportType transportType = TransportType.STDIO;
     
     private enum TransportType {
         STDIO, HTTP, SSE, CUSTOM_HTTP_SSE
     }
     
-    private final Map<String, Object> cachedTools = new ConcurrentHashMap<>();
-    private final Map<String, Object> cachedResources = new ConcurrentHashMap<>();
+    // Replaced as a whole on refresh so readers never see a half-built catalog
+    private volatile Map<String, McpToolDescriptor> cachedTools = Collections.emptyMap();
+    private volatile Map<String, McpResourceDescriptor> cachedResources = Collections.emptyMap();
     private java.util.Set<String> allowedStdioCommands;
 
+    // Tool calls in flight for downstream requests, by the id they were sent upstream with
+    private final McpRequestMultiplexer multiplexer = new McpRequestMultiplexer();
+
+    // Re-fetches run off the client reader threads, which deliver the list responses
+    private static final ExecutorService CATALOG_REFRESH = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mcp-catalog-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger refreshRequests = new AtomicInteger();
+    private volatile Consumer<McpServerConnection> catalogListener;
+
+    // URIs the backend has agreed to send notifications/resources/updated for; lost on reconnect
+    private final java.util.Set<String> subscribedResources = ConcurrentHashMap.newKeySet();
+    // URIs a background subscription was started for, so each is tried once per backend session
+    private final java.util.Set<String> subscriptionsRequested = ConcurrentHashMap.newKeySet();
+    // Subscriptions run off the request path, so a slow or dead backend never delays a read
+    private static final ThreadPoolExecutor SUBSCRIBE_POOL = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(1000), runnable -> {
+            Thread thread = new Thread(runnable, "mcp-resource-subscribe");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    static {
+        SUBSCRIBE_POOL.allowCoreThreadTimeOut(true);
+    }
+    private volatile BiConsumer<McpServerConnection, String> resourceListener;
+
+    // Guard tool calls and resource reads; null leaves them unguarded
+    private volatile McpConcurrencyLimiter concurrencyLimiter;
+    private volatile McpCircuitBreaker circuitBreaker;
+
     public McpServerConnection(String name, String endpoint) {
         this(name, endpoint, null);
     }
@@ -87,6 +142,7 @@ public class McpServerConnection {
         
         // Create and initialize the stdio MCP client with allowlist validation
         stdioClient = new McpJsonRpcClient(cmd, args, allowedStdioCommands);
+        stdioClient.setNotificationListener(this::onBackendNotification);
         
         // Initialize the connection with capabilities
         JsonNode clientCapabilities = objectMapper.createObjectNode();
@@ -97,6 +153,7 @@ public class McpServerConnection {
     private void connectHttp() throws Exception {
         // Create and initialize the standard HTTP MCP client
         httpClient = new McpHttpClient(endpoint);
+        httpClient.setNotificationListener(this::onBackendNotification);
         httpClient.connect();
         
         // Initialize the connection with capabilities
@@ -111,6 +168,7 @@ public class McpServerConnection {
         
         // Create and initialize the standard SSE MCP client
         sseClient = new McpSseClient(httpUrl);
+        sseClient.setNotificationListener(this::onBackendNotification);
         sseClient.connect();
         
         // Initialize the connection with capabilities
@@ -125,6 +183,7 @@ public class McpServerConnection {
         
         // Create and initialize the custom HTTP/SSE MCP client
         customHttpSseClient = new McpCustomHttpSseClient(httpUrl);
+        customHttpSseClient.setNotificationListener(this::onBackendNotification);
         customHttpSseClient.connect();
         
         // Initialize the connection with capabilities
@@ -174,132 +233,469 @@ public class McpServerConnection {
             System.out.println("Disconnected from MCP server: " + name);
         } finally {
             connected = false;
-            cachedTools.clear();
-            cachedResources.clear();
+            cachedTools = Collections.emptyMap();
+            cachedResources = Collections.emptyMap();
+            resetResourceSubscriptions();
+        }
+    }
+
+    /**
+     * Called with this connection after its tools and resources were re-fetched, e.g. because
+     * the backend announced a list change or the connection was re-established.
+     */
+    public void setCatalogListener(Consumer<McpServerConnection> catalogListener) {
+        this.catalogListener = catalogListener;
+    }
+
+    /**
+     * Called with this connection and a resource URI when the backend reports that the
+     * resource changed, and with a null URI when updates may have been missed, e.g. across
+     * a reconnect.
+     */
+    public void setResourceListener(BiConsumer<McpServerConnection, String> resourceListener) {
+        this.resourceListener = resourceListener;
+    }
+
+    public void setConcurrencyLimiter(McpConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    public McpConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    public void setCircuitBreaker(McpCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public McpCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * The tool calls in flight and the downstream requests they serve.
+     */
+    public McpRequestMultiplexer getMultiplexer() {
+        return multiplexer;
+    }
+
+    /**
+     * Requests awaiting a response from the backend, or null before the first connect.
+     */
+    public McpPendingRequests getPendingRequests() {
+        if (stdioClient != null) {
+            return stdioClient.getPendingRequests();
+        }
+        if (httpClient != null) {
+            return httpClient.getPendingRequests();
         }
+        if (sseClient != null) {
+            return sseClient.getPendingRequests();
+        }
+        return customHttpSseClient != null ? customHttpSseClient.getPendingRequests() : null;
     }
 
-    public Map<String, Object> getTools() {
-        return new ConcurrentHashMap<>(cachedTools);
+    /**
+     * The backend's tools by name; the returned map is immutable and is not copied.
+     */
+    public Map<String, McpToolDescriptor> getTools() {
+        return cachedTools;
     }
 
-    public Map<String, Object> getResources() {
-        return new ConcurrentHashMap<>(cachedResources);
+    /**
+     * The backend's resources by URI; the returned map is immutable and is not copied.
+     */
+    public Map<String, McpResourceDescriptor> getResources() {
+        return cachedResources;
     }
 
     public Object callTool(String toolName, Map<String, Object> parameters) throws Exception {
+        return callTool(toolName, parameters, null);
+    }
+
+    /**
+     * Calls a tool, relaying the backend's progress and log notifications for the call to
+     * the given context. A null context ignores them.
+     *
+     * @throws McpServerBusyException if the backend is failing, or already has too many calls
+     *         running and waiting
+     */
+    public Object callTool(String toolName, Map<String, Object> parameters, McpCallContext context) throws Exception {
+        return callTool(toolName, parameters, context, null);
+    }
+
+    /**
+     * Like {@link #callTool(String, Map, McpCallContext)}, but waits for a free slot and for the
+     * backend only until the deadline; a null deadline uses the client's default timeout.
+     */
+    public Object callTool(String toolName, Map<String, Object> parameters, McpCallContext context,
+                           McpDeadline deadline) throws Exception {
+        return guarded(toolName, deadline, () -> invokeTool(toolName, parameters, context, deadline));
+    }
+
+    private Object invokeTool(String toolName, Map<String, Object> parameters, McpCallContext context,
+                              McpDeadline deadline) throws Exception {
         ensureConnectionAlive(); // Check and potentially reconnect
 
+        McpRequestMultiplexer.Route route = null;
+        boolean reportProgress = context != null && context.isRelaying();
         try {
             JsonNode result;
             switch (transportType) {
                 case STDIO:
-                    result = stdioClient.callTool(toolName, parameters);
+                    route = openRoute(stdioClient.nextRequestId(), context, deadline);
+                    result = stdioClient.callTool(route.getBackendId(), toolName, parameters, reportProgress, deadline);
                     break;
                 case HTTP:
-                    result = httpClient.callTool(toolName, parameters);
+                    route = openRoute(httpClient.nextRequestId(), context, deadline);
+                    result = httpClient.callTool(route.getBackendId(), toolName, parameters, reportProgress, deadline);
                     break;
                 case SSE:
-                    result = sseClient.callTool(toolName, parameters);
+                    route = openRoute(sseClient.nextRequestId(), context, deadline);
+                    result = sseClient.callTool(route.getBackendId(), toolName, parameters, reportProgress, deadline);
                     break;
                 case CUSTOM_HTTP_SSE:
-                    result = customHttpSseClient.callTool(toolName, parameters);
+                    route = openRoute(customHttpSseClient.nextRequestId(), context, deadline);
+                    result = customHttpSseClient.callTool(route.getBackendId(), toolName, parameters, reportProgress,
+                                                          deadline);
                     break;
                 default:
                     throw new IllegalStateException("Unknown transport type: " + transportType);
             }
             System.out.println("Called tool: " + toolName + " on server: " + name);
             return objectMapper.convertValue(result, Object.class);
+        } catch (McpRequestTimeoutException | McpRequestCancelledException e) {
+            // Passed on as is, so it can be answered with its own error code
+            throw e;
         } catch (Exception e) {
             throw new Exception("Failed to call tool '" + toolName + "' on server: " + name, e);
+        } finally {
+            if (route != null) {
+                multiplexer.close(route);
+            }
+        }
+    }
+
+    private McpRequestMultiplexer.Route openRoute(long backendId, McpCallContext context, McpDeadline deadline) {
+        return context != null
+            ? multiplexer.open(backendId, context.getSession(), context.getRequestId(), context, deadline)
+            : multiplexer.open(backendId, null, null, null, deadline);
+    }
+
+    private void onBackendNotification(String method, JsonNode params) {
+        if ("notifications/tools/list_changed".equals(method) || "notifications/resources/list_changed".equals(method)) {
+            requestCatalogRefresh();
+        } else if ("notifications/resources/updated".equals(method)) {
+            BiConsumer<McpServerConnection, String> listener = resourceListener;
+            if (listener != null && params != null && params.hasNonNull("uri")) {
+                listener.accept(this, params.get("uri").asText());
+            }
+        } else if ("notifications/progress".equals(method)) {
+            // Progress is requested under the backend request id, so the token finds the route
+            JsonNode token = params != null ? params.get("progressToken") : null;
+            if (token == null || !token.isIntegralNumber()) {
+                return;
+            }
+            McpRequestMultiplexer.Route route = multiplexer.get(token.longValue());
+            if (route != null && route.getContext() != null) {
+                route.getContext().relayProgress(params);
+            }
+        } else if ("notifications/message".equals(method)) {
+            // Log messages carry no request id; relay them only when they can belong to a single
+            // call, so one session never sees another session's logs
+            McpRequestMultiplexer.Route route = multiplexer.soleRoute();
+            if (route != null && route.getContext() != null) {
+                route.getContext().relayLog(params);
+            }
+        }
+    }
+
+    /**
+     * Subscribes to updates of the resource, once per connection, if the backend supports
+     * subscriptions. Returns whether updates will be reported.
+     */
+    public boolean subscribeResource(String uri) throws Exception {
+        if (subscribedResources.contains(uri)) {
+            return true;
+        }
+        JsonNode capabilities = getServerCapabilities();
+        if (capabilities == null || !capabilities.path("resources").path("subscribe").asBoolean(false)) {
+            return false;
+        }
+        ensureConnectionAlive();
+        switch (transportType) {
+            case STDIO:
+                stdioClient.subscribeResource(uri);
+                break;
+            case HTTP:
+                httpClient.subscribeResource(uri);
+                break;
+            case SSE:
+                sseClient.subscribeResource(uri);
+                break;
+            case CUSTOM_HTTP_SSE:
+                customHttpSseClient.subscribeResource(uri);
+                break;
+            default:
+                throw new IllegalStateException("Unknown transport type: " + transportType);
+        }
+        subscribedResources.add(uri);
+        return true;
+    }
+
+    /**
+     * Subscribes to updates of the resource in the background, once per backend session; the
+     * subscription goes through the circuit breaker and concurrency limit like a read. Once
+     * it is in place the resource is reported as updated, since a change between the read
+     * that asked for it and the subscription would otherwise go unnoticed.
+     */
+    public void subscribeResourceInBackground(String uri) {
+        if (subscribedResources.contains(uri) || !subscriptionsRequested.add(uri)) {
+            return;
+        }
+        try {
+            SUBSCRIBE_POOL.execute(() -> {
+                try {
+                    Object subscribed = guarded(null, null, () -> subscribeResource(uri));
+                    BiConsumer<McpServerConnection, String> listener = resourceListener;
+                    if (Boolean.TRUE.equals(subscribed) && listener != null) {
+                        listener.accept(this, uri);
+                    }
+                } catch (Exception e) {
+                    // Not retried until the next backend session; the cache TTL still bounds staleness
+                    System.err.println("Failed to subscribe to " + uri + " on server: " + name + " - " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Tried again on a later read
+            subscriptionsRequested.remove(uri);
+        }
+    }
+
+    private JsonNode getServerCapabilities() {
+        switch (transportType) {
+            case STDIO:
+                return stdioClient == null ? null : stdioClient.getServerCapabilities();
+            case HTTP:
+                return httpClient == null ? null : httpClient.getServerCapabilities();
+            case SSE:
+                return sseClient == null ? null : sseClient.getServerCapabilities();
+            case CUSTOM_HTTP_SSE:
+                return customHttpSseClient == null ? null : customHttpSseClient.getServerCapabilities();
+            default:
+                return null;
         }
     }
 
+    // A new backend session knows nothing of earlier subscriptions, so updates may have been missed
+    private void resetResourceSubscriptions() {
+        subscribedResources.clear();
+        subscriptionsRequested.clear();
+        BiConsumer<McpServerConnection, String> listener = resourceListener;
+        if (listener != null) {
+            listener.accept(this, null);
+        }
+    }
+
+    /**
+     * Reads a resource from the backend.
+     *
+     * @throws McpServerBusyException if the backend is failing, or already has too many calls
+     *         running and waiting
+     */
     public Object getResource(String resourceName) throws Exception {
+        return getResource(resourceName, null);
+    }
+
+    /**
+     * Reads a resource from the backend, giving up at the deadline; a null deadline uses the
+     * client's default timeout.
+     */
+    public Object getResource(String resourceName, McpDeadline deadline) throws Exception {
+        return guarded(null, deadline, () -> readResource(resourceName, deadline));
+    }
+
+    // The breaker goes outside the limit, so calls to a failing backend never queue
+    private Object guarded(String toolName, McpDeadline deadline, Callable<Object> call) throws Exception {
+        McpConcurrencyLimiter limiter = concurrencyLimiter;
+        Callable<Object> limited = limiter == null ? call
+            : () -> limiter.call(limiter.getWeight(toolName), deadline, call);
+        McpCircuitBreaker breaker = circuitBreaker;
+        return breaker == null ? limited.call() : breaker.call(deadline, limited);
+    }
+
+    private Object readResource(String resourceName, McpDeadline deadline) throws Exception {
         ensureConnectionAlive(); // Check and potentially reconnect
 
         try {
             JsonNode result;
             switch (transportType) {
                 case STDIO:
-                    result = stdioClient.readResource(resourceName);
+                    result = stdioClient.readResource(resourceName, deadline);
                     break;
                 case HTTP:
-                    result = httpClient.readResource(resourceName);
+                    result = httpClient.readResource(resourceName, deadline);
                     break;
                 case SSE:
-                    result = sseClient.readResource(resourceName);
+                    result = sseClient.readResource(resourceName, deadline);
                     break;
                 case CUSTOM_HTTP_SSE:
-                    result = customHttpSseClient.readResource(resourceName);
+                    result = customHttpSseClient.readResource(resourceName, deadline);
                     break;
                 default:
                     throw new IllegalStateException("Unknown transport type: " + transportType);
             }
             System.out.println("Read resource: " + resourceName + " from server: " + name);
             return objectMapper.convertValue(result, Object.class);
+        } catch (McpRequestTimeoutException | McpRequestCancelledException e) {
+            // Passed on as is, so it can be answered with its own error code
+            throw e;
         } catch (Exception e) {
             throw new Exception("Failed to get resource '" + resourceName + "' from server: " + name, e);
         }
     }
 
+    /**
+     * Sends an MCP {@code ping} to the backend. It bypasses the concurrency limit and the
+     * breaker, so a probe still reaches a backend that is busy or shedding calls.
+     */
+    public void ping(McpDeadline deadline) throws Exception {
+        ensureConnectionAlive();
+        switch (transportType) {
+            case STDIO:
+                stdioClient.ping(deadline);
+                break;
+            case HTTP:
+                httpClient.ping(deadline);
+                break;
+            case SSE:
+                sseClient.ping(deadline);
+                break;
+            case CUSTOM_HTTP_SSE:
+                customHttpSseClient.ping(deadline);
+                break;
+            default:
+                throw new IllegalStateException("Unknown transport type: " + transportType);
+        }
+    }
+
+    /**
+     * Whether the last health checks found the backend answering. A backend that has not been
+     * checked counts as healthy.
+     */
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    void setHealthy(boolean healthy) {
+        this.healthy = healthy;
+    }
+
+    /**
+     * Schedules a re-fetch of the catalog. Announcements that arrive while one is queued or
+     * running are folded into a single further re-fetch.
+     */
+    void requestCatalogRefresh() {
+        if (refreshRequests.getAndIncrement() > 0) {
+            return;
+        }
+        CATALOG_REFRESH.execute(() -> {
+            int handled;
+            do {
+                handled = refreshRequests.get();
+                if (connected) {
+                    refreshToolsAndResources();
+                }
+            } while (refreshRequests.addAndGet(-handled) > 0);
+        });
+    }
+
     private void refreshToolsAndResources() {
         try {
-            List<McpTool> tools;
-            List<McpResource> resources;
-            
-            switch (transportType) {
-                case STDIO:
-                    tools = stdioClient.listTools();
-                    resources = stdioClient.listResources();
-                    break;
-                case HTTP:
-                    tools = httpClient.listTools();
-                    resources = httpClient.listResources();
-                    break;
-                case SSE:
-                    tools = sseClient.listTools();
-                    resources = sseClient.listResources();
-                    break;
-                case CUSTOM_HTTP_SSE:
-                    tools = customHttpSseClient.listTools();
-                    resources = customHttpSseClient.listResources();
-                    break;
-                default:
-                    throw new IllegalStateException("Unknown transport type: " + transportType);
-            }
-            
-            // Refresh tools
-            cachedTools.clear();
-            for (McpTool tool : tools) {
-                Map<String, Object> toolMap = new HashMap<>();
-                toolMap.put("name", tool.getName());
-                toolMap.put("description", tool.getDescription());
-                if (tool.getInputSchema() != null) {
-                    toolMap.put("inputSchema", objectMapper.convertValue(tool.getInputSchema(), Object.class));
-                }
-                cachedTools.put(tool.getName(), toolMap);
-            }
-            
-            // Refresh resources
-            cachedResources.clear();
-            for (McpResource resource : resources) {
-                Map<String, Object> resourceMap = new HashMap<>();
-                resourceMap.put("uri", resource.getUri());
-                resourceMap.put("name", resource.getName());
-                resourceMap.put("description", resource.getDescription());
-                if (resource.getMimeType() != null) {
-                    resourceMap.put("mimeType", resource.getMimeType());
-                }
-                cachedResources.put(resource.getUri(), resourceMap);
-            }
-            
-            System.out.println("Discovered " + cachedTools.size() + " tools and " + 
-                             cachedResources.size() + " resources from server: " + name);
-            
+            publishCatalog(fetchCatalog());
         } catch (Exception e) {
             System.err.println("Failed to refresh tools/resources from server: " + name + " - " + e.getMessage());
-            // Keep empty caches on error
+            // Keep the previous caches on error
+        }
+    }
+
+    /**
+     * Lists the backend's tools and resources without touching the cached catalog.
+     */
+    Catalog fetchCatalog() throws Exception {
+        List<McpTool> tools;
+        List<McpResource> resources;
+        
+        switch (transportType) {
+            case STDIO:
+                tools = stdioClient.listTools();
+                resources = stdioClient.listResources();
+                break;
+            case HTTP:
+                tools = httpClient.listTools();
+                resources = httpClient.listResources();
+                break;
+            case SSE:
+                tools = sseClient.listTools();
+                resources = sseClient.listResources();
+                break;
+            case CUSTOM_HTTP_SSE:
+                tools = customHttpSseClient.listTools();
+                resources = customHttpSseClient.listResources();
+                break;
+            default:
+                throw new IllegalStateException("Unknown transport type: " + transportType);
+        }
+        
+        // Schemas and strings repeat heavily across tools and backends, so they are shared
+        McpCatalogInterner interner = McpCatalogInterner.shared();
+        Map<String, McpToolDescriptor> refreshedTools = new LinkedHashMap<>();
+        for (McpTool tool : tools) {
+            refreshedTools.put(tool.getName(),
+                interner.tool(tool.getName(), tool.getDescription(), tool.getInputSchema()));
+        }
+        
+        Map<String, McpResourceDescriptor> refreshedResources = new LinkedHashMap<>();
+        for (McpResource resource : resources) {
+            refreshedResources.put(resource.getUri(), interner.resource(resource.getUri(), resource.getName(),
+                resource.getDescription(), resource.getMimeType()));
+        }
+        
+        System.out.println("Discovered " + refreshedTools.size() + " tools and " + 
+                         refreshedResources.size() + " resources from server: " + name);
+        return new Catalog(Collections.unmodifiableMap(refreshedTools),
+                           Collections.unmodifiableMap(refreshedResources));
+    }
+
+    /**
+     * Replaces the cached catalog and notifies the catalog listener, unless nothing changed.
+     *
+     * @return whether the catalog changed
+     */
+    synchronized boolean publishCatalog(Catalog catalog) {
+        if (catalog.tools.equals(cachedTools) && catalog.resources.equals(cachedResources)) {
+            return false;
+        }
+        cachedTools = catalog.tools;
+        cachedResources = catalog.resources;
+        
+        Consumer<McpServerConnection> listener = catalogListener;
+        if (listener != null) {
+            listener.accept(this);
+        }
+        return true;
+    }
+
+    /**
+     * Tools and resources as listed by the backend at one point in time.
+     */
+    static final class Catalog {
+        private final Map<String, McpToolDescriptor> tools;
+        private final Map<String, McpResourceDescriptor> resources;
+
+        Catalog(Map<String, McpToolDescriptor> tools, Map<String, McpResourceDescriptor> resources) {
+            this.tools = tools;
+            this.resources = resources;
         }
     }
 
@@ -326,6 +722,7 @@ public class McpServerConnection {
             try {
                 sseClient.close(); // Clean up the old connection
                 connectSse(); // Reconnect
+                resetResourceSubscriptions();
                 refreshToolsAndResources(); // Refresh after reconnection
                 System.out.println("DEBUG: Successfully reconnected SSE client for server: " + name);
             } catch (Exception e) {
@@ -340,6 +737,7 @@ public class McpServerConnection {
             try {
                 customHttpSseClient.close(); // Clean up the old connection
                 connectCustomHttpSse(); // Reconnect
+                resetResourceSubscriptions();
                 refreshToolsAndResources(); // Refresh after reconnection
                 System.out.println("DEBUG: Successfully reconnected custom HTTP/SSE client for server: " + name);
             } catch (Exception e) {
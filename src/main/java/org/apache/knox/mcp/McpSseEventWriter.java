@@ -0,0 +1,342 @@
+package org.apache.knox.mcp;
+
+import org.apache.knox.mcp.util.McpLogger;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded outbound queue for an SSE stream, drained with Servlet 3.1 non-blocking output.
+ * Producers only enqueue; bytes are written while the container reports the stream ready,
+ * and the container resumes draining through {@link #onWritePossible()} when a slow client
+ * catches up. No producer thread ever blocks on a client socket.
+ */
+public class McpSseEventWriter implements WriteListener {
+
+    private static final McpLogger logger = McpLogger.getLogger(McpSseEventWriter.class);
+
+    /**
+     * Protocol traffic (responses, errors, handshake events) is never shed; notifications may be.
+     */
+    public enum Priority {
+        HIGH, LOW
+    }
+
+    /**
+     * What to do when the queue is full.
+     */
+    public enum OverflowPolicy {
+        /** Give up on the client and close its stream */
+        CLOSE_SESSION,
+        /** Drop low-priority events to make room; close only if nothing can be shed */
+        SHED_NOTIFICATIONS;
+
+        public static OverflowPolicy fromConfig(String value, OverflowPolicy defaultPolicy) {
+            if (value == null || value.trim().isEmpty()) {
+                return defaultPolicy;
+            }
+            String normalized = value.trim().toLowerCase();
+            if (normalized.equals("close") || normalized.equals("close-session")) {
+                return CLOSE_SESSION;
+            }
+            if (normalized.equals("shed") || normalized.equals("shed-notifications")) {
+                return SHED_NOTIFICATIONS;
+            }
+            logger.warn("Unknown SSE overflow policy '" + value + "', using " + defaultPolicy);
+            return defaultPolicy;
+        }
+    }
+
+    private final String streamId;
+    private final ServletOutputStream out;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final Runnable onFailure;
+
+    private final ConcurrentLinkedDeque<Event> queue = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+    private volatile Runnable onDrained;
+    private final AtomicBoolean drainedFired = new AtomicBoolean(false);
+
+    // Metrics
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final AtomicLong eventsWritten = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong eventsDropped = new AtomicLong();
+    private volatile long lastWriteNanos = System.nanoTime();
+
+    public McpSseEventWriter(String streamId, ServletOutputStream out, int capacity,
+                             OverflowPolicy overflowPolicy, Runnable onFailure) {
+        this.streamId = streamId;
+        this.out = out;
+        this.capacity = Math.max(1, capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.onFailure = onFailure;
+    }
+
+    /**
+     * Registers with the container; events queued before this call are written once it
+     * signals that the stream is ready.
+     */
+    public void start() {
+        if (started.compareAndSet(false, true)) {
+            out.setWriteListener(this);
+        }
+    }
+
+    /**
+     * Queues an SSE event. Returns false if the event was shed or the stream is closed.
+     *
+     * @throws IOException if the queue overflowed and the stream had to be closed
+     */
+    public boolean offer(String eventType, String data, Priority priority) throws IOException {
+        return enqueue(encodeEvent(eventType, data), priority);
+    }
+
+    /**
+     * Queues an SSE comment line, which clients ignore; used for keep-alive heartbeats.
+     *
+     * @throws IOException if the queue overflowed and the stream had to be closed
+     */
+    public boolean offerComment(String comment, Priority priority) throws IOException {
+        return enqueue((": " + comment + "\n\n").getBytes(StandardCharsets.UTF_8), priority);
+    }
+
+    boolean enqueue(byte[] payload, Priority priority) throws IOException {
+        if (closed || onDrained != null) {
+            return false;
+        }
+
+        int newDepth = reserveSlot(priority);
+        if (newDepth < 0) {
+            return false;
+        }
+        if (closed) {
+            // Closed while the slot was being reserved, which may already have reset the depth
+            depth.updateAndGet(current -> Math.max(0, current - 1));
+            return false;
+        }
+        queue.offer(new Event(payload, priority, System.nanoTime()));
+        int currentMax;
+        while (newDepth > (currentMax = maxDepth.get()) && !maxDepth.compareAndSet(currentMax, newDepth)) {
+            // retry
+        }
+        drain();
+        return true;
+    }
+
+    /**
+     * Claims a place in the queue before the event is added, so concurrent producers cannot
+     * together go past the capacity. Returns the new depth, or -1 if the event was shed.
+     *
+     * @throws IOException if the queue is full and the stream had to be closed
+     */
+    private int reserveSlot(Priority priority) throws IOException {
+        while (true) {
+            int current = depth.get();
+            if (current < capacity) {
+                if (depth.compareAndSet(current, current + 1)) {
+                    return current + 1;
+                }
+                continue;
+            }
+            if (makeRoom(priority)) {
+                // An evicted notification freed a place, which another producer may take first
+                continue;
+            }
+            if (priority == Priority.LOW && overflowPolicy == OverflowPolicy.SHED_NOTIFICATIONS) {
+                eventsDropped.incrementAndGet();
+                logger.debug("Shed notification for slow SSE stream " + streamId + " (queue depth " + current + ")");
+                return -1;
+            }
+            fail(new IOException("Outbound queue overflow for SSE stream " + streamId +
+                                 " (capacity " + capacity + ")"));
+            throw new IOException("SSE stream " + streamId + " closed: client is not keeping up");
+        }
+    }
+
+    private boolean makeRoom(Priority incoming) {
+        if (overflowPolicy != OverflowPolicy.SHED_NOTIFICATIONS || incoming == Priority.LOW) {
+            return false;
+        }
+        // Evict the oldest queued notification so the response can go through
+        Iterator<Event> it = queue.iterator();
+        while (it.hasNext()) {
+            if (it.next().priority == Priority.LOW) {
+                it.remove();
+                depth.decrementAndGet();
+                eventsDropped.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void drain() {
+        if (!started.get()) {
+            return;
+        }
+        while (!closed && draining.compareAndSet(false, true)) {
+            try {
+                Event event;
+                while (!closed && out.isReady() && (event = queue.poll()) != null) {
+                    depth.decrementAndGet();
+                    out.write(event.payload);
+                    eventsWritten.incrementAndGet();
+                    bytesWritten.addAndGet(event.payload.length);
+                    lastWriteNanos = System.nanoTime();
+                    if (queue.isEmpty() && out.isReady()) {
+                        out.flush();
+                    }
+                }
+                if (!closed && !queue.isEmpty() && !out.isReady()) {
+                    // The container calls onWritePossible once the client catches up
+                    return;
+                }
+                if (queue.isEmpty() && onDrained != null) {
+                    finishDrained();
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // Pick up events queued, or a close requested, after the last poll but before
+            // the guard was released
+            if (queue.isEmpty() && (onDrained == null || drainedFired.get())) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops accepting events and runs the callback once everything already queued has been
+     * handed to the container, e.g. to complete a response that carries a single exchange.
+     */
+    public void closeWhenDrained(Runnable callback) {
+        onDrained = callback;
+        if (!started.get()) {
+            start();
+        }
+        drain();
+    }
+
+    private void finishDrained() {
+        if (drainedFired.compareAndSet(false, true)) {
+            closed = true;
+            onDrained.run();
+        }
+    }
+
+    @Override
+    public void onWritePossible() {
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        fail(t);
+    }
+
+    private void fail(Throwable t) {
+        if (closed) {
+            return;
+        }
+        logger.debug("SSE stream " + streamId + " failed: " + t.getMessage());
+        close();
+        if (onFailure != null) {
+            onFailure.run();
+        }
+    }
+
+    /**
+     * Stops accepting events and discards anything still queued.
+     */
+    public void close() {
+        closed = true;
+        queue.clear();
+        depth.set(0);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public int getQueueDepth() {
+        return depth.get();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxDepth.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * How long the oldest queued event has been waiting, or 0 if the queue is empty.
+     */
+    public long getLagMillis() {
+        Event head = queue.peek();
+        return head == null ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - head.enqueuedNanos);
+    }
+
+    public long getMillisSinceLastWrite() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastWriteNanos);
+    }
+
+    public long getEventsWritten() {
+        return eventsWritten.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    public long getEventsDropped() {
+        return eventsDropped.get();
+    }
+
+    static byte[] encodeEvent(String eventType, String data) {
+        StringBuilder sb = new StringBuilder(data.length() + 32);
+        if (eventType != null) {
+            sb.append("event: ").append(eventType).append('\n');
+        }
+        // Each line of a multi-line payload needs its own data field
+        int start = 0;
+        int newline;
+        while ((newline = data.indexOf('\n', start)) != -1) {
+            sb.append("data: ").append(data, start, newline).append('\n');
+            start = newline + 1;
+        }
+        sb.append("data: ").append(data, start, data.length()).append('\n');
+        sb.append('\n');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class Event {
+        private final byte[] payload;
+        private final Priority priority;
+        private final long enqueuedNanos;
+
+        private Event(byte[] payload, Priority priority, long enqueuedNanos) {
+            this.payload = payload;
+            this.priority = priority;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
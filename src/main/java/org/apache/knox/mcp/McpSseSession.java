@@ -3,35 +3,65 @@ package org.apache.knox.mcp;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.client.McpRequestCancelledException;
+import org.apache.knox.mcp.client.McpRequestTimeoutException;
+import org.apache.knox.mcp.util.McpLogger;
 
 import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Manages an individual SSE session for MCP communication
  */
-public class McpSseSession {
+public class McpSseSession implements McpNotificationSink {
+    
+    private static final McpLogger logger = McpLogger.getLogger(McpSseSession.class);
     
     private final String sessionId;
     private final AsyncContext asyncContext;
-    private final PrintWriter writer;
+    private final McpSseEventWriter eventWriter;
+    private final McpSseSessionDispatcher dispatcher;
     private final ObjectMapper objectMapper;
     private final McpProxyResource proxyResource;
     private final AtomicBoolean closed = new AtomicBoolean(false);
     private final Map<String, String> sessionData = new ConcurrentHashMap<>();
+    private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+    private final McpInflightCalls inflightCalls = new McpInflightCalls();
+    private final McpSseSessionSettings settings;
+    private final long createdNanos = System.nanoTime();
+    private volatile long lastActivityNanos = createdNanos;
     
-    private boolean initialized = false;
+    private volatile boolean initialized = false;
     
     public McpSseSession(String sessionId, AsyncContext asyncContext, McpProxyResource proxyResource, HttpServletRequest servletRequest) throws IOException {
+        this(sessionId, asyncContext, proxyResource, servletRequest, new McpSseSessionSettings());
+    }
+    
+    public McpSseSession(String sessionId, AsyncContext asyncContext, McpProxyResource proxyResource,
+                         HttpServletRequest servletRequest, McpSseSessionSettings settings) throws IOException {
+        // Without a shared executor, dispatched requests run on the posting thread
+        this(sessionId, asyncContext, proxyResource, servletRequest, settings, Runnable::run);
+    }
+    
+    public McpSseSession(String sessionId, AsyncContext asyncContext, McpProxyResource proxyResource,
+                         HttpServletRequest servletRequest, McpSseSessionSettings settings,
+                         Executor executor) throws IOException {
         this.sessionId = sessionId;
         this.asyncContext = asyncContext;
         this.proxyResource = proxyResource;
+        this.settings = settings;
         this.objectMapper = new ObjectMapper();
         
         // Set up SSE response headers
@@ -43,7 +73,34 @@ public class McpSseSession {
         response.setHeader("Access-Control-Allow-Origin", "*");
         response.setHeader("Access-Control-Allow-Headers", "Content-Type");
         
-        this.writer = response.getWriter();
+        // Events are queued and written without blocking the threads that produce them
+        this.eventWriter = new McpSseEventWriter(sessionId, response.getOutputStream(),
+            settings.getQueueCapacity(), settings.getOverflowPolicy(), this::close);
+        this.dispatcher = new McpSseSessionDispatcher(sessionId, executor, this::processJsonRpcRequest, this::deliver,
+            settings.getMaxConcurrency(), settings.getMaxPending(), settings.isOrderedDelivery());
+        
+        // Release the session as soon as the container gives up on the request
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                close();
+            }
+            
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                close();
+            }
+            
+            @Override
+            public void onError(AsyncEvent event) {
+                close();
+            }
+            
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+                // Not re-dispatched
+            }
+        });
         
         System.out.println("DEBUG: Created SSE session: " + sessionId);
         
@@ -54,7 +111,7 @@ public class McpSseSession {
         String messageEndpoint = buildMessageEndpoint(servletRequest, sessionId);
         sendEvent("endpoint", messageEndpoint);
         
-        writer.flush();
+        eventWriter.start();
     }
     
     private String buildMessageEndpoint(HttpServletRequest request, String sessionId) {
@@ -90,39 +147,87 @@ public class McpSseSession {
     }
     
     public void sendEvent(String eventType, String data) throws IOException {
+        sendEvent(eventType, data, McpSseEventWriter.Priority.HIGH);
+    }
+    
+    /**
+     * Queues an event for delivery. Returns immediately; low-priority events may be shed
+     * if the client is not keeping up.
+     */
+    public void sendEvent(String eventType, String data, McpSseEventWriter.Priority priority) throws IOException {
         if (closed.get()) {
             return;
         }
         
         try {
-            if (eventType != null) {
-                writer.println("event: " + eventType);
-            }
-            writer.println("data: " + data);
-            writer.println(); // Empty line to end the event
-            writer.flush();
-            
-            System.out.println("DEBUG: Sent SSE event to " + sessionId + " - type: " + eventType + ", data: " + data);
-        } catch (Exception e) {
+            eventWriter.offer(eventType, data, priority);
+            touch();
+            logger.debug("Queued SSE event for " + sessionId + " - type: " + eventType + ", bytes: " + data.length());
+        } catch (IOException e) {
             System.err.println("ERROR: Failed to send SSE event to session " + sessionId + ": " + e.getMessage());
             close();
             throw e;
         }
     }
     
+    /**
+     * Queues a keep-alive comment. A dead peer shows up as a failed write, which closes the session.
+     */
+    public void sendHeartbeat() throws IOException {
+        if (closed.get()) {
+            return;
+        }
+        eventWriter.offerComment("ping", McpSseEventWriter.Priority.LOW);
+    }
+    
+    /**
+     * Records client or server activity, deferring idle expiry.
+     */
+    public void touch() {
+        lastActivityNanos = System.nanoTime();
+    }
+    
+    public long getIdleMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastActivityNanos);
+    }
+    
+    public long getAgeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - createdNanos);
+    }
+    
+    /**
+     * Runs once when the session closes, whatever the cause.
+     */
+    public void addCloseListener(Runnable listener) {
+        closeListeners.add(listener);
+        if (closed.get()) {
+            listener.run();
+        }
+    }
+    
     public void sendJsonRpcResponse(JsonNode id, Object result) throws IOException {
+        sendMessage(buildJsonRpcResponse(id, result));
+    }
+    
+    public void sendJsonRpcError(JsonNode id, int code, String message, String data) throws IOException {
+        sendMessage(buildJsonRpcError(id, code, message, data));
+    }
+    
+    private void sendMessage(JsonNode message) throws IOException {
+        sendEvent("message", objectMapper.writeValueAsString(message));
+    }
+    
+    private ObjectNode buildJsonRpcResponse(JsonNode id, Object result) {
         ObjectNode response = objectMapper.createObjectNode();
         response.put("jsonrpc", "2.0");
         if (id != null) {
             response.set("id", id);
         }
         response.set("result", objectMapper.valueToTree(result));
-        
-        String jsonResponse = objectMapper.writeValueAsString(response);
-        sendEvent("message", jsonResponse);
+        return response;
     }
     
-    public void sendJsonRpcError(JsonNode id, int code, String message, String data) throws IOException {
+    private ObjectNode buildJsonRpcError(JsonNode id, int code, String message, String data) {
         ObjectNode response = objectMapper.createObjectNode();
         response.put("jsonrpc", "2.0");
         if (id != null) {
@@ -136,11 +241,10 @@ public class McpSseSession {
             error.put("data", data);
         }
         response.set("error", error);
-        
-        String jsonResponse = objectMapper.writeValueAsString(response);
-        sendEvent("message", jsonResponse);
+        return response;
     }
     
+    @Override
     public void sendJsonRpcNotification(String method, JsonNode params) throws IOException {
         ObjectNode notification = objectMapper.createObjectNode();
         notification.put("jsonrpc", "2.0");
@@ -151,12 +255,48 @@ public class McpSseSession {
         // No "id" field for notifications
         
         String jsonNotification = objectMapper.writeValueAsString(notification);
-        sendEvent("message", jsonNotification);
+        sendEvent("message", jsonNotification, McpSseEventWriter.Priority.LOW);
+    }
+    
+    /**
+     * Hands a validated request to the session's dispatcher. The response is sent on the
+     * SSE stream when the request completes; returns false if the session is saturated.
+     * Cancellations are applied right away rather than queued behind the requests they cancel.
+     */
+    public boolean dispatch(JsonNode request) {
+        if (isCancellation(request)) {
+            inflightCalls.cancelRequested(sessionId, request.get("params"));
+            return true;
+        }
+        return dispatcher.submit(request);
+    }
+
+    private static boolean isCancellation(JsonNode request) {
+        return request.has("method") && "notifications/cancelled".equals(request.get("method").asText());
     }
     
     public void handleJsonRpcRequest(JsonNode request) {
+        deliver(processJsonRpcRequest(request));
+    }
+    
+    private void deliver(JsonNode message) {
+        if (message == null) {
+            return;
+        }
+        try {
+            sendMessage(message);
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to send response: " + e.getMessage());
+            close();
+        }
+    }
+    
+    /**
+     * Runs a request and returns the message to send back, or null for notifications.
+     */
+    JsonNode processJsonRpcRequest(JsonNode request) {
+        JsonNode id = request.has("id") ? request.get("id") : null;
         try {
-            JsonNode id = request.has("id") ? request.get("id") : null;
             String method = request.get("method").asText();
             JsonNode params = request.has("params") ? request.get("params") : null;
             
@@ -165,48 +305,46 @@ public class McpSseSession {
             // Handle MCP methods
             switch (method) {
                 case "initialize":
-                    handleInitialize(id, params);
-                    break;
+                    return handleInitialize(id, params);
                 case "tools/list":
-                    handleToolsList(id);
-                    break;
+                    return handleToolsList(id, params);
                 case "tools/call":
-                    handleToolCall(id, params);
-                    break;
+                    return handleToolCall(id, params);
                 case "resources/list":
-                    handleResourcesList(id);
-                    break;
+                    return handleResourcesList(id, params);
                 case "resources/read":
-                    handleResourceRead(id, params);
-                    break;
+                    return handleResourceRead(id, params);
                 case "notifications/initialized":
                     handleInitializedNotification();
-                    break;
+                    return null;
+                case "notifications/cancelled":
+                    inflightCalls.cancelRequested(sessionId, params);
+                    return null;
                 default:
-                    sendJsonRpcError(id, -32601, "Method not found", "Unknown method: " + method);
+                    return buildJsonRpcError(id, -32601, "Method not found", "Unknown method: " + method);
             }
             
+        } catch (McpServerBusyException e) {
+            return buildJsonRpcError(id, e.getCode(), e.getReason(), e.getMessage());
+        } catch (McpRequestTimeoutException e) {
+            return buildJsonRpcError(id, e.getCode(), "Request timed out", e.getMessage());
+        } catch (McpRequestCancelledException e) {
+            // The client said it no longer wants the response
+            return null;
         } catch (Exception e) {
             System.err.println("ERROR: Failed to handle JSON-RPC request in session " + sessionId + ": " + e.getMessage());
             e.printStackTrace();
             
-            try {
-                JsonNode id = request.has("id") ? request.get("id") : null;
-                sendJsonRpcError(id, -32603, "Internal error", e.getMessage());
-            } catch (IOException ioError) {
-                System.err.println("ERROR: Failed to send error response: " + ioError.getMessage());
-                close();
-            }
+            return buildJsonRpcError(id, -32603, "Internal error", e.getMessage());
         }
     }
     
-    private void handleInitialize(JsonNode id, JsonNode params) throws Exception {
+    private JsonNode handleInitialize(JsonNode id, JsonNode params) {
         System.out.println("DEBUG: SSE session " + sessionId + " handling initialize");
         
         // Validate initialize parameters
         if (params == null || !params.has("protocolVersion")) {
-            sendJsonRpcError(id, -32602, "Invalid params", "Missing protocolVersion");
-            return;
+            return buildJsonRpcError(id, -32602, "Invalid params", "Missing protocolVersion");
         }
         
         String protocolVersion = params.get("protocolVersion").asText();
@@ -221,13 +359,13 @@ public class McpSseSession {
         
         // Tools capability
         ObjectNode tools = objectMapper.createObjectNode();
-        tools.put("listChanged", false); // We don't support dynamic tool list changes
+        tools.put("listChanged", true); // Backend list changes are announced on this stream
         capabilities.set("tools", tools);
         
         // Resources capability  
         ObjectNode resources = objectMapper.createObjectNode();
         resources.put("subscribe", false); // We don't support resource subscriptions
-        resources.put("listChanged", false); // We don't support dynamic resource list changes
+        resources.put("listChanged", true);
         capabilities.set("resources", resources);
         
         result.set("capabilities", capabilities);
@@ -238,11 +376,11 @@ public class McpSseSession {
         serverInfo.put("version", "1.0.0");
         result.set("serverInfo", serverInfo);
         
-        sendJsonRpcResponse(id, result);
-        
         // Mark session as initialized
         initialized = true;
         System.out.println("DEBUG: SSE session " + sessionId + " initialized successfully");
+        
+        return buildJsonRpcResponse(id, result);
     }
     
     private void handleInitializedNotification() {
@@ -250,65 +388,77 @@ public class McpSseSession {
         // No response needed for notifications
     }
     
-    private void handleToolsList(JsonNode id) throws Exception {
+    private JsonNode handleToolsList(JsonNode id, JsonNode params) throws Exception {
         System.out.println("DEBUG: SSE session " + sessionId + " handling tools/list");
         
         if (!initialized) {
-            sendJsonRpcError(id, -32002, "Server not initialized", "Call initialize first");
-            return;
+            return buildJsonRpcError(id, -32002, "Server not initialized", "Call initialize first");
         }
         
         // Get tools from proxy resource
-        Object result = proxyResource.listAllToolsForMcp();
-        sendJsonRpcResponse(id, result);
+        try {
+            return buildJsonRpcResponse(id, proxyResource.listAllToolsForMcp(params));
+        } catch (IllegalArgumentException e) {
+            return buildJsonRpcError(id, -32602, "Invalid params", e.getMessage());
+        }
     }
     
-    private void handleToolCall(JsonNode id, JsonNode params) throws Exception {
+    private JsonNode handleToolCall(JsonNode id, JsonNode params) throws Exception {
         System.out.println("DEBUG: SSE session " + sessionId + " handling tools/call");
         
         if (!initialized) {
-            sendJsonRpcError(id, -32002, "Server not initialized", "Call initialize first");
-            return;
+            return buildJsonRpcError(id, -32002, "Server not initialized", "Call initialize first");
         }
         
-        Object result = proxyResource.handleToolCallForMcp(params);
-        sendJsonRpcResponse(id, result);
+        McpDeadline caller = inflightCalls.begin(sessionId, id, McpDeadlinePolicy.requestedIn(params));
+        try {
+            Object result = proxyResource.handleToolCallForMcp(id, params, this, caller);
+            return buildJsonRpcResponse(id, result);
+        } finally {
+            inflightCalls.end(sessionId, id, caller);
+        }
     }
     
-    private void handleResourcesList(JsonNode id) throws Exception {
+    private JsonNode handleResourcesList(JsonNode id, JsonNode params) throws Exception {
         System.out.println("DEBUG: SSE session " + sessionId + " handling resources/list");
         
         if (!initialized) {
-            sendJsonRpcError(id, -32002, "Server not initialized", "Call initialize first");
-            return;
+            return buildJsonRpcError(id, -32002, "Server not initialized", "Call initialize first");
         }
         
-        Object result = proxyResource.listAllResourcesForMcp();
-        sendJsonRpcResponse(id, result);
+        try {
+            return buildJsonRpcResponse(id, proxyResource.listAllResourcesForMcp(params));
+        } catch (IllegalArgumentException e) {
+            return buildJsonRpcError(id, -32602, "Invalid params", e.getMessage());
+        }
     }
     
-    private void handleResourceRead(JsonNode id, JsonNode params) throws Exception {
+    private JsonNode handleResourceRead(JsonNode id, JsonNode params) throws Exception {
         System.out.println("DEBUG: SSE session " + sessionId + " handling resources/read");
         
         if (!initialized) {
-            sendJsonRpcError(id, -32002, "Server not initialized", "Call initialize first");
-            return;
+            return buildJsonRpcError(id, -32002, "Server not initialized", "Call initialize first");
         }
         
-        Object result = proxyResource.handleResourceReadForMcp(params);
-        sendJsonRpcResponse(id, result);
+        McpDeadline caller = inflightCalls.begin(sessionId, id, McpDeadlinePolicy.requestedIn(params));
+        try {
+            Object result = proxyResource.handleResourceReadForMcp(params, caller);
+            return buildJsonRpcResponse(id, result);
+        } finally {
+            inflightCalls.end(sessionId, id, caller);
+        }
     }
     
     public void close() {
         if (closed.compareAndSet(false, true)) {
             System.out.println("DEBUG: Closing SSE session: " + sessionId);
             
-            try {
-                if (writer != null) {
-                    writer.close();
-                }
-            } catch (Exception e) {
-                System.err.println("DEBUG: Error closing writer for session " + sessionId + ": " + e.getMessage());
+            if (dispatcher != null) {
+                dispatcher.close();
+            }
+            inflightCalls.cancelAll(sessionId, "Session closed");
+            if (eventWriter != null) {
+                eventWriter.close();
             }
             
             try {
@@ -318,6 +468,14 @@ public class McpSseSession {
             } catch (Exception e) {
                 System.err.println("DEBUG: Error completing async context for session " + sessionId + ": " + e.getMessage());
             }
+            
+            for (Runnable listener : closeListeners) {
+                try {
+                    listener.run();
+                } catch (RuntimeException e) {
+                    logger.warn("Close listener failed for session " + sessionId + ": " + e.getMessage());
+                }
+            }
         }
     }
     
@@ -332,4 +490,25 @@ public class McpSseSession {
     public boolean isInitialized() {
         return initialized;
     }
+    
+    public McpSseSessionSettings getSettings() {
+        return settings;
+    }
+    
+    public McpSseSessionDispatcher getDispatcher() {
+        return dispatcher;
+    }
+    
+    public McpInflightCalls getInflightCalls() {
+        return inflightCalls;
+    }
+    
+    @Override
+    public boolean isFallingBehind() {
+        return eventWriter.getQueueDepth() > 0;
+    }
+    
+    public McpSseEventWriter getEventWriter() {
+        return eventWriter;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,164 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.knox.mcp.util.McpLogger;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs the requests posted to one SSE session on a shared executor. At most
+ * {@code maxConcurrency} requests run at once; further requests wait in a bounded backlog.
+ * In ordered mode requests still run concurrently, but responses are released in the
+ * order the requests were posted.
+ */
+public class McpSseSessionDispatcher {
+
+    private static final McpLogger logger = McpLogger.getLogger(McpSseSessionDispatcher.class);
+
+    private final String sessionId;
+    private final Executor executor;
+    private final Function<JsonNode, JsonNode> handler;
+    private final Consumer<JsonNode> delivery;
+    private final int maxConcurrency;
+    private final int maxPending;
+    private final boolean ordered;
+
+    // Guarded by lock
+    private final Object lock = new Object();
+    private final ArrayDeque<Task> backlog = new ArrayDeque<>();
+    private final Map<Long, JsonNode> completed = new HashMap<>();
+    private int running;
+    private long nextSequence;
+    private long nextToDeliver;
+    private boolean closed;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public McpSseSessionDispatcher(String sessionId, Executor executor, Function<JsonNode, JsonNode> handler,
+                                   Consumer<JsonNode> delivery, int maxConcurrency, int maxPending, boolean ordered) {
+        this.sessionId = sessionId;
+        this.executor = executor;
+        this.handler = handler;
+        this.delivery = delivery;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.maxPending = Math.max(0, maxPending);
+        this.ordered = ordered;
+    }
+
+    /**
+     * Schedules a request. Returns false if the session already has its maximum number
+     * of requests running and waiting.
+     */
+    public boolean submit(JsonNode request) {
+        Task task;
+        synchronized (lock) {
+            if (closed) {
+                return false;
+            }
+            if (running >= maxConcurrency) {
+                if (backlog.size() >= maxPending) {
+                    rejected.incrementAndGet();
+                    return false;
+                }
+                backlog.add(new Task(request, nextSequence++));
+                return true;
+            }
+            task = new Task(request, nextSequence++);
+            running++;
+        }
+        execute(task);
+        return true;
+    }
+
+    private void execute(Task task) {
+        try {
+            executor.execute(() -> run(task));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Dispatch executor rejected request for session " + sessionId + ", running inline");
+            run(task);
+        }
+    }
+
+    private void run(Task task) {
+        JsonNode response = null;
+        try {
+            response = handler.apply(task.request);
+        } catch (RuntimeException e) {
+            logger.error("Request failed in session " + sessionId + ": " + e.getMessage(), e);
+        }
+
+        Task next;
+        synchronized (lock) {
+            if (ordered) {
+                // Sending only queues the event, so releasing under the lock does not block
+                completed.put(task.sequence, response);
+                while (completed.containsKey(nextToDeliver)) {
+                    JsonNode ready = completed.remove(nextToDeliver++);
+                    if (ready != null && !closed) {
+                        delivery.accept(ready);
+                    }
+                }
+            }
+            next = backlog.poll();
+            if (next == null) {
+                running--;
+            }
+        }
+
+        if (!ordered && response != null) {
+            delivery.accept(response);
+        }
+        if (next != null) {
+            execute(next);
+        }
+    }
+
+    /**
+     * Drops queued requests; requests already running finish but their responses are discarded
+     * by the closed session.
+     */
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            backlog.clear();
+            completed.clear();
+        }
+    }
+
+    public int getRunning() {
+        synchronized (lock) {
+            return running;
+        }
+    }
+
+    public int getPending() {
+        synchronized (lock) {
+            return backlog.size();
+        }
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    private static final class Task {
+        private final JsonNode request;
+        private final long sequence;
+
+        private Task(JsonNode request, long sequence) {
+            this.request = request;
+            this.sequence = sequence;
+        }
+    }
+}
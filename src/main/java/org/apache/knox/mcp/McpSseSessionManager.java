@@ -2,15 +2,26 @@ package org.apache.knox.mcp;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.knox.mcp.cluster.McpMessageForwarder;
+import org.apache.knox.mcp.cluster.McpNodeRegistry;
+import org.apache.knox.mcp.cluster.StaticMcpNodeRegistry;
+import org.apache.knox.mcp.util.HashedTimingWheel;
+import org.apache.knox.mcp.util.McpLogger;
 
 import javax.servlet.AsyncContext;
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -18,32 +29,201 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 public class McpSseSessionManager {
     
+    private static final McpLogger logger = McpLogger.getLogger(McpSseSessionManager.class);
+    
     private static final McpSseSessionManager INSTANCE = new McpSseSessionManager();
+    private static final String SESSION_PREFIX = "mcp-sse-";
+    
+    /**
+     * Where a posted session message ended up.
+     */
+    public enum Routing {
+        /** Dispatched to a session on this node */
+        LOCAL,
+        /** Accepted by the node that owns the session */
+        FORWARDED,
+        /** No node has the session */
+        NOT_FOUND,
+        /** The owning node could not be reached */
+        FORWARD_FAILED
+    }
     
     private final Map<String, McpSseSession> sessions = new ConcurrentHashMap<>();
-    private final AtomicLong sessionCounter = new AtomicLong(1);
+    private final McpMessageForwarder forwarder = new McpMessageForwarder();
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final ScheduledExecutorService cleanupExecutor = Executors.newScheduledThreadPool(1);
+    // Heartbeat and expiry timers for every session; scheduling and firing are O(1)
+    private final HashedTimingWheel sessionTimers =
+        new HashedTimingWheel("mcp-sse-session-timers", 100, TimeUnit.MILLISECONDS, 512);
+    private final AtomicLong reapedIdle = new AtomicLong();
+    private final AtomicLong reapedLifetime = new AtomicLong();
+    private final AtomicLong reapedStalled = new AtomicLong();
+    private final AtomicLong forwardedMessages = new AtomicLong();
+    private final AtomicLong forwardFailures = new AtomicLong();
+    private volatile McpNodeRegistry nodeRegistry = new StaticMcpNodeRegistry();
+    private final ThreadPoolExecutor dispatchExecutor;
+    private volatile McpSseSessionSettings settings = new McpSseSessionSettings();
     
-    private McpSseSessionManager() {
-        // Start cleanup task to remove closed sessions
-        cleanupExecutor.scheduleAtFixedRate(this::cleanupClosedSessions, 30, 30, TimeUnit.SECONDS);
+    McpSseSessionManager() {
+        int threads = settings.getDispatchThreads();
+        AtomicInteger threadCounter = new AtomicInteger(1);
+        dispatchExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "mcp-sse-dispatch-" + threadCounter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        // Idle pools shrink to nothing between bursts
+        dispatchExecutor.allowCoreThreadTimeOut(true);
     }
     
     public static McpSseSessionManager getInstance() {
         return INSTANCE;
     }
     
+    /**
+     * Applies settings to sessions created from now on.
+     */
+    public void configure(McpSseSessionSettings settings) {
+        this.settings = settings;
+        int threads = settings.getDispatchThreads();
+        if (threads > dispatchExecutor.getMaximumPoolSize()) {
+            dispatchExecutor.setMaximumPoolSize(threads);
+            dispatchExecutor.setCorePoolSize(threads);
+        } else {
+            dispatchExecutor.setCorePoolSize(threads);
+            dispatchExecutor.setMaximumPoolSize(threads);
+        }
+    }
+    
+    public McpSseSessionSettings getSettings() {
+        return settings;
+    }
+    
+    /**
+     * Sets the registry used to name sessions after this node and to find the owners of others.
+     */
+    public void configureCluster(McpNodeRegistry nodeRegistry) {
+        this.nodeRegistry = nodeRegistry;
+    }
+    
+    /**
+     * Shared executor for work that answers on an SSE stream, so request threads are not held.
+     */
+    public Executor getDispatchExecutor() {
+        return dispatchExecutor;
+    }
+    
+    /**
+     * Whether an id was issued for an SSE session, as opposed to a Streamable HTTP session.
+     */
+    public static boolean isSseSessionId(String sessionId) {
+        return sessionId != null && sessionId.startsWith(SESSION_PREFIX);
+    }
+    
+    public McpNodeRegistry getNodeRegistry() {
+        return nodeRegistry;
+    }
+    
+    /**
+     * Node id embedded in a session id ({@code mcp-sse-<node>-<random>}), or null if it has none.
+     */
+    static String ownerOf(String sessionId) {
+        if (sessionId == null || !sessionId.startsWith(SESSION_PREFIX)) {
+            return null;
+        }
+        int separator = sessionId.lastIndexOf('-');
+        if (separator <= SESSION_PREFIX.length()) {
+            return null;
+        }
+        return sessionId.substring(SESSION_PREFIX.length(), separator);
+    }
+    
     public McpSseSession createSession(AsyncContext asyncContext, McpProxyResource proxyResource, HttpServletRequest request) throws IOException {
-        String sessionId = "mcp-sse-" + sessionCounter.getAndIncrement();
+        // Unguessable, and tells any node in the cluster which node holds the stream
+        String sessionId = SESSION_PREFIX + nodeRegistry.getLocalNodeId() + "-" +
+                           UUID.randomUUID().toString().replace("-", "");
         
-        McpSseSession session = new McpSseSession(sessionId, asyncContext, proxyResource, request);
+        McpSseSession session = new McpSseSession(sessionId, asyncContext, proxyResource, request, settings, dispatchExecutor);
         sessions.put(sessionId, session);
+        scheduleTimers(session);
         
         System.out.println("DEBUG: Created SSE session " + sessionId + " (total: " + sessions.size() + ")");
         return session;
     }
     
+    private void scheduleTimers(McpSseSession session) {
+        SessionTimers timers = new SessionTimers();
+        McpSseSessionSettings sessionSettings = session.getSettings();
+        
+        if (sessionSettings.getHeartbeatIntervalMillis() > 0) {
+            timers.heartbeat = schedule(() -> heartbeat(session, timers), sessionSettings.getHeartbeatIntervalMillis());
+        }
+        if (sessionSettings.getIdleTimeoutMillis() > 0) {
+            timers.idle = schedule(() -> checkIdle(session, timers), sessionSettings.getIdleTimeoutMillis());
+        }
+        if (sessionSettings.getMaxLifetimeMillis() > 0) {
+            timers.lifetime = schedule(() -> reap(session, reapedLifetime, "maximum lifetime reached"),
+                                       sessionSettings.getMaxLifetimeMillis());
+        }
+        
+        // Closing for any reason (client gone, write failure, expiry) removes the session immediately
+        session.addCloseListener(() -> {
+            timers.cancel();
+            if (sessions.remove(session.getSessionId(), session)) {
+                logger.debug("Removed closed SSE session " + session.getSessionId() + " (remaining: " + sessions.size() + ")");
+            }
+        });
+    }
+    
+    private HashedTimingWheel.Timeout schedule(Runnable task, long delayMillis) {
+        return sessionTimers.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    private void heartbeat(McpSseSession session, SessionTimers timers) {
+        if (session.isClosed()) {
+            return;
+        }
+        McpSseSessionSettings sessionSettings = session.getSettings();
+        
+        // A peer that stopped reading never fails a write; it just stops draining the queue
+        long lag = session.getEventWriter().getLagMillis();
+        if (sessionSettings.getWriteTimeoutMillis() > 0 && lag >= sessionSettings.getWriteTimeoutMillis()) {
+            reap(session, reapedStalled, "no write progress for " + lag + " ms");
+            return;
+        }
+        
+        try {
+            session.sendHeartbeat();
+        } catch (IOException e) {
+            // The session closed itself on the failed write
+            return;
+        }
+        timers.heartbeat = schedule(() -> heartbeat(session, timers), sessionSettings.getHeartbeatIntervalMillis());
+    }
+    
+    private void checkIdle(McpSseSession session, SessionTimers timers) {
+        if (session.isClosed()) {
+            return;
+        }
+        // Activity only moves a timestamp; the timer is re-armed for the remainder when it fires
+        long timeout = session.getSettings().getIdleTimeoutMillis();
+        long idle = session.getIdleMillis();
+        if (idle >= timeout) {
+            reap(session, reapedIdle, "idle for " + idle + " ms");
+        } else {
+            timers.idle = schedule(() -> checkIdle(session, timers), timeout - idle);
+        }
+    }
+    
+    private void reap(McpSseSession session, AtomicLong counter, String reason) {
+        if (session.isClosed()) {
+            return;
+        }
+        logger.info("Closing SSE session " + session.getSessionId() + ": " + reason);
+        counter.incrementAndGet();
+        session.close();
+    }
+    
     public McpSseSession getSession(String sessionId) {
         return sessions.get(sessionId);
     }
@@ -56,19 +236,67 @@ public class McpSseSessionManager {
         }
     }
     
-    public void handleMessageForSession(String sessionId, String messageJson) {
+    /**
+     * Delivers a posted message to its session, forwarding it to the owning node when the
+     * session lives elsewhere. Messages already forwarded by a peer are never forwarded again.
+     *
+     * @param headers credentials and other request headers to pass on when forwarding
+     * @param forwardedBy the peer that forwarded this message, or null
+     */
+    public Routing routeMessage(String sessionId, String messageJson, Map<String, String> headers, String forwardedBy) {
+        if (handleMessageForSession(sessionId, messageJson)) {
+            return Routing.LOCAL;
+        }
+        
+        McpNodeRegistry registry = nodeRegistry;
+        String owner = ownerOf(sessionId);
+        if (forwardedBy != null || owner == null || owner.equals(registry.getLocalNodeId())) {
+            return Routing.NOT_FOUND;
+        }
+        String ownerUrl = registry.getNodeUrl(owner);
+        if (ownerUrl == null) {
+            logger.warn("Session " + sessionId + " belongs to unknown node " + owner);
+            return Routing.NOT_FOUND;
+        }
+        
+        try {
+            int status = forwarder.forward(ownerUrl, sessionId, registry.getLocalNodeId(), messageJson,
+                headers != null ? headers : Collections.<String, String>emptyMap());
+            if (status == 404) {
+                return Routing.NOT_FOUND;
+            }
+            if (status >= 300) {
+                forwardFailures.incrementAndGet();
+                logger.warn("Node " + owner + " rejected message for session " + sessionId + ": HTTP " + status);
+                return Routing.FORWARD_FAILED;
+            }
+            forwardedMessages.incrementAndGet();
+            return Routing.FORWARDED;
+        } catch (IOException e) {
+            forwardFailures.incrementAndGet();
+            logger.warn("Cannot forward message for session " + sessionId + " to node " + owner + ": " + e.getMessage());
+            return Routing.FORWARD_FAILED;
+        }
+    }
+    
+    /**
+     * Dispatches a message to a session on this node. Returns false if there is no such session.
+     */
+    public boolean handleMessageForSession(String sessionId, String messageJson) {
         McpSseSession session = sessions.get(sessionId);
         if (session == null) {
-            System.err.println("ERROR: No SSE session found for ID: " + sessionId);
-            return;
+            logger.debug("No local SSE session found for ID: " + sessionId);
+            return false;
         }
         
         if (session.isClosed()) {
             System.err.println("ERROR: SSE session is closed: " + sessionId);
             removeSession(sessionId);
-            return;
+            return false;
         }
         
+        session.touch();
+        
         try {
             System.out.println("DEBUG: Processing message for SSE session " + sessionId + ": " + messageJson);
             
@@ -77,17 +305,22 @@ public class McpSseSessionManager {
             // Validate JSON-RPC format
             if (!request.has("jsonrpc") || !"2.0".equals(request.get("jsonrpc").asText())) {
                 session.sendJsonRpcError(null, -32600, "Invalid Request", "Missing or invalid jsonrpc field");
-                return;
+                return true;
             }
             
             if (!request.has("method")) {
                 JsonNode id = request.has("id") ? request.get("id") : null;
                 session.sendJsonRpcError(id, -32600, "Invalid Request", "Missing method field");
-                return;
+                return true;
             }
             
-            // Handle the request
-            session.handleJsonRpcRequest(request);
+            // Run the request off the POST thread; its response is delivered on the SSE stream
+            if (!session.dispatch(request)) {
+                JsonNode id = request.has("id") ? request.get("id") : null;
+                logger.warn("SSE session " + sessionId + " is saturated, rejecting request");
+                session.sendJsonRpcError(id, -32000, "Server busy",
+                    "Too many requests in progress for this session");
+            }
             
         } catch (Exception e) {
             System.err.println("ERROR: Failed to handle message for session " + sessionId + ": " + e.getMessage());
@@ -100,29 +333,90 @@ public class McpSseSessionManager {
                 removeSession(sessionId);
             }
         }
+        return true;
     }
     
-    private void cleanupClosedSessions() {
-        int initialSize = sessions.size();
-        sessions.entrySet().removeIf(entry -> {
-            McpSseSession session = entry.getValue();
-            if (session.isClosed()) {
-                System.out.println("DEBUG: Cleaning up closed session: " + entry.getKey());
-                return true;
+    /**
+     * Sends a notification to every local session that has completed initialize. Sessions
+     * whose stream has failed are skipped; their close listener removes them.
+     *
+     * @return the number of sessions notified
+     */
+    public int broadcastNotification(String method, JsonNode params) {
+        int notified = 0;
+        for (McpSseSession session : sessions.values()) {
+            if (!session.isInitialized()) {
+                continue;
+            }
+            try {
+                session.sendJsonRpcNotification(method, params);
+                notified++;
+            } catch (IOException e) {
+                logger.debug("Could not send " + method + " to SSE session " + session.getSessionId() + ": " + e.getMessage());
             }
-            return false;
-        });
-        
-        int removedCount = initialSize - sessions.size();
-        if (removedCount > 0) {
-            System.out.println("DEBUG: Cleaned up " + removedCount + " closed SSE sessions (remaining: " + sessions.size() + ")");
         }
+        return notified;
     }
     
     public int getActiveSessionCount() {
         return sessions.size();
     }
     
+    /**
+     * Outbound queue metrics for every live session, plus totals.
+     */
+    public ObjectNode getMetrics() {
+        ObjectNode metrics = objectMapper.createObjectNode();
+        ArrayNode sessionMetrics = objectMapper.createArrayNode();
+        long totalQueued = 0;
+        long totalDropped = 0;
+        long maxLag = 0;
+        long totalRejected = 0;
+        
+        for (McpSseSession session : sessions.values()) {
+            McpSseEventWriter writer = session.getEventWriter();
+            long lag = writer.getLagMillis();
+            totalQueued += writer.getQueueDepth();
+            totalDropped += writer.getEventsDropped();
+            maxLag = Math.max(maxLag, lag);
+            McpSseSessionDispatcher dispatcher = session.getDispatcher();
+            totalRejected += dispatcher.getRejected();
+            
+            ObjectNode node = objectMapper.createObjectNode();
+            node.put("id", session.getSessionId());
+            node.put("queueDepth", writer.getQueueDepth());
+            node.put("maxQueueDepth", writer.getMaxQueueDepth());
+            node.put("lagMillis", lag);
+            node.put("eventsWritten", writer.getEventsWritten());
+            node.put("bytesWritten", writer.getBytesWritten());
+            node.put("eventsDropped", writer.getEventsDropped());
+            node.put("ageMillis", session.getAgeMillis());
+            node.put("idleMillis", session.getIdleMillis());
+            node.put("requestsRunning", dispatcher.getRunning());
+            node.put("requestsPending", dispatcher.getPending());
+            sessionMetrics.add(node);
+        }
+        
+        metrics.put("activeSessions", sessions.size());
+        metrics.put("queueCapacity", settings.getQueueCapacity());
+        metrics.put("overflowPolicy", settings.getOverflowPolicy().name());
+        metrics.put("queuedEvents", totalQueued);
+        metrics.put("droppedEvents", totalDropped);
+        metrics.put("maxLagMillis", maxLag);
+        metrics.put("reapedIdle", reapedIdle.get());
+        metrics.put("reapedLifetime", reapedLifetime.get());
+        metrics.put("reapedStalled", reapedStalled.get());
+        metrics.put("pendingTimers", sessionTimers.pendingTimeouts());
+        metrics.put("dispatchThreads", dispatchExecutor.getPoolSize());
+        metrics.put("dispatchQueue", dispatchExecutor.getQueue().size());
+        metrics.put("rejectedRequests", totalRejected);
+        metrics.put("nodeId", nodeRegistry.getLocalNodeId());
+        metrics.put("forwardedMessages", forwardedMessages.get());
+        metrics.put("forwardFailures", forwardFailures.get());
+        metrics.set("sessions", sessionMetrics);
+        return metrics;
+    }
+    
     public void shutdown() {
         System.out.println("DEBUG: Shutting down SSE session manager");
         
@@ -132,15 +426,29 @@ public class McpSseSessionManager {
         }
         sessions.clear();
         
-        // Shutdown cleanup executor
-        cleanupExecutor.shutdown();
-        try {
-            if (!cleanupExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
-                cleanupExecutor.shutdownNow();
+        // Closing a session cancels its timers and drops its queued requests. The timer and
+        // dispatch threads are daemons and are kept so the shared manager still works if the
+        // resource is started again.
+    }
+    
+    /**
+     * Current timer handles for one session, replaced each time a timer re-arms.
+     */
+    private static final class SessionTimers {
+        private volatile HashedTimingWheel.Timeout heartbeat;
+        private volatile HashedTimingWheel.Timeout idle;
+        private volatile HashedTimingWheel.Timeout lifetime;
+        
+        private void cancel() {
+            cancel(heartbeat);
+            cancel(idle);
+            cancel(lifetime);
+        }
+        
+        private static void cancel(HashedTimingWheel.Timeout timeout) {
+            if (timeout != null) {
+                timeout.cancel();
             }
-        } catch (InterruptedException e) {
-            cleanupExecutor.shutdownNow();
-            Thread.currentThread().interrupt();
         }
     }
 }
\ No newline at end of file
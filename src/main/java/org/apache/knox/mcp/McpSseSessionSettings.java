@@ -0,0 +1,157 @@
+package org.apache.knox.mcp;
+
+import org.apache.knox.mcp.util.McpLogger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Tunables for downstream SSE sessions, read from the service configuration.
+ */
+public class McpSseSessionSettings {
+
+    private static final McpLogger logger = McpLogger.getLogger(McpSseSessionSettings.class);
+
+    public static final String QUEUE_CAPACITY = "mcp.sse.queue.capacity";
+    public static final String OVERFLOW_POLICY = "mcp.sse.overflow.policy";
+    public static final String HEARTBEAT_INTERVAL = "mcp.sse.heartbeat.interval";
+    public static final String IDLE_TIMEOUT = "mcp.sse.idle.timeout";
+    public static final String MAX_LIFETIME = "mcp.sse.max.lifetime";
+    public static final String WRITE_TIMEOUT = "mcp.sse.write.timeout";
+    public static final String DISPATCH_THREADS = "mcp.sse.dispatch.threads";
+    public static final String MAX_CONCURRENCY = "mcp.sse.session.max.concurrency";
+    public static final String MAX_PENDING = "mcp.sse.session.max.pending";
+    public static final String ORDERED_DELIVERY = "mcp.sse.session.ordered";
+
+    private int queueCapacity = 1024;
+    private McpSseEventWriter.OverflowPolicy overflowPolicy = McpSseEventWriter.OverflowPolicy.SHED_NOTIFICATIONS;
+    // Durations are configured in seconds and held in milliseconds; 0 disables the check
+    private long heartbeatIntervalMillis = TimeUnit.SECONDS.toMillis(15);
+    private long idleTimeoutMillis = TimeUnit.MINUTES.toMillis(10);
+    private long maxLifetimeMillis = 0;
+    private long writeTimeoutMillis = TimeUnit.SECONDS.toMillis(60);
+    private int dispatchThreads = 64;
+    private int maxConcurrency = 8;
+    private int maxPending = 64;
+    private boolean orderedDelivery = false;
+
+    /**
+     * Builds settings from a configuration lookup such as servlet init parameters,
+     * keeping the defaults for anything unset or malformed.
+     */
+    public static McpSseSessionSettings fromConfig(Function<String, String> config) {
+        McpSseSessionSettings settings = new McpSseSessionSettings();
+        settings.queueCapacity = parseInt(config.apply(QUEUE_CAPACITY), settings.queueCapacity, QUEUE_CAPACITY);
+        settings.overflowPolicy = McpSseEventWriter.OverflowPolicy.fromConfig(
+            config.apply(OVERFLOW_POLICY), settings.overflowPolicy);
+        settings.heartbeatIntervalMillis = parseSeconds(config.apply(HEARTBEAT_INTERVAL), settings.heartbeatIntervalMillis, HEARTBEAT_INTERVAL);
+        settings.idleTimeoutMillis = parseSeconds(config.apply(IDLE_TIMEOUT), settings.idleTimeoutMillis, IDLE_TIMEOUT);
+        settings.maxLifetimeMillis = parseSeconds(config.apply(MAX_LIFETIME), settings.maxLifetimeMillis, MAX_LIFETIME);
+        settings.writeTimeoutMillis = parseSeconds(config.apply(WRITE_TIMEOUT), settings.writeTimeoutMillis, WRITE_TIMEOUT);
+        settings.dispatchThreads = Math.max(1, parseInt(config.apply(DISPATCH_THREADS), settings.dispatchThreads, DISPATCH_THREADS));
+        settings.maxConcurrency = Math.max(1, parseInt(config.apply(MAX_CONCURRENCY), settings.maxConcurrency, MAX_CONCURRENCY));
+        settings.maxPending = Math.max(0, parseInt(config.apply(MAX_PENDING), settings.maxPending, MAX_PENDING));
+        String ordered = config.apply(ORDERED_DELIVERY);
+        if (ordered != null && !ordered.trim().isEmpty()) {
+            settings.orderedDelivery = Boolean.parseBoolean(ordered.trim());
+        }
+        return settings;
+    }
+
+    static int parseInt(String value, int defaultValue, String key) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid value '" + value + "' for " + key + ", using default " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    static long parseSeconds(String value, long defaultMillis, String key) {
+        int seconds = parseInt(value, (int) TimeUnit.MILLISECONDS.toSeconds(defaultMillis), key);
+        return TimeUnit.SECONDS.toMillis(Math.max(0, seconds));
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public McpSseEventWriter.OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(McpSseEventWriter.OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public long getHeartbeatIntervalMillis() {
+        return heartbeatIntervalMillis;
+    }
+
+    public void setHeartbeatIntervalMillis(long heartbeatIntervalMillis) {
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public long getMaxLifetimeMillis() {
+        return maxLifetimeMillis;
+    }
+
+    public void setMaxLifetimeMillis(long maxLifetimeMillis) {
+        this.maxLifetimeMillis = maxLifetimeMillis;
+    }
+
+    public long getWriteTimeoutMillis() {
+        return writeTimeoutMillis;
+    }
+
+    public void setWriteTimeoutMillis(long writeTimeoutMillis) {
+        this.writeTimeoutMillis = writeTimeoutMillis;
+    }
+
+    public int getDispatchThreads() {
+        return dispatchThreads;
+    }
+
+    public void setDispatchThreads(int dispatchThreads) {
+        this.dispatchThreads = dispatchThreads;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    public void setMaxPending(int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    public boolean isOrderedDelivery() {
+        return orderedDelivery;
+    }
+
+    public void setOrderedDelivery(boolean orderedDelivery) {
+        this.orderedDelivery = orderedDelivery;
+    }
+}
@@ -0,0 +1,166 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.util.McpLogger;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Opt-in cache of tool results, for tools whose result depends only on their arguments.
+ * Each configured server and tool has its own time to live. Results are keyed by server,
+ * tool and a hash of the canonicalized arguments, bounded by their serialized size, and
+ * admitted with W-TinyLFU so one-off calls do not displace frequently repeated ones.
+ * Error results are never cached. Expiry, background refresh and stale fallback follow
+ * {@link McpResponseCache}.
+ */
+public class McpToolResultCache extends McpResponseCache {
+
+    private static final McpLogger logger = McpLogger.getLogger(McpToolResultCache.class);
+
+    /** Comma-separated {@code server.tool:ttlSeconds} rules; {@code server.*} covers every tool of a server */
+    public static final String CACHE_TOOLS = "mcp.cache.tools";
+    public static final String CACHE_MAX_BYTES = "mcp.cache.max.bytes";
+
+    /** A request carrying {@code Cache-Control: no-cache} (or no-store) skips the lookup */
+    public static final String BYPASS_HEADER = "Cache-Control";
+
+    static final int DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+
+    // Sorted map keys give every equal argument map the same serialization
+    private static final ObjectMapper canonicalMapper =
+        new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private final Map<String, Long> ttlMillisByTool;
+
+    public McpToolResultCache(Map<String, Long> ttlMillisByTool, long maxBytes) {
+        this(ttlMillisByTool, maxBytes, DEFAULT_REFRESH_AHEAD_PERCENT, DEFAULT_STALE_IF_ERROR_MILLIS, System::nanoTime);
+    }
+
+    McpToolResultCache(Map<String, Long> ttlMillisByTool, long maxBytes, int refreshAheadPercent,
+                       long staleIfErrorMillis, LongSupplier nanoClock) {
+        // Sized for results averaging a few kilobytes
+        super(maxBytes, (int) Math.min(1 << 20, Math.max(1024, maxBytes / 4096)), refreshAheadPercent,
+              staleIfErrorMillis, nanoClock);
+        this.ttlMillisByTool = new HashMap<>(ttlMillisByTool);
+    }
+
+    public static McpToolResultCache fromConfig(Function<String, String> config) {
+        return new McpToolResultCache(parseRules(config.apply(CACHE_TOOLS)),
+            parseBytes(config, CACHE_MAX_BYTES, DEFAULT_MAX_BYTES),
+            refreshAheadPercent(config), staleIfErrorMillis(config), System::nanoTime);
+    }
+
+    /**
+     * Parses {@code server.tool:ttlSeconds} rules into TTLs in milliseconds; malformed rules are skipped.
+     */
+    static Map<String, Long> parseRules(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Long> rules = new HashMap<>();
+        for (String rule : value.split(",")) {
+            String trimmed = rule.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int colon = trimmed.lastIndexOf(':');
+            int dot = trimmed.indexOf('.');
+            if (colon < 0 || dot <= 0 || dot > colon) {
+                logger.warn("Ignoring tool cache rule '" + trimmed + "'; expected server.tool:ttlSeconds");
+                continue;
+            }
+            try {
+                long seconds = Long.parseLong(trimmed.substring(colon + 1).trim());
+                if (seconds > 0) {
+                    rules.put(trimmed.substring(0, colon).trim(), TimeUnit.SECONDS.toMillis(seconds));
+                }
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring tool cache rule '" + trimmed + "'; invalid TTL");
+            }
+        }
+        return rules;
+    }
+
+    public static boolean isBypassRequested(String cacheControl) {
+        if (cacheControl == null) {
+            return false;
+        }
+        String normalized = cacheControl.toLowerCase();
+        return normalized.contains("no-cache") || normalized.contains("no-store");
+    }
+
+    public boolean isEnabled() {
+        return !ttlMillisByTool.isEmpty();
+    }
+
+    /**
+     * How long results of the tool may be cached, or 0 if they may not.
+     */
+    public long getTtlMillis(String serverName, String toolName) {
+        Long ttl = ttlMillisByTool.get(serverName + "." + toolName);
+        if (ttl == null) {
+            ttl = ttlMillisByTool.get(serverName + ".*");
+        }
+        return ttl == null ? 0 : ttl;
+    }
+
+    /**
+     * Answers from the cache if possible, otherwise runs the backend call and caches its result.
+     * With bypass set, the cached entry is not consulted but is refreshed with the new result.
+     *
+     * @param deadline    the caller's deadline, which limits how long it waits for an identical call
+     * @param backendCall the call on behalf of this caller
+     * @param refreshCall the same call without caller-specific state, for background refreshes
+     */
+    public Object call(String serverName, String toolName, Map<String, Object> arguments, boolean bypass,
+                       McpDeadline deadline, Callable<Object> backendCall, Callable<Object> refreshCall)
+            throws Exception {
+        long ttlMillis = getTtlMillis(serverName, toolName);
+        if (ttlMillis <= 0) {
+            return backendCall.call();
+        }
+        return lookup(key(serverName, toolName, arguments), bypass, deadline, backendCall, refreshCall,
+            result -> result.path("isError").asBoolean(false) ? 0 : ttlMillis);
+    }
+
+    public Object call(String serverName, String toolName, Map<String, Object> arguments, boolean bypass,
+                       Callable<Object> backendCall) throws Exception {
+        return call(serverName, toolName, arguments, bypass, null, backendCall, backendCall);
+    }
+
+    /**
+     * Server, tool and a SHA-256 of the arguments serialized with sorted keys.
+     */
+    static String key(String serverName, String toolName, Map<String, Object> arguments) throws JsonProcessingException {
+        byte[] canonical = canonicalMapper.writeValueAsBytes(arguments == null ? Collections.emptyMap() : arguments);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical);
+            return serverName + "\u0000" + toolName + "\u0000" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JRE ships SHA-256; fall back to the canonical form itself
+            return serverName + "\u0000" + toolName + "\u0000" + new String(canonical, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Override
+    public ObjectNode getMetrics() {
+        ObjectNode metrics = super.getMetrics();
+        metrics.put("rules", ttlMillisByTool.size());
+        return metrics;
+    }
+}
@@ -0,0 +1,170 @@
+package org.apache.knox.mcp.catalog;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable snapshot of the aggregated tools and resources, sorted by name and already in
+ * MCP wire format. Lists are served in pages addressed by the last name of the previous
+ * page, so a cursor stays valid, and no entry is repeated, when a newer snapshot replaces this one.
+ * Input schemas are the descriptors' shared nodes; pages must be serialized, never modified.
+ */
+public final class McpCatalog {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final long version;
+    private final Section tools;
+    private final Section resources;
+    private final boolean stale;
+
+    private McpCatalog(long version, Section tools, Section resources, boolean stale) {
+        this.version = version;
+        this.tools = tools;
+        this.resources = resources;
+        this.stale = stale;
+    }
+
+    /**
+     * Builds a snapshot from the aggregated maps, keyed by the names clients see.
+     */
+    public static McpCatalog build(long version, Map<String, McpToolDescriptor> aggregatedTools,
+                                   Map<String, McpResourceDescriptor> aggregatedResources) {
+        return build(version, aggregatedTools, aggregatedResources, false);
+    }
+
+    /**
+     * Builds a snapshot; a stale one, restored from disk before every backend has been
+     * reached, says so in the {@code _meta} of each page.
+     */
+    public static McpCatalog build(long version, Map<String, McpToolDescriptor> aggregatedTools,
+                                   Map<String, McpResourceDescriptor> aggregatedResources, boolean stale) {
+        TreeMap<String, JsonNode> toolNodes = new TreeMap<>();
+        for (Map.Entry<String, McpToolDescriptor> entry : aggregatedTools.entrySet()) {
+            toolNodes.put(entry.getKey(), toToolNode(entry.getKey(), entry.getValue()));
+        }
+        TreeMap<String, JsonNode> resourceNodes = new TreeMap<>();
+        for (Map.Entry<String, McpResourceDescriptor> entry : aggregatedResources.entrySet()) {
+            resourceNodes.put(entry.getKey(), toResourceNode(entry.getKey(), entry.getValue()));
+        }
+        return new McpCatalog(version, new Section(toolNodes), new Section(resourceNodes), stale);
+    }
+
+    /**
+     * A {@code tools/list} result holding up to pageSize tools after the cursor, with
+     * {@code nextCursor} if more follow. A pageSize of 0 or less returns everything.
+     *
+     * @throws IllegalArgumentException if the cursor was not issued by this proxy
+     */
+    public ObjectNode listTools(String cursor, int pageSize) {
+        return markStale(tools.page("tools", cursor, pageSize));
+    }
+
+    /**
+     * A {@code resources/list} result; see {@link #listTools(String, int)}.
+     */
+    public ObjectNode listResources(String cursor, int pageSize) {
+        return markStale(resources.page("resources", cursor, pageSize));
+    }
+
+    private ObjectNode markStale(ObjectNode page) {
+        if (stale) {
+            page.putObject("_meta").put("stale", true);
+        }
+        return page;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getToolCount() {
+        return tools.keys.length;
+    }
+
+    public int getResourceCount() {
+        return resources.keys.length;
+    }
+
+    private static JsonNode toToolNode(String toolName, McpToolDescriptor tool) {
+        ObjectNode toolNode = objectMapper.createObjectNode();
+        toolNode.put("name", toolName);
+        if (tool.getDescription() != null) {
+            toolNode.put("description", tool.getDescription());
+        }
+        if (tool.getInputSchema() != null) {
+            // Shared with the descriptor (and possibly other tools) rather than copied
+            toolNode.set("inputSchema", tool.getInputSchema());
+        }
+        return toolNode;
+    }
+
+    private static JsonNode toResourceNode(String resourceUri, McpResourceDescriptor resource) {
+        ObjectNode resourceNode = objectMapper.createObjectNode();
+        resourceNode.put("uri", resourceUri);
+        if (resource.getName() != null) {
+            resourceNode.put("name", resource.getName());
+        }
+        if (resource.getDescription() != null) {
+            resourceNode.put("description", resource.getDescription());
+        }
+        if (resource.getMimeType() != null) {
+            resourceNode.put("mimeType", resource.getMimeType());
+        }
+        return resourceNode;
+    }
+
+    static String encodeCursor(String lastKey) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(lastKey.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    private static final class Section {
+        private final String[] keys;
+        private final JsonNode[] items;
+
+        private Section(TreeMap<String, JsonNode> sorted) {
+            this.keys = sorted.keySet().toArray(new String[0]);
+            this.items = sorted.values().toArray(new JsonNode[0]);
+        }
+
+        private ObjectNode page(String field, String cursor, int pageSize) {
+            int start = 0;
+            if (cursor != null) {
+                int found = Arrays.binarySearch(keys, decodeCursor(cursor));
+                // The last entry may have been removed since; continue from where it would be
+                start = found >= 0 ? found + 1 : -found - 1;
+            }
+            int end = pageSize > 0 ? (int) Math.min((long) start + pageSize, keys.length) : keys.length;
+
+            ObjectNode result = objectMapper.createObjectNode();
+            ArrayNode array = result.putArray(field);
+            for (int i = start; i < end; i++) {
+                array.add(items[i]);
+            }
+            if (end < keys.length) {
+                result.put("nextCursor", encodeCursor(keys[end - 1]));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.apache.knox.mcp.catalog;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Deduplicates catalog content. Schemas are rebuilt bottom-up so that equal subtrees
+ * (pagination arguments, auth blocks, whole schemas) become one shared instance, and
+ * field names and text are held once. Entries are weakly held, so content of tools that
+ * have gone from every catalog can be collected.
+ * <p>
+ * Interned nodes are shared between tools and must be treated as read-only.
+ */
+public final class McpCatalogInterner {
+
+    private static final McpCatalogInterner SHARED = new McpCatalogInterner();
+
+    private final Map<Object, WeakReference<Object>> pool = new WeakHashMap<>();
+    private final JsonNodeFactory nodeFactory = JsonNodeFactory.instance;
+
+    /**
+     * The interner used by every backend catalog in this gateway.
+     */
+    public static McpCatalogInterner shared() {
+        return SHARED;
+    }
+
+    public String intern(String value) {
+        return value == null ? null : canonical(value);
+    }
+
+    /**
+     * A canonical, structurally equal copy of the node; the argument itself is not modified.
+     */
+    public JsonNode intern(JsonNode node) {
+        if (node == null) {
+            return null;
+        }
+        if (node.isObject()) {
+            ObjectNode copy = nodeFactory.objectNode();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                copy.set(intern(field.getKey()), intern(field.getValue()));
+            }
+            return canonical(copy);
+        }
+        if (node.isArray()) {
+            ArrayNode copy = nodeFactory.arrayNode(node.size());
+            for (JsonNode element : node) {
+                copy.add(intern(element));
+            }
+            return canonical(copy);
+        }
+        if (node.isTextual()) {
+            return canonical(TextNode.valueOf(intern(node.textValue())));
+        }
+        return canonical(node);
+    }
+
+    public McpToolDescriptor tool(String name, String description, JsonNode inputSchema) {
+        return new McpToolDescriptor(intern(name), intern(description), intern(inputSchema));
+    }
+
+    public McpResourceDescriptor resource(String uri, String name, String description, String mimeType) {
+        return new McpResourceDescriptor(intern(uri), intern(name), intern(description), intern(mimeType));
+    }
+
+    /**
+     * Number of distinct values currently pooled.
+     */
+    public int size() {
+        synchronized (pool) {
+            return pool.size();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T canonical(T value) {
+        synchronized (pool) {
+            WeakReference<Object> ref = pool.get(value);
+            Object existing = ref == null ? null : ref.get();
+            if (existing != null) {
+                return (T) existing;
+            }
+            pool.put(value, new WeakReference<>(value));
+            return value;
+        }
+    }
+}
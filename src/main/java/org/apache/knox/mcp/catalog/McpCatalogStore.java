@@ -0,0 +1,239 @@
+package org.apache.knox.mcp.catalog;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.knox.mcp.util.McpLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the catalog of every backend in a gzipped JSON file, so a restarted gateway can serve
+ * {@code tools/list} before its backends have reconnected. The file is replaced atomically,
+ * so it can live in a directory shared by the nodes of a cluster.
+ */
+public class McpCatalogStore {
+
+    private static final McpLogger logger = McpLogger.getLogger(McpCatalogStore.class);
+
+    public static final String SNAPSHOT_FILE = "mcp.catalog.snapshot.file";
+
+    static final int FORMAT_VERSION = 1;
+
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mcp-catalog-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path file;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger saveRequests = new AtomicInteger();
+    private final AtomicLong saves = new AtomicLong();
+    private final AtomicLong saveFailures = new AtomicLong();
+
+    public McpCatalogStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * The configured store, or null if no snapshot file is configured.
+     */
+    public static McpCatalogStore fromConfig(Function<String, String> config) {
+        String path = config.apply(SNAPSHOT_FILE);
+        if (path == null || path.trim().isEmpty()) {
+            return null;
+        }
+        return new McpCatalogStore(Paths.get(path.trim()));
+    }
+
+    /**
+     * Reads the saved catalogs by server name. A missing or unreadable file yields an empty map.
+     */
+    public Map<String, ServerCatalog> load() {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            JsonNode root = objectMapper.readTree(in);
+            if (root == null || root.path("format").asInt() != FORMAT_VERSION) {
+                logger.warn("Ignoring catalog snapshot " + file + " with unknown format");
+                return Collections.emptyMap();
+            }
+            Map<String, ServerCatalog> catalogs = new HashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> servers = root.path("servers").fields();
+            while (servers.hasNext()) {
+                Map.Entry<String, JsonNode> server = servers.next();
+                JsonNode node = server.getValue();
+                catalogs.put(server.getKey(), new ServerCatalog(
+                    readTools(node.get("tools")), readResources(node.get("resources")),
+                    node.path("version").asLong(), node.path("updated").asLong()));
+            }
+            logger.info("Loaded catalog snapshot of " + catalogs.size() + " servers from " + file);
+            return catalogs;
+        } catch (NoSuchFileException e) {
+            return Collections.emptyMap();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not read catalog snapshot " + file + ": " + e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Writes the current catalogs in the background. Requests made while a write is queued
+     * or running are folded into one further write of the then-current state.
+     */
+    public void saveAsync(Supplier<Map<String, ServerCatalog>> state) {
+        if (saveRequests.getAndIncrement() > 0) {
+            return;
+        }
+        WRITER.execute(() -> {
+            int handled;
+            do {
+                handled = saveRequests.get();
+                try {
+                    save(state.get());
+                } catch (IOException | RuntimeException e) {
+                    saveFailures.incrementAndGet();
+                    logger.warn("Could not write catalog snapshot " + file + ": " + e.getMessage());
+                }
+            } while (saveRequests.addAndGet(-handled) > 0);
+        });
+    }
+
+    void save(Map<String, ServerCatalog> catalogs) throws IOException {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("format", FORMAT_VERSION);
+        root.put("saved", System.currentTimeMillis());
+        ObjectNode servers = root.putObject("servers");
+        for (Map.Entry<String, ServerCatalog> entry : catalogs.entrySet()) {
+            ObjectNode server = servers.putObject(entry.getKey());
+            server.put("version", entry.getValue().getVersion());
+            server.put("updated", entry.getValue().getUpdatedMillis());
+            server.set("tools", objectMapper.valueToTree(entry.getValue().getTools()));
+            server.set("resources", objectMapper.valueToTree(entry.getValue().getResources()));
+        }
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        // Write beside the target and rename, so readers never see a partial file
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                objectMapper.writeValue(out, root);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            saves.incrementAndGet();
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static Map<String, McpToolDescriptor> readTools(JsonNode node) {
+        Map<String, McpToolDescriptor> tools = new LinkedHashMap<>();
+        if (node != null && node.isObject()) {
+            McpCatalogInterner interner = McpCatalogInterner.shared();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                JsonNode tool = field.getValue();
+                tools.put(field.getKey(), interner.tool(tool.path("name").asText(field.getKey()),
+                    text(tool, "description"), tool.get("inputSchema")));
+            }
+        }
+        return Collections.unmodifiableMap(tools);
+    }
+
+    private static Map<String, McpResourceDescriptor> readResources(JsonNode node) {
+        Map<String, McpResourceDescriptor> resources = new LinkedHashMap<>();
+        if (node != null && node.isObject()) {
+            McpCatalogInterner interner = McpCatalogInterner.shared();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                JsonNode resource = field.getValue();
+                resources.put(field.getKey(), interner.resource(resource.path("uri").asText(field.getKey()),
+                    text(resource, "name"), text(resource, "description"), text(resource, "mimeType")));
+            }
+        }
+        return Collections.unmodifiableMap(resources);
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public ObjectNode getMetrics() {
+        ObjectNode metrics = objectMapper.createObjectNode();
+        metrics.put("file", file.toString());
+        metrics.put("saves", saves.get());
+        metrics.put("saveFailures", saveFailures.get());
+        return metrics;
+    }
+
+    /**
+     * One backend's tools and resources as the backend lists them, before aggregation.
+     */
+    public static final class ServerCatalog {
+        private final Map<String, McpToolDescriptor> tools;
+        private final Map<String, McpResourceDescriptor> resources;
+        private final long version;
+        private final long updatedMillis;
+
+        public ServerCatalog(Map<String, McpToolDescriptor> tools, Map<String, McpResourceDescriptor> resources,
+                             long version, long updatedMillis) {
+            this.tools = tools;
+            this.resources = resources;
+            this.version = version;
+            this.updatedMillis = updatedMillis;
+        }
+
+        public Map<String, McpToolDescriptor> getTools() {
+            return tools;
+        }
+
+        public Map<String, McpResourceDescriptor> getResources() {
+            return resources;
+        }
+
+        /**
+         * Incremented each time the server's catalog changes.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        public long getUpdatedMillis() {
+            return updatedMillis;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.apache.knox.mcp.catalog;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Objects;
+
+/**
+ * Immutable description of one backend resource.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class McpResourceDescriptor {
+
+    private final String uri;
+    private final String name;
+    private final String description;
+    private final String mimeType;
+
+    public McpResourceDescriptor(String uri, String name, String description, String mimeType) {
+        this.uri = Objects.requireNonNull(uri, "uri");
+        this.name = name;
+        this.description = description;
+        this.mimeType = mimeType;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof McpResourceDescriptor)) {
+            return false;
+        }
+        McpResourceDescriptor other = (McpResourceDescriptor) o;
+        return uri.equals(other.uri)
+            && Objects.equals(name, other.name)
+            && Objects.equals(description, other.description)
+            && Objects.equals(mimeType, other.mimeType);
+    }
+
+    @Override
+    public int hashCode() {
+        return uri.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "McpResourceDescriptor{uri='" + uri + "'}";
+    }
+}
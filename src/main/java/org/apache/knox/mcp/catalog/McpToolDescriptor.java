@@ -0,0 +1,61 @@
+package org.apache.knox.mcp.catalog;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Objects;
+
+/**
+ * Immutable description of one backend tool. The input schema may be shared with other
+ * tools through {@link McpCatalogInterner} and must never be modified.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class McpToolDescriptor {
+
+    private final String name;
+    private final String description;
+    private final JsonNode inputSchema;
+
+    public McpToolDescriptor(String name, String description, JsonNode inputSchema) {
+        this.name = Objects.requireNonNull(name, "name");
+        this.description = description;
+        this.inputSchema = inputSchema;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public JsonNode getInputSchema() {
+        return inputSchema;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof McpToolDescriptor)) {
+            return false;
+        }
+        McpToolDescriptor other = (McpToolDescriptor) o;
+        // Interned schemas are usually the same instance, which skips the deep comparison
+        return name.equals(other.name)
+            && Objects.equals(description, other.description)
+            && (inputSchema == other.inputSchema || Objects.equals(inputSchema, other.inputSchema));
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, description);
+    }
+
+    @Override
+    public String toString() {
+        return "McpToolDescriptor{name='" + name + "'}";
+    }
+}
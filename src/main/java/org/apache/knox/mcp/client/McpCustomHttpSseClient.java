@@ -15,9 +15,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URI;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.Map;
 import java.util.List;
@@ -32,8 +30,8 @@ import java.util.ArrayList;
 public class McpCustomHttpSseClient implements AutoCloseable {
     
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final AtomicLong requestIdCounter = new AtomicLong(1);
-    private final Map<Long, CompletableFuture<JsonNode>> pendingRequests = new ConcurrentHashMap<>();
+    private volatile McpNotificationListener notificationListener;
+    private final McpPendingRequests pendingRequests;
     
     private final HttpClient httpClient;
     private final String baseUrl;
@@ -41,6 +39,15 @@ public class McpCustomHttpSseClient implements AutoCloseable {
     private Thread sseReaderThread;
     private volatile boolean closed = false;
     
+    // Stream resumption state
+    private static final int MAX_RECONNECT_ATTEMPTS = 5;
+    private static final long MAX_RECONNECT_DELAY_MS = 30000;
+    // A server hint below this would reconnect in a tight loop to a server that keeps closing the stream
+    private static final long MIN_RECONNECT_DELAY_MS = 100;
+    private static final long RESUME_GRACE_MS = 2000;
+    private volatile String lastEventId;
+    private volatile long reconnectDelayMillis = 1000;
+    
     private String serverName;
     private JsonNode serverCapabilities;
     
@@ -49,6 +56,7 @@ public class McpCustomHttpSseClient implements AutoCloseable {
         this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
         this.sseEndpoint = this.baseUrl + "/sse";
         this.serverName = extractServerName(baseUrl);
+        this.pendingRequests = new McpPendingRequests(serverName);
     }
     
     private String extractServerName(String url) {
@@ -67,51 +75,136 @@ public class McpCustomHttpSseClient implements AutoCloseable {
     }
     
     private void startSseListener() throws IOException {
-        sseReaderThread = new Thread(() -> {
+        sseReaderThread = new Thread(this::runSseReader, "mcp-custom-sse-reader-" + serverName);
+        sseReaderThread.setDaemon(true);
+        sseReaderThread.start();
+        
+        // Give SSE connection time to establish
+        try {
+            Thread.sleep(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Reads the SSE stream and re-establishes it with Last-Event-ID when it drops. Requests that
+     * were in flight survive the reconnect only if the server numbers its events, since only then
+     * can it replay their responses; otherwise they fail as soon as the new stream is up. Those
+     * whose responses are not replayed within a grace period fail then.
+     */
+    private void runSseReader() {
+        boolean everConnected = false;
+        long[] orphanedIds = null;
+        long delay = reconnectDelayMillis;
+        int attempt = 0;
+        
+        while (!closed) {
             try {
-                HttpGet sseRequest = new HttpGet(sseEndpoint);
-                sseRequest.setHeader("Accept", "text/event-stream");
-                sseRequest.setHeader("Cache-Control", "no-cache");
+                boolean replayRequested = lastEventId != null;
+                HttpResponse response = openSseStream();
+                everConnected = true;
+                attempt = 0;
+                delay = reconnectDelayMillis;
                 
-                HttpResponse response = httpClient.execute(sseRequest);
-                
-                if (response.getStatusLine().getStatusCode() != 200) {
-                    throw new IOException("Failed to connect to SSE endpoint: " + 
-                        response.getStatusLine().getStatusCode());
-                }
-                
-                try (BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(response.getEntity().getContent()))) {
-                    
-                    String line;
-                    StringBuilder eventData = new StringBuilder();
-                    
-                    while (!closed && (line = reader.readLine()) != null) {
-                        if (line.startsWith("data: ")) {
-                            String data = line.substring(6);
-                            eventData.append(data);
-                        } else if (line.isEmpty() && eventData.length() > 0) {
-                            // End of event, process the data
-                            handleSseMessage(eventData.toString());
-                            eventData.setLength(0);
-                        }
+                if (orphanedIds != null) {
+                    if (orphanedIds.length > 0) {
+                        failOrphanedRequests(orphanedIds, replayRequested);
                     }
+                    orphanedIds = null;
                 }
+                
+                readSseStream(response);
             } catch (IOException e) {
                 if (!closed) {
                     System.err.println("Error in SSE connection to " + serverName + ": " + e.getMessage());
                 }
             }
-        });
+            
+            if (closed || !everConnected) {
+                break;
+            }
+            if (orphanedIds == null) {
+                orphanedIds = pendingRequests.ids();
+            }
+            if (++attempt > MAX_RECONNECT_ATTEMPTS) {
+                failPendingRequests(pendingRequests.ids(),
+                    "SSE stream to " + serverName + " was lost and could not be re-established");
+                break;
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            delay = Math.min(delay * 2, MAX_RECONNECT_DELAY_MS);
+        }
+    }
+    
+    private HttpResponse openSseStream() throws IOException {
+        HttpGet sseRequest = new HttpGet(sseEndpoint);
+        sseRequest.setHeader("Accept", "text/event-stream");
+        sseRequest.setHeader("Cache-Control", "no-cache");
+        String resumeFrom = lastEventId;
+        if (resumeFrom != null) {
+            sseRequest.setHeader("Last-Event-ID", resumeFrom);
+        }
         
-        sseReaderThread.setDaemon(true);
-        sseReaderThread.start();
+        HttpResponse response = httpClient.execute(sseRequest);
         
-        // Give SSE connection time to establish
-        try {
-            Thread.sleep(500);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+        if (response.getStatusLine().getStatusCode() != 200) {
+            EntityUtils.consumeQuietly(response.getEntity());
+            throw new IOException("Failed to connect to SSE endpoint: " + 
+                response.getStatusLine().getStatusCode());
+        }
+        return response;
+    }
+    
+    private void readSseStream(HttpResponse response) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(response.getEntity().getContent()))) {
+            
+            String line;
+            StringBuilder eventData = new StringBuilder();
+            
+            while (!closed && (line = reader.readLine()) != null) {
+                if (line.startsWith("data:")) {
+                    String data = line.startsWith("data: ") ? line.substring(6) : line.substring(5);
+                    eventData.append(data);
+                } else if (line.startsWith("id:")) {
+                    String id = line.substring(3).trim();
+                    if (id.indexOf('\0') == -1) {
+                        lastEventId = id;
+                    }
+                } else if (line.startsWith("retry:")) {
+                    try {
+                        reconnectDelayMillis = Math.max(MIN_RECONNECT_DELAY_MS, Long.parseLong(line.substring(6).trim()));
+                    } catch (NumberFormatException e) {
+                        // Ignore malformed retry hints
+                    }
+                } else if (line.isEmpty() && eventData.length() > 0) {
+                    // End of event, process the data
+                    handleSseMessage(eventData.toString());
+                    eventData.setLength(0);
+                }
+            }
+        }
+    }
+    
+    // Requests answered by the replay are no longer pending, so failing them later does nothing
+    private void failOrphanedRequests(long[] ids, boolean replayRequested) {
+        String reason = "Request was lost when the SSE stream to " + serverName + " was re-established";
+        if (!replayRequested) {
+            failPendingRequests(ids, reason);
+            return;
+        }
+        pendingRequests.schedule(() -> failPendingRequests(ids, reason), RESUME_GRACE_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    private void failPendingRequests(long[] ids, String reason) {
+        for (long id : ids) {
+            pendingRequests.fail(id, new McpException(McpException.CONNECTION_CLOSED, reason));
         }
     }
     
@@ -121,31 +214,16 @@ public class McpCustomHttpSseClient implements AutoCloseable {
             
             if (response.has("id") && !response.get("id").isNull()) {
                 // This is a response to a request
-                long id = response.get("id").asLong();
-                CompletableFuture<JsonNode> future = pendingRequests.remove(id);
-                if (future != null) {
-                    if (response.has("error")) {
-                        JsonNode error = response.get("error");
-                        future.completeExceptionally(new McpException(
-                            error.get("code").asInt(),
-                            error.get("message").asText()
-                        ));
-                    } else {
-                        future.complete(response.get("result"));
-                    }
-                }
-            } else {
-                // This is a notification - ignore for now
-                System.out.println("Received notification from " + serverName + ": " + message);
+                pendingRequests.complete(response.get("id").asLong(), response);
+            } else if (response.has("method")) {
+                dispatchNotification(response);
             }
         } catch (Exception e) {
             System.err.println("Error parsing SSE message from " + serverName + ": " + e.getMessage());
         }
     }
     
-    private CompletableFuture<JsonNode> sendHttpRequest(String method, JsonNode params) {
-        long id = requestIdCounter.getAndIncrement();
-        
+    private CompletableFuture<JsonNode> sendHttpRequest(long id, String method, JsonNode params, McpDeadline deadline) {
         ObjectNode request = objectMapper.createObjectNode();
         request.put("jsonrpc", "2.0");
         request.put("id", id);
@@ -154,8 +232,7 @@ public class McpCustomHttpSseClient implements AutoCloseable {
             request.set("params", params);
         }
         
-        CompletableFuture<JsonNode> future = new CompletableFuture<>();
-        pendingRequests.put(id, future);
+        CompletableFuture<JsonNode> future = pendingRequests.register(id, method, deadline);
         
         // Send request via HTTP POST in background
         CompletableFuture.runAsync(() -> {
@@ -170,8 +247,7 @@ public class McpCustomHttpSseClient implements AutoCloseable {
                 int statusCode = response.getStatusLine().getStatusCode();
                 
                 if (statusCode != 200 && statusCode != 202) {
-                    pendingRequests.remove(id);
-                    future.completeExceptionally(new IOException(
+                    pendingRequests.fail(id, new IOException(
                         "HTTP request failed with status: " + statusCode));
                 }
                 
@@ -180,21 +256,56 @@ public class McpCustomHttpSseClient implements AutoCloseable {
                 EntityUtils.consume(response.getEntity());
                 
             } catch (Exception e) {
-                pendingRequests.remove(id);
-                future.completeExceptionally(e);
+                pendingRequests.fail(id, e);
             }
         });
         
         return future;
     }
     
+    /**
+     * Sends the request and waits for its response until the deadline. On expiry, or when the
+     * caller cancels, the server is told to stop working on it with {@code notifications/cancelled}.
+     */
+    private JsonNode sendHttpRequest(String method, JsonNode params, McpDeadline deadline) throws Exception {
+        return sendHttpRequestAndWait(pendingRequests.nextId(), method, params, deadline);
+    }
+    
+    private JsonNode sendHttpRequestAndWait(long id, String method, JsonNode params, McpDeadline deadline) throws Exception {
+        pendingRequests.checkSendable(method, deadline);
+        CompletableFuture<JsonNode> future = sendHttpRequest(id, method, params, deadline);
+        // initialize must not be cancelled
+        return pendingRequests.await(id, future, method, deadline, "initialize".equals(method) ? null : this::sendCancelled);
+    }
+    
+    private void sendCancelled(long id, String reason) {
+        ObjectNode notification = objectMapper.createObjectNode();
+        notification.put("jsonrpc", "2.0");
+        notification.put("method", "notifications/cancelled");
+        ObjectNode params = notification.putObject("params");
+        params.put("requestId", id);
+        params.put("reason", reason);
+        // Fire and forget, like the requests themselves
+        CompletableFuture.runAsync(() -> {
+            try {
+                HttpPost httpPost = new HttpPost(baseUrl + "/message");
+                httpPost.setHeader("Content-Type", "application/json");
+                httpPost.setEntity(new StringEntity(objectMapper.writeValueAsString(notification)));
+                HttpResponse response = httpClient.execute(httpPost);
+                EntityUtils.consume(response.getEntity());
+            } catch (Exception e) {
+                System.err.println("Failed to cancel request " + id + " on " + serverName + ": " + e.getMessage());
+            }
+        });
+    }
+    
     public JsonNode initialize(JsonNode clientCapabilities) throws Exception {
         ObjectNode params = objectMapper.createObjectNode();
         params.put("protocolVersion", "2024-11-05");
         params.set("capabilities", clientCapabilities != null ? clientCapabilities : objectMapper.createObjectNode());
         params.set("clientInfo", createClientInfo());
         
-        JsonNode result = sendHttpRequest("initialize", params).get(10, TimeUnit.SECONDS);
+        JsonNode result = sendHttpRequest("initialize", params, McpDeadline.after(10, TimeUnit.SECONDS));
         if (result != null && result.has("capabilities")) {
             this.serverCapabilities = result.get("capabilities");
         }
@@ -209,55 +320,86 @@ public class McpCustomHttpSseClient implements AutoCloseable {
     }
     
     public List<McpTool> listTools() throws Exception {
-        JsonNode result = sendHttpRequest("tools/list", null).get(10, TimeUnit.SECONDS);
         List<McpTool> tools = new ArrayList<>();
-        
-        if (result != null && result.has("tools")) {
-            for (JsonNode toolNode : result.get("tools")) {
-                tools.add(new McpTool(
-                    toolNode.get("name").asText(),
-                    toolNode.has("description") ? toolNode.get("description").asText() : "",
-                    toolNode.has("inputSchema") ? toolNode.get("inputSchema") : null
-                ));
-            }
+        for (JsonNode toolNode : McpListPager.fetchAll("tools/list", "tools",
+                params -> sendHttpRequest("tools/list", params, McpDeadline.after(10, TimeUnit.SECONDS)))) {
+            tools.add(McpListPager.toTool(toolNode));
         }
-        
         return tools;
     }
     
     public JsonNode callTool(String toolName, Map<String, Object> arguments) throws Exception {
+        return callTool(nextRequestId(), toolName, arguments, false, null);
+    }
+    
+    /**
+     * Calls a tool as request {@code requestId}, taken from {@link #nextRequestId()}, so the
+     * caller knows the id the server sees. Progress, if asked for, is reported under that id.
+     */
+    public JsonNode callTool(long requestId, String toolName, Map<String, Object> arguments, boolean reportProgress,
+                             McpDeadline deadline) throws Exception {
+        ObjectNode params = toolCallParams(toolName, arguments);
+        if (reportProgress) {
+            params.putObject("_meta").put("progressToken", requestId);
+        }
+        return sendHttpRequestAndWait(requestId, "tools/call", params, deadline != null ? deadline : McpDeadline.after(30, TimeUnit.SECONDS));
+    }
+    
+    private ObjectNode toolCallParams(String toolName, Map<String, Object> arguments) {
         ObjectNode params = objectMapper.createObjectNode();
         params.put("name", toolName);
         if (arguments != null) {
             params.set("arguments", objectMapper.valueToTree(arguments));
         }
-        
-        return sendHttpRequest("tools/call", params).get(30, TimeUnit.SECONDS);
+        return params;
+    }
+    
+    /**
+     * The id for a request sent with {@link #callTool(long, String, Map, boolean, McpDeadline)}.
+     */
+    public long nextRequestId() {
+        return pendingRequests.nextId();
     }
     
     public List<McpResource> listResources() throws Exception {
-        JsonNode result = sendHttpRequest("resources/list", null).get(10, TimeUnit.SECONDS);
         List<McpResource> resources = new ArrayList<>();
-        
-        if (result != null && result.has("resources")) {
-            for (JsonNode resourceNode : result.get("resources")) {
-                resources.add(new McpResource(
-                    resourceNode.get("uri").asText(),
-                    resourceNode.has("name") ? resourceNode.get("name").asText() : "",
-                    resourceNode.has("description") ? resourceNode.get("description").asText() : "",
-                    resourceNode.has("mimeType") ? resourceNode.get("mimeType").asText() : null
-                ));
-            }
+        for (JsonNode resourceNode : McpListPager.fetchAll("resources/list", "resources",
+                params -> sendHttpRequest("resources/list", params, McpDeadline.after(10, TimeUnit.SECONDS)))) {
+            resources.add(McpListPager.toResource(resourceNode));
         }
-        
         return resources;
     }
     
     public JsonNode readResource(String uri) throws Exception {
+        return readResource(uri, null);
+    }
+    
+    /**
+     * Reads a resource, waiting until the deadline, or 10 seconds if it is null.
+     */
+    public JsonNode readResource(String uri, McpDeadline deadline) throws Exception {
+        ObjectNode params = objectMapper.createObjectNode();
+        params.put("uri", uri);
+        
+        return sendHttpRequest("resources/read", params, deadline != null ? deadline : McpDeadline.after(10, TimeUnit.SECONDS));
+    }
+    
+    /**
+     * Sends an MCP {@code ping}, which the server answers with an empty result as long as it
+     * is able to handle requests.
+     */
+    public void ping(McpDeadline deadline) throws Exception {
+        sendHttpRequest("ping", null, deadline);
+    }
+    
+    /**
+     * Asks the server to send {@code notifications/resources/updated} when the resource changes.
+     */
+    public void subscribeResource(String uri) throws Exception {
         ObjectNode params = objectMapper.createObjectNode();
         params.put("uri", uri);
         
-        return sendHttpRequest("resources/read", params).get(10, TimeUnit.SECONDS);
+        sendHttpRequest("resources/subscribe", params, McpDeadline.after(10, TimeUnit.SECONDS));
     }
     
     @Override
@@ -265,10 +407,7 @@ public class McpCustomHttpSseClient implements AutoCloseable {
         closed = true;
         
         // Cancel pending requests
-        for (CompletableFuture<JsonNode> future : pendingRequests.values()) {
-            future.cancel(true);
-        }
-        pendingRequests.clear();
+        pendingRequests.cancelAll();
         
         // Interrupt SSE reader thread
         if (sseReaderThread != null) {
@@ -285,6 +424,31 @@ public class McpCustomHttpSseClient implements AutoCloseable {
         }
     }
     
+    /**
+     * Registers the listener for notifications the server sends outside of responses.
+     */
+    public void setNotificationListener(McpNotificationListener notificationListener) {
+        this.notificationListener = notificationListener;
+    }
+    
+    private void dispatchNotification(JsonNode notification) {
+        McpNotificationListener listener = notificationListener;
+        String method = notification.get("method").asText();
+        if (listener == null) {
+            System.out.println("Received notification from " + serverName + ": " + method);
+            return;
+        }
+        try {
+            listener.onNotification(method, notification.get("params"));
+        } catch (RuntimeException e) {
+            System.err.println("Notification listener failed for " + serverName + ": " + e.getMessage());
+        }
+    }
+    
+    public McpPendingRequests getPendingRequests() {
+        return pendingRequests;
+    }
+    
     public String getServerName() {
         return serverName;
     }
@@ -293,6 +457,10 @@ public class McpCustomHttpSseClient implements AutoCloseable {
         return serverCapabilities;
     }
     
+    public String getLastEventId() {
+        return lastEventId;
+    }
+    
     public boolean isAlive() {
         return !closed && sseReaderThread != null && sseReaderThread.isAlive();
     }
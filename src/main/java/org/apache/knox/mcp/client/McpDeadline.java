@@ -0,0 +1,160 @@
+package org.apache.knox.mcp.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The point in time by which a caller needs a response. Carried with a request through
+ * queues and transports so that each of them waits only as long as the caller still does.
+ * A caller that gives up early cancels the deadline; whoever is waiting on it is told
+ * through its cancel listeners.
+ */
+public final class McpDeadline {
+
+    private final long deadlineNanos;
+    private final long timeoutMillis;
+    private final boolean bounded;
+    private final boolean shortenedByCaller;
+
+    // Guarded by this
+    private List<Runnable> cancelListeners;
+    private volatile String cancelReason;
+
+    private McpDeadline(long deadlineNanos, long timeoutMillis, boolean bounded, boolean shortenedByCaller) {
+        this.deadlineNanos = deadlineNanos;
+        this.timeoutMillis = timeoutMillis;
+        this.bounded = bounded;
+        this.shortenedByCaller = shortenedByCaller;
+    }
+
+    public static McpDeadline after(long timeout, TimeUnit unit) {
+        long nanos = unit.toNanos(Math.max(0, timeout));
+        return new McpDeadline(System.nanoTime() + nanos, TimeUnit.NANOSECONDS.toMillis(nanos), true, false);
+    }
+
+    /**
+     * A deadline without a time limit, which can still be cancelled.
+     */
+    public static McpDeadline none() {
+        return new McpDeadline(0, 0, false, false);
+    }
+
+    /**
+     * A deadline that passes after the timeout or with this one, whichever comes first, and
+     * is cancelled along with this one.
+     */
+    public McpDeadline narrow(long timeout, TimeUnit unit) {
+        return narrow(timeout, unit, false);
+    }
+
+    /**
+     * Like {@link #narrow(long, TimeUnit)}, noting whether the timeout is shorter than the
+     * proxy's own because the caller asked for less. A deadline this one limits inherits it.
+     */
+    public McpDeadline narrow(long timeout, TimeUnit unit, boolean byCaller) {
+        long nanos = unit.toNanos(Math.max(0, timeout));
+        long now = System.nanoTime();
+        boolean shortened = byCaller;
+        if (bounded && deadlineNanos - now <= nanos) {
+            nanos = Math.max(0, deadlineNanos - now);
+            shortened |= shortenedByCaller;
+        }
+        McpDeadline narrowed = new McpDeadline(now + nanos, TimeUnit.NANOSECONDS.toMillis(nanos), true, shortened);
+        addCancelListener(() -> narrowed.cancel(cancelReason));
+        return narrowed;
+    }
+
+    public boolean hasTimeLimit() {
+        return bounded;
+    }
+
+    /**
+     * Whether the time limit is shorter than the proxy's own timeout for the request because the
+     * caller asked for less. Its expiry then says nothing about the backend.
+     */
+    public boolean isShortenedByCaller() {
+        return shortenedByCaller;
+    }
+
+    /**
+     * Time left, never negative; {@code Long.MAX_VALUE} without a time limit.
+     */
+    public long remaining(TimeUnit unit) {
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return unit.convert(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isExpired() {
+        return bounded && deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * The timeout the deadline was created with, for messages.
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Tells everyone waiting on the deadline that the caller no longer needs the response.
+     * Returns false if it was already cancelled.
+     */
+    public boolean cancel(String reason) {
+        List<Runnable> listeners;
+        synchronized (this) {
+            if (cancelReason != null) {
+                return false;
+            }
+            cancelReason = reason != null ? reason : "Cancelled";
+            listeners = cancelListeners;
+            cancelListeners = null;
+        }
+        if (listeners != null) {
+            for (Runnable listener : listeners) {
+                listener.run();
+            }
+        }
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return cancelReason != null;
+    }
+
+    /**
+     * Why the deadline was cancelled, or null if it was not.
+     */
+    public String getCancelReason() {
+        return cancelReason;
+    }
+
+    /**
+     * Runs the listener when the deadline is cancelled, or right away if it already was.
+     */
+    public void addCancelListener(Runnable listener) {
+        synchronized (this) {
+            if (cancelReason == null) {
+                if (cancelListeners == null) {
+                    cancelListeners = new ArrayList<>(2);
+                }
+                cancelListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    public synchronized void removeCancelListener(Runnable listener) {
+        if (cancelListeners != null) {
+            cancelListeners.remove(listener);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return bounded ? timeoutMillis + " ms" : "no time limit";
+    }
+}
@@ -4,6 +4,16 @@ package org.apache.knox.mcp.client;
  * Exception thrown when MCP operations fail
  */
 public class McpException extends Exception {
+    
+    /** The transport to the server went away before a response arrived */
+    public static final int CONNECTION_CLOSED = -32000;
+    
+    /** No response arrived before the request's deadline; the server was asked to cancel it */
+    public static final int REQUEST_TIMEOUT = -32001;
+    
+    /** The caller gave up on the request; the server was asked to cancel it */
+    public static final int REQUEST_CANCELLED = -32800;
+    
     private final int code;
     
     public McpException(int code, String message) {
@@ -20,7 +30,12 @@ public class McpException extends Exception {
         this.code = -1;
     }
     
+    public McpException(int code, String message, Throwable cause) {
+        super(message, cause);
+        this.code = code;
+    }
+    
     public int getCode() {
         return code;
     }
-}
\ No newline at end of file
+}
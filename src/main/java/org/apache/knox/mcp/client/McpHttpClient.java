@@ -3,6 +3,7 @@ package org.apache.knox.mcp.client;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
@@ -10,9 +11,13 @@ import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.URI;
-import java.util.concurrent.atomic.AtomicLong;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
@@ -24,7 +29,8 @@ import java.util.ArrayList;
 public class McpHttpClient implements AutoCloseable {
     
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final AtomicLong requestIdCounter = new AtomicLong(1);
+    private volatile McpNotificationListener notificationListener;
+    private final McpPendingRequests pendingRequests;
     
     private final HttpClient httpClient;
     private final String baseUrl;
@@ -37,6 +43,7 @@ public class McpHttpClient implements AutoCloseable {
         this.httpClient = HttpClients.createDefault();
         this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
         this.serverName = extractServerName(baseUrl);
+        this.pendingRequests = new McpPendingRequests(serverName);
     }
     
     private String extractServerName(String url) {
@@ -55,12 +62,20 @@ public class McpHttpClient implements AutoCloseable {
         // Connection is established per request
     }
     
-    private JsonNode sendHttpRequest(String method, JsonNode params) throws Exception {
+    /**
+     * Sends the request, aborting it once the deadline passes or the caller cancels. An aborted
+     * request other than {@code initialize} is followed by {@code notifications/cancelled} so
+     * the server can stop working on it.
+     */
+    private JsonNode sendHttpRequest(String method, JsonNode params, McpDeadline deadline) throws Exception {
+        return sendHttpRequest(pendingRequests.nextId(), method, params, deadline);
+    }
+    
+    private JsonNode sendHttpRequest(long id, String method, JsonNode params, McpDeadline deadline) throws Exception {
         if (closed) {
             throw new IllegalStateException("Client is closed");
         }
-        
-        long id = requestIdCounter.getAndIncrement();
+        pendingRequests.checkSendable(method, deadline);
         
         ObjectNode request = objectMapper.createObjectNode();
         request.put("jsonrpc", "2.0");
@@ -72,11 +87,41 @@ public class McpHttpClient implements AutoCloseable {
         
         HttpPost httpPost = new HttpPost(baseUrl);
         httpPost.setHeader("Content-Type", "application/json");
-        httpPost.setHeader("Accept", "application/json");
+        // Streamable HTTP servers may answer with an SSE stream carrying notifications first
+        httpPost.setHeader("Accept", "application/json, text/event-stream");
         
         String requestJson = objectMapper.writeValueAsString(request);
         httpPost.setEntity(new StringEntity(requestJson, "UTF-8"));
         
+        // The response arrives on this thread; the entry only tracks the request and expires it
+        CompletableFuture<JsonNode> pending = pendingRequests.register(id, method, deadline);
+        pending.whenComplete((result, error) -> httpPost.abort());
+        Runnable abandon = httpPost::abort;
+        deadline.addCancelListener(abandon);
+        try {
+            return execute(httpPost, id);
+        } catch (IOException e) {
+            if (deadline.isCancelled()) {
+                sendCancelled(id, deadline.getCancelReason());
+                throw new McpRequestCancelledException(method + " for server " + serverName +
+                                                       " was cancelled: " + deadline.getCancelReason(), e);
+            }
+            // Expired entries fail; the ones dropped on close are cancelled
+            if (!pending.isCompletedExceptionally() || pending.isCancelled()) {
+                throw e;
+            }
+            if (!"initialize".equals(method)) {
+                sendCancelled(id, "Deadline of " + deadline + " exceeded");
+            }
+            throw new McpRequestTimeoutException(method + " for server " + serverName +
+                                                 " did not complete within " + deadline, e);
+        } finally {
+            deadline.removeCancelListener(abandon);
+            pendingRequests.remove(id);
+        }
+    }
+    
+    private JsonNode execute(HttpPost httpPost, long id) throws Exception {
         HttpResponse response = httpClient.execute(httpPost);
         int statusCode = response.getStatusLine().getStatusCode();
         
@@ -92,8 +137,14 @@ public class McpHttpClient implements AutoCloseable {
             throw new IOException("Empty response body");
         }
         
-        String responseBody = EntityUtils.toString(response.getEntity());
-        JsonNode responseJson = objectMapper.readTree(responseBody);
+        JsonNode responseJson;
+        Header contentType = response.getEntity().getContentType();
+        if (contentType != null && contentType.getValue().startsWith("text/event-stream")) {
+            responseJson = readEventStream(response, id);
+        } else {
+            String responseBody = EntityUtils.toString(response.getEntity());
+            responseJson = objectMapper.readTree(responseBody);
+        }
         
         // Validate JSON-RPC response
         if (!responseJson.has("jsonrpc") || !"2.0".equals(responseJson.get("jsonrpc").asText())) {
@@ -115,13 +166,63 @@ public class McpHttpClient implements AutoCloseable {
         return responseJson.get("result");
     }
     
+    private void sendCancelled(long id, String reason) {
+        ObjectNode notification = objectMapper.createObjectNode();
+        notification.put("jsonrpc", "2.0");
+        notification.put("method", "notifications/cancelled");
+        ObjectNode params = notification.putObject("params");
+        params.put("requestId", id);
+        params.put("reason", reason);
+        CompletableFuture.runAsync(() -> {
+            try {
+                HttpPost httpPost = new HttpPost(baseUrl);
+                httpPost.setHeader("Content-Type", "application/json");
+                httpPost.setHeader("Accept", "application/json, text/event-stream");
+                httpPost.setEntity(new StringEntity(objectMapper.writeValueAsString(notification), "UTF-8"));
+                HttpResponse response = httpClient.execute(httpPost);
+                EntityUtils.consume(response.getEntity());
+            } catch (Exception e) {
+                System.err.println("Failed to cancel request " + id + " on " + serverName + ": " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Reads an SSE response, relaying notifications until the response to our request arrives.
+     */
+    private JsonNode readEventStream(HttpResponse response, long id) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8))) {
+            StringBuilder data = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("data:")) {
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(line.substring(line.startsWith("data: ") ? 6 : 5));
+                } else if (line.isEmpty() && data.length() > 0) {
+                    JsonNode message = objectMapper.readTree(data.toString());
+                    data.setLength(0);
+                    if (message.has("id") && message.get("id").asLong() == id) {
+                        return message;
+                    }
+                    if (message.has("method") && !message.has("id")) {
+                        dispatchNotification(message);
+                    }
+                }
+            }
+        }
+        throw new IOException("Event stream ended without a response to request " + id);
+    }
+    
     public JsonNode initialize(JsonNode clientCapabilities) throws Exception {
         ObjectNode params = objectMapper.createObjectNode();
         params.put("protocolVersion", "2024-11-05");
         params.set("capabilities", clientCapabilities != null ? clientCapabilities : objectMapper.createObjectNode());
         params.set("clientInfo", createClientInfo());
         
-        JsonNode result = sendHttpRequest("initialize", params);
+        JsonNode result = sendHttpRequest("initialize", params, McpDeadline.after(10, TimeUnit.SECONDS));
         if (result != null && result.has("capabilities")) {
             this.serverCapabilities = result.get("capabilities");
         }
@@ -136,61 +237,95 @@ public class McpHttpClient implements AutoCloseable {
     }
     
     public List<McpTool> listTools() throws Exception {
-        JsonNode result = sendHttpRequest("tools/list", null);
         List<McpTool> tools = new ArrayList<>();
-        
-        if (result != null && result.has("tools")) {
-            for (JsonNode toolNode : result.get("tools")) {
-                tools.add(new McpTool(
-                    toolNode.get("name").asText(),
-                    toolNode.has("description") ? toolNode.get("description").asText() : "",
-                    toolNode.has("inputSchema") ? toolNode.get("inputSchema") : null
-                ));
-            }
+        for (JsonNode toolNode : McpListPager.fetchAll("tools/list", "tools",
+                params -> sendHttpRequest("tools/list", params, McpDeadline.after(10, TimeUnit.SECONDS)))) {
+            tools.add(McpListPager.toTool(toolNode));
         }
-        
         return tools;
     }
     
     public JsonNode callTool(String toolName, Map<String, Object> arguments) throws Exception {
+        return callTool(nextRequestId(), toolName, arguments, false, null);
+    }
+    
+    /**
+     * Calls a tool as request {@code requestId}, taken from {@link #nextRequestId()}, so the
+     * caller knows the id the server sees. Progress, if asked for, is reported under that id.
+     */
+    public JsonNode callTool(long requestId, String toolName, Map<String, Object> arguments, boolean reportProgress,
+                             McpDeadline deadline) throws Exception {
+        ObjectNode params = toolCallParams(toolName, arguments);
+        if (reportProgress) {
+            params.putObject("_meta").put("progressToken", requestId);
+        }
+        return sendHttpRequest(requestId, "tools/call", params, deadline != null ? deadline : McpDeadline.after(30, TimeUnit.SECONDS));
+    }
+    
+    private ObjectNode toolCallParams(String toolName, Map<String, Object> arguments) {
         ObjectNode params = objectMapper.createObjectNode();
         params.put("name", toolName);
         if (arguments != null) {
             params.set("arguments", objectMapper.valueToTree(arguments));
         }
-        
-        return sendHttpRequest("tools/call", params);
+        return params;
+    }
+    
+    /**
+     * The id for a request sent with {@link #callTool(long, String, Map, boolean, McpDeadline)}.
+     */
+    public long nextRequestId() {
+        return pendingRequests.nextId();
     }
     
     public List<McpResource> listResources() throws Exception {
-        JsonNode result = sendHttpRequest("resources/list", null);
         List<McpResource> resources = new ArrayList<>();
-        
-        if (result != null && result.has("resources")) {
-            for (JsonNode resourceNode : result.get("resources")) {
-                resources.add(new McpResource(
-                    resourceNode.get("uri").asText(),
-                    resourceNode.has("name") ? resourceNode.get("name").asText() : "",
-                    resourceNode.has("description") ? resourceNode.get("description").asText() : "",
-                    resourceNode.has("mimeType") ? resourceNode.get("mimeType").asText() : null
-                ));
-            }
+        for (JsonNode resourceNode : McpListPager.fetchAll("resources/list", "resources",
+                params -> sendHttpRequest("resources/list", params, McpDeadline.after(10, TimeUnit.SECONDS)))) {
+            resources.add(McpListPager.toResource(resourceNode));
         }
-        
         return resources;
     }
     
     public JsonNode readResource(String uri) throws Exception {
+        return readResource(uri, null);
+    }
+    
+    /**
+     * Reads a resource, aborting it at the deadline, or after 10 seconds if it is null.
+     */
+    public JsonNode readResource(String uri, McpDeadline deadline) throws Exception {
+        ObjectNode params = objectMapper.createObjectNode();
+        params.put("uri", uri);
+        
+        return sendHttpRequest("resources/read", params, deadline != null ? deadline : McpDeadline.after(10, TimeUnit.SECONDS));
+    }
+    
+    /**
+     * Sends an MCP {@code ping}, which the server answers with an empty result as long as it
+     * is able to handle requests.
+     */
+    public void ping(McpDeadline deadline) throws Exception {
+        sendHttpRequest("ping", null, deadline != null ? deadline : McpDeadline.after(10, TimeUnit.SECONDS));
+    }
+    
+    /**
+     * Asks the server to send {@code notifications/resources/updated} when the resource changes.
+     */
+    public void subscribeResource(String uri) throws Exception {
         ObjectNode params = objectMapper.createObjectNode();
         params.put("uri", uri);
         
-        return sendHttpRequest("resources/read", params);
+        sendHttpRequest("resources/subscribe", params, McpDeadline.after(10, TimeUnit.SECONDS));
     }
     
     @Override
     public void close() {
         closed = true;
         
+        // Abort running requests
+        pendingRequests.cancelAll();
+        
         // Close HTTP client if it's a CloseableHttpClient
         try {
             if (httpClient instanceof java.io.Closeable) {
@@ -201,6 +336,29 @@ public class McpHttpClient implements AutoCloseable {
         }
     }
     
+    /**
+     * Registers the listener for notifications the server streams ahead of a response.
+     */
+    public void setNotificationListener(McpNotificationListener notificationListener) {
+        this.notificationListener = notificationListener;
+    }
+    
+    private void dispatchNotification(JsonNode notification) {
+        McpNotificationListener listener = notificationListener;
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.onNotification(notification.get("method").asText(), notification.get("params"));
+        } catch (RuntimeException e) {
+            System.err.println("Notification listener failed for " + serverName + ": " + e.getMessage());
+        }
+    }
+    
+    public McpPendingRequests getPendingRequests() {
+        return pendingRequests;
+    }
+    
     public String getServerName() {
         return serverName;
     }
@@ -5,10 +5,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.*;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
@@ -20,8 +18,8 @@ import java.util.Set;
 public class McpJsonRpcClient implements AutoCloseable {
     
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final AtomicLong requestIdCounter = new AtomicLong(1);
-    private final Map<Long, CompletableFuture<JsonNode>> pendingRequests = new ConcurrentHashMap<>();
+    private volatile McpNotificationListener notificationListener;
+    private final McpPendingRequests pendingRequests;
     
     private Process mcpProcess;
     private BufferedWriter processInput;
@@ -38,6 +36,7 @@ public class McpJsonRpcClient implements AutoCloseable {
     
     public McpJsonRpcClient(String command, String[] args, java.util.Set<String> allowedCommands) throws IOException {
         this.serverName = extractServerName(command, args);
+        this.pendingRequests = new McpPendingRequests(serverName);
         validateCommand(command, allowedCommands);
         startProcess(command, args);
         startReaderThread();
@@ -176,25 +175,14 @@ public class McpJsonRpcClient implements AutoCloseable {
                 long id = response.get("id").asLong();
                 System.out.println("DEBUG: Processing response for ID: " + id);
                 
-                CompletableFuture<JsonNode> future = pendingRequests.remove(id);
-                if (future != null) {
-                    if (response.has("error")) {
-                        JsonNode error = response.get("error");
-                        System.err.println("ERROR: MCP server returned error for ID " + id + ": " + error);
-                        future.completeExceptionally(new McpException(
-                            error.get("code").asInt(),
-                            error.get("message").asText()
-                        ));
-                    } else {
-                        System.out.println("DEBUG: Completing future for ID " + id + " with result");
-                        future.complete(response.get("result"));
-                    }
-                } else {
+                if (response.has("error")) {
+                    System.err.println("ERROR: MCP server returned error for ID " + id + ": " + response.get("error"));
+                }
+                if (!pendingRequests.complete(id, response)) {
                     System.err.println("WARNING: No pending request found for ID: " + id);
                 }
-            } else {
-                // This is a notification - ignore for now
-                System.out.println("Received notification from " + serverName + ": " + message);
+            } else if (response.has("method")) {
+                dispatchNotification(response);
             }
         } catch (Exception e) {
             System.err.println("Error parsing message from " + serverName + ": " + e.getMessage());
@@ -206,11 +194,9 @@ public class McpJsonRpcClient implements AutoCloseable {
         }
     }
     
-    private CompletableFuture<JsonNode> sendRequest(String method, JsonNode params) {
+    private CompletableFuture<JsonNode> sendRequest(long id, String method, JsonNode params, McpDeadline deadline) {
         System.out.println("DEBUG: Sending request - method: " + method + ", server: " + serverName);
         
-        long id = requestIdCounter.getAndIncrement();
-        
         ObjectNode request = objectMapper.createObjectNode();
         request.put("jsonrpc", "2.0");
         request.put("id", id);
@@ -219,8 +205,7 @@ public class McpJsonRpcClient implements AutoCloseable {
             request.set("params", params);
         }
         
-        CompletableFuture<JsonNode> future = new CompletableFuture<>();
-        pendingRequests.put(id, future);
+        CompletableFuture<JsonNode> future = pendingRequests.register(id, method, deadline);
         
         try {
             String requestJson = objectMapper.writeValueAsString(request);
@@ -234,13 +219,46 @@ public class McpJsonRpcClient implements AutoCloseable {
             System.out.println("DEBUG: Request sent successfully, waiting for response with ID: " + id);
         } catch (IOException e) {
             System.err.println("ERROR: Failed to send request: " + e.getMessage());
-            pendingRequests.remove(id);
-            future.completeExceptionally(e);
+            pendingRequests.fail(id, e);
         }
         
         return future;
     }
     
+    /**
+     * Sends the request and waits for its response until the deadline. On expiry, or when the
+     * caller cancels, the server is told to stop working on it with {@code notifications/cancelled}.
+     */
+    private JsonNode sendRequest(String method, JsonNode params, McpDeadline deadline) throws Exception {
+        return sendRequestAndWait(pendingRequests.nextId(), method, params, deadline);
+    }
+    
+    private JsonNode sendRequestAndWait(long id, String method, JsonNode params, McpDeadline deadline) throws Exception {
+        pendingRequests.checkSendable(method, deadline);
+        CompletableFuture<JsonNode> future = sendRequest(id, method, params, deadline);
+        // initialize must not be cancelled
+        return pendingRequests.await(id, future, method, deadline, "initialize".equals(method) ? null : this::sendCancelled);
+    }
+    
+    private void sendCancelled(long id, String reason) {
+        ObjectNode notification = objectMapper.createObjectNode();
+        notification.put("jsonrpc", "2.0");
+        notification.put("method", "notifications/cancelled");
+        ObjectNode params = notification.putObject("params");
+        params.put("requestId", id);
+        params.put("reason", reason);
+        try {
+            String json = objectMapper.writeValueAsString(notification);
+            synchronized (processInput) {
+                processInput.write(json);
+                processInput.newLine();
+                processInput.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("WARNING: Failed to cancel request " + id + " on " + serverName + ": " + e.getMessage());
+        }
+    }
+    
     public JsonNode initialize(JsonNode clientCapabilities) throws Exception {
         System.out.println("DEBUG: Initializing MCP client for server: " + serverName);
         
@@ -252,7 +270,7 @@ public class McpJsonRpcClient implements AutoCloseable {
         System.out.println("DEBUG: Sending initialize request to server: " + serverName);
         
         try {
-            JsonNode result = sendRequest("initialize", params).get(5, TimeUnit.SECONDS);
+            JsonNode result = sendRequest("initialize", params, McpDeadline.after(5, TimeUnit.SECONDS));
             
             if (result != null && result.has("capabilities")) {
                 this.serverCapabilities = result.get("capabilities");
@@ -264,7 +282,7 @@ public class McpJsonRpcClient implements AutoCloseable {
             }
             
             return result;
-        } catch (java.util.concurrent.TimeoutException e) {
+        } catch (McpRequestTimeoutException e) {
             System.err.println("WARNING: Initialization timeout for server: " + serverName + 
                              ". This might not be a proper MCP server.");
             // Return a minimal capabilities object so the connection doesn't fail completely
@@ -294,29 +312,15 @@ public class McpJsonRpcClient implements AutoCloseable {
         
         try {
             System.out.println("DEBUG: Sending tools/list request to server: " + serverName);
-            CompletableFuture<JsonNode> future = sendRequest("tools/list", null);
-            
-            System.out.println("DEBUG: Waiting for tools/list response from server: " + serverName);
-            JsonNode result = future.get(5, TimeUnit.SECONDS);
-            
-            System.out.println("DEBUG: Received tools/list response from server: " + serverName + ", result: " + 
-                              (result != null ? result.toString() : "null"));
-            
             List<McpTool> tools = new ArrayList<>();
-            
-            if (result != null && result.has("tools")) {
-                for (JsonNode toolNode : result.get("tools")) {
-                    tools.add(new McpTool(
-                        toolNode.get("name").asText(),
-                        toolNode.has("description") ? toolNode.get("description").asText() : "",
-                        toolNode.has("inputSchema") ? toolNode.get("inputSchema") : null
-                    ));
-                }
+            for (JsonNode toolNode : McpListPager.fetchAll("tools/list", "tools",
+                    params -> sendRequest("tools/list", params, McpDeadline.after(5, TimeUnit.SECONDS)))) {
+                tools.add(McpListPager.toTool(toolNode));
             }
             
             System.out.println("DEBUG: Returning " + tools.size() + " tools from server: " + serverName);
             return tools;
-        } catch (java.util.concurrent.TimeoutException e) {
+        } catch (McpRequestTimeoutException e) {
             System.err.println("WARNING: tools/list timeout for server: " + serverName + 
                              ". This might not be a proper MCP server.");
             return new ArrayList<>(); // Return empty list for non-MCP servers
@@ -324,39 +328,48 @@ public class McpJsonRpcClient implements AutoCloseable {
     }
     
     public JsonNode callTool(String toolName, Map<String, Object> arguments) throws Exception {
+        return callTool(nextRequestId(), toolName, arguments, false, null);
+    }
+    
+    /**
+     * Calls a tool as request {@code requestId}, taken from {@link #nextRequestId()}, so the
+     * caller knows the id the server sees. Progress, if asked for, is reported under that id.
+     */
+    public JsonNode callTool(long requestId, String toolName, Map<String, Object> arguments, boolean reportProgress,
+                             McpDeadline deadline) throws Exception {
+        ObjectNode params = toolCallParams(toolName, arguments);
+        if (reportProgress) {
+            params.putObject("_meta").put("progressToken", requestId);
+        }
+        return sendRequestAndWait(requestId, "tools/call", params, deadline != null ? deadline : McpDeadline.after(30, TimeUnit.SECONDS));
+    }
+    
+    private ObjectNode toolCallParams(String toolName, Map<String, Object> arguments) {
         ObjectNode params = objectMapper.createObjectNode();
         params.put("name", toolName);
         if (arguments != null) {
             params.set("arguments", objectMapper.valueToTree(arguments));
         }
-        
-        try {
-            return sendRequest("tools/call", params).get(30, TimeUnit.SECONDS);
-        } catch (java.util.concurrent.TimeoutException e) {
-            System.err.println("WARNING: tools/call timeout for server: " + serverName + 
-                             ", tool: " + toolName + ". This might not be a proper MCP server.");
-            throw new IllegalArgumentException("Tool not found or server not responding: " + toolName);
-        }
+        return params;
+    }
+    
+    /**
+     * The id for a request sent with {@link #callTool(long, String, Map, boolean, McpDeadline)}.
+     */
+    public long nextRequestId() {
+        return pendingRequests.nextId();
     }
     
     public List<McpResource> listResources() throws Exception {
         try {
-            JsonNode result = sendRequest("resources/list", null).get(10, TimeUnit.SECONDS);
             List<McpResource> resources = new ArrayList<>();
-            
-            if (result != null && result.has("resources")) {
-                for (JsonNode resourceNode : result.get("resources")) {
-                    resources.add(new McpResource(
-                        resourceNode.get("uri").asText(),
-                        resourceNode.has("name") ? resourceNode.get("name").asText() : "",
-                        resourceNode.has("description") ? resourceNode.get("description").asText() : "",
-                        resourceNode.has("mimeType") ? resourceNode.get("mimeType").asText() : null
-                    ));
-                }
+            for (JsonNode resourceNode : McpListPager.fetchAll("resources/list", "resources",
+                    params -> sendRequest("resources/list", params, McpDeadline.after(10, TimeUnit.SECONDS)))) {
+                resources.add(McpListPager.toResource(resourceNode));
             }
             
             return resources;
-        } catch (java.util.concurrent.TimeoutException e) {
+        } catch (McpRequestTimeoutException e) {
             System.err.println("WARNING: resources/list timeout for server: " + serverName + 
                              ". This might not be a proper MCP server.");
             return new ArrayList<>(); // Return empty list for non-MCP servers
@@ -364,10 +377,35 @@ public class McpJsonRpcClient implements AutoCloseable {
     }
     
     public JsonNode readResource(String uri) throws Exception {
+        return readResource(uri, null);
+    }
+    
+    /**
+     * Reads a resource, waiting until the deadline, or 10 seconds if it is null.
+     */
+    public JsonNode readResource(String uri, McpDeadline deadline) throws Exception {
         ObjectNode params = objectMapper.createObjectNode();
         params.put("uri", uri);
         
-        return sendRequest("resources/read", params).get(10, TimeUnit.SECONDS);
+        return sendRequest("resources/read", params, deadline != null ? deadline : McpDeadline.after(10, TimeUnit.SECONDS));
+    }
+    
+    /**
+     * Sends an MCP {@code ping}, which the server answers with an empty result as long as it
+     * is able to handle requests.
+     */
+    public void ping(McpDeadline deadline) throws Exception {
+        sendRequest("ping", null, deadline);
+    }
+    
+    /**
+     * Asks the server to send {@code notifications/resources/updated} when the resource changes.
+     */
+    public void subscribeResource(String uri) throws Exception {
+        ObjectNode params = objectMapper.createObjectNode();
+        params.put("uri", uri);
+        
+        sendRequest("resources/subscribe", params, McpDeadline.after(10, TimeUnit.SECONDS));
     }
     
     @Override
@@ -375,10 +413,7 @@ public class McpJsonRpcClient implements AutoCloseable {
         closed = true;
         
         // Cancel pending requests
-        for (CompletableFuture<JsonNode> future : pendingRequests.values()) {
-            future.cancel(true);
-        }
-        pendingRequests.clear();
+        pendingRequests.cancelAll();
         
         // Close process streams
         try {
@@ -408,6 +443,27 @@ public class McpJsonRpcClient implements AutoCloseable {
         }
     }
     
+    /**
+     * Registers the listener for notifications the server sends outside of responses.
+     */
+    public void setNotificationListener(McpNotificationListener notificationListener) {
+        this.notificationListener = notificationListener;
+    }
+    
+    private void dispatchNotification(JsonNode notification) {
+        McpNotificationListener listener = notificationListener;
+        String method = notification.get("method").asText();
+        if (listener == null) {
+            System.out.println("Received notification from " + serverName + ": " + method);
+            return;
+        }
+        try {
+            listener.onNotification(method, notification.get("params"));
+        } catch (RuntimeException e) {
+            System.err.println("Notification listener failed for " + serverName + ": " + e.getMessage());
+        }
+    }
+    
     public String getServerName() {
         return serverName;
     }
@@ -429,4 +485,8 @@ public class McpJsonRpcClient implements AutoCloseable {
     public int getPendingRequestCount() {
         return pendingRequests.size();
     }
+    
+    public McpPendingRequests getPendingRequests() {
+        return pendingRequests;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+package org.apache.knox.mcp.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.knox.mcp.util.McpLogger;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Follows {@code nextCursor} through a paginated list method and collects the items of every page.
+ * Cursors are opaque and each one comes from the previous page, so pages are fetched in sequence.
+ */
+final class McpListPager {
+
+    private static final McpLogger logger = McpLogger.getLogger(McpListPager.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** Stops a server that never ends its cursor chain */
+    static final int MAX_PAGES = 1000;
+
+    /**
+     * Fetches one page; params is null for the first page and carries the cursor after that.
+     */
+    interface PageFetcher {
+        JsonNode fetch(JsonNode params) throws Exception;
+    }
+
+    private McpListPager() {
+    }
+
+    static List<JsonNode> fetchAll(String method, String itemsField, PageFetcher fetcher) throws Exception {
+        List<JsonNode> items = new ArrayList<>();
+        Set<String> seenCursors = new HashSet<>();
+        ObjectNode params = null;
+        for (int page = 0; page < MAX_PAGES; page++) {
+            JsonNode result = fetcher.fetch(params);
+            if (result == null) {
+                return items;
+            }
+            JsonNode pageItems = result.get(itemsField);
+            if (pageItems != null && pageItems.isArray()) {
+                for (JsonNode item : pageItems) {
+                    items.add(item);
+                }
+            }
+            JsonNode nextCursor = result.get("nextCursor");
+            if (nextCursor == null || nextCursor.isNull() || nextCursor.asText().isEmpty()) {
+                return items;
+            }
+            if (!seenCursors.add(nextCursor.asText())) {
+                logger.warn(method + " returned cursor '" + nextCursor.asText() + "' twice, stopping after " +
+                            (page + 1) + " pages");
+                return items;
+            }
+            params = objectMapper.createObjectNode();
+            params.put("cursor", nextCursor.asText());
+        }
+        logger.warn(method + " still had more pages after " + MAX_PAGES + ", returning " + items.size() + " items");
+        return items;
+    }
+
+    static McpTool toTool(JsonNode toolNode) {
+        return new McpTool(
+            toolNode.get("name").asText(),
+            toolNode.has("description") ? toolNode.get("description").asText() : "",
+            toolNode.has("inputSchema") ? toolNode.get("inputSchema") : null
+        );
+    }
+
+    static McpResource toResource(JsonNode resourceNode) {
+        return new McpResource(
+            resourceNode.get("uri").asText(),
+            resourceNode.has("name") ? resourceNode.get("name").asText() : "",
+            resourceNode.has("description") ? resourceNode.get("description").asText() : "",
+            resourceNode.has("mimeType") ? resourceNode.get("mimeType").asText() : null
+        );
+    }
+}
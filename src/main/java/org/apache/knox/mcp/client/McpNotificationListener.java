@@ -0,0 +1,12 @@
+package org.apache.knox.mcp.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Receives server-initiated JSON-RPC notifications from a backend MCP server.
+ * Called on the client's reader thread, so implementations must not block.
+ */
+public interface McpNotificationListener {
+
+    void onNotification(String method, JsonNode params);
+}
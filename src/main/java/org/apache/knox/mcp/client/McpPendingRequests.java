@@ -0,0 +1,335 @@
+package org.apache.knox.mcp.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.knox.mcp.util.HashedTimingWheel;
+import org.apache.knox.mcp.util.LongObjectMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Requests sent to a server that are waiting for their responses, by JSON-RPC id. Every
+ * transport correlates responses here. An entry leaves when its response arrives, when it
+ * fails, or when its deadline passes on the shared timing wheel; in the last case its future
+ * fails with {@link McpRequestTimeoutException}, so no entry outlives the caller waiting on it.
+ */
+public final class McpPendingRequests {
+
+    /**
+     * Tells the server to stop working on a request the caller gave up on.
+     */
+    public interface CancelSender {
+        void sendCancelled(long id, String reason);
+    }
+
+    private static final HashedTimingWheel EXPIRY_TIMER =
+        new HashedTimingWheel("mcp-pending-request-expiry", 10, TimeUnit.MILLISECONDS, 512);
+    private static final ObjectMapper METRICS_MAPPER = new ObjectMapper();
+    private static final int STRIPES = 16;
+    // Waits this much past the deadline for the timing wheel before giving up on it
+    private static final long EXPIRY_GRACE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String serverName;
+    private final AtomicLong idCounter = new AtomicLong(1);
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong late = new AtomicLong();
+
+    public McpPendingRequests(String serverName) {
+        this.serverName = serverName;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    public long nextId() {
+        return idCounter.getAndIncrement();
+    }
+
+    /**
+     * Fails fast for a request whose caller already gave up.
+     */
+    public void checkSendable(String method, McpDeadline deadline) throws McpException {
+        if (deadline.isCancelled()) {
+            throw new McpRequestCancelledException(method + " for server " + serverName +
+                                                   " was cancelled: " + deadline.getCancelReason());
+        }
+        if (deadline.isExpired()) {
+            throw new McpRequestTimeoutException(method + " for server " + serverName +
+                                                 " expired before it was sent");
+        }
+    }
+
+    /**
+     * Starts waiting for the response to a request about to be sent. The entry expires with
+     * the deadline; without a time limit it waits until answered or failed.
+     */
+    public CompletableFuture<JsonNode> register(long id, String method, McpDeadline deadline) {
+        Entry entry = new Entry(method, deadline);
+        Stripe stripe = stripe(id);
+        synchronized (stripe) {
+            stripe.entries.put(id, entry);
+        }
+        if (deadline.hasTimeLimit()) {
+            entry.timeout = EXPIRY_TIMER.schedule(() -> expire(id, entry),
+                deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        }
+        return entry.future;
+    }
+
+    /**
+     * Completes the request with a JSON-RPC response, as a result or an {@link McpException}.
+     * Returns false for a response nobody waits for any more.
+     */
+    public boolean complete(long id, JsonNode response) {
+        Entry entry = take(id);
+        if (entry == null) {
+            late.incrementAndGet();
+            return false;
+        }
+        if (response.has("error")) {
+            JsonNode error = response.get("error");
+            entry.future.completeExceptionally(new McpException(
+                error.path("code").asInt(), error.path("message").asText()));
+        } else {
+            entry.future.complete(response.get("result"));
+        }
+        return true;
+    }
+
+    /**
+     * Runs the task once the delay has passed, on the timer that expires requests, so waiting
+     * holds no thread of its own. The task must be short and must not block.
+     */
+    void schedule(Runnable task, long delay, TimeUnit unit) {
+        EXPIRY_TIMER.schedule(task, delay, unit);
+    }
+
+    /**
+     * Fails the request, e.g. because it could not be sent; returns false if it was not pending.
+     */
+    public boolean fail(long id, Throwable error) {
+        Entry entry = take(id);
+        if (entry == null) {
+            return false;
+        }
+        entry.future.completeExceptionally(error);
+        return true;
+    }
+
+    /**
+     * Stops tracking a request without completing it, for transports that receive the
+     * response on the sending thread.
+     */
+    public boolean remove(long id) {
+        return take(id) != null;
+    }
+
+    public void failAll(Throwable error) {
+        for (Entry entry : takeAll()) {
+            entry.future.completeExceptionally(error);
+        }
+    }
+
+    public void cancelAll() {
+        for (Entry entry : takeAll()) {
+            entry.future.cancel(true);
+        }
+    }
+
+    /**
+     * Waits for the response until the deadline. When the deadline passes or the caller
+     * cancels it, the entry is dropped and the server is asked to stop working on the request.
+     *
+     * @param canceller where to send {@code notifications/cancelled}, or null for requests
+     *                  that must not be cancelled, such as {@code initialize}
+     */
+    public JsonNode await(long id, CompletableFuture<JsonNode> future, String method, McpDeadline deadline,
+                          CancelSender canceller) throws Exception {
+        Runnable abandon = () -> future.cancel(false);
+        deadline.addCancelListener(abandon);
+        try {
+            if (!deadline.hasTimeLimit()) {
+                return future.get();
+            }
+            return future.get(deadline.remaining(TimeUnit.NANOSECONDS) + EXPIRY_GRACE_NANOS, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (!(e.getCause() instanceof McpRequestTimeoutException)) {
+                throw e;
+            }
+            if (canceller != null) {
+                canceller.sendCancelled(id, "Deadline of " + deadline + " exceeded");
+            }
+            throw (McpRequestTimeoutException) e.getCause();
+        } catch (TimeoutException e) {
+            take(id);
+            if (canceller != null) {
+                canceller.sendCancelled(id, "Deadline of " + deadline + " exceeded");
+            }
+            throw new McpRequestTimeoutException(method + " for server " + serverName +
+                                                 " did not complete within " + deadline, e);
+        } catch (CancellationException e) {
+            take(id);
+            if (!deadline.isCancelled()) {
+                // Dropped by cancelAll() when the client closed
+                throw new McpException(McpException.CONNECTION_CLOSED, method + " for server " + serverName +
+                                       " was abandoned when the connection closed");
+            }
+            if (canceller != null) {
+                canceller.sendCancelled(id, deadline.getCancelReason());
+            }
+            throw new McpRequestCancelledException(method + " for server " + serverName +
+                                                   " was cancelled: " + deadline.getCancelReason(), e);
+        } finally {
+            deadline.removeCancelListener(abandon);
+        }
+    }
+
+    public boolean isPending(long id) {
+        Stripe stripe = stripe(id);
+        synchronized (stripe) {
+            return stripe.entries.containsKey(id);
+        }
+    }
+
+    /**
+     * Ids of the requests pending right now.
+     */
+    public long[] ids() {
+        long[][] parts = new long[STRIPES][];
+        int total = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            synchronized (stripes[i]) {
+                parts[i] = stripes[i].entries.keys();
+            }
+            total += parts[i].length;
+        }
+        long[] ids = new long[total];
+        int offset = 0;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, ids, offset, part.length);
+            offset += part.length;
+        }
+        return ids;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * How long the oldest pending request has been waiting; 0 if none is.
+     */
+    public long getOldestAgeMillis() {
+        long now = System.nanoTime();
+        long[] oldest = {now};
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.entries.forEachValue(entry -> {
+                    if (entry.startNanos - oldest[0] < 0) {
+                        oldest[0] = entry.startNanos;
+                    }
+                });
+            }
+        }
+        return TimeUnit.NANOSECONDS.toMillis(now - oldest[0]);
+    }
+
+    public ObjectNode getMetrics() {
+        ObjectNode metrics = METRICS_MAPPER.createObjectNode();
+        metrics.put("inFlight", size());
+        metrics.put("oldestAgeMillis", getOldestAgeMillis());
+        metrics.put("expired", expired.get());
+        metrics.put("late", late.get());
+        return metrics;
+    }
+
+    /**
+     * Requests dropped because their deadline passed.
+     */
+    public long getExpired() {
+        return expired.get();
+    }
+
+    /**
+     * Responses that arrived after their request was dropped.
+     */
+    public long getLate() {
+        return late.get();
+    }
+
+    private void expire(long id, Entry entry) {
+        Stripe stripe = stripe(id);
+        synchronized (stripe) {
+            if (!stripe.entries.remove(id, entry)) {
+                return;
+            }
+        }
+        expired.incrementAndGet();
+        entry.future.completeExceptionally(new McpRequestTimeoutException(entry.method + " for server " +
+            serverName + " did not complete within " + entry.deadline));
+    }
+
+    private Entry take(long id) {
+        Entry entry;
+        Stripe stripe = stripe(id);
+        synchronized (stripe) {
+            entry = stripe.entries.remove(id);
+        }
+        if (entry != null && entry.timeout != null) {
+            entry.timeout.cancel();
+        }
+        return entry;
+    }
+
+    private List<Entry> takeAll() {
+        List<Entry> taken = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.entries.forEachValue(taken::add);
+                stripe.entries.clear();
+            }
+        }
+        for (Entry entry : taken) {
+            if (entry.timeout != null) {
+                entry.timeout.cancel();
+            }
+        }
+        return taken;
+    }
+
+    private Stripe stripe(long id) {
+        return stripes[(int) (id ^ (id >>> 32)) & (STRIPES - 1)];
+    }
+
+    private static final class Stripe {
+        private final LongObjectMap<Entry> entries = new LongObjectMap<>();
+    }
+
+    private static final class Entry {
+        private final String method;
+        private final McpDeadline deadline;
+        private final long startNanos = System.nanoTime();
+        private final CompletableFuture<JsonNode> future = new CompletableFuture<>();
+        private volatile HashedTimingWheel.Timeout timeout;
+
+        private Entry(String method, McpDeadline deadline) {
+            this.method = method;
+            this.deadline = deadline;
+        }
+    }
+}
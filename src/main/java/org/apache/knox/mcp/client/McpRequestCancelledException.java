@@ -0,0 +1,16 @@
+package org.apache.knox.mcp.client;
+
+/**
+ * The caller gave up on the request before the server answered. The server has been sent
+ * {@code notifications/cancelled} for it, so it may stop working on the request.
+ */
+public class McpRequestCancelledException extends McpException {
+
+    public McpRequestCancelledException(String message) {
+        super(REQUEST_CANCELLED, message);
+    }
+
+    public McpRequestCancelledException(String message, Throwable cause) {
+        super(REQUEST_CANCELLED, message, cause);
+    }
+}
@@ -0,0 +1,16 @@
+package org.apache.knox.mcp.client;
+
+/**
+ * The request's deadline passed before the server answered. The server has been sent
+ * {@code notifications/cancelled} for it, so it may stop working on the request.
+ */
+public class McpRequestTimeoutException extends McpException {
+
+    public McpRequestTimeoutException(String message) {
+        super(REQUEST_TIMEOUT, message);
+    }
+
+    public McpRequestTimeoutException(String message, Throwable cause) {
+        super(REQUEST_TIMEOUT, message, cause);
+    }
+}
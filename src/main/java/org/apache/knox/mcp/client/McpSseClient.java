@@ -13,9 +13,8 @@ import java.io.OutputStreamWriter;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.Map;
 import java.util.List;
@@ -28,17 +27,28 @@ import java.util.ArrayList;
 public class McpSseClient implements AutoCloseable {
     
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final AtomicLong requestIdCounter = new AtomicLong(1);
-    private final Map<Long, CompletableFuture<JsonNode>> pendingRequests = new ConcurrentHashMap<>();
+    private volatile McpNotificationListener notificationListener;
+    private final McpPendingRequests pendingRequests;
     
     private final HttpClient httpClient;
     private final String baseUrl;
     private final String sseEndpoint;
     private volatile String messageEndpoint;  // Make this volatile and mutable
     private Thread sseReaderThread;
-    private HttpURLConnection sseConnection;
+    private volatile HttpURLConnection sseConnection;
     private volatile boolean closed = false;
     
+    // Stream resumption state
+    private static final int MAX_RECONNECT_ATTEMPTS = 5;
+    private static final long MAX_RECONNECT_DELAY_MS = 30000;
+    // A server hint below this would reconnect in a tight loop to a server that keeps closing the stream
+    private static final long MIN_RECONNECT_DELAY_MS = 100;
+    private static final long RESUME_GRACE_MS = 2000;
+    private volatile String lastEventId;
+    private volatile long reconnectDelayMillis = 1000;
+    private volatile boolean reconnecting = false;
+    private volatile Resumption resumption;
+    
     private String serverName;
     private JsonNode serverCapabilities;
     
@@ -48,6 +58,7 @@ public class McpSseClient implements AutoCloseable {
         this.sseEndpoint = this.baseUrl + "/sse";
         this.messageEndpoint = null;  // Will be set by the "endpoint" event
         this.serverName = extractServerName(baseUrl);
+        this.pendingRequests = new McpPendingRequests(serverName);
     }
     
     private String extractServerName(String url) {
@@ -74,78 +85,224 @@ public class McpSseClient implements AutoCloseable {
         System.out.println("DEBUG: Reset message endpoint for new SSE connection");
         
         URL url = new URL(sseEndpoint);
-        sseConnection = (HttpURLConnection) url.openConnection();
-        sseConnection.setRequestMethod("GET");
-        sseConnection.setRequestProperty("Accept", "text/event-stream");
-        sseConnection.setRequestProperty("Cache-Control", "no-cache");
-        sseConnection.setDoInput(true);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("GET");
+        connection.setRequestProperty("Accept", "text/event-stream");
+        connection.setRequestProperty("Cache-Control", "no-cache");
+        // Ask the server to replay anything we missed while the previous stream was down
+        String resumeFrom = lastEventId;
+        if (resumeFrom != null) {
+            connection.setRequestProperty("Last-Event-ID", resumeFrom);
+            System.out.println("DEBUG: Resuming SSE stream with Last-Event-ID: " + resumeFrom);
+        }
+        connection.setDoInput(true);
         // Don't set doOutput for SSE connections
         
-        int responseCode = sseConnection.getResponseCode();
+        int responseCode = connection.getResponseCode();
         System.out.println("DEBUG: SSE connection response code: " + responseCode);
         
         if (responseCode != 200) {
+            connection.disconnect();
             throw new IOException("Failed to establish SSE connection: " + responseCode);
         }
         
+        sseConnection = connection;
         System.out.println("DEBUG: SSE connection established successfully to: " + sseEndpoint);
     }
     
     private void startSseListener() throws IOException {
         System.out.println("DEBUG: Starting SSE listener for server: " + serverName);
         
-        sseReaderThread = new Thread(() -> {
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(sseConnection.getInputStream(), "UTF-8"))) {
+        sseReaderThread = new Thread(this::runSseReader, "mcp-sse-reader-" + serverName);
+        sseReaderThread.setDaemon(true);
+        sseReaderThread.start();
+        
+        // Give SSE connection time to establish
+        try {
+            Thread.sleep(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        System.out.println("DEBUG: SSE listener started for server: " + serverName);
+    }
+    
+    /**
+     * Reads the SSE stream until it ends, then re-establishes it with Last-Event-ID so
+     * that requests still in flight can be completed by the events the server replays.
+     */
+    private void runSseReader() {
+        System.out.println("DEBUG: SSE reader thread started for server: " + serverName);
+        try {
+            while (!closed) {
+                try {
+                    readSseStream(sseConnection);
+                    System.out.println("DEBUG: SSE stream ended for server: " + serverName + " (closed=" + closed + ")");
+                } catch (IOException e) {
+                    if (!closed) {
+                        System.err.println("Error in SSE connection to " + serverName + ": " + e.getMessage());
+                    }
+                }
+                
+                // Always reset message endpoint when the stream ends
+                // This prevents using stale endpoints after connection drops
+                String droppedEndpoint = messageEndpoint;
+                messageEndpoint = null;
+                System.out.println("DEBUG: Reset message endpoint due to SSE stream ending for server: " + serverName);
                 
-                String line;
-                StringBuilder eventData = new StringBuilder();
-                String eventType = null;
+                if (closed) {
+                    break;
+                }
                 
-                System.out.println("DEBUG: SSE reader thread started for server: " + serverName);
+                // Requests posted on the dropped stream; they survive only if the server resumes the session
+                long[] orphanedIds = pendingRequests.ids();
+                reconnecting = true;
+                if (!reconnectSseStream()) {
+                    failPendingRequests(pendingRequests.ids(),
+                        "SSE stream to " + serverName + " was lost and could not be re-established");
+                    break;
+                }
+                beginResumption(droppedEndpoint, orphanedIds);
+            }
+        } finally {
+            reconnecting = false;
+            System.out.println("DEBUG: SSE reader thread ending for server: " + serverName + " (closed=" + closed + ")");
+        }
+    }
+    
+    private void readSseStream(HttpURLConnection connection) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(connection.getInputStream(), "UTF-8"))) {
+            
+            String line;
+            StringBuilder eventData = new StringBuilder();
+            String eventType = null;
+            
+            while (!closed && (line = reader.readLine()) != null) {
+                System.out.println("DEBUG: Raw SSE line from " + serverName + ": " + line);
                 
-                while (!closed && (line = reader.readLine()) != null) {
-                    System.out.println("DEBUG: Raw SSE line from " + serverName + ": " + line);
-                    
-                    if (line.startsWith("event: ")) {
-                        eventType = line.substring(7);
-                        System.out.println("DEBUG: SSE event type: " + eventType);
-                    } else if (line.startsWith("data: ")) {
-                        String data = line.substring(6);
-                        eventData.append(data);
-                    } else if (line.isEmpty() && eventData.length() > 0) {
+                if (line.isEmpty()) {
+                    if (eventData.length() > 0) {
                         // End of event, process the data
                         System.out.println("DEBUG: Complete SSE event from " + serverName + " (type: " + eventType + "): " + eventData.toString());
                         handleSseEvent(eventType, eventData.toString());
-                        eventData.setLength(0);
-                        eventType = null;
                     }
+                    eventData.setLength(0);
+                    eventType = null;
+                    continue;
                 }
-                System.out.println("DEBUG: SSE reader thread ending for server: " + serverName + " (closed=" + closed + ")");
-            } catch (IOException e) {
-                if (!closed) {
-                    System.err.println("Error in SSE connection to " + serverName + ": " + e.getMessage());
-                    e.printStackTrace();
+                if (line.startsWith(":")) {
+                    continue; // SSE comment, e.g. a keep-alive
+                }
+                
+                int colon = line.indexOf(':');
+                String field = colon == -1 ? line : line.substring(0, colon);
+                String value = colon == -1 ? "" : line.substring(colon + 1);
+                if (value.startsWith(" ")) {
+                    value = value.substring(1);
+                }
+                
+                switch (field) {
+                    case "event":
+                        eventType = value;
+                        System.out.println("DEBUG: SSE event type: " + eventType);
+                        break;
+                    case "data":
+                        if (eventData.length() > 0) {
+                            eventData.append('\n');
+                        }
+                        eventData.append(value);
+                        break;
+                    case "id":
+                        if (value.indexOf('\0') == -1) {
+                            lastEventId = value;
+                        }
+                        break;
+                    case "retry":
+                        try {
+                            reconnectDelayMillis = Math.max(MIN_RECONNECT_DELAY_MS, Long.parseLong(value.trim()));
+                        } catch (NumberFormatException e) {
+                            // Ignore malformed retry hints
+                        }
+                        break;
+                    default:
+                        break;
                 }
-            } finally {
-                // Always reset message endpoint when SSE reader thread ends
-                // This prevents using stale endpoints after connection drops
-                messageEndpoint = null;
-                System.out.println("DEBUG: Reset message endpoint due to SSE reader thread ending for server: " + serverName);
             }
-        });
-        
-        sseReaderThread.setDaemon(true);
-        sseReaderThread.start();
+        }
+    }
+    
+    private boolean reconnectSseStream() {
+        long delay = reconnectDelayMillis;
+        for (int attempt = 1; attempt <= MAX_RECONNECT_ATTEMPTS && !closed; attempt++) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (closed) {
+                return false;
+            }
+            try {
+                System.out.println("DEBUG: Reconnecting SSE stream for server: " + serverName + 
+                                 " (attempt " + attempt + "/" + MAX_RECONNECT_ATTEMPTS + ")");
+                establishSseConnection();
+                return true;
+            } catch (IOException e) {
+                System.err.println("WARNING: SSE reconnect attempt " + attempt + " to " + serverName + " failed: " + e.getMessage());
+                delay = Math.min(delay * 2, MAX_RECONNECT_DELAY_MS);
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Decides the fate of requests that were in flight when the stream dropped. If the server
+     * hands back the same message endpoint, or replays from our Last-Event-ID without announcing
+     * a new one, the session survived and the requests keep waiting for their responses. A new
+     * endpoint means a new session, so the old requests can never be answered and fail now.
+     */
+    private void beginResumption(String droppedEndpoint, long[] orphanedIds) {
+        Resumption pending = new Resumption(droppedEndpoint, orphanedIds, lastEventId != null);
+        resumption = pending;
+        pendingRequests.schedule(() -> settleResumption(pending, null), RESUME_GRACE_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    private void settleResumption(Resumption pending, String announcedEndpoint) {
+        if (!pending.settled.compareAndSet(false, true)) {
+            return;
+        }
+        if (resumption == pending) {
+            resumption = null;
+        }
+        reconnecting = false;
         
-        // Give SSE connection time to establish
-        try {
-            Thread.sleep(500);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+        boolean resumed;
+        if (announcedEndpoint != null) {
+            resumed = announcedEndpoint.equals(pending.droppedEndpoint);
+        } else {
+            resumed = pending.replayRequested && pending.droppedEndpoint != null;
+            if (resumed && messageEndpoint == null) {
+                messageEndpoint = pending.droppedEndpoint;
+            }
         }
         
-        System.out.println("DEBUG: SSE listener started for server: " + serverName);
+        if (resumed) {
+            System.out.println("DEBUG: SSE session resumed for server: " + serverName + 
+                             ", " + pending.orphanedIds.length + " in-flight requests remain pending");
+        } else if (pending.orphanedIds.length > 0) {
+            System.err.println("WARNING: SSE session for " + serverName + " was not resumed, failing " + 
+                             pending.orphanedIds.length + " in-flight requests");
+            failPendingRequests(pending.orphanedIds,
+                "Request was lost when the SSE session to " + serverName + " was re-established");
+        }
+    }
+    
+    private void failPendingRequests(long[] ids, String reason) {
+        for (long id : ids) {
+            pendingRequests.fail(id, new McpException(McpException.CONNECTION_CLOSED, reason));
+        }
     }
     
     private void handleSseMessage(String message) {
@@ -167,25 +324,14 @@ public class McpSseClient implements AutoCloseable {
                 long id = response.get("id").asLong();
                 System.out.println("DEBUG: Processing SSE response for ID: " + id);
                 
-                CompletableFuture<JsonNode> future = pendingRequests.remove(id);
-                if (future != null) {
-                    if (response.has("error")) {
-                        JsonNode error = response.get("error");
-                        System.err.println("ERROR: SSE server returned error for ID " + id + ": " + error);
-                        future.completeExceptionally(new McpException(
-                            error.get("code").asInt(),
-                            error.get("message").asText()
-                        ));
-                    } else {
-                        System.out.println("DEBUG: Completing SSE future for ID " + id + " with result");
-                        future.complete(response.get("result"));
-                    }
-                } else {
+                if (response.has("error")) {
+                    System.err.println("ERROR: SSE server returned error for ID " + id + ": " + response.get("error"));
+                }
+                if (!pendingRequests.complete(id, response)) {
                     System.err.println("WARNING: No pending request found for SSE ID: " + id);
                 }
-            } else {
-                // This is a notification - ignore for now
-                System.out.println("Received notification from " + serverName + ": " + message);
+            } else if (response.has("method")) {
+                dispatchNotification(response);
             }
         } catch (Exception e) {
             System.err.println("Error parsing SSE message from " + serverName + ": " + e.getMessage());
@@ -252,6 +398,10 @@ public class McpSseClient implements AutoCloseable {
             // The server is telling us the message endpoint URL for this session
             this.messageEndpoint = data;
             System.out.println("DEBUG: Set message endpoint to: " + messageEndpoint);
+            Resumption pending = resumption;
+            if (pending != null) {
+                settleResumption(pending, data);
+            }
         } else if ("message".equals(eventType) || eventType == null) {
             // Regular data event or no event type specified - treat as message
             handleSseMessage(data);
@@ -260,7 +410,7 @@ public class McpSseClient implements AutoCloseable {
         }
     }
     
-    private CompletableFuture<JsonNode> sendSseRequest(String method, JsonNode params) {
+    private CompletableFuture<JsonNode> sendSseRequest(long id, String method, JsonNode params, McpDeadline deadline) {
         System.out.println("DEBUG: Sending SSE request - method: " + method + ", server: " + serverName);
         
         if (closed) {
@@ -276,8 +426,6 @@ public class McpSseClient implements AutoCloseable {
             return future;
         }
         
-        long id = requestIdCounter.getAndIncrement();
-        
         ObjectNode request = objectMapper.createObjectNode();
         request.put("jsonrpc", "2.0");
         request.put("id", id);
@@ -286,8 +434,7 @@ public class McpSseClient implements AutoCloseable {
             request.set("params", params);
         }
         
-        CompletableFuture<JsonNode> future = new CompletableFuture<>();
-        pendingRequests.put(id, future);
+        CompletableFuture<JsonNode> future = pendingRequests.register(id, method, deadline);
         
         try {
             String requestJson = objectMapper.writeValueAsString(request);
@@ -312,18 +459,7 @@ public class McpSseClient implements AutoCloseable {
             }
             
             // Send request via HTTP POST to message endpoint
-            // The messageEndpoint from the "endpoint" event should already be a full URL or a path
-            URL url;
-            if (messageEndpoint.startsWith("http://") || messageEndpoint.startsWith("https://")) {
-                // Full URL
-                url = new URL(messageEndpoint);
-            } else {
-                // Path only - construct full URL using base server info
-                URI baseUri = URI.create(baseUrl);
-                String fullUrl = baseUri.getScheme() + "://" + baseUri.getHost() + 
-                                (baseUri.getPort() != -1 ? ":" + baseUri.getPort() : "") + messageEndpoint;
-                url = new URL(fullUrl);
-            }
+            URL url = messageEndpointUrl(messageEndpoint);
             System.out.println("DEBUG: Posting to message endpoint URL: " + url);
             
             HttpURLConnection connection = (HttpURLConnection) url.openConnection();
@@ -370,8 +506,7 @@ public class McpSseClient implements AutoCloseable {
                 }
                 
                 System.err.println("ERROR: HTTP request failed - code: " + responseCode + ", error body: " + errorBody);
-                pendingRequests.remove(id);
-                future.completeExceptionally(new IOException("HTTP request failed with code: " + responseCode + ", body: " + errorBody));
+                pendingRequests.fail(id, new IOException("HTTP request failed with code: " + responseCode + ", body: " + errorBody));
             } else {
                 System.out.println("DEBUG: SSE request sent successfully, waiting for response with ID: " + id);
             }
@@ -380,20 +515,71 @@ public class McpSseClient implements AutoCloseable {
         } catch (Exception e) {
             System.err.println("ERROR: Failed to send SSE request: " + e.getMessage());
             e.printStackTrace();
-            pendingRequests.remove(id);
-            future.completeExceptionally(e);
+            pendingRequests.fail(id, e);
         }
         
         return future;
     }
     
+    // The messageEndpoint from the "endpoint" event is either a full URL or a path on the server
+    private URL messageEndpointUrl(String endpoint) throws IOException {
+        if (endpoint.startsWith("http://") || endpoint.startsWith("https://")) {
+            return new URL(endpoint);
+        }
+        URI baseUri = URI.create(baseUrl);
+        String fullUrl = baseUri.getScheme() + "://" + baseUri.getHost() + 
+                        (baseUri.getPort() != -1 ? ":" + baseUri.getPort() : "") + endpoint;
+        return new URL(fullUrl);
+    }
+    
+    /**
+     * Sends the request and waits for its response until the deadline. On expiry, or when the
+     * caller cancels, the server is told to stop working on it with {@code notifications/cancelled}.
+     */
+    private JsonNode sendSseRequest(String method, JsonNode params, McpDeadline deadline) throws Exception {
+        return sendSseRequestAndWait(pendingRequests.nextId(), method, params, deadline);
+    }
+    
+    private JsonNode sendSseRequestAndWait(long id, String method, JsonNode params, McpDeadline deadline) throws Exception {
+        pendingRequests.checkSendable(method, deadline);
+        CompletableFuture<JsonNode> future = sendSseRequest(id, method, params, deadline);
+        // initialize must not be cancelled
+        return pendingRequests.await(id, future, method, deadline, "initialize".equals(method) ? null : this::sendCancelled);
+    }
+    
+    private void sendCancelled(long id, String reason) {
+        String endpoint = messageEndpoint;
+        if (endpoint == null) {
+            return;
+        }
+        ObjectNode notification = objectMapper.createObjectNode();
+        notification.put("jsonrpc", "2.0");
+        notification.put("method", "notifications/cancelled");
+        ObjectNode params = notification.putObject("params");
+        params.put("requestId", id);
+        params.put("reason", reason);
+        try {
+            HttpURLConnection connection = (HttpURLConnection) messageEndpointUrl(endpoint).openConnection();
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setDoOutput(true);
+            try (OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream(), "UTF-8")) {
+                writer.write(objectMapper.writeValueAsString(notification));
+            }
+            connection.getResponseCode();
+            connection.disconnect();
+        } catch (IOException e) {
+            System.err.println("WARNING: Failed to cancel request " + id + " on " + serverName + ": " + e.getMessage());
+        }
+    }
+    
     public JsonNode initialize(JsonNode clientCapabilities) throws Exception {
         ObjectNode params = objectMapper.createObjectNode();
         params.put("protocolVersion", "2024-11-05");
         params.set("capabilities", clientCapabilities != null ? clientCapabilities : objectMapper.createObjectNode());
         params.set("clientInfo", createClientInfo());
         
-        JsonNode result = sendSseRequest("initialize", params).get(10, TimeUnit.SECONDS);
+        JsonNode result = sendSseRequest("initialize", params, McpDeadline.after(10, TimeUnit.SECONDS));
         if (result != null && result.has("capabilities")) {
             this.serverCapabilities = result.get("capabilities");
             
@@ -421,15 +607,7 @@ public class McpSseClient implements AutoCloseable {
             }
             
             // Send notification via HTTP POST to message endpoint
-            URL url;
-            if (messageEndpoint.startsWith("http://") || messageEndpoint.startsWith("https://")) {
-                url = new URL(messageEndpoint);
-            } else {
-                URI baseUri = URI.create(baseUrl);
-                String fullUrl = baseUri.getScheme() + "://" + baseUri.getHost() + 
-                                (baseUri.getPort() != -1 ? ":" + baseUri.getPort() : "") + messageEndpoint;
-                url = new URL(fullUrl);
-            }
+            URL url = messageEndpointUrl(messageEndpoint);
             System.out.println("DEBUG: Posting 'initialized' notification to: " + url);
             
             HttpURLConnection connection = (HttpURLConnection) url.openConnection();
@@ -476,31 +654,11 @@ public class McpSseClient implements AutoCloseable {
     }
     
     public List<McpTool> listTools() throws Exception {
-        JsonNode result = sendSseRequest("tools/list", null).get(10, TimeUnit.SECONDS);
         List<McpTool> tools = new ArrayList<>();
-        
-        System.out.println("DEBUG: tools/list result: " + result);
-        
-        if (result != null) {
-            System.out.println("DEBUG: tools/list result keys: " + result.fieldNames());
-            
-            if (result.has("tools")) {
-                JsonNode toolsArray = result.get("tools");
-                System.out.println("DEBUG: Found 'tools' field with " + toolsArray.size() + " tools");
-                
-                for (JsonNode toolNode : toolsArray) {
-                    System.out.println("DEBUG: Processing tool: " + toolNode);
-                    tools.add(new McpTool(
-                        toolNode.get("name").asText(),
-                        toolNode.has("description") ? toolNode.get("description").asText() : "",
-                        toolNode.has("inputSchema") ? toolNode.get("inputSchema") : null
-                    ));
-                }
-            } else {
-                System.out.println("DEBUG: No 'tools' field found in result");
-            }
-        } else {
-            System.out.println("DEBUG: tools/list result is null");
+        for (JsonNode toolNode : McpListPager.fetchAll("tools/list", "tools",
+                params -> sendSseRequest("tools/list", params, McpDeadline.after(10, TimeUnit.SECONDS)))) {
+            System.out.println("DEBUG: Processing tool: " + toolNode);
+            tools.add(McpListPager.toTool(toolNode));
         }
         
         System.out.println("DEBUG: Returning " + tools.size() + " tools");
@@ -508,6 +666,23 @@ public class McpSseClient implements AutoCloseable {
     }
     
     public JsonNode callTool(String toolName, Map<String, Object> arguments) throws Exception {
+        return callTool(nextRequestId(), toolName, arguments, false, null);
+    }
+    
+    /**
+     * Calls a tool as request {@code requestId}, taken from {@link #nextRequestId()}, so the
+     * caller knows the id the server sees. Progress, if asked for, is reported under that id.
+     */
+    public JsonNode callTool(long requestId, String toolName, Map<String, Object> arguments, boolean reportProgress,
+                             McpDeadline deadline) throws Exception {
+        ObjectNode params = toolCallParams(toolName, arguments);
+        if (reportProgress) {
+            params.putObject("_meta").put("progressToken", requestId);
+        }
+        return sendSseRequestAndWait(requestId, "tools/call", params, deadline != null ? deadline : McpDeadline.after(30, TimeUnit.SECONDS));
+    }
+    
+    private ObjectNode toolCallParams(String toolName, Map<String, Object> arguments) {
         System.out.println("DEBUG: callTool - toolName: " + toolName + ", arguments: " + arguments);
         
         ObjectNode params = objectMapper.createObjectNode();
@@ -517,39 +692,22 @@ public class McpSseClient implements AutoCloseable {
             System.out.println("DEBUG: callTool - converted arguments to JSON: " + argsNode);
             params.set("arguments", argsNode);
         }
-        
-        System.out.println("DEBUG: callTool - final params: " + params);
-        
-        return sendSseRequest("tools/call", params).get(30, TimeUnit.SECONDS);
+        return params;
+    }
+    
+    /**
+     * The id for a request sent with {@link #callTool(long, String, Map, boolean, McpDeadline)}.
+     */
+    public long nextRequestId() {
+        return pendingRequests.nextId();
     }
     
     public List<McpResource> listResources() throws Exception {
-        JsonNode result = sendSseRequest("resources/list", null).get(10, TimeUnit.SECONDS);
         List<McpResource> resources = new ArrayList<>();
-        
-        System.out.println("DEBUG: resources/list result: " + result);
-        
-        if (result != null) {
-            System.out.println("DEBUG: resources/list result keys: " + result.fieldNames());
-            
-            if (result.has("resources")) {
-                JsonNode resourcesArray = result.get("resources");
-                System.out.println("DEBUG: Found 'resources' field with " + resourcesArray.size() + " resources");
-                
-                for (JsonNode resourceNode : resourcesArray) {
-                    System.out.println("DEBUG: Processing resource: " + resourceNode);
-                    resources.add(new McpResource(
-                        resourceNode.get("uri").asText(),
-                        resourceNode.has("name") ? resourceNode.get("name").asText() : "",
-                        resourceNode.has("description") ? resourceNode.get("description").asText() : "",
-                        resourceNode.has("mimeType") ? resourceNode.get("mimeType").asText() : null
-                    ));
-                }
-            } else {
-                System.out.println("DEBUG: No 'resources' field found in result");
-            }
-        } else {
-            System.out.println("DEBUG: resources/list result is null");
+        for (JsonNode resourceNode : McpListPager.fetchAll("resources/list", "resources",
+                params -> sendSseRequest("resources/list", params, McpDeadline.after(10, TimeUnit.SECONDS)))) {
+            System.out.println("DEBUG: Processing resource: " + resourceNode);
+            resources.add(McpListPager.toResource(resourceNode));
         }
         
         System.out.println("DEBUG: Returning " + resources.size() + " resources");
@@ -557,10 +715,35 @@ public class McpSseClient implements AutoCloseable {
     }
     
     public JsonNode readResource(String uri) throws Exception {
+        return readResource(uri, null);
+    }
+    
+    /**
+     * Reads a resource, waiting until the deadline, or 10 seconds if it is null.
+     */
+    public JsonNode readResource(String uri, McpDeadline deadline) throws Exception {
         ObjectNode params = objectMapper.createObjectNode();
         params.put("uri", uri);
         
-        return sendSseRequest("resources/read", params).get(10, TimeUnit.SECONDS);
+        return sendSseRequest("resources/read", params, deadline != null ? deadline : McpDeadline.after(10, TimeUnit.SECONDS));
+    }
+    
+    /**
+     * Sends an MCP {@code ping}, which the server answers with an empty result as long as it
+     * is able to handle requests.
+     */
+    public void ping(McpDeadline deadline) throws Exception {
+        sendSseRequest("ping", null, deadline);
+    }
+    
+    /**
+     * Asks the server to send {@code notifications/resources/updated} when the resource changes.
+     */
+    public void subscribeResource(String uri) throws Exception {
+        ObjectNode params = objectMapper.createObjectNode();
+        params.put("uri", uri);
+        
+        sendSseRequest("resources/subscribe", params, McpDeadline.after(10, TimeUnit.SECONDS));
     }
     
     @Override
@@ -568,10 +751,7 @@ public class McpSseClient implements AutoCloseable {
         closed = true;
         
         // Cancel pending requests
-        for (CompletableFuture<JsonNode> future : pendingRequests.values()) {
-            future.cancel(true);
-        }
-        pendingRequests.clear();
+        pendingRequests.cancelAll();
         
         // Reset message endpoint when closing
         this.messageEndpoint = null;
@@ -597,6 +777,27 @@ public class McpSseClient implements AutoCloseable {
         }
     }
     
+    /**
+     * Registers the listener for notifications the server sends outside of responses.
+     */
+    public void setNotificationListener(McpNotificationListener notificationListener) {
+        this.notificationListener = notificationListener;
+    }
+    
+    private void dispatchNotification(JsonNode notification) {
+        McpNotificationListener listener = notificationListener;
+        String method = notification.get("method").asText();
+        if (listener == null) {
+            System.out.println("Received notification from " + serverName + ": " + method);
+            return;
+        }
+        try {
+            listener.onNotification(method, notification.get("params"));
+        } catch (RuntimeException e) {
+            System.err.println("Notification listener failed for " + serverName + ": " + e.getMessage());
+        }
+    }
+    
     public String getServerName() {
         return serverName;
     }
@@ -605,7 +806,30 @@ public class McpSseClient implements AutoCloseable {
         return serverCapabilities;
     }
     
+    public String getLastEventId() {
+        return lastEventId;
+    }
+    
+    public McpPendingRequests getPendingRequests() {
+        return pendingRequests;
+    }
+    
     public boolean isAlive() {
-        return !closed && sseReaderThread != null && sseReaderThread.isAlive() && messageEndpoint != null;
+        // A stream that is being re-established still owns its pending requests
+        return !closed && sseReaderThread != null && sseReaderThread.isAlive() && 
+               (messageEndpoint != null || reconnecting);
+    }
+    
+    private static final class Resumption {
+        private final String droppedEndpoint;
+        private final long[] orphanedIds;
+        private final boolean replayRequested;
+        private final AtomicBoolean settled = new AtomicBoolean(false);
+        
+        private Resumption(String droppedEndpoint, long[] orphanedIds, boolean replayRequested) {
+            this.droppedEndpoint = droppedEndpoint;
+            this.orphanedIds = orphanedIds;
+            this.replayRequested = replayRequested;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+package org.apache.knox.mcp.cluster;
+
+import org.apache.knox.mcp.util.McpLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Posts a session message to the node that owns the session.
+ */
+public class McpMessageForwarder {
+
+    private static final McpLogger logger = McpLogger.getLogger(McpMessageForwarder.class);
+
+    /** Set on forwarded requests; a node never forwards a request that carries it */
+    public static final String FORWARDED_BY_HEADER = "X-Mcp-Forwarded-By";
+
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    private static final int READ_TIMEOUT_MS = 10000;
+
+    /**
+     * Forwards the message and returns the owner's HTTP status.
+     *
+     * @param headers request headers to pass on, such as credentials
+     * @throws IOException if the owner could not be reached
+     */
+    public int forward(String nodeUrl, String sessionId, String localNodeId, String messageJson,
+                       Map<String, String> headers) throws IOException {
+        URL url = new URL(nodeUrl + "/message?session=" + URLEncoder.encode(sessionId, "UTF-8"));
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setInstanceFollowRedirects(false);
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+        }
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setRequestProperty(FORWARDED_BY_HEADER, localNodeId);
+
+        byte[] body = messageJson.getBytes(StandardCharsets.UTF_8);
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+
+        int status = connection.getResponseCode();
+        discard(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+        logger.debug("Forwarded message for session " + sessionId + " to " + nodeUrl + ": HTTP " + status);
+        return status;
+    }
+
+    private static void discard(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        try (InputStream stream = in) {
+            byte[] buffer = new byte[1024];
+            while (stream.read(buffer) != -1) {
+                // drain so the keep-alive connection can be reused
+            }
+        }
+    }
+}
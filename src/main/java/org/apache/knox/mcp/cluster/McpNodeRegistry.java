@@ -0,0 +1,53 @@
+package org.apache.knox.mcp.cluster;
+
+import org.apache.knox.mcp.util.McpLogger;
+
+import java.util.function.Function;
+
+/**
+ * Knows which gateway node this is and how to reach its peers, so that a message posted
+ * to the wrong node can be forwarded to the node that owns the SSE session.
+ */
+public interface McpNodeRegistry {
+
+    /** Fully qualified class name of a custom registry with a public no-arg constructor */
+    String REGISTRY_CLASS = "mcp.cluster.registry";
+
+    /**
+     * Identifier of this node, embedded in the ids of sessions it creates.
+     */
+    String getLocalNodeId();
+
+    /**
+     * Base URL of a node's MCP resource (for example {@code https://gw2:8443/gateway/sandbox/mcp/v1}),
+     * or null if the node is not known.
+     */
+    String getNodeUrl(String nodeId);
+
+    /**
+     * Called once with the service configuration before the registry is used.
+     */
+    default void configure(Function<String, String> config) {
+    }
+
+    /**
+     * Loads the registry named by {@value #REGISTRY_CLASS}, or the static registry if none is set.
+     */
+    static McpNodeRegistry fromConfig(Function<String, String> config) {
+        String className = config.apply(REGISTRY_CLASS);
+        McpNodeRegistry registry = null;
+        if (className != null && !className.trim().isEmpty()) {
+            try {
+                registry = (McpNodeRegistry) Class.forName(className.trim()).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                McpLogger.getLogger(McpNodeRegistry.class).error(
+                    "Cannot load node registry " + className + ", using static configuration: " + e.getMessage(), e);
+            }
+        }
+        if (registry == null) {
+            registry = new StaticMcpNodeRegistry();
+        }
+        registry.configure(config);
+        return registry;
+    }
+}
@@ -0,0 +1,84 @@
+package org.apache.knox.mcp.cluster;
+
+import org.apache.knox.mcp.util.McpLogger;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Node registry read from the service configuration:
+ * <pre>
+ * mcp.cluster.node.id = gw1
+ * mcp.cluster.nodes   = gw1=https://gw1:8443/gateway/sandbox/mcp/v1,gw2=https://gw2:8443/gateway/sandbox/mcp/v1
+ * </pre>
+ * Without a configured node id the node gets a random one and has no peers.
+ */
+public class StaticMcpNodeRegistry implements McpNodeRegistry {
+
+    private static final McpLogger logger = McpLogger.getLogger(StaticMcpNodeRegistry.class);
+
+    public static final String NODE_ID = "mcp.cluster.node.id";
+    public static final String NODES = "mcp.cluster.nodes";
+
+    private String localNodeId;
+    private Map<String, String> nodeUrls = Collections.emptyMap();
+
+    public StaticMcpNodeRegistry() {
+        this(randomNodeId(), Collections.emptyMap());
+    }
+
+    public StaticMcpNodeRegistry(String localNodeId, Map<String, String> nodeUrls) {
+        this.localNodeId = localNodeId;
+        this.nodeUrls = new LinkedHashMap<>(nodeUrls);
+    }
+
+    @Override
+    public void configure(Function<String, String> config) {
+        String nodeId = config.apply(NODE_ID);
+        if (nodeId != null && !nodeId.trim().isEmpty()) {
+            localNodeId = nodeId.trim();
+        }
+        nodeUrls = parseNodes(config.apply(NODES));
+        if (!nodeUrls.isEmpty()) {
+            logger.info("Cluster node " + localNodeId + " with peers " + nodeUrls.keySet());
+        }
+    }
+
+    static Map<String, String> parseNodes(String value) {
+        Map<String, String> nodes = new LinkedHashMap<>();
+        if (value == null || value.trim().isEmpty()) {
+            return nodes;
+        }
+        for (String entry : value.split(",")) {
+            String trimmed = entry.trim();
+            int separator = trimmed.indexOf('=');
+            if (separator <= 0 || separator == trimmed.length() - 1) {
+                logger.warn("Ignoring malformed " + NODES + " entry: " + trimmed);
+                continue;
+            }
+            String url = trimmed.substring(separator + 1).trim();
+            while (url.endsWith("/")) {
+                url = url.substring(0, url.length() - 1);
+            }
+            nodes.put(trimmed.substring(0, separator).trim(), url);
+        }
+        return nodes;
+    }
+
+    private static String randomNodeId() {
+        return UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @Override
+    public String getLocalNodeId() {
+        return localNodeId;
+    }
+
+    @Override
+    public String getNodeUrl(String nodeId) {
+        return nodeUrls.get(nodeId);
+    }
+}
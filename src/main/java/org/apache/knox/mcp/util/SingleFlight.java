@@ -0,0 +1,151 @@
+package org.apache.knox.mcp.util;
+
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.client.McpRequestCancelledException;
+import org.apache.knox.mcp.client.McpRequestTimeoutException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collapses concurrent calls for the same key into one: the first caller runs the call, and
+ * callers arriving while it is in flight wait for it and receive the same result or exception.
+ * Nothing is remembered once the call completes, so a later caller always starts a new call.
+ *
+ * <p>Each caller waits only as long as its own deadline allows, and stops waiting when it is
+ * cancelled. If the shared call was abandoned by the caller running it, because that caller
+ * was cancelled or its shorter deadline passed, the callers still waiting run it again rather
+ * than receive an error meant for someone else.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+    private final AtomicLong rerun = new AtomicLong();
+
+    /**
+     * Runs the call, or joins the identical call already in flight, waiting as long as it takes.
+     */
+    public V execute(K key, Callable<V> call) throws Exception {
+        return execute(key, null, call);
+    }
+
+    /**
+     * Runs the call, or joins the identical call already in flight.
+     *
+     * @param deadline how long this caller waits for a call it joined; null waits as long as it takes
+     * @param call     the call on behalf of this caller, run if it leads or re-runs an abandoned call
+     */
+    public V execute(K key, McpDeadline deadline, Callable<V> call) throws Exception {
+        while (true) {
+            CompletableFuture<V> flight = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+            if (existing == null) {
+                return lead(key, flight, call);
+            }
+            shared.incrementAndGet();
+            try {
+                return await(existing, deadline);
+            } catch (McpRequestCancelledException | McpRequestTimeoutException e) {
+                if (deadline != null && (deadline.isCancelled() || deadline.isExpired())) {
+                    throw e;
+                }
+                // Abandoned by the caller that ran it; this caller still wants the answer
+                rerun.incrementAndGet();
+            }
+        }
+    }
+
+    private V lead(K key, CompletableFuture<V> flight, Callable<V> call) throws Exception {
+        calls.incrementAndGet();
+        // Removed before it completes, so a waiting caller that runs it again starts a new call
+        // rather than joining this one once more
+        try {
+            V result = call.call();
+            inFlight.remove(key, flight);
+            flight.complete(result);
+            return result;
+        } catch (Exception | Error e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> flight, McpDeadline deadline) throws Exception {
+        if (deadline == null) {
+            return unwrap(flight, null);
+        }
+        // The flight itself is shared, so this caller's cancellation completes a view of it
+        CompletableFuture<V> view = new CompletableFuture<>();
+        flight.whenComplete((result, error) -> {
+            if (error != null) {
+                view.completeExceptionally(error);
+            } else {
+                view.complete(result);
+            }
+        });
+        Runnable onCancel = () -> view.completeExceptionally(
+            new McpRequestCancelledException(deadline.getCancelReason()));
+        deadline.addCancelListener(onCancel);
+        try {
+            return unwrap(view, deadline);
+        } finally {
+            deadline.removeCancelListener(onCancel);
+        }
+    }
+
+    private static <V> V unwrap(CompletableFuture<V> flight, McpDeadline deadline) throws Exception {
+        try {
+            if (deadline == null || !deadline.hasTimeLimit()) {
+                return flight.get();
+            }
+            return flight.get(deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new McpRequestTimeoutException("Shared call did not complete within " + deadline);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Number of calls currently in flight.
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * Number of calls actually run.
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * Number of callers that received the result of another caller's call instead of running their own.
+     */
+    public long getShared() {
+        return shared.get();
+    }
+
+    /**
+     * Number of times a waiting caller ran a call again after the caller running it gave up.
+     */
+    public long getRerun() {
+        return rerun.get();
+    }
+}
@@ -0,0 +1,345 @@
+package org.apache.knox.mcp.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Weight-bounded cache with W-TinyLFU admission and eviction. New entries enter a small LRU
+ * window; entries pushed out of the window compete with the main region's LRU victim and
+ * are kept only if a frequency sketch has seen them more often, so a burst of one-off keys
+ * cannot flush a popular working set. The main region is a segmented LRU: entries read
+ * again move from probation to protected.
+ * <p>
+ * Entries are weighted, e.g. by size in bytes, and each has its own expiry. Expired entries
+ * are dropped when read or when their space is needed. All operations are O(1) apart from
+ * {@link #invalidateIf(Predicate)}, and are synchronized.
+ */
+public class WindowTinyLfuCache<K, V> {
+
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final LongSupplier nanoClock;
+    private final FrequencySketch sketch;
+
+    private final Map<K, Node<K, V>> data = new HashMap<>();
+    private final AccessQueue<K, V> window = new AccessQueue<>();
+    private final AccessQueue<K, V> probation = new AccessQueue<>();
+    private final AccessQueue<K, V> protectedQueue = new AccessQueue<>();
+    private long totalWeight;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long rejections;
+
+    /**
+     * @param maximumWeight   upper bound on the summed weight of all entries
+     * @param expectedEntries rough number of entries when full, used to size the sketch
+     */
+    public WindowTinyLfuCache(long maximumWeight, int expectedEntries) {
+        this(maximumWeight, expectedEntries, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock source of {@link System#nanoTime()}-style timestamps for expiry
+     */
+    public WindowTinyLfuCache(long maximumWeight, int expectedEntries, LongSupplier nanoClock) {
+        this.maximumWeight = Math.max(1, maximumWeight);
+        this.windowMaximum = Math.max(1, this.maximumWeight * WINDOW_PERCENT / 100);
+        this.protectedMaximum = (this.maximumWeight - windowMaximum) * PROTECTED_PERCENT / 100;
+        this.nanoClock = nanoClock;
+        this.sketch = new FrequencySketch(expectedEntries);
+    }
+
+    /**
+     * The live value for the key, or null if absent or expired.
+     */
+    public synchronized V get(K key) {
+        sketch.increment(key);
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        if (node.expiresAtNanos - nanoClock.getAsLong() <= 0) {
+            remove(node);
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        onAccess(node);
+        return node.value;
+    }
+
+    /**
+     * Stores the value, replacing any previous one. Returns false if the entry alone is
+     * heavier than the whole cache; it may also be stored and then lose admission.
+     */
+    public synchronized boolean put(K key, V value, long weight, long ttlNanos) {
+        if (weight > maximumWeight || ttlNanos <= 0) {
+            rejections++;
+            return false;
+        }
+        long expiresAt = nanoClock.getAsLong() + ttlNanos;
+        Node<K, V> node = data.get(key);
+        if (node != null) {
+            node.value = value;
+            node.expiresAtNanos = expiresAt;
+            queueOf(node).weight += weight - node.weight;
+            totalWeight += weight - node.weight;
+            node.weight = weight;
+        } else {
+            sketch.increment(key);
+            node = new Node<>(key, value, weight, expiresAt);
+            data.put(key, node);
+            window.addLast(node);
+            node.region = Region.WINDOW;
+            totalWeight += weight;
+        }
+        evict();
+        return true;
+    }
+
+    /**
+     * Removes the entry; returns whether there was one.
+     */
+    public synchronized boolean invalidate(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            return false;
+        }
+        remove(node);
+        return true;
+    }
+
+    /**
+     * Removes every entry whose key matches; a full scan.
+     */
+    public synchronized int invalidateIf(Predicate<K> predicate) {
+        List<Node<K, V>> matches = new ArrayList<>();
+        for (Node<K, V> node : data.values()) {
+            if (predicate.test(node.key)) {
+                matches.add(node);
+            }
+        }
+        for (Node<K, V> node : matches) {
+            remove(node);
+        }
+        return matches.size();
+    }
+
+    public synchronized void invalidateAll() {
+        data.clear();
+        window.clear();
+        probation.clear();
+        protectedQueue.clear();
+        totalWeight = 0;
+    }
+
+    private void onAccess(Node<K, V> node) {
+        switch (node.region) {
+            case WINDOW:
+                window.moveToEnd(node);
+                break;
+            case PROBATION:
+                // Read again while on probation: promote, demoting protected entries if it overflows
+                probation.remove(node);
+                protectedQueue.addLast(node);
+                node.region = Region.PROTECTED;
+                while (protectedQueue.weight > protectedMaximum && protectedQueue.head != node) {
+                    Node<K, V> demoted = protectedQueue.head;
+                    protectedQueue.remove(demoted);
+                    probation.addLast(demoted);
+                    demoted.region = Region.PROBATION;
+                }
+                break;
+            default:
+                protectedQueue.moveToEnd(node);
+                break;
+        }
+    }
+
+    private void evict() {
+        // Entries leaving the window become candidates at the young end of probation
+        int candidates = 0;
+        while (window.weight > windowMaximum && window.head != null) {
+            Node<K, V> node = window.head;
+            window.remove(node);
+            probation.addLast(node);
+            node.region = Region.PROBATION;
+            candidates++;
+        }
+
+        long now = nanoClock.getAsLong();
+        while (totalWeight > maximumWeight) {
+            Node<K, V> victim = probation.head;
+            if (victim == null) {
+                victim = protectedQueue.head != null ? protectedQueue.head : window.head;
+                evictNode(victim, now);
+                continue;
+            }
+            Node<K, V> candidate = candidates > 0 ? probation.tail : null;
+            if (candidate == null || candidate == victim) {
+                if (candidate != null) {
+                    candidates--;
+                }
+                evictNode(victim, now);
+            } else if (candidate.expiresAtNanos - now <= 0 || !admit(candidate, victim, now)) {
+                candidates--;
+                rejections++;
+                evictNode(candidate, now);
+            } else {
+                evictNode(victim, now);
+            }
+        }
+    }
+
+    private boolean admit(Node<K, V> candidate, Node<K, V> victim, long now) {
+        if (victim.expiresAtNanos - now <= 0) {
+            return true;
+        }
+        return sketch.frequency(candidate.key) > sketch.frequency(victim.key);
+    }
+
+    private void evictNode(Node<K, V> node, long now) {
+        if (node.expiresAtNanos - now <= 0) {
+            expirations++;
+        } else {
+            evictions++;
+        }
+        remove(node);
+    }
+
+    private void remove(Node<K, V> node) {
+        data.remove(node.key);
+        queueOf(node).remove(node);
+        totalWeight -= node.weight;
+    }
+
+    private AccessQueue<K, V> queueOf(Node<K, V> node) {
+        switch (node.region) {
+            case WINDOW:
+                return window;
+            case PROBATION:
+                return probation;
+            default:
+                return protectedQueue;
+        }
+    }
+
+    public synchronized int size() {
+        return data.size();
+    }
+
+    public synchronized long weight() {
+        return totalWeight;
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getExpirations() {
+        return expirations;
+    }
+
+    /**
+     * Entries turned away by the admission policy or for being too heavy.
+     */
+    public synchronized long getRejections() {
+        return rejections;
+    }
+
+    private enum Region {
+        WINDOW, PROBATION, PROTECTED
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private V value;
+        private long weight;
+        private long expiresAtNanos;
+        private Region region;
+        private Node<K, V> prev;
+        private Node<K, V> next;
+
+        private Node(K key, V value, long weight, long expiresAtNanos) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    /**
+     * Intrusive doubly-linked LRU list: head is the eldest entry.
+     */
+    private static final class AccessQueue<K, V> {
+        private Node<K, V> head;
+        private Node<K, V> tail;
+        private long weight;
+
+        private void addLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            weight += node.weight;
+        }
+
+        private void remove(Node<K, V> node) {
+            if (node.prev != null) {
+                node.prev.next = node.next;
+            } else {
+                head = node.next;
+            }
+            if (node.next != null) {
+                node.next.prev = node.prev;
+            } else {
+                tail = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        private void moveToEnd(Node<K, V> node) {
+            if (tail != node) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        private void clear() {
+            head = null;
+            tail = null;
+            weight = 0;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for relaying backend notifications to the downstream client of a tool call
+ */
+class McpCallContextTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testProgressIsRewrittenAndCoalesced() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        McpNotificationRelay relay = new McpNotificationRelay(100, 20);
+        McpCallContext context = relay.newCallContext(sink, objectMapper.readTree("{\"_meta\":{\"progressToken\":\"client-7\"}}"));
+
+        for (int i = 1; i <= 5; i++) {
+            context.relayProgress(progress("backend-1", i));
+        }
+
+        // The first update goes straight through, the rest collapse into the latest one
+        assertEquals(1, sink.events.size());
+        assertEquals("client-7", sink.events.get(0).get("progressToken").asText());
+        Thread.sleep(300);
+        assertEquals(2, sink.events.size());
+        assertEquals(5, sink.events.get(1).get("progress").asInt());
+        assertEquals(3, relay.getMetrics().get("coalesced").asLong());
+    }
+
+    @Test
+    void testPendingProgressIsDroppedOnClose() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        McpNotificationRelay relay = new McpNotificationRelay(100, 20);
+        McpCallContext context = relay.newCallContext(sink, objectMapper.readTree("{\"_meta\":{\"progressToken\":1}}"));
+
+        context.relayProgress(progress("backend-1", 1));
+        context.relayProgress(progress("backend-1", 2));
+        context.close();
+        Thread.sleep(300);
+
+        assertEquals(1, sink.events.size());
+    }
+
+    @Test
+    void testProgressWithoutDownstreamTokenIsIgnored() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        McpCallContext context = new McpNotificationRelay(0, 20).newCallContext(sink, objectMapper.readTree("{\"name\":\"t\"}"));
+
+        context.relayProgress(progress("backend-1", 1));
+
+        assertTrue(sink.events.isEmpty());
+    }
+
+    @Test
+    void testLogMessagesAreCappedPerSecond() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        McpNotificationRelay relay = new McpNotificationRelay(0, 3);
+        McpCallContext context = relay.newCallContext(sink, null);
+
+        for (int i = 0; i < 10; i++) {
+            context.relayLog(objectMapper.readTree("{\"level\":\"info\",\"data\":\"line " + i + "\"}"));
+        }
+
+        assertEquals(3, sink.events.size());
+        assertEquals(7, relay.getMetrics().get("dropped").asLong());
+    }
+
+    private ObjectNode progress(String token, int value) {
+        ObjectNode params = objectMapper.createObjectNode();
+        params.put("progressToken", token);
+        params.put("progress", value);
+        params.put("total", 10);
+        return params;
+    }
+
+    private static class RecordingSink implements McpNotificationSink {
+        private final List<JsonNode> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void sendJsonRpcNotification(String method, JsonNode params) {
+            events.add(params);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.apache.knox.mcp.catalog.McpCatalogStore;
+import org.apache.knox.mcp.catalog.McpToolDescriptor;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.Response;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for refreshing the aggregated catalog when a backend announces a list change
+ */
+class McpCatalogRefreshTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<String> backendTools = new CopyOnWriteArrayList<>();
+    private HttpServer backend;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        backendTools.add("alpha");
+        backend = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        backend.createContext("/mcp", this::handle);
+        backend.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        backend.stop(0);
+    }
+
+    @Test
+    void testListChangedNotificationRefetchesCatalog() throws Exception {
+        McpServerConnection connection = new McpServerConnection("backend",
+            "http://127.0.0.1:" + backend.getAddress().getPort() + "/mcp");
+        connection.connect();
+        assertEquals(1, connection.getTools().size());
+
+        CountDownLatch refreshed = new CountDownLatch(1);
+        connection.setCatalogListener(changed -> refreshed.countDown());
+
+        // The call's event stream carries the announcement ahead of the result
+        connection.callTool("alpha", new HashMap<>());
+
+        assertTrue(refreshed.await(5, TimeUnit.SECONDS));
+        assertTrue(connection.getTools().containsKey("beta"));
+        connection.disconnect();
+    }
+
+    @Test
+    void testCatalogChangeOnlyTouchesThatServer() throws Exception {
+        McpProxyResource resource = new McpProxyResource();
+        McpServerConnection first = mockConnection("first", "read", "write");
+        McpServerConnection second = mockConnection("second", "search");
+
+        assertEquals(1, resource.applyCatalogChange(first).size());
+        resource.applyCatalogChange(second);
+        assertTrue(resource.applyCatalogChange(second).isEmpty(), "Unchanged catalog should not announce anything");
+
+        when(first.getTools()).thenReturn(tools("read", "delete"));
+        List<String> changes = resource.applyCatalogChange(first);
+
+        assertEquals(java.util.Collections.singletonList("notifications/tools/list_changed"), changes);
+        Map<String, McpToolDescriptor> aggregated = aggregatedTools(resource);
+        assertTrue(aggregated.containsKey("first_read"));
+        assertTrue(aggregated.containsKey("first_delete"));
+        assertFalse(aggregated.containsKey("first_write"));
+        assertTrue(aggregated.containsKey("second_search"));
+    }
+
+    @Test
+    void testSnapshotIsServedWhileBackendsConnect(@TempDir Path tempDir) throws Exception {
+        Path snapshotFile = tempDir.resolve("catalog.json.gz");
+        Map<String, McpCatalogStore.ServerCatalog> saved = new HashMap<>();
+        saved.put("backend", new McpCatalogStore.ServerCatalog(tools("alpha"), new HashMap<>(), 4, 0));
+        new McpCatalogStore(snapshotFile).saveAsync(() -> saved);
+        waitForFile(snapshotFile);
+
+        // The saved catalog is served before the backend (stopped here) is reachable
+        backend.stop(0);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        McpProxyResource resource = proxyResource(request, snapshotFile,
+            "backend:http://127.0.0.1:" + backend.getAddress().getPort() + "/mcp");
+        try {
+            Response response = resource.handleJsonRpcRequest("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"tools/list\"}", request);
+            JsonNode result = objectMapper.readTree((String) response.getEntity()).get("result");
+
+            assertEquals("backend_alpha", result.get("tools").get(0).get("name").asText());
+            assertTrue(result.get("_meta").get("stale").asBoolean());
+        } finally {
+            resource.cleanup();
+        }
+    }
+
+    private static McpProxyResource proxyResource(HttpServletRequest request, Path snapshotFile, String servers) throws Exception {
+        ServletContext servletContext = mock(ServletContext.class);
+        when(request.getServletContext()).thenReturn(servletContext);
+        when(servletContext.getInitParameter("mcp.servers")).thenReturn(servers);
+        when(servletContext.getInitParameter(McpCatalogStore.SNAPSHOT_FILE)).thenReturn(snapshotFile.toString());
+
+        McpProxyResource resource = new McpProxyResource();
+        Field requestField = McpProxyResource.class.getDeclaredField("request");
+        requestField.setAccessible(true);
+        requestField.set(resource, request);
+        return resource;
+    }
+
+    private static void waitForFile(Path file) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Files.exists(file) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(Files.exists(file));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, McpToolDescriptor> aggregatedTools(McpProxyResource resource) throws Exception {
+        Field field = McpProxyResource.class.getDeclaredField("aggregatedTools");
+        field.setAccessible(true);
+        return (Map<String, McpToolDescriptor>) field.get(resource);
+    }
+
+    private static McpServerConnection mockConnection(String name, String... toolNames) {
+        McpServerConnection connection = mock(McpServerConnection.class);
+        when(connection.getName()).thenReturn(name);
+        when(connection.getTools()).thenReturn(tools(toolNames));
+        when(connection.getResources()).thenReturn(new HashMap<>());
+        return connection;
+    }
+
+    private static Map<String, McpToolDescriptor> tools(String... names) {
+        Map<String, McpToolDescriptor> tools = new HashMap<>();
+        for (String name : names) {
+            tools.put(name, new McpToolDescriptor(name, null, null));
+        }
+        return tools;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        String method = request.get("method").asText();
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.set("id", request.get("id"));
+        ObjectNode result = response.putObject("result");
+
+        if ("tools/list".equals(method)) {
+            ArrayNode tools = result.putArray("tools");
+            for (String tool : backendTools) {
+                tools.addObject().put("name", tool).put("description", "Tool " + tool);
+            }
+        } else if ("resources/list".equals(method)) {
+            result.putArray("resources");
+        } else if ("tools/call".equals(method)) {
+            backendTools.add("beta");
+            result.putArray("content").addObject().put("type", "text").put("text", "ok");
+            String body = "data: {\"jsonrpc\":\"2.0\",\"method\":\"notifications/tools/list_changed\"}\n\n" +
+                          "data: " + objectMapper.writeValueAsString(response) + "\n\n";
+            send(exchange, "text/event-stream", body);
+            return;
+        }
+        send(exchange, "application/json", objectMapper.writeValueAsString(response));
+    }
+
+    private static void send(HttpExchange exchange, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
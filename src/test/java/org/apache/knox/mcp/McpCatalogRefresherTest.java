@@ -0,0 +1,92 @@
+package org.apache.knox.mcp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the scheduled background catalog refresh
+ */
+class McpCatalogRefresherTest {
+
+    private McpCatalogRefresher refresher;
+
+    @AfterEach
+    void tearDown() {
+        if (refresher != null) {
+            refresher.stop();
+        }
+    }
+
+    @Test
+    void testServersAreRelistedOnSchedule() throws Exception {
+        McpServerConnection connection = connection("backend");
+        McpServerConnection.Catalog catalog = new McpServerConnection.Catalog(new HashMap<>(), new HashMap<>());
+        when(connection.fetchCatalog()).thenReturn(catalog);
+        when(connection.publishCatalog(catalog)).thenReturn(false, true, false);
+
+        refresher = new McpCatalogRefresher(200, 0, 1000);
+        refresher.start(Collections.singletonList(connection));
+
+        verify(connection, timeout(3000).atLeast(3)).publishCatalog(catalog);
+        assertTrue(refresher.getMetrics().get("refreshes").asLong() >= 3);
+        assertEquals(1, refresher.getMetrics().get("changes").asLong());
+    }
+
+    @Test
+    void testTimedOutRefreshKeepsLastCatalog() throws Exception {
+        McpServerConnection connection = connection("slow");
+        CountDownLatch release = new CountDownLatch(1);
+        when(connection.fetchCatalog()).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return new McpServerConnection.Catalog(new HashMap<>(), new HashMap<>());
+        });
+
+        refresher = new McpCatalogRefresher(100, 0, 200);
+        refresher.start(Collections.singletonList(connection));
+        Thread.sleep(800);
+
+        // The hung fetch is not retried on top of itself, and nothing is published meanwhile
+        verify(connection, times(1)).fetchCatalog();
+        verify(connection, never()).publishCatalog(any());
+        assertEquals(1, refresher.getMetrics().get("timeouts").asLong());
+        assertTrue(refresher.getMetrics().get("skipped").asLong() >= 1);
+
+        // Once the backend answers again, later rounds refresh normally
+        release.countDown();
+        verify(connection, timeout(2000).atLeastOnce()).publishCatalog(any());
+        verify(connection, atLeast(2)).fetchCatalog();
+    }
+
+    @Test
+    void testDisabledWhenIntervalIsZero() throws Exception {
+        McpServerConnection connection = connection("backend");
+        refresher = new McpCatalogRefresher(0, 20, 1000);
+        refresher.start(Collections.singletonList(connection));
+
+        assertEquals(0, refresher.getMetrics().get("servers").asInt());
+    }
+
+    @Test
+    void testJitterStaysWithinBounds() {
+        refresher = new McpCatalogRefresher(1000, 20, 1000);
+        for (int i = 0; i < 100; i++) {
+            long delay = refresher.nextDelayMillis();
+            assertTrue(delay >= 800 && delay <= 1200, "Delay out of range: " + delay);
+        }
+    }
+
+    private static McpServerConnection connection(String name) {
+        McpServerConnection connection = mock(McpServerConnection.class);
+        when(connection.getName()).thenReturn(name);
+        when(connection.isConnected()).thenReturn(true);
+        return connection;
+    }
+}
@@ -0,0 +1,147 @@
+package org.apache.knox.mcp;
+
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.client.McpException;
+import org.apache.knox.mcp.client.McpRequestTimeoutException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the per-backend circuit breaker
+ */
+class McpCircuitBreakerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger backendCalls = new AtomicInteger();
+    // Opens at 50% failures over the last 10 calls, once 4 were seen; 30 s cool-down, 2 probes
+    private final McpCircuitBreaker breaker = new McpCircuitBreaker("docs", 50, 10, 4, 30000, 2, clock::get);
+
+    @Test
+    void testOpensOnFailureRateAndFailsFast() throws Exception {
+        succeed();
+        fail(new IOException("connection refused"));
+        succeed();
+        assertEquals(McpCircuitBreaker.State.CLOSED, breaker.getState());
+        fail(new Exception("Failed to call tool", new TimeoutException("no answer")));
+        assertEquals(McpCircuitBreaker.State.OPEN, breaker.getState());
+
+        McpCircuitOpenException open = assertThrows(McpCircuitOpenException.class, this::succeed);
+        assertEquals(30000, open.getRetryAfterMillis());
+        assertEquals("Server unavailable", open.getReason());
+        assertEquals(4, backendCalls.get());
+        assertEquals(1, breaker.getMetrics().get("fastFailed").asInt());
+        assertEquals(1, breaker.getMetrics().get("timeouts").asInt());
+    }
+
+    @Test
+    void testSuccessfulProbesCloseTheBreaker() throws Exception {
+        open();
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertEquals(McpCircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        // Only the configured number of probes go through at once
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch entered = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            Future<?> first = executor.submit(() -> breaker.call(() -> probe(entered, release)));
+            Future<?> second = executor.submit(() -> breaker.call(() -> probe(entered, release)));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            assertThrows(McpCircuitOpenException.class, this::succeed);
+
+            release.countDown();
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(McpCircuitBreaker.State.CLOSED, breaker.getState());
+        succeed();
+    }
+
+    @Test
+    void testFailedProbeReopens() throws Exception {
+        open();
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        fail(new IOException("still down"));
+        assertEquals(McpCircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(McpCircuitOpenException.class, this::succeed);
+        assertEquals(2, breaker.getMetrics().get("opened").asInt());
+    }
+
+    @Test
+    void testBackendErrorsAndShedCallsDoNotCount() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            fail(new Exception("Failed to call tool", new McpException(-32602, "Invalid params")));
+            fail(new McpServerBusyException("queue full"));
+        }
+        assertEquals(McpCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getMetrics().get("failures").asInt());
+        assertEquals(10, breaker.getMetrics().get("windowCalls").asInt());
+    }
+
+    @Test
+    void testTimeoutsTheCallerAskedForDoNotCount() throws Exception {
+        McpDeadlinePolicy policy = new McpDeadlinePolicy(20, 300000, 10000, Collections.emptyMap());
+        for (int i = 0; i < 10; i++) {
+            timeOut(policy.forTool("docs", "search", McpDeadline.after(1, TimeUnit.MILLISECONDS)));
+        }
+        assertEquals(McpCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getMetrics().get("failures").asInt());
+        assertEquals(0, breaker.getMetrics().get("timeouts").asInt());
+
+        // The proxy's own timeout for the tool running out does count
+        for (int i = 0; i < 4; i++) {
+            timeOut(policy.forTool("docs", "search", null));
+        }
+        assertEquals(McpCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(4, breaker.getMetrics().get("timeouts").asInt());
+    }
+
+    private void open() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            fail(new McpException(McpException.CONNECTION_CLOSED, "process exited"));
+        }
+        assertEquals(McpCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    private static boolean probe(CountDownLatch entered, CountDownLatch release) throws InterruptedException {
+        entered.countDown();
+        return release.await(5, TimeUnit.SECONDS);
+    }
+
+    private void succeed() throws Exception {
+        breaker.call(backendCalls::incrementAndGet);
+    }
+
+    // A backend that answers only after the deadline has passed
+    private void timeOut(McpDeadline deadline) {
+        assertThrows(McpRequestTimeoutException.class, () -> breaker.call(deadline, () -> {
+            backendCalls.incrementAndGet();
+            while (!deadline.isExpired()) {
+                Thread.sleep(1);
+            }
+            throw new McpRequestTimeoutException("Request timed out");
+        }));
+    }
+
+    private void fail(Exception error) {
+        Exception thrown = assertThrows(Exception.class, () -> breaker.call(() -> {
+            backendCalls.incrementAndGet();
+            throw error;
+        }));
+        assertSame(error, thrown);
+    }
+}
@@ -0,0 +1,174 @@
+package org.apache.knox.mcp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.knox.mcp.cluster.McpMessageForwarder;
+import org.apache.knox.mcp.cluster.McpNodeRegistry;
+import org.apache.knox.mcp.cluster.StaticMcpNodeRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests forwarding of session messages between two in-process gateway nodes
+ */
+class McpClusterRoutingTest {
+
+    private static final String INITIALIZE =
+        "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"initialize\",\"params\":{\"protocolVersion\":\"2024-11-05\"}}";
+
+    private final McpSseSessionManager nodeA = new McpSseSessionManager();
+    private final McpSseSessionManager nodeB = new McpSseSessionManager();
+    private HttpServer serverA;
+    private HttpServer serverB;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        serverA = startNode(nodeA);
+        serverB = startNode(nodeB);
+        Map<String, String> nodes = new HashMap<>();
+        nodes.put("node-a", baseUrl(serverA));
+        nodes.put("node-b", baseUrl(serverB));
+        nodeA.configureCluster(new StaticMcpNodeRegistry("node-a", nodes));
+        nodeB.configureCluster(new StaticMcpNodeRegistry("node-b", nodes));
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.shutdown();
+        nodeB.shutdown();
+        serverA.stop(0);
+        serverB.stop(0);
+    }
+
+    @Test
+    void testMessagePostedToOtherNodeReachesOwner() throws Exception {
+        TestServletOutputStream stream = new TestServletOutputStream();
+        McpSseSession session = nodeB.createSession(asyncContext(stream), null, sseRequest());
+        assertTrue(session.getSessionId().startsWith("mcp-sse-node-b-"));
+
+        assertEquals(202, post(serverA, session.getSessionId(), INITIALIZE));
+
+        long deadline = System.currentTimeMillis() + 3000;
+        while (!stream.getContent().contains("\"id\":1,\"result\"")) {
+            assertTrue(System.currentTimeMillis() < deadline, "Response was not delivered on node B's stream");
+            Thread.sleep(20);
+        }
+        assertEquals(1, nodeA.getMetrics().get("forwardedMessages").asLong());
+    }
+
+    @Test
+    void testUnknownSessionIsNotFoundWithoutForwardingLoop() throws Exception {
+        assertEquals(404, post(serverA, "mcp-sse-node-b-0123456789abcdef", INITIALIZE));
+        assertEquals(404, post(serverA, "mcp-sse-node-a-0123456789abcdef", INITIALIZE));
+        assertEquals(404, post(serverA, "mcp-sse-node-z-0123456789abcdef", INITIALIZE));
+        assertEquals(0, nodeA.getMetrics().get("forwardedMessages").asLong());
+    }
+
+    @Test
+    void testUnreachableOwnerIsReportedAsFailure() {
+        Map<String, String> nodes = Collections.singletonMap("node-c", "http://127.0.0.1:1/mcp/v1");
+        nodeA.configureCluster(new StaticMcpNodeRegistry("node-a", nodes));
+
+        assertEquals(McpSseSessionManager.Routing.FORWARD_FAILED,
+            nodeA.routeMessage("mcp-sse-node-c-0123456789abcdef", INITIALIZE, null, null));
+        assertEquals(1, nodeA.getMetrics().get("forwardFailures").asLong());
+    }
+
+    @Test
+    void testOwnerIsParsedFromSessionId() {
+        assertEquals("gw-east-1", McpSseSessionManager.ownerOf("mcp-sse-gw-east-1-9f2c"));
+        assertNull(McpSseSessionManager.ownerOf("mcp-sse-42"));
+        assertNull(McpSseSessionManager.ownerOf("3b8e-uuid"));
+    }
+
+    @Test
+    void testStaticRegistryFromConfig() {
+        Map<String, String> config = new HashMap<>();
+        config.put(StaticMcpNodeRegistry.NODE_ID, "gw1");
+        config.put(StaticMcpNodeRegistry.NODES, "gw1=https://gw1:8443/mcp/v1/, gw2=https://gw2:8443/mcp/v1, bogus");
+        McpNodeRegistry registry = McpNodeRegistry.fromConfig(config::get);
+
+        assertEquals("gw1", registry.getLocalNodeId());
+        assertEquals("https://gw1:8443/mcp/v1", registry.getNodeUrl("gw1"));
+        assertEquals("https://gw2:8443/mcp/v1", registry.getNodeUrl("gw2"));
+        assertNull(registry.getNodeUrl("bogus"));
+    }
+
+    private static HttpServer startNode(McpSseSessionManager manager) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/mcp/v1/message", exchange -> {
+            String sessionId = URLDecoder.decode(exchange.getRequestURI().getQuery().substring("session=".length()), "UTF-8");
+            String body = read(exchange);
+            McpSseSessionManager.Routing routing = manager.routeMessage(sessionId, body, null,
+                exchange.getRequestHeaders().getFirst(McpMessageForwarder.FORWARDED_BY_HEADER));
+            int status = routing == McpSseSessionManager.Routing.NOT_FOUND ? 404
+                       : routing == McpSseSessionManager.Routing.FORWARD_FAILED ? 502 : 202;
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+
+    private static String baseUrl(HttpServer server) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/mcp/v1";
+    }
+
+    private static int post(HttpServer server, String sessionId, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl(server) + "/message?session=" + sessionId).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return connection.getResponseCode();
+    }
+
+    private static String read(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] chunk = new byte[1024];
+            int n;
+            while ((n = in.read(chunk)) != -1) {
+                buffer.write(chunk, 0, n);
+            }
+        }
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static AsyncContext asyncContext(TestServletOutputStream stream) throws IOException {
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(stream);
+        AsyncContext asyncContext = mock(AsyncContext.class);
+        when(asyncContext.getResponse()).thenReturn(response);
+        return asyncContext;
+    }
+
+    private static HttpServletRequest sseRequest() {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getRequestURI()).thenReturn("/mcp/v1/sse");
+        when(request.getContextPath()).thenReturn("");
+        when(request.getServletPath()).thenReturn("/mcp/v1");
+        return request;
+    }
+}
@@ -0,0 +1,165 @@
+package org.apache.knox.mcp;
+
+import org.apache.knox.mcp.client.McpDeadline;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the adaptive per-backend concurrency limit
+ */
+class McpConcurrencyLimiterTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+    private final AtomicLong clock = new AtomicLong();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testFullQueueRejectsImmediately() throws Exception {
+        McpConcurrencyLimiter limiter = new McpConcurrencyLimiter("docs", 1, 1, 1, 1, 5000,
+            Collections.emptyMap(), System::nanoTime);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> running = executor.submit(() -> limiter.call(1, () -> {
+            release.await(5, TimeUnit.SECONDS);
+            return "first";
+        }));
+        await(() -> limiter.getInFlight() == 1);
+        Future<String> waiting = executor.submit(() -> limiter.call(1, () -> "second"));
+        await(() -> limiter.getQueued() == 1);
+
+        long start = System.nanoTime();
+        assertThrows(McpServerBusyException.class, () -> limiter.call(1, () -> "third"));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+        release.countDown();
+        assertEquals("first", running.get(5, TimeUnit.SECONDS));
+        assertEquals("second", waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(1, limiter.getMetrics().get("rejected").asInt());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void testWaitingTooLongFailsAsBusy() throws Exception {
+        McpConcurrencyLimiter limiter = new McpConcurrencyLimiter("docs", 2, 1, 2, 8, 50,
+            Collections.emptyMap(), System::nanoTime);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // A call heavier than the limit still runs, on its own
+        Future<String> heavy = executor.submit(() -> limiter.call(4, () -> {
+            release.await(5, TimeUnit.SECONDS);
+            return "heavy";
+        }));
+        await(() -> limiter.getInFlight() == 4);
+
+        assertThrows(McpServerBusyException.class, () -> limiter.call(1, () -> "light"));
+        assertEquals(1, limiter.getMetrics().get("queueTimeouts").asInt());
+
+        release.countDown();
+        assertEquals("heavy", heavy.get(5, TimeUnit.SECONDS));
+        assertEquals("light", limiter.call(1, () -> "light"));
+    }
+
+    @Test
+    void testCallerDeadlineCutsTheQueueWaitShort() throws Exception {
+        McpConcurrencyLimiter limiter = new McpConcurrencyLimiter("docs", 1, 1, 1, 8, 5000,
+            Collections.emptyMap(), System::nanoTime);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Object> running = executor.submit(() -> limiter.call(1, () -> release.await(5, TimeUnit.SECONDS)));
+        await(() -> limiter.getInFlight() == 1);
+
+        long start = System.nanoTime();
+        assertThrows(McpServerBusyException.class, () ->
+            limiter.call(1, McpDeadline.after(100, TimeUnit.MILLISECONDS), () -> "late"));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+
+        release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testLimitGrowsWhileFullAndLatencyIsSteady() throws Exception {
+        McpConcurrencyLimiter limiter = new McpConcurrencyLimiter("docs", 8, 1, 64, 0, 1000,
+            Collections.emptyMap(), clock::get);
+        for (int round = 0; round < 3; round++) {
+            CountDownLatch release = new CountDownLatch(1);
+            List<Future<Object>> calls = new ArrayList<>();
+            int width = limiter.getLimit();
+            for (int i = 0; i < Math.min(width, 8); i++) {
+                calls.add(executor.submit(() -> limiter.call(1, () -> release.await(5, TimeUnit.SECONDS))));
+            }
+            await(() -> limiter.getInFlight() == calls.size());
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+            release.countDown();
+            for (Future<Object> call : calls) {
+                call.get(5, TimeUnit.SECONDS);
+            }
+        }
+        assertTrue(limiter.getLimit() > 8, "limit " + limiter.getLimit());
+    }
+
+    @Test
+    void testRisingLatencyAndTimeoutsShrinkTheLimit() throws Exception {
+        McpConcurrencyLimiter limiter = new McpConcurrencyLimiter("docs", 20, 6, 64, 0, 1000,
+            Collections.emptyMap(), clock::get);
+        call(limiter, 10);
+        for (int i = 0; i < 10; i++) {
+            call(limiter, 100);
+        }
+        int afterSlowCalls = limiter.getLimit();
+        assertTrue(afterSlowCalls < 20, "limit " + afterSlowCalls);
+
+        assertThrows(TimeoutException.class, () -> limiter.call(1, () -> {
+            throw new TimeoutException("no response");
+        }));
+        assertTrue(limiter.getLimit() < afterSlowCalls);
+        assertEquals(1, limiter.getMetrics().get("drops").asInt());
+
+        // Never below the minimum
+        for (int i = 0; i < 50; i++) {
+            call(limiter, 1000);
+        }
+        assertEquals(6, limiter.getLimit());
+    }
+
+    @Test
+    void testToolWeights() {
+        Map<String, Integer> weights = McpConcurrencyLimiter.parseWeights("docs",
+            "docs.reindex:4, docs.*:2, other.search:9, broken, docs.x:heavy");
+        McpConcurrencyLimiter limiter = new McpConcurrencyLimiter("docs", 8, 1, 8, 0, 1000, weights, clock::get);
+        assertEquals(4, limiter.getWeight("reindex"));
+        assertEquals(2, limiter.getWeight("search"));
+        assertEquals(1, limiter.getWeight(null));
+        assertEquals(2, weights.size());
+    }
+
+    private void call(McpConcurrencyLimiter limiter, long millis) throws Exception {
+        limiter.call(1, () -> clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis)));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
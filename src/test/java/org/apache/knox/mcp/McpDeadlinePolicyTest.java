@@ -0,0 +1,184 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.client.McpException;
+import org.apache.knox.mcp.client.McpRequestCancelledException;
+import org.apache.knox.mcp.client.McpRequestTimeoutException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for request deadlines, from the configured policy down to the backend
+ */
+class McpDeadlinePolicyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testDefaultsAndClamping() {
+        McpDeadlinePolicy policy = McpDeadlinePolicy.fromConfig(key -> null);
+        assertEquals(30000, policy.toolTimeoutMillis("docs", "search", null));
+        assertEquals(2000, policy.toolTimeoutMillis("docs", "search", 2000L));
+        assertEquals(300000, policy.toolTimeoutMillis("docs", "search", 3600000L));
+        assertEquals(10000, policy.resourceTimeoutMillis(null));
+        assertEquals(300000, policy.resourceTimeoutMillis(900000L));
+    }
+
+    @Test
+    void testPerToolRules() {
+        Map<String, String> config = new HashMap<>();
+        config.put(McpDeadlinePolicy.DEFAULT_TIMEOUT, "20");
+        config.put(McpDeadlinePolicy.MAX_TIMEOUT, "60");
+        config.put(McpDeadlinePolicy.TOOL_TIMEOUTS, "docs.reindex:120/600, docs.*:5, broken, docs.x:soon");
+        McpDeadlinePolicy policy = McpDeadlinePolicy.fromConfig(config::get);
+
+        assertEquals(120000, policy.toolTimeoutMillis("docs", "reindex", null));
+        assertEquals(600000, policy.toolTimeoutMillis("docs", "reindex", 3600000L));
+        assertEquals(5000, policy.toolTimeoutMillis("docs", "search", null));
+        assertEquals(60000, policy.toolTimeoutMillis("docs", "search", 90000L));
+        assertEquals(20000, policy.toolTimeoutMillis("other", "search", null));
+        assertEquals(2, McpDeadlinePolicy.parseRules(config.get(McpDeadlinePolicy.TOOL_TIMEOUTS)).size());
+    }
+
+    @Test
+    void testRequestedTimeouts() throws Exception {
+        JsonNode params = objectMapper.readTree("{\"name\":\"search\",\"_meta\":{\"timeout\":1500}}");
+        assertEquals(Long.valueOf(1500), McpDeadlinePolicy.requestedIn(params));
+        assertNull(McpDeadlinePolicy.requestedIn(objectMapper.readTree("{\"name\":\"search\"}")));
+        assertNull(McpDeadlinePolicy.parseRequested("-5"));
+        assertNull(McpDeadlinePolicy.parseRequested("soon"));
+
+        assertEquals(Long.valueOf(1500), McpDeadlinePolicy.earliest(4000L, 1500L));
+        assertEquals(Long.valueOf(4000), McpDeadlinePolicy.earliest(4000L, null));
+        assertNull(McpDeadlinePolicy.earliest(null, null));
+    }
+
+    @Test
+    void testExpiredCallIsCancelledOnBackend() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Long> callId = new CompletableFuture<>();
+        CompletableFuture<JsonNode> cancelled = new CompletableFuture<>();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        HttpServer backend = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        backend.setExecutor(executor);
+        backend.createContext("/mcp", exchange -> handle(exchange, release, callId, cancelled));
+        backend.start();
+        McpServerConnection connection = new McpServerConnection("slow",
+            "http://127.0.0.1:" + backend.getAddress().getPort() + "/mcp");
+        try {
+            connection.connect();
+
+            long start = System.nanoTime();
+            McpRequestTimeoutException e = assertThrows(McpRequestTimeoutException.class, () ->
+                connection.callTool("hang", Collections.emptyMap(), null, McpDeadline.after(200, TimeUnit.MILLISECONDS)));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+            assertEquals(McpException.REQUEST_TIMEOUT, e.getCode());
+
+            JsonNode notification = cancelled.get(5, TimeUnit.SECONDS);
+            assertEquals(callId.get(5, TimeUnit.SECONDS).longValue(), notification.get("requestId").asLong());
+        } finally {
+            release.countDown();
+            connection.disconnect();
+            backend.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testCancelledCallIsCancelledOnBackend() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Long> callId = new CompletableFuture<>();
+        CompletableFuture<JsonNode> cancelled = new CompletableFuture<>();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        HttpServer backend = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        backend.setExecutor(executor);
+        backend.createContext("/mcp", exchange -> handle(exchange, release, callId, cancelled));
+        backend.start();
+        McpServerConnection connection = new McpServerConnection("slow",
+            "http://127.0.0.1:" + backend.getAddress().getPort() + "/mcp");
+        try {
+            connection.connect();
+
+            McpDeadline caller = McpDeadline.none();
+            McpDeadline deadline = McpDeadlinePolicy.fromConfig(key -> null).forTool("slow", "hang", caller);
+            executor.submit(() -> {
+                callId.get(5, TimeUnit.SECONDS);
+                return caller.cancel("User pressed stop");
+            });
+
+            long start = System.nanoTime();
+            McpRequestCancelledException e = assertThrows(McpRequestCancelledException.class, () ->
+                connection.callTool("hang", Collections.emptyMap(), null, deadline));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+            assertEquals(McpException.REQUEST_CANCELLED, e.getCode());
+
+            JsonNode notification = cancelled.get(5, TimeUnit.SECONDS);
+            assertEquals(callId.get().longValue(), notification.get("requestId").asLong());
+            assertEquals("User pressed stop", notification.get("reason").asText());
+        } finally {
+            release.countDown();
+            connection.disconnect();
+            backend.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange exchange, CountDownLatch release, CompletableFuture<Long> callId,
+                        CompletableFuture<JsonNode> cancelled) throws IOException {
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        String method = request.get("method").asText();
+        if (!request.has("id")) {
+            if ("notifications/cancelled".equals(method)) {
+                cancelled.complete(request.get("params"));
+            }
+            exchange.sendResponseHeaders(202, -1);
+            exchange.close();
+            return;
+        }
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.set("id", request.get("id"));
+        ObjectNode result = response.putObject("result");
+        if ("tools/list".equals(method)) {
+            result.putArray("tools").addObject().put("name", "hang");
+        } else if ("resources/list".equals(method)) {
+            result.putArray("resources");
+        } else if ("tools/call".equals(method)) {
+            callId.complete(request.get("id").asLong());
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] bytes = objectMapper.writeValueAsBytes(response);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        try {
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (IOException e) {
+            // The proxy gave up on the call and closed the connection
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for pinging backends and taking the ones that stop answering out of rotation
+ */
+class McpHealthCheckerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Backend> backends = new ArrayList<>();
+    private final List<McpServerConnection> connections = new ArrayList<>();
+    private McpHealthChecker checker;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (checker != null) {
+            checker.stop();
+        }
+        for (McpServerConnection connection : connections) {
+            connection.disconnect();
+        }
+        for (Backend backend : backends) {
+            backend.server.stop(0);
+        }
+    }
+
+    @Test
+    void testFailingBackendIsTakenOutOfRotationAndBack() throws Exception {
+        Backend good = backend();
+        Backend flaky = backend();
+        McpServerConnection goodConnection = connect(good);
+        McpServerConnection flakyConnection = connect(flaky);
+        McpReplicaSet replicas = McpReplicaSet.fromConfig("docs", Arrays.asList(goodConnection, flakyConnection),
+            key -> null);
+        // Pinged by hand; the hour-long interval keeps the schedule out of the way
+        checker = new McpHealthChecker(TimeUnit.HOURS.toMillis(1), 1000, 2, 2, System::nanoTime);
+        checker.start(Arrays.asList(goodConnection, flakyConnection));
+
+        checker.ping(checker.getProbe(flakyConnection));
+        assertEquals(McpHealthChecker.Status.HEALTHY, checker.getStatus(flakyConnection));
+
+        flaky.down = true;
+        checker.ping(checker.getProbe(flakyConnection));
+        assertEquals(McpHealthChecker.Status.HEALTHY, checker.getStatus(flakyConnection));
+        checker.ping(checker.getProbe(flakyConnection));
+        assertEquals(McpHealthChecker.Status.UNHEALTHY, checker.getStatus(flakyConnection));
+        assertFalse(flakyConnection.isHealthy());
+        assertEquals(1, replicas.getAvailableCount());
+        assertEquals(2, checker.getHealth(flakyConnection).get("consecutiveFailures").asInt());
+        assertTrue(checker.getHealth(flakyConnection).has("lastError"));
+
+        flaky.down = false;
+        checker.ping(checker.getProbe(flakyConnection));
+        assertEquals(McpHealthChecker.Status.UNHEALTHY, checker.getStatus(flakyConnection));
+        checker.ping(checker.getProbe(flakyConnection));
+        assertEquals(McpHealthChecker.Status.HEALTHY, checker.getStatus(flakyConnection));
+        assertEquals(2, replicas.getAvailableCount());
+        assertEquals(5, flaky.pings.get());
+        assertEquals(0, good.pings.get());
+    }
+
+    @Test
+    void testErrorAnswerCountsAsHealthy() throws Exception {
+        Backend backend = backend();
+        backend.pingUnknown = true;
+        McpServerConnection connection = connect(backend);
+        checker = new McpHealthChecker(TimeUnit.HOURS.toMillis(1), 1000, 1, 1, System::nanoTime);
+        checker.start(Collections.singletonList(connection));
+
+        checker.ping(checker.getProbe(connection));
+        assertEquals(McpHealthChecker.Status.HEALTHY, checker.getStatus(connection));
+        assertTrue(connection.isHealthy());
+        assertEquals(0, checker.getMetrics().get("failures").asLong());
+    }
+
+    @Test
+    void testBackendsArePingedOnSchedule() throws Exception {
+        Backend backend = backend();
+        McpServerConnection connection = connect(backend);
+        checker = new McpHealthChecker(200, 1000, 3, 2, System::nanoTime);
+        checker.start(Collections.singletonList(connection));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (backend.pings.get() < 2) {
+            assertTrue(System.nanoTime() < deadline, "Backend was not pinged in time");
+            Thread.sleep(20);
+        }
+        assertEquals(McpHealthChecker.Status.HEALTHY, checker.getStatus(connection));
+        assertTrue(checker.getHealth(connection).get("pingMillis").asDouble() >= 0);
+    }
+
+    private McpServerConnection connect(Backend backend) throws Exception {
+        McpServerConnection connection = new McpServerConnection("docs",
+            "http://127.0.0.1:" + backend.server.getAddress().getPort() + "/mcp");
+        connections.add(connection);
+        connection.connect();
+        return connection;
+    }
+
+    private Backend backend() throws IOException {
+        Backend backend = new Backend();
+        backends.add(backend);
+        return backend;
+    }
+
+    // Answers the catalog requests and ping, unless it is down
+    private class Backend {
+        private final HttpServer server;
+        private final AtomicInteger pings = new AtomicInteger();
+        private volatile boolean down;
+        private volatile boolean pingUnknown;
+
+        Backend() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/mcp", this::handle);
+            server.start();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            String method = request.get("method").asText();
+            if (!request.has("id")) {
+                exchange.sendResponseHeaders(202, -1);
+                exchange.close();
+                return;
+            }
+            ObjectNode response = objectMapper.createObjectNode();
+            response.put("jsonrpc", "2.0");
+            response.set("id", request.get("id"));
+            if ("ping".equals(method)) {
+                pings.incrementAndGet();
+                if (down) {
+                    exchange.sendResponseHeaders(503, -1);
+                    exchange.close();
+                    return;
+                }
+                if (pingUnknown) {
+                    response.putObject("error").put("code", -32601).put("message", "Method not found");
+                } else {
+                    response.putObject("result");
+                }
+            } else {
+                ObjectNode result = response.putObject("result");
+                if ("tools/list".equals(method)) {
+                    result.putArray("tools");
+                } else if ("resources/list".equals(method)) {
+                    result.putArray("resources");
+                }
+            }
+            byte[] bytes = objectMapper.writeValueAsBytes(response);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.client.McpRequestCancelledException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for hedging slow calls onto a second replica
+ */
+class McpHedgerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<HttpServer> backends = new ArrayList<>();
+    private final List<McpServerConnection> connections = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (McpServerConnection connection : connections) {
+            connection.disconnect();
+        }
+        for (HttpServer backend : backends) {
+            backend.stop(0);
+        }
+    }
+
+    @Test
+    void testSlowCallIsHedgedOnAnotherReplica() throws Exception {
+        McpHedger hedger = new McpHedger(Collections.emptySet(), true, 100, 5);
+        McpReplicaSet replicas = replicas();
+        warmUp(hedger, replicas, 5);
+
+        AtomicReference<McpServerConnection> primaryReplica = new AtomicReference<>();
+        AtomicReference<McpServerConnection> hedgeReplica = new AtomicReference<>();
+        AtomicReference<Thread> primaryThread = new AtomicReference<>();
+        CountDownLatch primaryCancelled = new CountDownLatch(1);
+        Object result = hedger.call(replicas, "docs resources/read", McpDeadline.after(5, TimeUnit.SECONDS),
+            (replica, deadline, hedge) -> {
+                if (hedge) {
+                    hedgeReplica.set(replica);
+                    return "hedge";
+                }
+                primaryReplica.set(replica);
+                primaryThread.set(Thread.currentThread());
+                deadline.addCancelListener(primaryCancelled::countDown);
+                primaryCancelled.await(5, TimeUnit.SECONDS);
+                throw new McpRequestCancelledException(deadline.getCancelReason());
+            });
+
+        assertEquals("hedge", result);
+        assertNotSame(primaryReplica.get(), hedgeReplica.get());
+        // The first request runs on the caller's thread; only the hedge is handed off
+        assertSame(Thread.currentThread(), primaryThread.get());
+        // The slow request is cancelled once the hedge has answered
+        assertTrue(primaryCancelled.await(5, TimeUnit.SECONDS));
+        assertEquals(1, hedger.getMetrics().get("hedged").asLong());
+        assertEquals(1, hedger.getMetrics().get("hedgeWins").asLong());
+    }
+
+    @Test
+    void testHedgesStayWithinBudget() throws Exception {
+        McpHedger hedger = new McpHedger(Collections.emptySet(), true, 5, 5);
+        McpReplicaSet replicas = replicas();
+        warmUp(hedger, replicas, 5);
+
+        Object result = hedger.call(replicas, "docs resources/read", McpDeadline.after(5, TimeUnit.SECONDS),
+            (replica, deadline, hedge) -> {
+                Thread.sleep(100);
+                return hedge ? "hedge" : "primary";
+            });
+
+        // The warm-up calls had too few samples to hedge, so only this call earned budget
+        assertEquals("primary", result);
+        assertEquals(0, hedger.getMetrics().get("hedged").asLong());
+        assertEquals(1, hedger.getMetrics().get("overBudget").asLong());
+    }
+
+    @Test
+    void testHedgedCallsFromConfig() {
+        Map<String, String> config = new HashMap<>();
+        config.put(McpHedger.HEDGE_TOOLS, "docs.search, docs, other.*");
+        McpHedger hedger = McpHedger.fromConfig(config::get);
+        assertTrue(hedger.isHedged("docs", "search"));
+        assertFalse(hedger.isHedged("docs", "delete"));
+        assertTrue(hedger.isHedged("other", "anything"));
+        assertTrue(hedger.isHedgingResources());
+
+        config.put(McpHedger.HEDGE_BUDGET, "0");
+        McpHedger disabled = McpHedger.fromConfig(config::get);
+        assertFalse(disabled.isHedged("docs", "search"));
+        assertFalse(disabled.isHedgingResources());
+    }
+
+    private void warmUp(McpHedger hedger, McpReplicaSet replicas, int calls) throws Exception {
+        for (int i = 0; i < calls; i++) {
+            assertEquals("fast", hedger.call(replicas, "docs resources/read", McpDeadline.after(5, TimeUnit.SECONDS),
+                (replica, deadline, hedge) -> "fast"));
+        }
+    }
+
+    private McpReplicaSet replicas() throws Exception {
+        List<McpServerConnection> replicas = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            HttpServer backend = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            backend.createContext("/mcp", this::handle);
+            backend.start();
+            backends.add(backend);
+            McpServerConnection connection = new McpServerConnection("docs",
+                "http://127.0.0.1:" + backend.getAddress().getPort() + "/mcp");
+            connections.add(connection);
+            connection.connect();
+            replicas.add(connection);
+        }
+        return McpReplicaSet.fromConfig("docs", replicas, key -> null);
+    }
+
+    // Only the catalog is needed; the attempts in these tests never reach the backends
+    private void handle(HttpExchange exchange) throws IOException {
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        if (!request.has("id")) {
+            exchange.sendResponseHeaders(202, -1);
+            exchange.close();
+            return;
+        }
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.set("id", request.get("id"));
+        ObjectNode result = response.putObject("result");
+        if ("tools/list".equals(request.get("method").asText())) {
+            result.putArray("tools");
+        } else if ("resources/list".equals(request.get("method").asText())) {
+            result.putArray("resources");
+        }
+        byte[] bytes = objectMapper.writeValueAsBytes(response);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.apache.knox.mcp.client.McpDeadline;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for tracking and cancelling downstream requests
+ */
+class McpInflightCallsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testCancellationNamesRequestWithinItsSession() throws Exception {
+        McpInflightCalls calls = new McpInflightCalls();
+        McpDeadline first = calls.begin("a", IntNode.valueOf(1), null);
+        McpDeadline other = calls.begin("b", IntNode.valueOf(1), null);
+        McpDeadline text = calls.begin("a", TextNode.valueOf("1"), 5000L);
+        assertFalse(first.hasTimeLimit());
+        assertTrue(text.hasTimeLimit());
+        assertEquals(3, calls.size());
+
+        assertTrue(calls.cancelRequested("a", objectMapper.readTree("{\"requestId\":1,\"reason\":\"User pressed stop\"}")));
+        assertTrue(first.isCancelled());
+        assertEquals("User pressed stop", first.getCancelReason());
+        assertFalse(other.isCancelled());
+        assertFalse(text.isCancelled());
+
+        // Already gone, or never there
+        assertFalse(calls.cancelRequested("a", objectMapper.readTree("{\"requestId\":1}")));
+        assertFalse(calls.cancelRequested("a", objectMapper.readTree("{}")));
+        assertEquals(1, calls.getCancelled());
+    }
+
+    @Test
+    void testEndedAndUntrackedRequests() {
+        McpInflightCalls calls = new McpInflightCalls();
+        McpDeadline caller = calls.begin("a", IntNode.valueOf(7), null);
+        calls.end("a", IntNode.valueOf(7), caller);
+        assertEquals(0, calls.size());
+
+        // Without a session or an id a request cannot be named, but is still cancellable
+        McpDeadline anonymous = calls.begin(null, IntNode.valueOf(7), 1000L);
+        assertEquals(0, calls.size());
+        assertTrue(anonymous.cancel("Client disconnected"));
+        assertFalse(anonymous.cancel("again"));
+    }
+
+    @Test
+    void testSessionEndCancelsItsRequestsAndNarrowedDeadlines() {
+        McpInflightCalls calls = new McpInflightCalls();
+        McpDeadline first = calls.begin("a", IntNode.valueOf(1), null);
+        McpDeadline second = calls.begin("a", IntNode.valueOf(2), null);
+        McpDeadline other = calls.begin("b", IntNode.valueOf(1), null);
+        McpDeadline backend = first.narrow(30, TimeUnit.SECONDS);
+
+        assertEquals(2, calls.cancelAll("a", "Session closed"));
+        assertTrue(first.isCancelled());
+        assertTrue(second.isCancelled());
+        assertEquals("Session closed", backend.getCancelReason());
+        assertFalse(other.isCancelled());
+        assertEquals(1, calls.size());
+    }
+}
@@ -0,0 +1,217 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.knox.mcp.client.McpDeadline;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for spreading calls over the replicas of a server and ejecting the ones that misbehave
+ */
+class McpReplicaSetTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<Backend> backends = new ArrayList<>();
+    private final List<McpServerConnection> connections = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (McpServerConnection connection : connections) {
+            connection.disconnect();
+        }
+        for (Backend backend : backends) {
+            backend.release.countDown();
+            backend.server.stop(0);
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testFailingReplicaIsEjectedAndReadmitted() throws Exception {
+        Backend good = backend(false);
+        Backend bad = backend(true);
+        AtomicLong clock = new AtomicLong();
+        McpReplicaSet replicas = new McpReplicaSet("docs", Arrays.asList(connect(good), connect(bad)),
+            3, 3, 1000, 50, clock::get);
+
+        for (int i = 0; i < 40; i++) {
+            callQuietly(replicas);
+        }
+        assertEquals(3, bad.calls.get());
+        assertEquals(1, replicas.getAvailableCount());
+        JsonNode badMetrics = replicas.getMetrics().get(1);
+        assertTrue(badMetrics.get("ejected").asBoolean());
+        assertEquals(1, badMetrics.get("ejections").asInt());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        assertEquals(2, replicas.getAvailableCount());
+        assertFalse(replicas.getMetrics().get(1).get("ejected").asBoolean());
+    }
+
+    @Test
+    void testEachReplicaReportsItsOwnBreaker() throws Exception {
+        McpServerConnection first = connect(backend(false));
+        McpServerConnection second = connect(backend(false));
+        AtomicLong clock = new AtomicLong();
+        first.setCircuitBreaker(new McpCircuitBreaker("docs", 50, 10, 4, 30000, 2, clock::get));
+        McpCircuitBreaker secondBreaker = new McpCircuitBreaker("docs", 50, 10, 4, 30000, 2, clock::get);
+        second.setCircuitBreaker(secondBreaker);
+        McpReplicaSet replicas = new McpReplicaSet("docs", Arrays.asList(first, second), 3, 3, 1000, 50, clock::get);
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(IOException.class, () -> secondBreaker.call(() -> {
+                throw new IOException("connection refused");
+            }));
+        }
+        assertEquals("CLOSED", replicas.getMetrics().get(0).get("circuitBreaker").get("state").asText());
+        assertEquals("OPEN", replicas.getMetrics().get(1).get("circuitBreaker").get("state").asText());
+        assertFalse(replicas.getMetrics().get(1).has("concurrency"));
+    }
+
+    @Test
+    void testLastReplicaIsNeverEjected() throws Exception {
+        McpReplicaSet replicas = new McpReplicaSet("docs", Arrays.asList(connect(backend(true)), connect(backend(true))),
+            2, 3, 1000, 100, System::nanoTime);
+
+        for (int i = 0; i < 20; i++) {
+            callQuietly(replicas);
+        }
+        assertEquals(1, replicas.getAvailableCount());
+    }
+
+    @Test
+    void testCallGoesToReplicaWithFewerOutstanding() throws Exception {
+        Backend first = backend(false);
+        Backend second = backend(false);
+        first.blocking = true;
+        second.blocking = true;
+        McpReplicaSet replicas = McpReplicaSet.fromConfig("docs", Arrays.asList(connect(first), connect(second)),
+            key -> null);
+
+        Future<Object> one = executor.submit(() -> call(replicas));
+        waitFor(() -> first.calls.get() + second.calls.get() == 1);
+        Future<Object> two = executor.submit(() -> call(replicas));
+        waitFor(() -> first.calls.get() + second.calls.get() == 2);
+
+        assertEquals(1, first.calls.get());
+        assertEquals(1, second.calls.get());
+        first.release.countDown();
+        second.release.countDown();
+        one.get(5, TimeUnit.SECONDS);
+        two.get(5, TimeUnit.SECONDS);
+    }
+
+    private Object call(McpReplicaSet replicas) throws Exception {
+        return replicas.call(replica -> replica.callTool("lookup", Collections.emptyMap(), null,
+            McpDeadline.after(5, TimeUnit.SECONDS)));
+    }
+
+    private void callQuietly(McpReplicaSet replicas) {
+        try {
+            call(replicas);
+        } catch (Exception e) {
+            // The failing replica answers with an HTTP error
+        }
+    }
+
+    private McpServerConnection connect(Backend backend) throws Exception {
+        McpServerConnection connection = new McpServerConnection("docs",
+            "http://127.0.0.1:" + backend.server.getAddress().getPort() + "/mcp");
+        connections.add(connection);
+        connection.connect();
+        return connection;
+    }
+
+    private Backend backend(boolean failing) throws IOException {
+        Backend backend = new Backend(failing);
+        backends.add(backend);
+        return backend;
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+
+    // Answers the catalog requests, and tools/call unless told to fail or hold it
+    private class Backend {
+        private final HttpServer server;
+        private final boolean failing;
+        private final AtomicInteger calls = new AtomicInteger();
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile boolean blocking;
+
+        Backend(boolean failing) throws IOException {
+            this.failing = failing;
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(executor);
+            server.createContext("/mcp", this::handle);
+            server.start();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            String method = request.get("method").asText();
+            if (!request.has("id")) {
+                exchange.sendResponseHeaders(202, -1);
+                exchange.close();
+                return;
+            }
+            ObjectNode response = objectMapper.createObjectNode();
+            response.put("jsonrpc", "2.0");
+            response.set("id", request.get("id"));
+            ObjectNode result = response.putObject("result");
+            if ("tools/list".equals(method)) {
+                result.putArray("tools").addObject().put("name", "lookup");
+            } else if ("resources/list".equals(method)) {
+                result.putArray("resources");
+            } else if ("tools/call".equals(method)) {
+                calls.incrementAndGet();
+                if (failing) {
+                    exchange.sendResponseHeaders(500, -1);
+                    exchange.close();
+                    return;
+                }
+                if (blocking) {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                result.putArray("content").addObject().put("type", "text").put("text", "ok");
+            }
+            byte[] bytes = objectMapper.writeValueAsBytes(response);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
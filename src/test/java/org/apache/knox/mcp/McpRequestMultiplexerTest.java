@@ -0,0 +1,157 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.knox.mcp.client.McpDeadline;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for mapping downstream requests onto the ids of a shared backend connection
+ */
+class McpRequestMultiplexerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testSameClientIdFromTwoSessions() {
+        McpRequestMultiplexer multiplexer = new McpRequestMultiplexer();
+        McpRequestMultiplexer.Route first = multiplexer.open(7, "session-a", IntNode.valueOf(1), null, null);
+        McpRequestMultiplexer.Route second = multiplexer.open(8, "session-b", IntNode.valueOf(1), null, null);
+        McpRequestMultiplexer.Route text = multiplexer.open(9, "session-a", TextNode.valueOf("1"), null, null);
+
+        assertSame(first, multiplexer.get(7));
+        assertSame(second, multiplexer.get(8));
+        assertEquals("session-b", multiplexer.get(8).getSession());
+        assertEquals(TextNode.valueOf("1"), multiplexer.get(9).getClientId());
+        assertNull(multiplexer.get(10));
+        assertNull(multiplexer.soleRoute());
+
+        multiplexer.close(first);
+        multiplexer.close(text);
+        assertNull(multiplexer.get(7));
+        assertSame(second, multiplexer.soleRoute());
+        multiplexer.close(second);
+        assertNull(multiplexer.soleRoute());
+        assertEquals(0, multiplexer.size());
+    }
+
+    @Test
+    void testProgressFindsItsSessionOverSharedConnection() throws Exception {
+        CountDownLatch bothArrived = new CountDownLatch(2);
+        List<JsonNode> backendCalls = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        HttpServer backend = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        backend.setExecutor(executor);
+        backend.createContext("/mcp", exchange -> handle(exchange, bothArrived, backendCalls));
+        backend.start();
+        McpServerConnection connection = new McpServerConnection("shared",
+            "http://127.0.0.1:" + backend.getAddress().getPort() + "/mcp");
+        McpNotificationRelay relay = new McpNotificationRelay(0, 20);
+        RecordingSink sinkA = new RecordingSink();
+        RecordingSink sinkB = new RecordingSink();
+        try {
+            connection.connect();
+
+            // Both sessions call their request 1 at the same time
+            JsonNode params = objectMapper.readTree("{\"_meta\":{\"progressToken\":\"mine\"}}");
+            McpCallContext contextA = relay.newCallContext(sinkA, params, "session-a", IntNode.valueOf(1));
+            McpCallContext contextB = relay.newCallContext(sinkB, params, "session-b", IntNode.valueOf(1));
+            Future<Object> callA = executor.submit(() ->
+                connection.callTool("work", Collections.emptyMap(), contextA, McpDeadline.after(5, TimeUnit.SECONDS)));
+            Future<Object> callB = executor.submit(() ->
+                connection.callTool("work", Collections.emptyMap(), contextB, McpDeadline.after(5, TimeUnit.SECONDS)));
+            callA.get(5, TimeUnit.SECONDS);
+            callB.get(5, TimeUnit.SECONDS);
+
+            // Upstream the calls had ids of their own, and progress was asked for under them
+            assertEquals(2, backendCalls.size());
+            assertNotEquals(backendCalls.get(0).get("id").asLong(), backendCalls.get(1).get("id").asLong());
+            for (JsonNode call : backendCalls) {
+                assertEquals(call.get("id").asLong(), call.get("params").get("_meta").get("progressToken").asLong());
+            }
+            // Each session saw only its own progress, under its own token
+            assertEquals(1, sinkA.events.size());
+            assertEquals(1, sinkB.events.size());
+            assertEquals("mine", sinkA.events.get(0).get("progressToken").asText());
+            assertNotEquals(sinkA.events.get(0).get("progress").asLong(), sinkB.events.get(0).get("progress").asLong());
+            assertEquals(0, connection.getMultiplexer().size());
+        } finally {
+            connection.disconnect();
+            backend.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    // Answers tools/call with an event stream: progress equal to the request id, then the result
+    private void handle(HttpExchange exchange, CountDownLatch bothArrived, List<JsonNode> backendCalls)
+            throws IOException {
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        String method = request.get("method").asText();
+        if (!request.has("id")) {
+            exchange.sendResponseHeaders(202, -1);
+            exchange.close();
+            return;
+        }
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.set("id", request.get("id"));
+        ObjectNode result = response.putObject("result");
+        StringBuilder body = new StringBuilder();
+        if ("tools/list".equals(method)) {
+            result.putArray("tools").addObject().put("name", "work");
+        } else if ("resources/list".equals(method)) {
+            result.putArray("resources");
+        } else if ("tools/call".equals(method)) {
+            backendCalls.add(request);
+            bothArrived.countDown();
+            try {
+                bothArrived.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ObjectNode progress = objectMapper.createObjectNode();
+            progress.put("jsonrpc", "2.0");
+            progress.put("method", "notifications/progress");
+            ObjectNode progressParams = progress.putObject("params");
+            progressParams.set("progressToken", request.get("params").get("_meta").get("progressToken"));
+            progressParams.put("progress", request.get("id").asLong());
+            body.append("event: message\ndata: ").append(objectMapper.writeValueAsString(progress)).append("\n\n");
+        }
+        body.append("event: message\ndata: ").append(objectMapper.writeValueAsString(response)).append("\n\n");
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static class RecordingSink implements McpNotificationSink {
+        private final List<JsonNode> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void sendJsonRpcNotification(String method, JsonNode params) {
+            events.add(params);
+        }
+    }
+}
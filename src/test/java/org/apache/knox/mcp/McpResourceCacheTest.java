@@ -0,0 +1,186 @@
+package org.apache.knox.mcp;
+
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.client.McpRequestCancelledException;
+import org.apache.knox.mcp.client.McpRequestTimeoutException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for caching resource contents
+ */
+class McpResourceCacheTest {
+
+    private final McpResourceCache cache = new McpResourceCache(
+        McpResourceCache.parseRules("application/schema+json:600, text/*:300, *:60, broken"), 1 << 20);
+    private final AtomicInteger backendReads = new AtomicInteger();
+
+    @Test
+    void testTtlFollowsMimeType() {
+        assertEquals(600000, cache.getTtlMillis("application/schema+json"));
+        assertEquals(300000, cache.getTtlMillis("text/markdown; charset=utf-8"));
+        assertEquals(60000, cache.getTtlMillis("image/png"));
+        assertEquals(60000, cache.getTtlMillis(null));
+
+        McpResourceCache textOnly = new McpResourceCache(McpResourceCache.parseRules("text/plain:30"), 1 << 20);
+        assertEquals(0, textOnly.getTtlMillis("application/json"));
+        assertFalse(McpResourceCache.fromConfig(key -> null).isEnabled());
+    }
+
+    @Test
+    void testUpdateNotificationInvalidatesOnlyThatResource() throws Exception {
+        cache.read("docs", "file:///a", false, () -> contents("text/markdown"));
+        cache.read("docs", "file:///b", false, () -> contents("text/markdown"));
+        cache.read("docs", "file:///a", false, () -> contents("text/markdown"));
+        assertEquals(2, backendReads.get());
+
+        cache.invalidate("docs", "file:///a");
+        cache.read("docs", "file:///a", false, () -> contents("text/markdown"));
+        cache.read("docs", "file:///b", false, () -> contents("text/markdown"));
+        assertEquals(3, backendReads.get());
+
+        // A null URI drops everything from the server, e.g. after a reconnect
+        cache.invalidate("docs", null);
+        assertEquals(0, cache.getMetrics().get("entries").asInt());
+    }
+
+    @Test
+    void testReadRacingAnUpdateIsNotStored() throws Exception {
+        cache.read("docs", "file:///a", false, () -> {
+            // The backend reports a change while this read is still in flight
+            cache.invalidate("docs", "file:///a");
+            return contents("text/plain");
+        });
+        cache.read("docs", "file:///a", false, () -> contents("text/plain"));
+
+        assertEquals(2, backendReads.get());
+        assertEquals(1, cache.getMetrics().get("discardedReads").asInt());
+    }
+
+    @Test
+    void testUncacheableContentsAndBypass() throws Exception {
+        McpResourceCache textOnly = new McpResourceCache(McpResourceCache.parseRules("text/*:30"), 1 << 20);
+        textOnly.read("docs", "file:///img", false, () -> contents("image/png"));
+        textOnly.read("docs", "file:///img", false, () -> contents("image/png"));
+        assertEquals(2, backendReads.get());
+
+        textOnly.read("docs", "file:///txt", false, () -> contents("text/plain"));
+        textOnly.read("docs", "file:///txt", true, () -> contents("text/plain"));
+        assertEquals(4, backendReads.get());
+        assertEquals(1, textOnly.getMetrics().get("bypasses").asInt());
+    }
+
+    @Test
+    void testConcurrentReadsShareOneBackendCallWithoutCaching() throws Exception {
+        McpResourceCache disabled = McpResourceCache.fromConfig(key -> null);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Object>> reads = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                reads.add(executor.submit(() -> disabled.read("docs", "file:///a", false, () -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return contents("text/plain");
+                })));
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (disabled.getMetrics().get("coalesced").asInt() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<Object> read : reads) {
+                assertSame(reads.get(0).get(5, TimeUnit.SECONDS), read.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, backendReads.get());
+        assertEquals(3, disabled.getMetrics().get("coalesced").asInt());
+        assertEquals(0, disabled.getMetrics().get("entries").asInt());
+    }
+
+    @Test
+    void testJoinedReadFollowsEachCallersDeadline() throws Exception {
+        McpResourceCache disabled = McpResourceCache.fromConfig(key -> null);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Callable<Object> cancelledRead = () -> {
+                started.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                throw new McpRequestCancelledException("client cancelled");
+            };
+            Future<Object> cancelled = executor.submit(() -> disabled.read("docs", "file:///a", false,
+                McpDeadline.none(), cancelledRead, cancelledRead));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            // A caller with little time left gives up on its own deadline, not the first caller's
+            long start = System.nanoTime();
+            assertThrows(McpRequestTimeoutException.class, () -> disabled.read("docs", "file:///a", false,
+                McpDeadline.after(100, TimeUnit.MILLISECONDS), () -> contents("text/plain"), () -> contents("text/plain")));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+
+            // A caller with time left reads again once the first caller has been cancelled
+            Future<Object> waiting = executor.submit(() -> disabled.read("docs", "file:///a", false,
+                McpDeadline.after(5, TimeUnit.SECONDS), () -> contents("text/plain"), () -> contents("text/plain")));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (disabled.getMetrics().get("coalesced").asInt() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            assertThrows(Exception.class, () -> cancelled.get(5, TimeUnit.SECONDS));
+            assertNotNull(waiting.get(5, TimeUnit.SECONDS));
+            assertEquals(1, backendReads.get());
+            assertEquals(1, disabled.getMetrics().get("coalescedRerun").asInt());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testRefreshAheadUsesTheRefreshRead() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        McpResourceCache refreshing = new McpResourceCache(McpResourceCache.parseRules("text/*:100"), 1 << 20,
+            20, 0, clock::get);
+        refreshing.read("docs", "file:///a", false, McpDeadline.none(), () -> contents("text/plain"),
+            () -> contents("text/plain"));
+
+        // Past the refresh point, the caller is answered from the cache and the refresh reads in the background
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(90));
+        CountDownLatch refreshed = new CountDownLatch(1);
+        assertNotNull(refreshing.read("docs", "file:///a", false, McpDeadline.after(1, TimeUnit.MILLISECONDS),
+            () -> {
+                throw new AssertionError("A fresh entry should not be read for the caller");
+            },
+            () -> {
+                refreshed.countDown();
+                return contents("text/plain");
+            }));
+        assertTrue(refreshed.await(5, TimeUnit.SECONDS));
+    }
+
+    private Object contents(String mimeType) {
+        Map<String, Object> content = new HashMap<>();
+        content.put("uri", "file:///x");
+        content.put("mimeType", mimeType);
+        content.put("text", "read " + backendReads.incrementAndGet());
+        return Collections.singletonMap("contents", Collections.singletonList(content));
+    }
+}
@@ -0,0 +1,100 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for refresh-ahead and stale-if-error serving of cached results
+ */
+class McpResponseCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger backendCalls = new AtomicInteger();
+    // 100 second TTL, refresh during the last 20 seconds, 60 seconds of stale fallback
+    private final McpToolResultCache cache = new McpToolResultCache(
+        McpToolResultCache.parseRules("config.*:100"), 1 << 20, 20, 60000, clock::get);
+
+    @Test
+    void testHitNearExpiryRefreshesInBackground() throws Exception {
+        cache.call("config", "fetch", null, false, this::backend);
+        advanceSeconds(50);
+        cache.call("config", "fetch", null, false, this::backend);
+        assertEquals(1, backendCalls.get());
+
+        advanceSeconds(35);
+        JsonNode served = (JsonNode) cache.call("config", "fetch", null, false, this::backend);
+        assertEquals(1, served.get("call").asInt());
+        awaitMetric("refreshes", 1);
+        assertEquals(2, backendCalls.get());
+
+        // The refreshed entry is fresh for another full TTL and is only refreshed once
+        advanceSeconds(60);
+        served = (JsonNode) cache.call("config", "fetch", null, false, this::backend);
+        assertEquals(2, served.get("call").asInt());
+        assertEquals(2, backendCalls.get());
+    }
+
+    @Test
+    void testBackendFailureAfterExpiryServesStaleResult() throws Exception {
+        cache.call("config", "fetch", null, false, this::backend);
+        advanceSeconds(130);
+
+        JsonNode served = (JsonNode) cache.call("config", "fetch", null, false, this::failingBackend);
+        assertEquals(1, served.get("call").asInt());
+        assertTrue(served.get("_meta").get("stale").asBoolean());
+        assertEquals(1, cache.getMetrics().get("staleServed").asInt());
+
+        // The shared cached result is not modified, and a successful call replaces it
+        JsonNode fresh = (JsonNode) cache.call("config", "fetch", null, false, this::backend);
+        assertEquals(2, fresh.get("call").asInt());
+        assertFalse(fresh.has("_meta"));
+    }
+
+    @Test
+    void testBackendFailureAfterGracePeriodIsReturned() throws Exception {
+        cache.call("config", "fetch", null, false, this::backend);
+        advanceSeconds(170);
+        assertThrows(IOException.class, () -> cache.call("config", "fetch", null, false, this::failingBackend));
+        assertEquals(0, cache.getMetrics().get("staleServed").asInt());
+    }
+
+    @Test
+    void testBypassDoesNotFallBackToStaleResult() throws Exception {
+        Map<String, Object> args = Collections.singletonMap("key", "a");
+        cache.call("config", "fetch", args, false, this::backend);
+        advanceSeconds(130);
+        assertThrows(IOException.class, () -> cache.call("config", "fetch", args, true, this::failingBackend));
+    }
+
+    private void advanceSeconds(long seconds) {
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    private void awaitMetric(String name, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.getMetrics().get(name).asInt() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, cache.getMetrics().get(name).asInt());
+    }
+
+    private Object backend() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("call", backendCalls.incrementAndGet());
+        return result;
+    }
+
+    private Object failingBackend() throws IOException {
+        throw new IOException("backend unavailable");
+    }
+}
@@ -0,0 +1,172 @@
+package org.apache.knox.mcp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the queue-backed, non-blocking SSE event writer
+ */
+class McpSseEventWriterTest {
+
+    @Test
+    void testEventsAreWrittenInOrderWhenClientIsReady() throws Exception {
+        TestServletOutputStream out = new TestServletOutputStream();
+        McpSseEventWriter writer = new McpSseEventWriter("s1", out, 8,
+            McpSseEventWriter.OverflowPolicy.SHED_NOTIFICATIONS, null);
+
+        writer.offer("connected", "s1", McpSseEventWriter.Priority.HIGH);
+        writer.start();
+        writer.offer("message", "{\"id\":1}", McpSseEventWriter.Priority.HIGH);
+
+        assertEquals("event: connected\ndata: s1\n\nevent: message\ndata: {\"id\":1}\n\n", out.getContent());
+        assertEquals(0, writer.getQueueDepth());
+        assertEquals(2, writer.getEventsWritten());
+    }
+
+    @Test
+    void testSlowClientQueuesWithoutBlockingAndCatchesUp() throws Exception {
+        TestServletOutputStream out = new TestServletOutputStream();
+        McpSseEventWriter writer = new McpSseEventWriter("s2", out, 8,
+            McpSseEventWriter.OverflowPolicy.SHED_NOTIFICATIONS, null);
+        writer.start();
+
+        out.setReady(false);
+        writer.offer("message", "one", McpSseEventWriter.Priority.HIGH);
+        writer.offer("message", "two", McpSseEventWriter.Priority.HIGH);
+        Thread.sleep(20);
+
+        assertEquals("", out.getContent());
+        assertEquals(2, writer.getQueueDepth());
+        assertTrue(writer.getLagMillis() >= 20);
+
+        out.setReady(true);
+
+        assertEquals("event: message\ndata: one\n\nevent: message\ndata: two\n\n", out.getContent());
+        assertEquals(0, writer.getQueueDepth());
+        assertEquals(0, writer.getLagMillis());
+        assertEquals(2, writer.getMaxQueueDepth());
+    }
+
+    @Test
+    void testOverflowShedsNotificationsBeforeResponses() throws Exception {
+        TestServletOutputStream out = new TestServletOutputStream();
+        AtomicBoolean failed = new AtomicBoolean(false);
+        McpSseEventWriter writer = new McpSseEventWriter("s3", out, 2,
+            McpSseEventWriter.OverflowPolicy.SHED_NOTIFICATIONS, () -> failed.set(true));
+        writer.start();
+        out.setReady(false);
+
+        assertTrue(writer.offer("message", "progress-1", McpSseEventWriter.Priority.LOW));
+        assertTrue(writer.offer("message", "result-1", McpSseEventWriter.Priority.HIGH));
+        // Queue is full: a new notification is shed, a response evicts the queued notification
+        assertFalse(writer.offer("message", "progress-2", McpSseEventWriter.Priority.LOW));
+        assertTrue(writer.offer("message", "result-2", McpSseEventWriter.Priority.HIGH));
+        assertEquals(2, writer.getEventsDropped());
+
+        // Nothing left to shed, so the stream gives up
+        assertThrows(IOException.class, () -> writer.offer("message", "result-3", McpSseEventWriter.Priority.HIGH));
+        assertTrue(failed.get());
+        assertTrue(writer.isClosed());
+    }
+
+    @Test
+    void testOverflowClosesSessionWhenConfigured() throws Exception {
+        TestServletOutputStream out = new TestServletOutputStream();
+        AtomicBoolean failed = new AtomicBoolean(false);
+        McpSseEventWriter writer = new McpSseEventWriter("s4", out, 1,
+            McpSseEventWriter.OverflowPolicy.CLOSE_SESSION, () -> failed.set(true));
+        writer.start();
+        out.setReady(false);
+
+        writer.offer("message", "one", McpSseEventWriter.Priority.LOW);
+        assertThrows(IOException.class, () -> writer.offer("message", "two", McpSseEventWriter.Priority.LOW));
+        assertTrue(failed.get());
+    }
+
+    @Test
+    void testCloseWhenDrainedWaitsForSlowClient() throws Exception {
+        TestServletOutputStream out = new TestServletOutputStream();
+        AtomicBoolean completed = new AtomicBoolean(false);
+        McpSseEventWriter writer = new McpSseEventWriter("s5", out, 8,
+            McpSseEventWriter.OverflowPolicy.SHED_NOTIFICATIONS, null);
+        writer.start();
+        out.setReady(false);
+
+        writer.offer("message", "progress", McpSseEventWriter.Priority.LOW);
+        writer.offer("message", "result", McpSseEventWriter.Priority.HIGH);
+        writer.closeWhenDrained(() -> completed.set(true));
+        assertFalse(completed.get());
+        assertFalse(writer.offer("message", "late", McpSseEventWriter.Priority.HIGH));
+
+        out.setReady(true);
+
+        assertTrue(completed.get());
+        assertTrue(writer.isClosed());
+        assertEquals("event: message\ndata: progress\n\nevent: message\ndata: result\n\n", out.getContent());
+    }
+
+    @Test
+    void testConcurrentProducersStayWithinCapacity() throws Exception {
+        TestServletOutputStream out = new TestServletOutputStream();
+        McpSseEventWriter writer = new McpSseEventWriter("s6", out, 16,
+            McpSseEventWriter.OverflowPolicy.SHED_NOTIFICATIONS, null);
+        writer.start();
+        out.setReady(false);
+
+        int producers = 8;
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < producers; i++) {
+                futures.add(executor.submit(() -> {
+                    go.await();
+                    for (int j = 0; j < 100; j++) {
+                        if (writer.offer("message", "progress", McpSseEventWriter.Priority.LOW)) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            go.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(16, accepted.get());
+        assertEquals(16, writer.getQueueDepth());
+        assertEquals(16, writer.getMaxQueueDepth());
+        assertEquals(producers * 100 - 16, writer.getEventsDropped());
+    }
+
+    @Test
+    void testMultiLineDataIsSplitIntoDataFields() {
+        byte[] encoded = McpSseEventWriter.encodeEvent(null, "a\nb");
+        assertEquals("data: a\ndata: b\n\n", new String(encoded));
+    }
+
+    @Test
+    void testOverflowPolicyParsing() {
+        assertEquals(McpSseEventWriter.OverflowPolicy.CLOSE_SESSION,
+            McpSseEventWriter.OverflowPolicy.fromConfig("close", McpSseEventWriter.OverflowPolicy.SHED_NOTIFICATIONS));
+        assertEquals(McpSseEventWriter.OverflowPolicy.SHED_NOTIFICATIONS,
+            McpSseEventWriter.OverflowPolicy.fromConfig("bogus", McpSseEventWriter.OverflowPolicy.SHED_NOTIFICATIONS));
+    }
+}
@@ -0,0 +1,135 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests concurrent, capped and ordered dispatch of requests posted to an SSE session
+ */
+class McpSseSessionDispatcherTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+    private final List<Integer> delivered = new CopyOnWriteArrayList<>();
+    private final Map<Integer, CountDownLatch> gates = new ConcurrentHashMap<>();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testRequestsRunConcurrentlyAndCompleteOutOfOrder() throws Exception {
+        McpSseSessionDispatcher dispatcher = dispatcher(4, 0, false);
+
+        dispatcher.submit(request(1));
+        dispatcher.submit(request(2));
+        waitFor(() -> concurrent.get() == 2);
+
+        gate(2).countDown();
+        waitFor(() -> delivered.size() == 1);
+        gate(1).countDown();
+        waitFor(() -> delivered.size() == 2);
+
+        assertEquals(Integer.valueOf(2), delivered.get(0));
+        assertEquals(Integer.valueOf(1), delivered.get(1));
+    }
+
+    @Test
+    void testOrderedModeReleasesResponsesInPostOrder() throws Exception {
+        McpSseSessionDispatcher dispatcher = dispatcher(4, 0, true);
+
+        for (int i = 1; i <= 3; i++) {
+            dispatcher.submit(request(i));
+        }
+        waitFor(() -> concurrent.get() == 3);
+
+        gate(3).countDown();
+        gate(2).countDown();
+        Thread.sleep(50);
+        assertTrue(delivered.isEmpty(), "Later responses must wait for the first");
+
+        gate(1).countDown();
+        waitFor(() -> delivered.size() == 3);
+        assertEquals(Integer.valueOf(1), delivered.get(0));
+        assertEquals(Integer.valueOf(2), delivered.get(1));
+        assertEquals(Integer.valueOf(3), delivered.get(2));
+    }
+
+    @Test
+    void testConcurrencyCapQueuesThenRejects() throws Exception {
+        McpSseSessionDispatcher dispatcher = dispatcher(2, 1, false);
+
+        assertTrue(dispatcher.submit(request(1)));
+        assertTrue(dispatcher.submit(request(2)));
+        assertTrue(dispatcher.submit(request(3)));
+        assertFalse(dispatcher.submit(request(4)));
+        assertEquals(1, dispatcher.getRejected());
+
+        waitFor(() -> concurrent.get() == 2);
+        assertEquals(1, dispatcher.getPending());
+
+        for (int i = 1; i <= 3; i++) {
+            gate(i).countDown();
+        }
+        waitFor(() -> delivered.size() == 3);
+        assertEquals(2, maxConcurrent.get());
+        assertEquals(0, dispatcher.getRunning());
+    }
+
+    private McpSseSessionDispatcher dispatcher(int maxConcurrency, int maxPending, boolean ordered) {
+        Function<JsonNode, JsonNode> handler = request -> {
+            int id = request.get("id").asInt();
+            int now = concurrent.incrementAndGet();
+            maxConcurrent.accumulateAndGet(now, Math::max);
+            try {
+                gate(id).await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrent.decrementAndGet();
+            }
+            return request;
+        };
+        return new McpSseSessionDispatcher("test", executor, handler,
+            response -> delivered.add(response.get("id").asInt()), maxConcurrency, maxPending, ordered);
+    }
+
+    private CountDownLatch gate(int id) {
+        return gates.computeIfAbsent(id, k -> new CountDownLatch(1));
+    }
+
+    private JsonNode request(int id) {
+        ObjectNode request = objectMapper.createObjectNode();
+        request.put("jsonrpc", "2.0");
+        request.put("id", id);
+        request.put("method", "tools/call");
+        return request;
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 3000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+}
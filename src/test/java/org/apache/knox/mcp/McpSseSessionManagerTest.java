@@ -0,0 +1,195 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.client.McpRequestCancelledException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests dispatch, heartbeats and expiry of downstream SSE sessions
+ */
+class McpSseSessionManagerTest {
+
+    private McpSseSessionManager manager;
+    private McpSseSessionSettings settings;
+    private TestServletOutputStream outputStream;
+    private AsyncContext asyncContext;
+    private HttpServletRequest request;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        manager = new McpSseSessionManager();
+        settings = new McpSseSessionSettings();
+        settings.setHeartbeatIntervalMillis(0);
+        settings.setIdleTimeoutMillis(0);
+        manager.configure(settings);
+
+        outputStream = new TestServletOutputStream();
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(outputStream);
+        asyncContext = mock(AsyncContext.class);
+        when(asyncContext.getResponse()).thenReturn(response);
+        request = mock(HttpServletRequest.class);
+        when(request.getRequestURI()).thenReturn("/mcp/v1/sse");
+        when(request.getContextPath()).thenReturn("");
+        when(request.getServletPath()).thenReturn("/mcp/v1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.shutdown();
+    }
+
+    @Test
+    void testHeartbeatsAreWrittenAsComments() throws Exception {
+        settings.setHeartbeatIntervalMillis(100);
+        manager.createSession(asyncContext, null, request);
+
+        waitFor(() -> outputStream.getContent().contains(": ping\n\n"));
+        assertEquals(1, manager.getActiveSessionCount());
+    }
+
+    @Test
+    void testIdleSessionIsReapedAndRemoved() throws Exception {
+        settings.setIdleTimeoutMillis(300);
+        McpSseSession session = manager.createSession(asyncContext, null, request);
+
+        waitFor(session::isClosed);
+        assertTrue(session.getAgeMillis() >= 300);
+        assertEquals(0, manager.getActiveSessionCount());
+        assertNull(manager.getSession(session.getSessionId()));
+        assertEquals(1, manager.getMetrics().get("reapedIdle").asLong());
+        verify(asyncContext).complete();
+    }
+
+    @Test
+    void testActivityDefersIdleExpiry() throws Exception {
+        settings.setIdleTimeoutMillis(400);
+        McpSseSession session = manager.createSession(asyncContext, null, request);
+
+        for (int i = 0; i < 6; i++) {
+            Thread.sleep(100);
+            session.touch();
+        }
+        assertFalse(session.isClosed());
+
+        waitFor(session::isClosed);
+        assertEquals(0, manager.getActiveSessionCount());
+    }
+
+    @Test
+    void testStalledClientIsReaped() throws Exception {
+        settings.setHeartbeatIntervalMillis(100);
+        settings.setWriteTimeoutMillis(300);
+        McpSseSession session = manager.createSession(asyncContext, null, request);
+
+        // The peer stops reading, so heartbeats pile up instead of failing
+        outputStream.setReady(false);
+
+        waitFor(session::isClosed);
+        ObjectNode metrics = manager.getMetrics();
+        assertEquals(1, metrics.get("reapedStalled").asLong());
+        assertEquals(0, metrics.get("activeSessions").asInt());
+        assertEquals(0, metrics.get("pendingTimers").asInt());
+    }
+
+    @Test
+    void testContainerCompletionRemovesSession() throws Exception {
+        settings.setIdleTimeoutMillis(60000);
+        McpSseSession session = manager.createSession(asyncContext, null, request);
+
+        session.close();
+
+        assertEquals(0, manager.getActiveSessionCount());
+        assertEquals(0, manager.getMetrics().get("pendingTimers").asInt());
+    }
+
+    @Test
+    void testPostedMessageReturnsBeforeToolCallCompletes() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        McpProxyResource proxyResource = mock(McpProxyResource.class);
+        when(proxyResource.handleToolCallForMcp(any(), any(), any(), any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return Collections.singletonMap("content", "done");
+        });
+        McpSseSession session = manager.createSession(asyncContext, proxyResource, request);
+        String sessionId = session.getSessionId();
+
+        manager.handleMessageForSession(sessionId,
+            "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"initialize\",\"params\":{\"protocolVersion\":\"2024-11-05\"}}");
+        waitFor(session::isInitialized);
+
+        long start = System.nanoTime();
+        manager.handleMessageForSession(sessionId, "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"tools/call\",\"params\":{}}");
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertFalse(outputStream.getContent().contains("\"id\":2"));
+
+        release.countDown();
+        waitFor(() -> outputStream.getContent().contains("\"id\":2,\"result\":{\"content\":\"done\"}"));
+    }
+
+    @Test
+    void testPostedCancellationStopsToolCall() throws Exception {
+        CompletableFuture<String> reason = new CompletableFuture<>();
+        McpProxyResource proxyResource = mock(McpProxyResource.class);
+        when(proxyResource.handleToolCallForMcp(any(), any(), any(), any())).thenAnswer(invocation -> {
+            McpDeadline caller = invocation.getArgument(3);
+            caller.addCancelListener(() -> reason.complete(caller.getCancelReason()));
+            reason.get(5, TimeUnit.SECONDS);
+            throw new McpRequestCancelledException(caller.getCancelReason());
+        });
+        McpSseSession session = manager.createSession(asyncContext, proxyResource, request);
+        String sessionId = session.getSessionId();
+
+        manager.handleMessageForSession(sessionId,
+            "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"initialize\",\"params\":{\"protocolVersion\":\"2024-11-05\"}}");
+        waitFor(session::isInitialized);
+        manager.handleMessageForSession(sessionId, "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"tools/call\",\"params\":{}}");
+        waitFor(() -> session.getInflightCalls().size() == 1);
+
+        manager.handleMessageForSession(sessionId,
+            "{\"jsonrpc\":\"2.0\",\"method\":\"notifications/cancelled\",\"params\":{\"requestId\":2,\"reason\":\"stop\"}}");
+        assertEquals("stop", reason.get(5, TimeUnit.SECONDS));
+        waitFor(() -> session.getInflightCalls().size() == 0);
+        assertEquals(1, session.getInflightCalls().getCancelled());
+        // A cancelled request gets no response
+        assertFalse(outputStream.getContent().contains("\"id\":2"));
+    }
+
+    @Test
+    void testLifetimeSettingsFromConfig() {
+        McpSseSessionSettings parsed = McpSseSessionSettings.fromConfig(key -> {
+            if (McpSseSessionSettings.HEARTBEAT_INTERVAL.equals(key)) {
+                return "5";
+            }
+            if (McpSseSessionSettings.MAX_LIFETIME.equals(key)) {
+                return "3600";
+            }
+            return null;
+        });
+        assertEquals(5000, parsed.getHeartbeatIntervalMillis());
+        assertEquals(3600000, parsed.getMaxLifetimeMillis());
+        assertEquals(600000, parsed.getIdleTimeoutMillis());
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 3000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Condition not met in time");
+            Thread.sleep(20);
+        }
+    }
+}
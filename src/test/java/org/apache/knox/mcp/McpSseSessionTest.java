@@ -9,8 +9,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import javax.servlet.AsyncContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.StringWriter;
-import java.io.PrintWriter;
 
 import static org.mockito.Mockito.*;
 
@@ -44,17 +42,15 @@ class McpSseSessionTest {
             when(request.getServletPath()).thenReturn("/mcp/v1");
             
             // Setup mock response
-            StringWriter stringWriter = new StringWriter();
-            PrintWriter printWriter = new PrintWriter(stringWriter);
-            when(response.getWriter()).thenReturn(printWriter);
+            TestServletOutputStream outputStream = new TestServletOutputStream();
+            when(response.getOutputStream()).thenReturn(outputStream);
             when(asyncContext.getResponse()).thenReturn(response);
             
             // Create SSE session
             McpSseSession session = new McpSseSession("test-session", asyncContext, proxyResource, request);
             
             // Get the output that was written
-            printWriter.flush();
-            String output = stringWriter.toString();
+            String output = outputStream.getContent();
             
             System.out.println("SSE session output:");
             System.out.println(output);
@@ -72,8 +68,7 @@ class McpSseSessionTest {
             // Handle the request
             session.handleJsonRpcRequest(request);
             
-            printWriter.flush();
-            String fullOutput = stringWriter.toString();
+            String fullOutput = outputStream.getContent();
             
             System.out.println("Full SSE session output after initialize:");
             System.out.println(fullOutput);
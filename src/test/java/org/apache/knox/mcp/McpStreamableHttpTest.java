@@ -5,8 +5,10 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -105,23 +107,46 @@ public class McpStreamableHttpTest {
 
     @Test
     public void testUnifiedEndpointStreamingWithoutSession() throws Exception {
-        // Test POST with SSE Accept header but no session ID (should fail)
+        // POST with SSE Accept header but no session ID gets a stream on the same exchange
         when(mockHeaders.getHeaderString("Accept")).thenReturn("text/event-stream");
         when(mockRequest.getHeader("X-Session-ID")).thenReturn(null);
         when(mockRequest.getParameter("session")).thenReturn(null);
         
+        TestServletOutputStream outputStream = new TestServletOutputStream();
+        HttpServletResponse mockResponse = mock(HttpServletResponse.class);
+        when(mockResponse.getOutputStream()).thenReturn(outputStream);
+        AsyncContext asyncContext = mock(AsyncContext.class);
+        when(asyncContext.getResponse()).thenReturn(mockResponse);
+        when(mockRequest.startAsync()).thenReturn(asyncContext);
+        
         String jsonRpcRequest = "{\"jsonrpc\":\"2.0\",\"method\":\"tools/list\",\"id\":1}";
         
         Response response = mcpResource.handleMcpPostRequest(mockRequest, mockHeaders, jsonRpcRequest);
         
-        assertNotNull(response);
-        assertEquals(200, response.getStatus()); // JSON-RPC errors return 200
+        // The response is written asynchronously
+        assertNull(response);
+        verify(mockResponse).setContentType("text/event-stream");
+        
+        // The result arrives as an SSE message, then the exchange is completed
+        verify(asyncContext, timeout(3000)).complete();
+        String body = outputStream.getContent();
+        assertTrue(body.startsWith("event: message\ndata: "), "Response should be an SSE event: " + body);
+        assertTrue(body.contains("\"id\":1"), "Response should carry the request id");
+        assertTrue(body.contains("\"result\""), "Response should contain the result");
+        assertEquals(0, McpSseSessionManager.getInstance().getActiveSessionCount(),
+                     "No session state should be kept");
+    }
+    
+    @Test
+    public void testStreamingNotificationGetsNoStream() throws Exception {
+        when(mockHeaders.getHeaderString("Accept")).thenReturn("text/event-stream");
         
-        // Should return error about missing session
-        String responseBody = (String) response.getEntity();
-        assertTrue(responseBody.contains("\"error\""), "Response should contain error field");
-        assertTrue(responseBody.contains("Streaming requests require"), 
-                   "Response should mention streaming requirement");
+        String notification = "{\"jsonrpc\":\"2.0\",\"method\":\"initialized\"}";
+        Response response = mcpResource.handleMcpPostRequest(mockRequest, mockHeaders, notification);
+        
+        assertNotNull(response);
+        assertEquals(204, response.getStatus());
+        verify(mockRequest, never()).startAsync();
     }
 
     @Test
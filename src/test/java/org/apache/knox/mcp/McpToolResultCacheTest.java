@@ -0,0 +1,132 @@
+package org.apache.knox.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.client.McpRequestCancelledException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for caching results of idempotent tools
+ */
+class McpToolResultCacheTest {
+
+    private final McpToolResultCache cache = new McpToolResultCache(
+        McpToolResultCache.parseRules("warehouse.describe_table:300, config.*:60, bad-rule, x.y:nope"), 1 << 20);
+    private final AtomicInteger backendCalls = new AtomicInteger();
+
+    @Test
+    void testRulesSelectCacheableTools() {
+        assertEquals(300000, cache.getTtlMillis("warehouse", "describe_table"));
+        assertEquals(60000, cache.getTtlMillis("config", "anything"));
+        assertEquals(0, cache.getTtlMillis("warehouse", "insert_row"));
+        assertTrue(cache.isEnabled());
+        assertFalse(McpToolResultCache.fromConfig(key -> null).isEnabled());
+    }
+
+    @Test
+    void testRepeatedCallIsServedFromCacheRegardlessOfArgumentOrder() throws Exception {
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("table", "orders");
+        first.put("schema", "sales");
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("schema", "sales");
+        second.put("table", "orders");
+
+        Object result = cache.call("warehouse", "describe_table", first, false, this::backend);
+        Object again = cache.call("warehouse", "describe_table", second, false, this::backend);
+
+        assertEquals(1, backendCalls.get());
+        assertEquals(result, again);
+        assertEquals(1, cache.getMetrics().get("hits").asInt());
+    }
+
+    @Test
+    void testUnconfiguredToolsAndBypassGoToBackend() throws Exception {
+        Map<String, Object> args = Collections.singletonMap("table", "orders");
+        cache.call("warehouse", "insert_row", args, false, this::backend);
+        cache.call("warehouse", "insert_row", args, false, this::backend);
+        assertEquals(2, backendCalls.get());
+
+        cache.call("warehouse", "describe_table", args, false, this::backend);
+        cache.call("warehouse", "describe_table", args, true, this::backend);
+        assertEquals(4, backendCalls.get());
+        assertEquals(1, cache.getMetrics().get("bypasses").asInt());
+
+        assertTrue(McpToolResultCache.isBypassRequested("no-cache"));
+        assertTrue(McpToolResultCache.isBypassRequested("max-age=0, No-Store"));
+        assertFalse(McpToolResultCache.isBypassRequested("max-age=60"));
+    }
+
+    @Test
+    void testErrorResultsAreNotCached() throws Exception {
+        Map<String, Object> error = new HashMap<>();
+        error.put("isError", true);
+        for (int i = 0; i < 2; i++) {
+            cache.call("config", "fetch", null, false, () -> {
+                backendCalls.incrementAndGet();
+                return error;
+            });
+        }
+        assertEquals(2, backendCalls.get());
+        assertEquals(0, cache.getMetrics().get("entries").asInt());
+    }
+
+    @Test
+    void testCallerJoiningCancelledCallRunsItAgain() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // The first caller's client cancels while a second caller is waiting on the same call
+            Future<Object> cancelled = executor.submit(() -> cache.call("config", "fetch", null, false,
+                McpDeadline.none(), () -> {
+                    started.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    throw new McpRequestCancelledException("client cancelled");
+                }, this::backend));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<Object> waiting = executor.submit(() -> cache.call("config", "fetch", null, false,
+                McpDeadline.after(5, TimeUnit.SECONDS), this::backend, this::backend));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (cache.getMetrics().get("coalesced").asInt() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            assertThrows(Exception.class, () -> cancelled.get(5, TimeUnit.SECONDS));
+            assertEquals(1, ((JsonNode) waiting.get(5, TimeUnit.SECONDS)).get("call").asInt());
+            assertEquals(1, cache.getMetrics().get("coalescedRerun").asInt());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testKeyIgnoresMapOrderButNotValues() throws Exception {
+        Map<String, Object> a = new HashMap<>();
+        a.put("x", 1);
+        Map<String, Object> b = new HashMap<>();
+        b.put("x", 2);
+        assertNotEquals(McpToolResultCache.key("s", "t", a), McpToolResultCache.key("s", "t", b));
+        assertEquals(McpToolResultCache.key("s", "t", null), McpToolResultCache.key("s", "t", new HashMap<>()));
+    }
+
+    private Object backend() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("call", backendCalls.incrementAndGet());
+        return result;
+    }
+}
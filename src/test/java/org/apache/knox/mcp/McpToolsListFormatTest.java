@@ -2,6 +2,7 @@ package org.apache.knox.mcp;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.knox.mcp.catalog.McpToolDescriptor;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.AfterEach;
@@ -65,7 +66,7 @@ class McpToolsListFormatTest {
         Field aggregatedToolsField = McpProxyResource.class.getDeclaredField("aggregatedTools");
         aggregatedToolsField.setAccessible(true);
         @SuppressWarnings("unchecked")
-        Map<String, Object> aggregatedTools = (Map<String, Object>) aggregatedToolsField.get(resource);
+        Map<String, McpToolDescriptor> aggregatedTools = (Map<String, McpToolDescriptor>) aggregatedToolsField.get(resource);
         
         // Add a mock tool with problematic name
         Map<String, Object> toolData = new HashMap<>();
@@ -82,7 +83,8 @@ class McpToolsListFormatTest {
         toolData.put("inputSchema", inputSchema);
         
         // Add tool with a problematic name that needs sanitization
-        aggregatedTools.put("file_server_read_file", toolData);
+        aggregatedTools.put("file_server_read_file", new McpToolDescriptor("read_file",
+            (String) toolData.get("description"), objectMapper.valueToTree(toolData.get("inputSchema"))));
         
         // Test the MCP JSON-RPC tools/list request
         String jsonRpcRequest = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"tools/list\"}";
@@ -0,0 +1,61 @@
+package org.apache.knox.mcp;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * In-memory servlet output stream whose readiness can be toggled to simulate a slow client.
+ */
+public class TestServletOutputStream extends ServletOutputStream {
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private volatile boolean ready = true;
+    private volatile WriteListener listener;
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+        this.listener = writeListener;
+        if (ready) {
+            try {
+                writeListener.onWritePossible();
+            } catch (Exception e) {
+                writeListener.onError(e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        buffer.write(b);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        buffer.write(b, off, len);
+    }
+
+    /**
+     * Marks the client as stalled or caught up; catching up resumes the registered listener.
+     */
+    public void setReady(boolean ready) {
+        this.ready = ready;
+        if (ready && listener != null) {
+            try {
+                listener.onWritePossible();
+            } catch (Exception e) {
+                listener.onError(e);
+            }
+        }
+    }
+
+    public synchronized String getContent() {
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -2,6 +2,7 @@ package org.apache.knox.mcp;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.knox.mcp.catalog.McpToolDescriptor;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.AfterEach;
@@ -64,7 +65,7 @@ class ToolsFormatTest {
         Field aggregatedToolsField = McpProxyResource.class.getDeclaredField("aggregatedTools");
         aggregatedToolsField.setAccessible(true);
         @SuppressWarnings("unchecked")
-        Map<String, Object> aggregatedTools = (Map<String, Object>) aggregatedToolsField.get(resource);
+        Map<String, McpToolDescriptor> aggregatedTools = (Map<String, McpToolDescriptor>) aggregatedToolsField.get(resource);
         
         // Add a mock tool with problematic name that should be sanitized
         Map<String, Object> toolData = new HashMap<>();
@@ -80,7 +81,8 @@ class ToolsFormatTest {
         toolData.put("inputSchema", inputSchema);
         
         // Add tool with a name that has dots (should be sanitized)
-        aggregatedTools.put("file_server_read_file", toolData);
+        aggregatedTools.put("file_server_read_file", new McpToolDescriptor("read_file",
+            (String) toolData.get("description"), objectMapper.valueToTree(toolData.get("inputSchema"))));
         
         // Call listTools to get the JSON response format
         javax.ws.rs.core.Response response = resource.listTools();
@@ -0,0 +1,140 @@
+package org.apache.knox.mcp.catalog;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for sharing catalog content between tools
+ */
+class McpCatalogInternerTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testEqualSubtreesAreShared() {
+        McpCatalogInterner interner = new McpCatalogInterner();
+        McpToolDescriptor first = interner.tool("list_users", "Lists users", schema("user"));
+        McpToolDescriptor second = interner.tool("list_groups", "Lists groups", schema("group"));
+
+        assertNotSame(first.getInputSchema(), second.getInputSchema());
+        assertSame(first.getInputSchema().get("properties").get("cursor"),
+                   second.getInputSchema().get("properties").get("cursor"));
+        assertSame(first.getInputSchema().get("required"), second.getInputSchema().get("required"));
+
+        McpToolDescriptor again = interner.tool("list_users", "Lists users", schema("user"));
+        assertSame(first.getInputSchema(), again.getInputSchema());
+        assertEquals(first, again);
+    }
+
+    @Test
+    void testInterningLeavesInputUntouchedAndEqual() {
+        McpCatalogInterner interner = new McpCatalogInterner();
+        ObjectNode original = schema("user");
+        JsonNode interned = interner.intern(original);
+
+        assertNotSame(original, interned);
+        assertEquals(original, interned);
+        assertEquals(objectMapper.valueToTree(original).toString(), interned.toString());
+    }
+
+    @Test
+    void testDescriptorSerializesToWireShape() throws Exception {
+        McpToolDescriptor tool = new McpToolDescriptor("read", null, schema("file"));
+        JsonNode node = objectMapper.valueToTree(tool);
+
+        assertEquals("read", node.get("name").asText());
+        assertFalse(node.has("description"));
+        assertEquals("object", node.get("inputSchema").get("type").asText());
+    }
+
+    /**
+     * Not a timing benchmark: compares how many distinct objects 10k synthetic tools hold
+     * with and without interning, and logs an approximate heap figure for each.
+     */
+    @Test
+    void testFootprintOfTenThousandTools() {
+        int count = 10000;
+        List<McpToolDescriptor> naive = new ArrayList<>(count);
+        long naiveBytes = measure(() -> {
+            for (int i = 0; i < count; i++) {
+                naive.add(new McpToolDescriptor("tool_" + i, new String("Synthetic tool"), schema("entity" + (i % 50))));
+            }
+        });
+
+        McpCatalogInterner interner = new McpCatalogInterner();
+        List<McpToolDescriptor> interned = new ArrayList<>(count);
+        long internedBytes = measure(() -> {
+            for (int i = 0; i < count; i++) {
+                interned.add(interner.tool("tool_" + i, new String("Synthetic tool"), schema("entity" + (i % 50))));
+            }
+        });
+
+        int naiveNodes = countDistinct(naive);
+        int internedNodes = countDistinct(interned);
+        System.out.println("Catalog footprint for " + count + " tools: " + naiveNodes + " nodes (~" + naiveBytes / 1024 +
+                           " KB) plain, " + internedNodes + " nodes (~" + internedBytes / 1024 + " KB) interned");
+
+        assertEquals(naive.get(1234), interned.get(1234));
+        assertTrue(internedNodes * 100 < naiveNodes, "Interned catalog should hold far fewer schema nodes");
+    }
+
+    private static ObjectNode schema(String entity) {
+        ObjectNode schema = objectMapper.createObjectNode();
+        schema.put("type", "object");
+        ObjectNode properties = schema.putObject("properties");
+        properties.putObject("id").put("type", "string").put("description", "The " + entity + " id");
+        properties.putObject("cursor").put("type", "string").put("description", "Opaque pagination cursor");
+        properties.putObject("limit").put("type", "integer").put("minimum", 1).put("maximum", 1000);
+        ObjectNode auth = properties.putObject("auth");
+        auth.put("type", "object");
+        auth.putObject("properties").putObject("token").put("type", "string");
+        schema.putArray("required").add("id");
+        return schema;
+    }
+
+    private static long measure(Runnable allocation) {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        allocation.run();
+        System.gc();
+        return Math.max(0, runtime.totalMemory() - runtime.freeMemory() - before);
+    }
+
+    private static int countDistinct(List<McpToolDescriptor> tools) {
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (McpToolDescriptor tool : tools) {
+            visit(tool.getInputSchema(), seen);
+        }
+        return seen.size();
+    }
+
+    private static void visit(JsonNode node, Set<Object> seen) {
+        if (node == null || !seen.add(node)) {
+            return;
+        }
+        Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            seen.add(field.getKey());
+            visit(field.getValue(), seen);
+        }
+        for (JsonNode element : node) {
+            if (node.isArray()) {
+                visit(element, seen);
+            }
+        }
+    }
+}
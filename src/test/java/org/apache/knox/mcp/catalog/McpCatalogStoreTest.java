@@ -0,0 +1,84 @@
+package org.apache.knox.mcp.catalog;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for persisting backend catalogs across restarts
+ */
+class McpCatalogStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSaveAndLoadRoundTrip() throws Exception {
+        McpCatalogStore store = new McpCatalogStore(tempDir.resolve("shared/catalog.json.gz"));
+        Map<String, McpCatalogStore.ServerCatalog> catalogs = new HashMap<>();
+        catalogs.put("files", catalog("read_file", 3));
+        store.save(catalogs);
+
+        Map<String, McpCatalogStore.ServerCatalog> loaded = new McpCatalogStore(store.getFile()).load();
+
+        assertEquals(1, loaded.size());
+        McpCatalogStore.ServerCatalog files = loaded.get("files");
+        assertEquals(3, files.getVersion());
+        assertEquals(catalogs.get("files").getTools(), files.getTools());
+        assertEquals(catalogs.get("files").getResources(), files.getResources());
+        assertEquals("Readme", files.getResources().get("file:///readme").getName());
+        try (java.util.stream.Stream<Path> files2 = Files.list(tempDir.resolve("shared"))) {
+            assertEquals(1, files2.count(), "No temporary files should be left behind");
+        }
+    }
+
+    @Test
+    void testMissingOrCorruptFileLoadsEmpty() throws Exception {
+        Path file = tempDir.resolve("catalog.json.gz");
+        assertTrue(new McpCatalogStore(file).load().isEmpty());
+
+        Files.write(file, "not gzip".getBytes(StandardCharsets.UTF_8));
+        assertTrue(new McpCatalogStore(file).load().isEmpty());
+    }
+
+    @Test
+    void testSaveAsyncWritesLatestState() throws Exception {
+        McpCatalogStore store = new McpCatalogStore(tempDir.resolve("catalog.json.gz"));
+        Map<String, McpCatalogStore.ServerCatalog> catalogs = new java.util.concurrent.ConcurrentHashMap<>();
+        for (int i = 1; i <= 5; i++) {
+            catalogs.put("files", catalog("tool_" + i, i));
+            store.saveAsync(() -> new HashMap<>(catalogs));
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            McpCatalogStore.ServerCatalog files = store.load().get("files");
+            if (files != null && files.getVersion() == 5) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        fail("Latest catalog was not written");
+    }
+
+    private static McpCatalogStore.ServerCatalog catalog(String toolName, long version) {
+        ObjectNode schema = new ObjectMapper().createObjectNode();
+        schema.put("type", "object");
+        schema.putObject("properties").putObject("path").put("type", "string");
+        Map<String, McpToolDescriptor> tools = new HashMap<>();
+        tools.put(toolName, new McpToolDescriptor(toolName, "A tool", schema));
+
+        Map<String, McpResourceDescriptor> resources = new HashMap<>();
+        resources.put("file:///readme", new McpResourceDescriptor("file:///readme", "Readme", null, null));
+        return new McpCatalogStore.ServerCatalog(tools, resources, version, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,81 @@
+package org.apache.knox.mcp.catalog;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for paging through the aggregated catalog snapshot
+ */
+class McpCatalogTest {
+
+    @Test
+    void testPagesCoverCatalogInNameOrder() {
+        McpCatalog catalog = McpCatalog.build(1, tools("delta", "alpha", "echo", "charlie", "bravo"), new HashMap<>());
+
+        List<String> names = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            JsonNode page = catalog.listTools(cursor, 2);
+            assertTrue(page.get("tools").size() <= 2);
+            page.get("tools").forEach(tool -> names.add(tool.get("name").asText()));
+            cursor = page.has("nextCursor") ? page.get("nextCursor").asText() : null;
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(java.util.Arrays.asList("alpha", "bravo", "charlie", "delta", "echo"), names);
+    }
+
+    @Test
+    void testCursorSurvivesNewerSnapshot() {
+        McpCatalog first = McpCatalog.build(1, tools("a", "b", "c", "d"), new HashMap<>());
+        String cursor = first.listTools(null, 2).get("nextCursor").asText();
+
+        // "b", the last entry of the first page, is gone from the next snapshot
+        McpCatalog second = McpCatalog.build(2, tools("a", "c", "d", "e"), new HashMap<>());
+        JsonNode page = second.listTools(cursor, 2);
+
+        assertEquals("c", page.get("tools").get(0).get("name").asText());
+        assertEquals("d", page.get("tools").get(1).get("name").asText());
+        assertTrue(page.has("nextCursor"));
+    }
+
+    @Test
+    void testZeroPageSizeReturnsEverything() {
+        Map<String, McpResourceDescriptor> resources = new HashMap<>();
+        resources.put("files.file:///readme", new McpResourceDescriptor("file:///readme", "Readme", null, "text/plain"));
+        McpCatalog catalog = McpCatalog.build(1, tools("x", "y", "z"), resources);
+
+        JsonNode toolsPage = catalog.listTools(null, 0);
+        assertEquals(3, toolsPage.get("tools").size());
+        assertFalse(toolsPage.has("nextCursor"));
+
+        JsonNode resource = catalog.listResources(null, 0).get("resources").get(0);
+        assertEquals("files.file:///readme", resource.get("uri").asText());
+        assertEquals("Readme", resource.get("name").asText());
+        assertEquals("text/plain", resource.get("mimeType").asText());
+        assertFalse(resource.has("description"), "Absent fields should not be emitted");
+    }
+
+    @Test
+    void testInvalidCursorIsRejected() {
+        McpCatalog catalog = McpCatalog.build(1, tools("a"), new HashMap<>());
+        assertThrows(IllegalArgumentException.class, () -> catalog.listTools("not base64!", 10));
+    }
+
+    private static Map<String, McpToolDescriptor> tools(String... names) {
+        Map<String, McpToolDescriptor> tools = new HashMap<>();
+        for (String name : names) {
+            tools.put(name, new McpToolDescriptor(name, "Tool " + name, null));
+        }
+        return tools;
+    }
+}
@@ -0,0 +1,134 @@
+package org.apache.knox.mcp.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that the custom HTTP/SSE client fails requests a resumed stream does not answer, and
+ * does not reconnect in a tight loop on a zero retry hint.
+ */
+public class McpCustomHttpSseResumptionTest {
+
+    private HttpServer server;
+    private McpCustomHttpSseClient client;
+    private final CountDownLatch requestPosted = new CountDownLatch(1);
+    private final CountDownLatch shutdown = new CountDownLatch(1);
+    private final AtomicInteger streamCount = new AtomicInteger();
+    private final AtomicReference<String> resumeHeader = new AtomicReference<>();
+
+    @AfterEach
+    public void tearDown() {
+        shutdown.countDown();
+        if (client != null) {
+            client.close();
+        }
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testRequestNotReplayedFailsAfterGracePeriod() throws Exception {
+        startServer(false);
+        client = new McpCustomHttpSseClient("http://127.0.0.1:" + server.getAddress().getPort() + "/mcp");
+        client.connect();
+
+        long start = System.nanoTime();
+        Exception e = assertThrows(Exception.class,
+            () -> client.callTool(client.nextRequestId(), "echo", null, false, McpDeadline.after(30, TimeUnit.SECONDS)));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        McpException closed = findMcpException(e);
+        assertNotNull(closed, "Expected a connection closed error: " + e);
+        assertEquals(McpException.CONNECTION_CLOSED, closed.getCode());
+        assertEquals("7", resumeHeader.get());
+        assertTrue(elapsedMillis < 10000, "Lost request should fail well before its timeout: " + elapsedMillis);
+    }
+
+    @Test
+    public void testZeroRetryHintDoesNotReconnectInTightLoop() throws Exception {
+        startServer(true);
+        client = new McpCustomHttpSseClient("http://127.0.0.1:" + server.getAddress().getPort() + "/mcp");
+        client.connect();
+
+        Thread.sleep(500);
+        // connect() waits half a second too, so about ten reconnects at the minimum delay
+        assertTrue(streamCount.get() < 30, "Reconnected " + streamCount.get() + " times in one second");
+    }
+
+    private void startServer(boolean closeEveryStream) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+
+        server.createContext("/mcp/sse", exchange -> {
+            int stream = streamCount.incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            try {
+                if (closeEveryStream) {
+                    write(out, "retry: 0\n\n");
+                } else if (stream == 1) {
+                    write(out, "retry: 50\nid: 7\ndata: {\"jsonrpc\":\"2.0\",\"method\":\"notifications/message\"}\n\n");
+                    // Drop the stream once the request has been posted but before answering it
+                    requestPosted.await(10, TimeUnit.SECONDS);
+                } else {
+                    // Resumes the stream but never replays the response
+                    resumeHeader.set(exchange.getRequestHeaders().getFirst("Last-Event-ID"));
+                    shutdown.await(10, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException | IOException e) {
+                // Client went away
+            } finally {
+                exchange.close();
+            }
+        });
+
+        server.createContext("/mcp/message", exchange -> {
+            drain(exchange);
+            exchange.sendResponseHeaders(202, -1);
+            exchange.close();
+            requestPosted.countDown();
+        });
+
+        server.start();
+    }
+
+    private static McpException findMcpException(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof McpException) {
+                return (McpException) cause;
+            }
+        }
+        return null;
+    }
+
+    private static void write(OutputStream out, String event) throws IOException {
+        out.write(event.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void drain(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[1024];
+            while (in.read(buffer) != -1) {
+                // discard
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.apache.knox.mcp.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for following nextCursor through paginated list results
+ */
+class McpListPagerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testFollowsCursorsUntilLastPage() throws Exception {
+        List<String> cursorsSent = new ArrayList<>();
+        List<JsonNode> tools = McpListPager.fetchAll("tools/list", "tools", params -> {
+            String cursor = params == null ? null : params.get("cursor").asText();
+            cursorsSent.add(cursor);
+            if (cursor == null) {
+                return objectMapper.readTree("{\"tools\":[{\"name\":\"a\"},{\"name\":\"b\"}],\"nextCursor\":\"p2\"}");
+            }
+            if ("p2".equals(cursor)) {
+                return objectMapper.readTree("{\"tools\":[{\"name\":\"c\"}],\"nextCursor\":\"p3\"}");
+            }
+            return objectMapper.readTree("{\"tools\":[{\"name\":\"d\"}]}");
+        });
+
+        assertEquals(4, tools.size());
+        assertEquals("d", McpListPager.toTool(tools.get(3)).getName());
+        assertEquals(java.util.Arrays.asList(null, "p2", "p3"), cursorsSent);
+    }
+
+    @Test
+    void testStopsOnRepeatedCursor() throws Exception {
+        int[] calls = {0};
+        List<JsonNode> items = McpListPager.fetchAll("resources/list", "resources", params -> {
+            calls[0]++;
+            return objectMapper.readTree("{\"resources\":[{\"uri\":\"file:///x\"}],\"nextCursor\":\"same\"}");
+        });
+
+        assertEquals(2, calls[0]);
+        assertEquals(2, items.size());
+    }
+}
@@ -0,0 +1,94 @@
+package org.apache.knox.mcp.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for correlating responses with the requests waiting for them
+ */
+class McpPendingRequestsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testResponsesCompleteTheirRequests() throws Exception {
+        McpPendingRequests pending = new McpPendingRequests("docs");
+        long first = pending.nextId();
+        long second = pending.nextId();
+        CompletableFuture<JsonNode> result = pending.register(first, "tools/call", McpDeadline.after(5, TimeUnit.SECONDS));
+        CompletableFuture<JsonNode> error = pending.register(second, "tools/call", McpDeadline.none());
+        assertEquals(2, pending.size());
+
+        assertTrue(pending.complete(first, objectMapper.readTree("{\"id\":1,\"result\":{\"ok\":true}}")));
+        assertTrue(result.get().get("ok").asBoolean());
+        assertTrue(pending.complete(second, objectMapper.readTree("{\"id\":2,\"error\":{\"code\":-32602,\"message\":\"bad\"}}")));
+        ExecutionException e = assertThrows(ExecutionException.class, error::get);
+        assertEquals(-32602, ((McpException) e.getCause()).getCode());
+
+        // A response nobody waits for any more
+        assertFalse(pending.complete(first, objectMapper.readTree("{\"id\":1,\"result\":{}}")));
+        assertEquals(1, pending.getLate());
+        assertEquals(0, pending.size());
+    }
+
+    @Test
+    void testExpiredRequestsLeaveAndTellTheServer() throws Exception {
+        McpPendingRequests pending = new McpPendingRequests("docs");
+        List<String> cancelled = new ArrayList<>();
+        long id = pending.nextId();
+        McpDeadline deadline = McpDeadline.after(50, TimeUnit.MILLISECONDS);
+        CompletableFuture<JsonNode> future = pending.register(id, "tools/call", deadline);
+        assertTrue(pending.getOldestAgeMillis() >= 0);
+
+        McpRequestTimeoutException e = assertThrows(McpRequestTimeoutException.class, () ->
+            pending.await(id, future, "tools/call", deadline, (cancelledId, reason) -> cancelled.add(cancelledId + ": " + reason)));
+        assertEquals(McpException.REQUEST_TIMEOUT, e.getCode());
+        assertEquals(1, cancelled.size());
+        assertTrue(cancelled.get(0).startsWith(id + ": Deadline of"));
+        assertEquals(0, pending.size());
+        assertEquals(1, pending.getExpired());
+        assertEquals(0, pending.getOldestAgeMillis());
+    }
+
+    @Test
+    void testUnawaitedRequestsStillExpire() throws Exception {
+        McpPendingRequests pending = new McpPendingRequests("docs");
+        CompletableFuture<JsonNode> future = pending.register(pending.nextId(), "resources/read",
+            McpDeadline.after(20, TimeUnit.MILLISECONDS));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof McpRequestTimeoutException);
+        assertEquals(0, pending.size());
+    }
+
+    @Test
+    void testCallerCancellationAndClose() throws Exception {
+        McpPendingRequests pending = new McpPendingRequests("docs");
+        List<Long> cancelled = new ArrayList<>();
+        long id = pending.nextId();
+        McpDeadline caller = McpDeadline.none();
+        CompletableFuture<JsonNode> future = pending.register(id, "tools/call", caller);
+        CompletableFuture.runAsync(() -> caller.cancel("stop"));
+        assertThrows(McpRequestCancelledException.class, () ->
+            pending.await(id, future, "tools/call", caller, (cancelledId, reason) -> cancelled.add(cancelledId)));
+        assertEquals(1, cancelled.size());
+        assertFalse(pending.isPending(id));
+
+        // Requests dropped on close are not cancellations by their caller
+        long next = pending.nextId();
+        McpDeadline other = McpDeadline.after(5, TimeUnit.SECONDS);
+        CompletableFuture<JsonNode> open = pending.register(next, "tools/call", other);
+        assertArrayEquals(new long[] {next}, pending.ids());
+        pending.cancelAll();
+        McpException e = assertThrows(McpException.class, () -> pending.await(next, open, "tools/call", other, null));
+        assertEquals(McpException.CONNECTION_CLOSED, e.getCode());
+    }
+}
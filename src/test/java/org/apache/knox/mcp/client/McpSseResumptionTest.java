@@ -0,0 +1,130 @@
+package org.apache.knox.mcp.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that the SSE client resumes a dropped stream with Last-Event-ID and keeps
+ * in-flight requests alive only when the server resumes the session.
+ */
+public class McpSseResumptionTest {
+
+    private HttpServer server;
+    private McpSseClient client;
+    private final CountDownLatch requestPosted = new CountDownLatch(1);
+    private final CountDownLatch shutdown = new CountDownLatch(1);
+    private final AtomicInteger streamCount = new AtomicInteger();
+    private final AtomicReference<String> resumeHeader = new AtomicReference<>();
+
+    @AfterEach
+    public void tearDown() {
+        shutdown.countDown();
+        if (client != null) {
+            client.close();
+        }
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testInFlightRequestCompletesFromReplayedEvent() throws Exception {
+        startServer(true);
+        client = new McpSseClient("http://127.0.0.1:" + server.getAddress().getPort() + "/mcp");
+        client.connect();
+
+        JsonNode result = client.callTool("echo", null);
+
+        assertEquals("replayed", result.get("content").asText());
+        assertEquals("7", resumeHeader.get());
+        assertEquals(2, streamCount.get());
+        assertTrue(client.isAlive());
+    }
+
+    @Test
+    public void testLostRequestFailsFastWhenSessionIsNotResumed() throws Exception {
+        startServer(false);
+        client = new McpSseClient("http://127.0.0.1:" + server.getAddress().getPort() + "/mcp");
+        client.connect();
+
+        long start = System.nanoTime();
+        ExecutionException e = assertThrows(ExecutionException.class, () -> client.callTool("echo", null));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(e.getCause() instanceof McpException);
+        assertEquals(McpException.CONNECTION_CLOSED, ((McpException) e.getCause()).getCode());
+        assertTrue(elapsedMillis < 10000, "Lost request should fail well before its timeout: " + elapsedMillis);
+    }
+
+    private void startServer(boolean resumeSession) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+
+        server.createContext("/mcp/sse", exchange -> {
+            int stream = streamCount.incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            try {
+                if (stream == 1) {
+                    write(out, "retry: 50\nid: 7\nevent: endpoint\ndata: /mcp/message?session=abc\n\n");
+                    // Drop the stream once the request has been posted but before answering it
+                    requestPosted.await(10, TimeUnit.SECONDS);
+                } else {
+                    resumeHeader.set(exchange.getRequestHeaders().getFirst("Last-Event-ID"));
+                    if (resumeSession) {
+                        write(out, "id: 8\nevent: message\n" +
+                                   "data: {\"jsonrpc\":\"2.0\",\"id\":1,\"result\":{\"content\":\"replayed\"}}\n\n");
+                    } else {
+                        write(out, "id: 1\nevent: endpoint\ndata: /mcp/message?session=def\n\n");
+                    }
+                    shutdown.await(10, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException | IOException e) {
+                // Client went away
+            } finally {
+                exchange.close();
+            }
+        });
+
+        server.createContext("/mcp/message", exchange -> {
+            drain(exchange);
+            exchange.sendResponseHeaders(202, -1);
+            exchange.close();
+            requestPosted.countDown();
+        });
+
+        server.start();
+    }
+
+    private static void write(OutputStream out, String event) throws IOException {
+        out.write(event.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void drain(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[1024];
+            while (in.read(buffer) != -1) {
+                // discard
+            }
+        }
+    }
+}
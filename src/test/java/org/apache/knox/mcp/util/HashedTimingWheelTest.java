@@ -0,0 +1,69 @@
+package org.apache.knox.mcp.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the hashed timing wheel used for session and request expiry
+ */
+class HashedTimingWheelTest {
+
+    private final HashedTimingWheel wheel = new HashedTimingWheel("test-wheel", 10, TimeUnit.MILLISECONDS, 8);
+
+    @AfterEach
+    void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    void testTimeoutsFireInDeadlineOrder() throws Exception {
+        List<Integer> fired = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+
+        // Longer than one revolution of the 8-bucket wheel, so rounds are exercised
+        wheel.schedule(() -> { fired.add(3); done.countDown(); }, 150, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> { fired.add(1); done.countDown(); }, 20, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> { fired.add(2); done.countDown(); }, 60, TimeUnit.MILLISECONDS);
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(3, fired.size());
+        assertEquals(Integer.valueOf(1), fired.get(0));
+        assertEquals(Integer.valueOf(2), fired.get(1));
+        assertEquals(Integer.valueOf(3), fired.get(2));
+        assertEquals(0, wheel.pendingTimeouts());
+    }
+
+    @Test
+    void testTimeoutDoesNotFireEarly() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        long start = System.nanoTime();
+        HashedTimingWheel.Timeout timeout = wheel.schedule(done::countDown, 100, TimeUnit.MILLISECONDS);
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    void testCancelledTimeoutNeverFires() throws Exception {
+        AtomicBoolean fired = new AtomicBoolean(false);
+        HashedTimingWheel.Timeout timeout = wheel.schedule(() -> fired.set(true), 30, TimeUnit.MILLISECONDS);
+        assertEquals(1, wheel.pendingTimeouts());
+
+        assertTrue(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertEquals(0, wheel.pendingTimeouts());
+
+        Thread.sleep(100);
+        assertFalse(fired.get());
+    }
+}
@@ -0,0 +1,64 @@
+package org.apache.knox.mcp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the primitive long-keyed map
+ */
+class LongObjectMapTest {
+
+    @Test
+    void testPutGetRemove() {
+        LongObjectMap<String> map = new LongObjectMap<>(2);
+        assertNull(map.put(1, "one"));
+        assertNull(map.put(-7, "minus seven"));
+        assertEquals("one", map.put(1, "uno"));
+        assertEquals("uno", map.get(1));
+        assertEquals("minus seven", map.get(-7));
+        assertNull(map.get(2));
+        assertEquals(2, map.size());
+        assertNotNull(map.anyValue());
+
+        assertFalse(map.remove(1, "one"));
+        assertTrue(map.remove(1, "uno"));
+        assertNull(map.remove(1));
+        assertEquals("minus seven", map.anyValue());
+        assertEquals("minus seven", map.remove(-7));
+        assertTrue(map.isEmpty());
+        assertNull(map.anyValue());
+    }
+
+    @Test
+    void testMatchesHashMapUnderChurn() {
+        LongObjectMap<Long> map = new LongObjectMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            // Sequential ids with gaps, like JSON-RPC ids of requests completing out of order
+            long key = random.nextInt(2000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        long[] keys = map.keys();
+        Arrays.sort(keys);
+        assertArrayEquals(expected.keySet().stream().mapToLong(Long::longValue).sorted().toArray(), keys);
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(keys[0]));
+    }
+}
@@ -0,0 +1,161 @@
+package org.apache.knox.mcp.util;
+
+import org.apache.knox.mcp.client.McpDeadline;
+import org.apache.knox.mcp.client.McpRequestCancelledException;
+import org.apache.knox.mcp.client.McpRequestTimeoutException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for coalescing identical concurrent calls
+ */
+class SingleFlightTest {
+
+    private final SingleFlight<String, Integer> flights = new SingleFlight<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @Test
+    void testConcurrentCallersShareOneCall() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> flights.execute("read", () -> {
+                release.await(5, TimeUnit.SECONDS);
+                return calls.incrementAndGet();
+            })));
+        }
+        awaitShared(7);
+        release.countDown();
+
+        for (Future<Integer> result : results) {
+            assertEquals(1, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, flights.getCalls());
+        assertEquals(0, flights.inFlight());
+
+        // Completed calls are not remembered
+        assertEquals(2, flights.execute("read", calls::incrementAndGet));
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testWaitersReceiveTheSameException() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Integer> leader = executor.submit(() -> flights.execute("read", () -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            throw new IOException("backend down");
+        }));
+        // The follower must not become the leader
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<Integer> follower = executor.submit(() -> flights.execute("read", () -> 42));
+        awaitShared(1);
+        release.countDown();
+
+        Exception leaderError = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        Exception followerError = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertTrue(leaderError.getCause() instanceof IOException);
+        assertSame(leaderError.getCause(), followerError.getCause());
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testFollowerWaitsOnlyUntilItsOwnDeadline() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Integer> leader = startLeader(() -> {
+            release.await(5, TimeUnit.SECONDS);
+            return 1;
+        });
+
+        long start = System.nanoTime();
+        assertThrows(McpRequestTimeoutException.class,
+            () -> flights.execute("read", McpDeadline.after(100, TimeUnit.MILLISECONDS), () -> 2));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+
+        release.countDown();
+        assertEquals(1, leader.get(5, TimeUnit.SECONDS));
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testCancelledFollowerStopsWaiting() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Integer> leader = startLeader(() -> {
+            release.await(5, TimeUnit.SECONDS);
+            return 1;
+        });
+        McpDeadline deadline = McpDeadline.none();
+        Future<Integer> follower = executor.submit(() -> flights.execute("read", deadline, () -> 2));
+        awaitShared(1);
+
+        deadline.cancel("client went away");
+        Exception e = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof McpRequestCancelledException);
+        assertEquals("client went away", e.getCause().getMessage());
+
+        release.countDown();
+        assertEquals(1, leader.get(5, TimeUnit.SECONDS));
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testFollowerRerunsCallItsLeaderGaveUpOn() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Integer> leader = startLeader(() -> {
+            release.await(5, TimeUnit.SECONDS);
+            throw new McpRequestCancelledException("leader cancelled");
+        });
+        Future<Integer> follower = executor.submit(() ->
+            flights.execute("read", McpDeadline.after(5, TimeUnit.SECONDS), () -> 42));
+        awaitShared(1);
+        release.countDown();
+
+        assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertEquals(42, follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, flights.getRerun());
+        assertEquals(2, flights.getCalls());
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testDifferentKeysDoNotShare() throws Exception {
+        assertEquals(1, flights.execute("a", () -> 1));
+        assertEquals(2, flights.execute("b", () -> 2));
+        assertEquals(2, flights.getCalls());
+        assertEquals(0, flights.getShared());
+        executor.shutdownNow();
+    }
+
+    // Starts a call and waits until it leads, so the next caller joins it
+    private Future<Integer> startLeader(java.util.concurrent.Callable<Integer> call) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        Future<Integer> leader = executor.submit(() -> flights.execute("read", () -> {
+            started.countDown();
+            return call.call();
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return leader;
+    }
+
+    private void awaitShared(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (flights.getShared() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, flights.getShared());
+    }
+}
@@ -0,0 +1,85 @@
+package org.apache.knox.mcp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the weight-bounded W-TinyLFU cache
+ */
+class WindowTinyLfuCacheTest {
+
+    private static final long TTL = TimeUnit.MINUTES.toNanos(1);
+
+    @Test
+    void testPopularEntriesSurviveScan() {
+        WindowTinyLfuCache<String, String> cache = new WindowTinyLfuCache<>(100, 100);
+        for (int i = 0; i < 50; i++) {
+            cache.put("hot-" + i, "value", 1, TTL);
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                assertNotNull(cache.get("hot-" + i));
+            }
+        }
+
+        // A burst of keys seen once must not displace the frequently read ones
+        for (int i = 0; i < 1000; i++) {
+            cache.put("scan-" + i, "value", 1, TTL);
+        }
+
+        int hotRetained = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.get("hot-" + i) != null) {
+                hotRetained++;
+            }
+        }
+        assertTrue(hotRetained >= 45, "Only " + hotRetained + " hot entries survived the scan");
+        assertTrue(cache.weight() <= 100);
+        assertTrue(cache.getRejections() > 0);
+    }
+
+    @Test
+    void testWeightBoundIsEnforced() {
+        WindowTinyLfuCache<String, String> cache = new WindowTinyLfuCache<>(1000, 16);
+        for (int i = 0; i < 100; i++) {
+            cache.put("key-" + i, "value", 60, TTL);
+            assertTrue(cache.weight() <= 1000);
+        }
+        assertFalse(cache.put("huge", "value", 1001, TTL), "An entry heavier than the cache is refused");
+
+        cache.put("key-99", "replaced", 10, TTL);
+        assertEquals("replaced", cache.get("key-99"));
+        assertTrue(cache.weight() <= 1000);
+    }
+
+    @Test
+    void testEntriesExpire() {
+        AtomicLong now = new AtomicLong();
+        WindowTinyLfuCache<String, String> cache = new WindowTinyLfuCache<>(100, 16, now::get);
+        cache.put("short", "a", 1, TimeUnit.SECONDS.toNanos(1));
+        cache.put("long", "b", 1, TimeUnit.SECONDS.toNanos(10));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+
+        assertNull(cache.get("short"));
+        assertEquals("b", cache.get("long"));
+        assertEquals(1, cache.getExpirations());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testInvalidateIf() {
+        WindowTinyLfuCache<String, String> cache = new WindowTinyLfuCache<>(100, 16);
+        cache.put("a.1", "x", 1, TTL);
+        cache.put("a.2", "x", 1, TTL);
+        cache.put("b.1", "x", 1, TTL);
+
+        assertEquals(2, cache.invalidateIf(key -> key.startsWith("a.")));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.weight());
+    }
+}